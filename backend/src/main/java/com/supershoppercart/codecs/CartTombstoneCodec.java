@@ -0,0 +1,40 @@
+package com.supershoppercart.codecs;
+
+import com.supershoppercart.enums.CartRemovalReason;
+import com.supershoppercart.models.CartTombstone;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.supershoppercart.codecs.FirestoreValues.date;
+import static com.supershoppercart.codecs.FirestoreValues.enumName;
+import static com.supershoppercart.codecs.FirestoreValues.enumValue;
+import static com.supershoppercart.codecs.FirestoreValues.serverTimestampIfNull;
+import static com.supershoppercart.codecs.FirestoreValues.string;
+
+/**
+ * Codec for cart tombstones. removedAt is written as a server timestamp, so it is in the same clock
+ * as the carts' lastModified and the read times sync tokens are taken from.
+ */
+final class CartTombstoneCodec implements FirestoreCodec<CartTombstone> {
+
+    @Override
+    public CartTombstone decode(String documentId, Map<String, Object> data) {
+        CartTombstone tombstone = new CartTombstone();
+        tombstone.setCartId(string(data.get("cartId")));
+        tombstone.setShopperId(string(data.get("shopperId")));
+        tombstone.setReason(enumValue(CartRemovalReason.class, data.get("reason")));
+        tombstone.setRemovedAt(date(data.get("removedAt")));
+        return tombstone;
+    }
+
+    @Override
+    public Map<String, Object> encode(CartTombstone tombstone) {
+        Map<String, Object> data = new HashMap<>(4);
+        data.put("cartId", tombstone.getCartId());
+        data.put("shopperId", tombstone.getShopperId());
+        data.put("reason", enumName(tombstone.getReason()));
+        data.put("removedAt", serverTimestampIfNull(tombstone.getRemovedAt()));
+        return data;
+    }
+}
@@ -0,0 +1,35 @@
+package com.supershoppercart.codecs;
+
+import com.google.cloud.firestore.DocumentSnapshot;
+
+import java.util.Map;
+
+/**
+ * Converts one model type to and from the plain values Firestore stores, without reflection.
+ * Decoding reads the map returned by {@link DocumentSnapshot#getData()}; encoding produces a map
+ * that can be passed to {@code set}, {@code update} or a field transform in place of the model.
+ * Field names and value types match what Firestore's bean mapper reads and writes for the same model,
+ * so documents written either way can be read either way.
+ *
+ * @param <T> The model type.
+ */
+public interface FirestoreCodec<T> {
+
+    /**
+     * @param documentId The ID of the document, or null for a value nested inside another document.
+     * @param data The stored fields.
+     */
+    T decode(String documentId, Map<String, Object> data);
+
+    Map<String, Object> encode(T value);
+
+    /**
+     * Decodes a document snapshot.
+     *
+     * @return The model, or null if the document does not exist.
+     */
+    default T decode(DocumentSnapshot snapshot) {
+        Map<String, Object> data = snapshot.getData();
+        return data != null ? decode(snapshot.getId(), data) : null;
+    }
+}
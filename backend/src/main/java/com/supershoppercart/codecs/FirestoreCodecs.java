@@ -0,0 +1,37 @@
+package com.supershoppercart.codecs;
+
+import com.supershoppercart.models.CartTombstone;
+import com.supershoppercart.models.GroceryItem;
+import com.supershoppercart.models.RefreshToken;
+import com.supershoppercart.models.SharePermissionEntry;
+import com.supershoppercart.models.ShopCart;
+import com.supershoppercart.models.Shopper;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The codecs for every stored model. They are stateless and shared.
+ * Repositories decode snapshots and encode documents through these instead of
+ * {@code DocumentSnapshot.toObject} and passing the models to {@code set}, which map each field by reflection.
+ */
+public final class FirestoreCodecs {
+
+    public static final FirestoreCodec<GroceryItem> GROCERY_ITEM = new GroceryItemCodec();
+    public static final FirestoreCodec<SharePermissionEntry> SHARE_PERMISSION_ENTRY = new SharePermissionEntryCodec();
+    private static final ShopCartCodec SHOP_CART_CODEC = new ShopCartCodec(GROCERY_ITEM, SHARE_PERMISSION_ENTRY);
+    public static final FirestoreCodec<ShopCart> SHOP_CART = SHOP_CART_CODEC;
+    public static final FirestoreCodec<Shopper> SHOPPER = new ShopperCodec();
+    public static final FirestoreCodec<RefreshToken> REFRESH_TOKEN = new RefreshTokenCodec();
+    public static final FirestoreCodec<CartTombstone> CART_TOMBSTONE = new CartTombstoneCodec();
+
+    private FirestoreCodecs() {
+    }
+
+    /**
+     * Encodes a list of items, for writing a cart's items array.
+     */
+    public static List<Map<String, Object>> encodeItems(List<GroceryItem> items) {
+        return SHOP_CART_CODEC.encodeItems(items);
+    }
+}
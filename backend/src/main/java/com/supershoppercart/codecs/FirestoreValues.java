@@ -0,0 +1,71 @@
+package com.supershoppercart.codecs;
+
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.FieldValue;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Conversions from the values found in {@code getData()} maps to model field types.
+ * Firestore hands back integers as Long, timestamps as {@link Timestamp} and enums as their names.
+ * A missing value decodes to the type's default, as it does with the bean mapper.
+ */
+final class FirestoreValues {
+
+    private FirestoreValues() {
+    }
+
+    static String string(Object value) {
+        return value instanceof String s ? s : null;
+    }
+
+    static long longValue(Object value) {
+        return value instanceof Number n ? n.longValue() : 0L;
+    }
+
+    static boolean bool(Object value) {
+        return value instanceof Boolean b && b;
+    }
+
+    static Date date(Object value) {
+        if (value instanceof Timestamp timestamp) {
+            return timestamp.toDate();
+        }
+        return value instanceof Date date ? date : null;
+    }
+
+    static <E extends Enum<E>> E enumValue(Class<E> type, Object value) {
+        return value instanceof String name ? Enum.valueOf(type, name) : null;
+    }
+
+    static String enumName(Enum<?> value) {
+        return value != null ? value.name() : null;
+    }
+
+    static List<String> stringList(Object value) {
+        if (!(value instanceof List<?> list)) {
+            return null;
+        }
+        List<String> strings = new ArrayList<>(list.size());
+        for (Object element : list) {
+            strings.add(string(element));
+        }
+        return strings;
+    }
+
+    @SuppressWarnings("unchecked")
+    static Map<String, Object> map(Object value) {
+        return value instanceof Map<?, ?> map ? (Map<String, Object>) map : null;
+    }
+
+    /**
+     * A timestamp for a field the server fills in: the value when set, otherwise a server timestamp,
+     * as the bean mapper does for fields annotated with {@code @ServerTimestamp}.
+     */
+    static Object serverTimestampIfNull(Date value) {
+        return value != null ? value : FieldValue.serverTimestamp();
+    }
+}
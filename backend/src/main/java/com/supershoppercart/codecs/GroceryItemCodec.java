@@ -0,0 +1,38 @@
+package com.supershoppercart.codecs;
+
+import com.supershoppercart.models.GroceryItem;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.supershoppercart.codecs.FirestoreValues.bool;
+import static com.supershoppercart.codecs.FirestoreValues.string;
+
+/**
+ * Codec for grocery items, both as elements of a cart's items array and as item subcollection documents.
+ * Subcollection documents do not store their ID as a field, so the document ID is used when the field is absent.
+ * Their extra cartId and addedAt fields are ignored.
+ */
+final class GroceryItemCodec implements FirestoreCodec<GroceryItem> {
+
+    @Override
+    public GroceryItem decode(String documentId, Map<String, Object> data) {
+        GroceryItem item = new GroceryItem();
+        String id = string(data.get("id"));
+        item.setId(id != null ? id : documentId);
+        item.setDesignation(string(data.get("designation")));
+        item.setQuantity(string(data.get("quantity")));
+        item.setPurchased(bool(data.get("purchased")));
+        return item;
+    }
+
+    @Override
+    public Map<String, Object> encode(GroceryItem item) {
+        Map<String, Object> data = new HashMap<>(8);
+        data.put("id", item.getId());
+        data.put("designation", item.getDesignation());
+        data.put("quantity", item.getQuantity());
+        data.put("purchased", item.isPurchased());
+        return data;
+    }
+}
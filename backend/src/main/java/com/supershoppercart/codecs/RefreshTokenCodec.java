@@ -0,0 +1,31 @@
+package com.supershoppercart.codecs;
+
+import com.supershoppercart.models.RefreshToken;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.supershoppercart.codecs.FirestoreValues.longValue;
+import static com.supershoppercart.codecs.FirestoreValues.string;
+
+/**
+ * Codec for refresh token records. The token itself is the document ID and is not stored as a field.
+ * RefreshToken has no no-argument constructor, so this is also the only way to read one back.
+ */
+final class RefreshTokenCodec implements FirestoreCodec<RefreshToken> {
+
+    @Override
+    public RefreshToken decode(String documentId, Map<String, Object> data) {
+        return new RefreshToken(documentId, string(data.get("shopperId")), string(data.get("deviceId")),
+                longValue(data.get("expiry")));
+    }
+
+    @Override
+    public Map<String, Object> encode(RefreshToken token) {
+        Map<String, Object> data = new HashMap<>(4);
+        data.put("shopperId", token.getShopperId());
+        data.put("deviceId", token.getDeviceId());
+        data.put("expiry", token.getExpiry());
+        return data;
+    }
+}
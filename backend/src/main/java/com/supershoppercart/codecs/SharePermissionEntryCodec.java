@@ -0,0 +1,30 @@
+package com.supershoppercart.codecs;
+
+import com.supershoppercart.enums.SharePermission;
+import com.supershoppercart.models.SharePermissionEntry;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.supershoppercart.codecs.FirestoreValues.enumName;
+import static com.supershoppercart.codecs.FirestoreValues.enumValue;
+import static com.supershoppercart.codecs.FirestoreValues.string;
+
+/**
+ * Codec for the entries of the share permission list that carts stored before the permission map.
+ */
+final class SharePermissionEntryCodec implements FirestoreCodec<SharePermissionEntry> {
+
+    @Override
+    public SharePermissionEntry decode(String documentId, Map<String, Object> data) {
+        return new SharePermissionEntry(string(data.get("shopperId")), enumValue(SharePermission.class, data.get("permission")));
+    }
+
+    @Override
+    public Map<String, Object> encode(SharePermissionEntry entry) {
+        Map<String, Object> data = new HashMap<>(4);
+        data.put("shopperId", entry.getShopperId());
+        data.put("permission", enumName(entry.getPermission()));
+        return data;
+    }
+}
@@ -0,0 +1,134 @@
+package com.supershoppercart.codecs;
+
+import com.supershoppercart.enums.ItemStorage;
+import com.supershoppercart.enums.SharePermission;
+import com.supershoppercart.enums.ShopCartState;
+import com.supershoppercart.models.GroceryItem;
+import com.supershoppercart.models.SharePermissionEntry;
+import com.supershoppercart.models.ShopCart;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.supershoppercart.codecs.FirestoreValues.bool;
+import static com.supershoppercart.codecs.FirestoreValues.date;
+import static com.supershoppercart.codecs.FirestoreValues.enumName;
+import static com.supershoppercart.codecs.FirestoreValues.enumValue;
+import static com.supershoppercart.codecs.FirestoreValues.longValue;
+import static com.supershoppercart.codecs.FirestoreValues.map;
+import static com.supershoppercart.codecs.FirestoreValues.serverTimestampIfNull;
+import static com.supershoppercart.codecs.FirestoreValues.string;
+import static com.supershoppercart.codecs.FirestoreValues.stringList;
+
+/**
+ * Codec for cart and template documents. The cart ID is the document ID and is not stored as a field.
+ * Fields missing from the document, as in a field-mask read, keep the defaults of a new ShopCart.
+ * Carts stored before the permission map carry a sharePermissions list instead, which is read into the map.
+ * The state of a cart in the subcollection layout is settled against its stored item counters.
+ */
+final class ShopCartCodec implements FirestoreCodec<ShopCart> {
+
+    private final FirestoreCodec<GroceryItem> itemCodec;
+    private final FirestoreCodec<SharePermissionEntry> permissionEntryCodec;
+
+    ShopCartCodec(FirestoreCodec<GroceryItem> itemCodec, FirestoreCodec<SharePermissionEntry> permissionEntryCodec) {
+        this.itemCodec = itemCodec;
+        this.permissionEntryCodec = permissionEntryCodec;
+    }
+
+    @Override
+    public ShopCart decode(String documentId, Map<String, Object> data) {
+        ShopCart cart = new ShopCart();
+        cart.setId(documentId);
+        cart.setName(string(data.get("name")));
+        if (data.get("items") instanceof List<?> storedItems) {
+            List<GroceryItem> items = new ArrayList<>(storedItems.size());
+            for (Object storedItem : storedItems) {
+                items.add(itemCodec.decode(null, map(storedItem)));
+            }
+            cart.setItems(items);
+        }
+        if (data.containsKey("itemStorage")) {
+            cart.setItemStorage(enumValue(ItemStorage.class, data.get("itemStorage")));
+        }
+        cart.setItemCount(longValue(data.get("itemCount")));
+        cart.setPurchasedCount(longValue(data.get("purchasedCount")));
+        cart.setItemCountersTracked(bool(data.get("itemCountersTracked")));
+        if (data.containsKey("shopperIds")) {
+            cart.setShopperIds(stringList(data.get("shopperIds")));
+        }
+        Map<String, Object> permissions = map(data.get("permissions"));
+        if (permissions != null) {
+            Map<String, SharePermission> decoded = new LinkedHashMap<>();
+            permissions.forEach((shopperId, permission) -> decoded.put(shopperId, enumValue(SharePermission.class, permission)));
+            cart.setPermissions(decoded);
+        } else if (data.get("sharePermissions") instanceof List<?> entries) {
+            List<SharePermissionEntry> decoded = new ArrayList<>(entries.size());
+            for (Object entry : entries) {
+                decoded.add(permissionEntryCodec.decode(null, map(entry)));
+            }
+            cart.setSharePermissions(decoded);
+        }
+        cart.setDateKey(string(data.get("dateKey")));
+        cart.setCreatedBy(string(data.get("createdBy")));
+        cart.setPublic(bool(data.get("public")));
+        cart.setCreatedAt(date(data.get("createdAt")));
+        cart.setLastModified(date(data.get("lastModified")));
+        if (data.containsKey("state")) {
+            cart.setState(enumValue(ShopCartState.class, data.get("state")));
+        }
+        if (cart.usesItemSubcollection()) {
+            cart.settleItemState();
+        }
+        cart.setLastInteraction(date(data.get("lastInteraction")));
+        cart.setCompletedAt(date(data.get("completedAt")));
+        cart.setCurrentShopper(string(data.get("currentShopper")));
+        cart.setTemplate(bool(data.get("template")));
+        cart.setTemplateName(string(data.get("templateName")));
+        return cart;
+    }
+
+    @Override
+    public Map<String, Object> encode(ShopCart cart) {
+        Map<String, Object> data = new HashMap<>(32);
+        data.put("name", cart.getName());
+        data.put("items", encodeItems(cart.getItems()));
+        data.put("itemStorage", enumName(cart.getItemStorage()));
+        data.put("itemCount", cart.getItemCount());
+        data.put("purchasedCount", cart.getPurchasedCount());
+        data.put("itemCountersTracked", cart.isItemCountersTracked());
+        data.put("shopperIds", cart.getShopperIds() != null ? new ArrayList<>(cart.getShopperIds()) : null);
+        Map<String, Object> permissions = new HashMap<>();
+        cart.getPermissions().forEach((shopperId, permission) -> permissions.put(shopperId, enumName(permission)));
+        data.put("permissions", permissions);
+        data.put("dateKey", cart.getDateKey());
+        data.put("createdBy", cart.getCreatedBy());
+        data.put("public", cart.isPublic());
+        data.put("createdAt", serverTimestampIfNull(cart.getCreatedAt()));
+        data.put("lastModified", serverTimestampIfNull(cart.getLastModified()));
+        data.put("state", enumName(cart.getState()));
+        data.put("lastInteraction", cart.getLastInteraction());
+        data.put("completedAt", cart.getCompletedAt());
+        data.put("currentShopper", cart.getCurrentShopper());
+        data.put("template", cart.isTemplate());
+        data.put("templateName", cart.getTemplateName());
+        return data;
+    }
+
+    /**
+     * Encodes items for the items array, or for an arrayUnion of new items.
+     */
+    List<Map<String, Object>> encodeItems(List<GroceryItem> items) {
+        if (items == null) {
+            return null;
+        }
+        List<Map<String, Object>> encoded = new ArrayList<>(items.size());
+        for (GroceryItem item : items) {
+            encoded.add(itemCodec.encode(item));
+        }
+        return encoded;
+    }
+}
@@ -0,0 +1,45 @@
+package com.supershoppercart.codecs;
+
+import com.supershoppercart.models.Shopper;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.supershoppercart.codecs.FirestoreValues.string;
+import static com.supershoppercart.codecs.FirestoreValues.stringList;
+
+/**
+ * Codec for shopper documents. The shopper ID is the document ID and is not stored as a field.
+ */
+final class ShopperCodec implements FirestoreCodec<Shopper> {
+
+    @Override
+    public Shopper decode(String documentId, Map<String, Object> data) {
+        Shopper shopper = new Shopper();
+        shopper.setId(documentId);
+        shopper.setEmail(string(data.get("email")));
+        shopper.setName(string(data.get("name")));
+        shopper.setPassword(string(data.get("password")));
+        if (data.containsKey("provider")) {
+            shopper.setProvider(string(data.get("provider")));
+        }
+        List<String> shopCartIds = stringList(data.get("shopCartIds"));
+        if (shopCartIds != null) {
+            shopper.setShopCartIds(shopCartIds);
+        }
+        return shopper;
+    }
+
+    @Override
+    public Map<String, Object> encode(Shopper shopper) {
+        Map<String, Object> data = new HashMap<>(8);
+        data.put("email", shopper.getEmail());
+        data.put("name", shopper.getName());
+        data.put("password", shopper.getPassword());
+        data.put("provider", shopper.getProvider());
+        data.put("shopCartIds", shopper.getShopCartIds() != null ? new ArrayList<>(shopper.getShopCartIds()) : null);
+        return data;
+    }
+}
@@ -0,0 +1,173 @@
+package com.supershoppercart.config;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.protobuf.ProtobufMapper;
+import com.fasterxml.jackson.dataformat.protobuf.schema.NativeProtobufSchema;
+import com.fasterxml.jackson.dataformat.protobuf.schema.ProtobufSchemaLoader;
+import com.supershoppercart.dtos.ShopCartDetailDTO;
+import com.supershoppercart.dtos.ShopCartSummaryDTO;
+import com.supershoppercart.dtos.ShopperSummaryDTO;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.lang.Nullable;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Type;
+import java.net.URL;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes cart responses as Protocol Buffers, for clients that ask for {@code application/x-protobuf}.
+ * Messages follow {@code proto/supershoppercart.proto}, the schema shared with the mobile app, and carry
+ * field numbers instead of the field names JSON repeats for every item. The DTOs are encoded by Jackson
+ * against that schema, so no generated classes are needed on this side.
+ * <p>
+ * Only ShopCartDetailDTO, ShopCartSummaryDTO and ShopperSummaryDTO are written, alone or as a list or array; a list
+ * is wrapped in the matching {@code ...List} message. A list's element type is taken from the declared return type,
+ * never from its elements, so an empty list of anything else is refused like a full one and the client gets 406.
+ * A handler declared as {@code ResponseEntity<?>} hides the element type, so it hands its lists over as arrays.
+ * Registered after the JSON converter, so JSON stays the default for clients that accept anything.
+ */
+public class ProtobufMessageConverter extends AbstractGenericHttpMessageConverter<Object> {
+
+    public static final MediaType PROTOBUF = new MediaType("application", "x-protobuf");
+
+    static final String SCHEMA_LOCATION = "proto/supershoppercart.proto";
+
+    private final Map<Class<?>, ObjectWriter> messageWriters;
+    private final Map<Class<?>, ObjectWriter> listWriters;
+
+    public ProtobufMessageConverter() {
+        super(PROTOBUF);
+        NativeProtobufSchema schema = loadSchema();
+        ProtobufMapper mapper = new ProtobufMapper(); // Dates are written as epoch milliseconds, as the schema says
+        this.messageWriters = Map.of(
+                ShopCartDetailDTO.class, mapper.writer(schema.forType("ShopCartDetail")),
+                ShopCartSummaryDTO.class, mapper.writer(schema.forType("ShopCartSummary")),
+                ShopperSummaryDTO.class, mapper.writer(schema.forType("ShopperSummary")));
+        this.listWriters = Map.of(
+                ShopCartDetailDTO.class, mapper.writer(schema.forType("ShopCartDetailList")),
+                ShopCartSummaryDTO.class, mapper.writer(schema.forType("ShopCartSummaryList")),
+                ShopperSummaryDTO.class, mapper.writer(schema.forType("ShopperSummaryList")));
+    }
+
+    private static NativeProtobufSchema loadSchema() {
+        URL location = ProtobufMessageConverter.class.getClassLoader().getResource(SCHEMA_LOCATION);
+        if (location == null) {
+            throw new IllegalStateException("Protobuf schema not found on the classpath: " + SCHEMA_LOCATION);
+        }
+        try {
+            return ProtobufSchemaLoader.std.loadNative(location);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to load protobuf schema " + SCHEMA_LOCATION, e);
+        }
+    }
+
+    /**
+     * Tells whether the client prefers protobuf over JSON. Protobuf has to be named explicitly; a wildcard alone
+     * keeps JSON. Used by endpoints that serve precomputed JSON bytes and so bypass content negotiation.
+     *
+     * @param accept The Accept header, or null.
+     */
+    public static boolean isPreferredBy(String accept) {
+        if (accept == null || accept.isBlank()) {
+            return false;
+        }
+        double protobufQuality = 0;
+        double jsonQuality = 0;
+        try {
+            for (MediaType type : MediaType.parseMediaTypes(accept)) {
+                if (PROTOBUF.equalsTypeAndSubtype(type)) {
+                    protobufQuality = Math.max(protobufQuality, type.getQualityValue());
+                } else if (type.includes(MediaType.APPLICATION_JSON)) {
+                    jsonQuality = Math.max(jsonQuality, type.getQualityValue());
+                }
+            }
+        } catch (InvalidMediaTypeException e) {
+            return false;
+        }
+        return protobufQuality > 0 && protobufQuality >= jsonQuality;
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return writerFor(null, clazz) != null;
+    }
+
+    @Override
+    public boolean canWrite(@Nullable Type type, Class<?> clazz, @Nullable MediaType mediaType) {
+        return canWrite(mediaType) && writerFor(type, clazz) != null;
+    }
+
+    @Override
+    public boolean canRead(Class<?> clazz, @Nullable MediaType mediaType) {
+        return false; // Requests stay JSON
+    }
+
+    @Override
+    public boolean canRead(Type type, @Nullable Class<?> contextClass, @Nullable MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    public Object read(Type type, @Nullable Class<?> contextClass, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Protobuf request bodies are not supported", inputMessage);
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Protobuf request bodies are not supported", inputMessage);
+    }
+
+    @Override
+    protected void writeInternal(Object body, @Nullable Type type, HttpOutputMessage outputMessage) throws IOException {
+        outputMessage.getBody().write(encode(body, type));
+    }
+
+    /**
+     * Encodes a supported DTO, or an array of one of them, as its protobuf message.
+     *
+     * @throws HttpMessageNotWritableException If the value is of another type, or a list.
+     */
+    public byte[] encode(Object body) throws IOException {
+        return encode(body, null);
+    }
+
+    /**
+     * Encodes a supported DTO, or a list or array of one of them, as its protobuf message.
+     *
+     * @param type The declared type of the value, which gives a list its element type.
+     * @throws HttpMessageNotWritableException If the value is of another type, or a list of an undeclared or other type.
+     */
+    public byte[] encode(Object body, @Nullable Type type) throws IOException {
+        ObjectWriter writer = writerFor(type, body.getClass());
+        if (writer == null) {
+            throw new HttpMessageNotWritableException("No protobuf message for "
+                    + (type != null ? type.getTypeName() : body.getClass().getSimpleName()));
+        }
+        if (body instanceof List<?> || body.getClass().isArray()) {
+            return writer.writeValueAsBytes(Map.of("items", body));
+        }
+        return writer.writeValueAsBytes(body);
+    }
+
+    @Nullable
+    private ObjectWriter writerFor(@Nullable Type type, Class<?> clazz) {
+        if (clazz.isArray()) {
+            return listWriters.get(clazz.getComponentType());
+        }
+        if (List.class.isAssignableFrom(clazz)) {
+            Class<?> elementType = type != null ? ResolvableType.forType(type).asCollection().resolveGeneric() : null;
+            return elementType != null ? listWriters.get(elementType) : null;
+        }
+        return messageWriters.get(clazz);
+    }
+}
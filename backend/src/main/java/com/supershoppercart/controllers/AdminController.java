@@ -1,13 +1,27 @@
 package com.supershoppercart.controllers;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.supershoppercart.dtos.PageDTO;
+import com.supershoppercart.enums.CartListView;
+import com.supershoppercart.exceptions.CartConflictException;
 import com.supershoppercart.models.ShopCart;
 import com.supershoppercart.models.Shopper;
+import com.supershoppercart.repositories.PageReadResult;
 import com.supershoppercart.repositories.ShopCartRepository;
 import com.supershoppercart.repositories.ShopperRepository;
+import com.supershoppercart.services.PageCursors;
+import com.supershoppercart.services.ShopCartService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -23,30 +37,59 @@ import java.util.concurrent.ExecutionException;
 @RequestMapping("/api/v1/admin")
 public class AdminController {
 
+    private static final Logger logger = LoggerFactory.getLogger(AdminController.class);
+
+    /**
+     * Reads one page of a listing, in document ID order.
+     */
+    @FunctionalInterface
+    interface PageReader<T> {
+        PageReadResult<T> read(int pageSize, String startAfterId) throws ExecutionException, InterruptedException;
+    }
+
     private final ShopperRepository shopperRepository;
     private final ShopCartRepository shopCartRepository;
+    private final ShopCartService shopCartService;
+    private final ObjectMapper objectMapper;
+    private final int defaultPageSize;
+    private final int maxPageSize;
+    private final int streamPageSize;
 
-    public AdminController(ShopperRepository shopperRepository, ShopCartRepository shopCartRepository) {
+    public AdminController(ShopperRepository shopperRepository, ShopCartRepository shopCartRepository,
+                           ShopCartService shopCartService, ObjectMapper objectMapper,
+                           @Value("${admin.listing.page-size.default:100}") int defaultPageSize,
+                           @Value("${admin.listing.page-size.max:1000}") int maxPageSize,
+                           @Value("${admin.listing.stream-page-size:500}") int streamPageSize) {
         this.shopperRepository = shopperRepository;
         this.shopCartRepository = shopCartRepository;
+        this.shopCartService = shopCartService;
+        this.objectMapper = objectMapper;
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
+        this.streamPageSize = streamPageSize;
     }
 
     // --- Shopper Administrative Endpoints ---
     // These are for auditing, debugging, and account management.
 
     /**
-     * Retrieves all shoppers in the system.
+     * Retrieves the shoppers in the system one page at a time, in ID order.
      * Useful for auditing and administrative oversight.
      */
     @GetMapping("/shoppers")
-    public ResponseEntity<List<Shopper>> getAllShoppers() {
-        try {
-            List<Shopper> shoppers = shopperRepository.findAll();
-            return ResponseEntity.ok(shoppers);
-        } catch (InterruptedException | ExecutionException e) {
-            Thread.currentThread().interrupt();
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
-        }
+    public ResponseEntity<?> getAllShoppers(
+            @RequestParam(value = "pageSize", required = false) Integer pageSize,
+            @RequestParam(value = "cursor", required = false) String cursor) {
+        return page(shopperRepository::findPage, pageSize, cursor);
+    }
+
+    /**
+     * Streams every shopper from the cursor on as one JSON object per line, for exports of any size.
+     */
+    @GetMapping(value = "/shoppers", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllShoppers(
+            @RequestParam(value = "cursor", required = false) String cursor) {
+        return stream(shopperRepository::findPage, cursor, "shoppers");
     }
 
     /**
@@ -91,14 +134,60 @@ public class AdminController {
     // These are primarily for auditing and manual cleanup.
 
     /**
-     * Retrieves all shop carts in the system.
+     * Retrieves the shop carts in the system one page at a time, in ID order.
      * This is for auditing and identifying stale or problematic carts.
+     * With {@code view=summary} only the summary fields are read, which keeps a full scan cheap.
      */
     @GetMapping("/shopcarts")
-    public ResponseEntity<List<ShopCart>> getAllShopCarts() {
+    public ResponseEntity<?> getAllShopCarts(
+            @RequestParam(value = "view", required = false) String view,
+            @RequestParam(value = "pageSize", required = false) Integer pageSize,
+            @RequestParam(value = "cursor", required = false) String cursor) {
+        CartListView listView;
         try {
-            List<ShopCart> shopCarts = shopCartRepository.findAll();
-            return ResponseEntity.ok(shopCarts);
+            listView = CartListView.fromParameter(view);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Collections.singletonMap("error", e.getMessage()));
+        }
+        if (listView == CartListView.SUMMARY) {
+            return page(shopCartRepository::findSummaryPage, pageSize, cursor);
+        }
+        return page(shopCartRepository::findPage, pageSize, cursor);
+    }
+
+    /**
+     * Streams every shop cart, or with {@code view=summary} every cart summary, from the cursor on as one
+     * JSON object per line, for exports of any size.
+     */
+    @GetMapping(value = "/shopcarts", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllShopCarts(
+            @RequestParam(value = "view", required = false) String view,
+            @RequestParam(value = "cursor", required = false) String cursor) {
+        CartListView listView;
+        try {
+            listView = CartListView.fromParameter(view);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (listView == CartListView.SUMMARY) {
+            return stream(shopCartRepository::findSummaryPage, cursor, "shop cart summaries");
+        }
+        return stream(shopCartRepository::findPage, cursor, "shop carts");
+    }
+
+    /**
+     * Retrieves all cart templates, in full or, with {@code view=summary}, as summaries.
+     */
+    @GetMapping("/templates")
+    public ResponseEntity<?> getAllTemplates(@RequestParam(value = "view", required = false) String view) {
+        try {
+            if (CartListView.fromParameter(view) == CartListView.SUMMARY) {
+                return ResponseEntity.ok(shopCartRepository.findAllTemplateSummaries());
+            }
+            List<ShopCart> templates = shopCartRepository.findAllTemplates();
+            return ResponseEntity.ok(templates);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Collections.singletonMap("error", e.getMessage()));
         } catch (ExecutionException | InterruptedException e) {
             Thread.currentThread().interrupt();
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
@@ -126,4 +215,100 @@ public class AdminController {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
         }
     }
+
+    /**
+     * Moves the embedded items of every cart into per-item documents under shopcarts/{id}/items.
+     * Carts already in the subcollection layout are left alone, so the migration can be re-run safely.
+     */
+    @PostMapping("/shopcarts/migrate-items")
+    public ResponseEntity<?> migrateAllCartItems() {
+        try {
+            int migrated = shopCartService.migrateAllCartItemsToSubcollection();
+            return ResponseEntity.ok(Map.of("migrated", migrated));
+        } catch (ExecutionException | InterruptedException e) {
+            Thread.currentThread().interrupt();
+            Map<String, String> errorResponse = Collections.singletonMap("error", "Failed to migrate cart items: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
+        }
+    }
+
+    /**
+     * Moves the embedded items of a single cart into its items subcollection.
+     */
+    @PostMapping("/shopcarts/{id}/migrate-items")
+    public ResponseEntity<?> migrateCartItems(@PathVariable String id) {
+        try {
+            boolean migrated = shopCartService.migrateCartItemsToSubcollection(id);
+            return ResponseEntity.ok(Map.of("migrated", migrated));
+        } catch (IllegalArgumentException e) {
+            Map<String, String> errorResponse = Collections.singletonMap("error", "Shop cart not found.");
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(errorResponse);
+        } catch (CartConflictException e) {
+            Map<String, String> errorResponse = Collections.singletonMap("error", e.getMessage());
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(errorResponse);
+        } catch (ExecutionException | InterruptedException e) {
+            Thread.currentThread().interrupt();
+            Map<String, String> errorResponse = Collections.singletonMap("error", "Failed to migrate cart items: " + e.getMessage());
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
+        }
+    }
+
+    /**
+     * Answers a listing request with the page that follows the cursor.
+     */
+    private <T> ResponseEntity<?> page(PageReader<T> reader, Integer pageSize, String cursor) {
+        int size = pageSize != null ? pageSize : defaultPageSize;
+        if (size < 1 || size > maxPageSize) {
+            return ResponseEntity.badRequest().body(Collections.singletonMap("error",
+                    "pageSize must be between 1 and " + maxPageSize + "."));
+        }
+        try {
+            PageReadResult<T> page = reader.read(size, PageCursors.decode(cursor));
+            return ResponseEntity.ok(new PageDTO<>(page.getFound(), PageCursors.encode(page.getNextStartAfterId())));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Collections.singletonMap("error", e.getMessage()));
+        } catch (ExecutionException | InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
+    private <T> ResponseEntity<StreamingResponseBody> stream(PageReader<T> reader, String cursor, String listing) {
+        String startAfterId;
+        try {
+            startAfterId = PageCursors.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(streamNdjson(reader, startAfterId, listing));
+    }
+
+    /**
+     * Writes one JSON object per line, reading and flushing one page at a time, so memory use does not grow
+     * with the listing. A read failure mid-stream aborts the response, since its status is already sent.
+     */
+    private <T> StreamingResponseBody streamNdjson(PageReader<T> reader, String startAfterId, String listing) {
+        return out -> {
+            String after = startAfterId;
+            try {
+                do {
+                    PageReadResult<T> page = reader.read(streamPageSize, after);
+                    for (T item : page.getFound()) {
+                        out.write(objectMapper.writeValueAsBytes(item));
+                        out.write('\n');
+                    }
+                    out.flush();
+                    after = page.getNextStartAfterId();
+                } while (after != null);
+            } catch (ExecutionException e) {
+                logger.error("Error streaming {} after {}", listing, after, e);
+                throw new IOException("Failed to read " + listing, e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while streaming " + listing);
+            }
+        };
+    }
 }
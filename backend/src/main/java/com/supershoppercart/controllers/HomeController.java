@@ -1,59 +1,129 @@
 package com.supershoppercart.controllers;
 
+import com.supershoppercart.enums.ContentCoding;
+import com.supershoppercart.services.CartETags;
+import com.supershoppercart.services.EncodedBody;
+import com.supershoppercart.services.PrecompressedBody;
+import com.supershoppercart.services.ResponseCompressor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.core.io.Resource;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.DigestUtils;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Duration;
 import java.util.Collections;
 import java.util.Map;
-import java.util.function.Supplier;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 
 /**
  * Home Controller for Super Shopper Cart API
- * Provides health check endpoints
+ * Provides health check endpoints. The health page and its logo are read from the classpath once and kept
+ * in memory, compressed in every coding that makes them smaller, and revalidated with their ETag.
  */
 @RestController
 public class HomeController {
 
-    private final Supplier<ClassPathResource> resourceSupplier;
+    private static final Logger logger = LoggerFactory.getLogger(HomeController.class);
+
+    static final String HEALTH_PAGE = "static/health-check.html";
+    static final String LOGO = "static/supershoppercart_3.png";
 
-    public HomeController() {
-        this(() -> new ClassPathResource("static/health-check.html"));
+    private record StaticAsset(PrecompressedBody body, String eTag) {
     }
 
-    public HomeController(Supplier<ClassPathResource> resourceSupplier) {
-        this.resourceSupplier = resourceSupplier;
+    private final ResponseCompressor compressor;
+    private final Function<String, Resource> resourceLoader;
+    private final Map<String, StaticAsset> assets = new ConcurrentHashMap<>();
+
+    @Autowired
+    public HomeController(ResponseCompressor compressor) {
+        this(compressor, ClassPathResource::new);
     }
 
-    @GetMapping(value = "/", produces = MediaType.TEXT_HTML_VALUE)
-    public ResponseEntity<Resource> home() {
-        try {
-            ClassPathResource htmlResource = resourceSupplier.get();
+    HomeController(ResponseCompressor compressor, Function<String, Resource> resourceLoader) {
+        this.compressor = compressor;
+        this.resourceLoader = resourceLoader;
+    }
 
-            if (!htmlResource.exists()) {
-                return ResponseEntity.notFound().build();
-            }
+    @GetMapping(value = "/", produces = MediaType.TEXT_HTML_VALUE)
+    public ResponseEntity<byte[]> home(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        // Revalidated on every hit, so the page still shows that the server answers
+        return serve(HEALTH_PAGE, MediaType.TEXT_HTML, CacheControl.noCache(), ifNoneMatch, acceptEncoding);
+    }
 
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.TEXT_HTML);
-            headers.setPragma("no-cache");
-            headers.setCacheControl("no-cache, no-store, must-revalidate");
-            headers.setExpires(0);
+    @GetMapping(value = "/supershoppercart_3.png", produces = MediaType.IMAGE_PNG_VALUE)
+    public ResponseEntity<byte[]> logo(
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        return serve(LOGO, MediaType.IMAGE_PNG, CacheControl.maxAge(Duration.ofDays(1)).cachePublic(), ifNoneMatch, acceptEncoding);
+    }
 
-            return ResponseEntity.ok().headers(headers).body(htmlResource);
+    @GetMapping(value = "/status", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<Map<String, String>> statusCheck() {
+        return ResponseEntity.ok(Collections.singletonMap("status", "OK"));
+    }
 
+    private ResponseEntity<byte[]> serve(String location, MediaType contentType, CacheControl cacheControl,
+                                         String ifNoneMatch, String acceptEncoding) {
+        StaticAsset asset;
+        try {
+            asset = assets.get(location);
+            if (asset == null) {
+                asset = load(location);
+                if (asset == null) {
+                    return ResponseEntity.notFound().build();
+                }
+                assets.putIfAbsent(location, asset);
+            }
         } catch (Exception e) {
-            System.err.println("Error while loading health-check.html: " + e.getMessage());
+            logger.error("Error while loading {}", location, e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
+
+        if (CartETags.matches(ifNoneMatch, asset.eTag())) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(asset.eTag()).cacheControl(cacheControl)
+                    .varyBy(HttpHeaders.ACCEPT_ENCODING).build();
+        }
+        EncodedBody body = asset.body().select(acceptEncoding);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(contentType)
+                .eTag(CartETags.withCoding(asset.eTag(), body.coding()))
+                .cacheControl(cacheControl)
+                .varyBy(HttpHeaders.ACCEPT_ENCODING);
+        if (body.coding() != ContentCoding.IDENTITY) {
+            response.header(HttpHeaders.CONTENT_ENCODING, body.coding().token());
+        }
+        return response.body(body.bytes());
     }
 
-    @GetMapping(value = "/status", produces = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<Map<String, String>> statusCheck() {
-        return ResponseEntity.ok(Collections.singletonMap("status", "OK"));
+    /**
+     * Reads and compresses an asset, or returns null if it does not exist. Failures are not cached.
+     */
+    private StaticAsset load(String location) throws IOException {
+        Resource resource = resourceLoader.apply(location);
+        if (!resource.exists()) {
+            return null;
+        }
+        byte[] bytes;
+        try (InputStream in = resource.getInputStream()) {
+            bytes = in.readAllBytes();
+        }
+        String eTag = '"' + DigestUtils.md5DigestAsHex(bytes) + '"';
+        return new StaticAsset(compressor.precompress(bytes, ResponseCompressor.Effort.STATIC), eTag);
     }
 }
@@ -1,10 +1,20 @@
 package com.supershoppercart.controllers;
 
+import com.supershoppercart.config.ProtobufMessageConverter;
+import com.supershoppercart.dtos.CartSyncResponseDTO;
 import com.supershoppercart.dtos.CreateShopCartRequestDTO;
+import com.supershoppercart.dtos.PatchShopCartRequestDTO;
 import com.supershoppercart.dtos.ShareCartRequestDTO;
 import com.supershoppercart.dtos.ShopCartDetailDTO;
+import com.supershoppercart.dtos.ShopCartSummaryDTO;
+import com.supershoppercart.enums.CartListView;
+import com.supershoppercart.enums.ContentCoding;
+import com.supershoppercart.exceptions.CartConflictException;
 import com.supershoppercart.models.ShopCart;
 import com.supershoppercart.models.Shopper;
+import com.supershoppercart.services.CartETags;
+import com.supershoppercart.services.CartEventHub;
+import com.supershoppercart.services.EncodedBody;
 import com.supershoppercart.services.ShopCartService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
@@ -12,11 +22,15 @@ import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.*;
 
@@ -27,26 +41,68 @@ public class ShopCartController {
 
     private static final Logger logger = LoggerFactory.getLogger(ShopCartController.class);
 
+    // Cart responses are per shopper and change often: caches may keep them, but must revalidate with the ETag first
+    private static final CacheControl REVALIDATE = CacheControl.noCache().cachePrivate();
+    private static final String PROTOBUF_VARIANT = "pb";
+
     private final ShopCartService shopCartService;
+    private final CartEventHub cartEventHub;
 
-    public ShopCartController(ShopCartService shopCartService) {
+    public ShopCartController(ShopCartService shopCartService, CartEventHub cartEventHub) {
         this.shopCartService = shopCartService;
+        this.cartEventHub = cartEventHub;
     }
 
-    @Operation(summary = "Get the current authenticated shopper's carts")
+    @Operation(summary = "Get the current authenticated shopper's carts",
+            description = "With view=summary only counts and metadata are returned, without items or shoppers. "
+                    + "Send the ETag of a previous response in If-None-Match to get 304 when none of the carts changed. "
+                    + "Accept application/x-protobuf for the compact encoding of proto/supershoppercart.proto")
     @ApiResponses(value = {
-            @ApiResponse(responseCode = "200", description = "List of carts retrieved successfully")
+            @ApiResponse(responseCode = "200", description = "List of carts retrieved successfully"),
+            @ApiResponse(responseCode = "304", description = "The carts have not changed since the given ETag"),
+            @ApiResponse(responseCode = "400", description = "Unknown view")
     })
     @GetMapping("/mine")
-    public ResponseEntity<?> getMyCarts(@AuthenticationPrincipal Shopper shopper) {
+    public ResponseEntity<?> getMyCarts(
+            @AuthenticationPrincipal Shopper shopper,
+            @RequestParam(value = "view", required = false) String view,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
         if (shopper == null) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
                     .body(Map.of("error", "Authentication required"));
         }
+        CartListView listView;
+        try {
+            listView = CartListView.fromParameter(view);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
         try {
             logger.info("Fetching carts for shopper with ID: {}", shopper.getId());
-            List<ShopCartDetailDTO> carts = shopCartService.getShopCartsByShopperId(shopper.getId());
-            return ResponseEntity.ok(carts);
+            // Answered from the carts' versions; the carts themselves are only loaded when something changed
+            boolean protobuf = ProtobufMessageConverter.isPreferredBy(accept);
+            String eTag = shopCartService.getShopCartsETag(shopper.getId(), listView);
+            if (protobuf) {
+                eTag = CartETags.variant(eTag, PROTOBUF_VARIANT);
+            }
+            if (CartETags.matches(ifNoneMatch, eTag)) {
+                return notModified(eTag);
+            }
+            // Lists go out as arrays: the protobuf converter cannot see a list's element type through ResponseEntity<?>
+            if (listView == CartListView.SUMMARY) {
+                List<ShopCartSummaryDTO> summaries = shopCartService.getShopCartSummariesByShopperId(shopper.getId());
+                return ResponseEntity.ok().eTag(eTag).cacheControl(REVALIDATE).varyBy(HttpHeaders.ACCEPT)
+                        .body(summaries.toArray(ShopCartSummaryDTO[]::new));
+            }
+            if (protobuf) {
+                // Encoded by the protobuf converter; the cached bytes are JSON
+                List<ShopCartDetailDTO> carts = shopCartService.getShopCartsByShopperId(shopper.getId());
+                return ResponseEntity.ok().eTag(eTag).cacheControl(REVALIDATE).varyBy(HttpHeaders.ACCEPT)
+                        .body(carts.toArray(ShopCartDetailDTO[]::new));
+            }
+            return encodedJson(eTag, shopCartService.getShopCartsJsonByShopperId(shopper.getId(), acceptEncoding));
         } catch (Exception e) {
             logger.error("Error fetching carts for shopper {}", shopper.getId(), e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -54,6 +110,115 @@ public class ShopCartController {
         }
     }
 
+    @Operation(summary = "Sync the current authenticated shopper's carts",
+            description = "Returns the carts changed and the carts removed since the sync that returned the given token, "
+                    + "and the token for the next sync. Without a token, or with an expired one, every cart is returned "
+                    + "with fullResync set")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Changes retrieved successfully"),
+            @ApiResponse(responseCode = "400", description = "Malformed sync token")
+    })
+    @GetMapping("/sync")
+    public ResponseEntity<?> syncMyCarts(
+            @AuthenticationPrincipal Shopper shopper,
+            @RequestParam(value = "since", required = false) String since) {
+        if (shopper == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(Map.of("error", "Authentication required"));
+        }
+        try {
+            CartSyncResponseDTO changes = shopCartService.syncShopCarts(shopper.getId(), since);
+            return ResponseEntity.ok().cacheControl(CacheControl.noStore()).body(changes);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Error syncing carts for shopper {}", shopper.getId(), e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @Operation(summary = "Get one of the current authenticated shopper's carts",
+            description = "Send the ETag of a previous response in If-None-Match to get 304 when the cart has not changed. "
+                    + "Accept application/x-protobuf for the compact encoding of proto/supershoppercart.proto")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Cart retrieved successfully"),
+            @ApiResponse(responseCode = "304", description = "The cart has not changed since the given ETag"),
+            @ApiResponse(responseCode = "404", description = "Unknown cart, or the shopper is not a member of it")
+    })
+    @GetMapping("/{cartId}")
+    public ResponseEntity<?> getCart(
+            @PathVariable String cartId,
+            @AuthenticationPrincipal Shopper currentShopper,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        if (currentShopper == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(Map.of("error", "Authentication required"));
+        }
+        try {
+            boolean protobuf = ProtobufMessageConverter.isPreferredBy(accept);
+            Optional<String> eTag = shopCartService.getShopCartETag(cartId, currentShopper.getId())
+                    .map(tag -> protobuf ? CartETags.variant(tag, PROTOBUF_VARIANT) : tag);
+            if (eTag.isEmpty()) {
+                return cartNotFound(cartId);
+            }
+            if (CartETags.matches(ifNoneMatch, eTag.get())) {
+                return notModified(eTag.get());
+            }
+            // Either may come back empty if the cart was deleted, or the shopper removed, since the version was read
+            if (protobuf) {
+                Optional<ShopCartDetailDTO> cart = shopCartService.getShopCartDetail(cartId, currentShopper.getId());
+                return cart.<ResponseEntity<?>>map(detail -> ResponseEntity.ok().eTag(eTag.get()).cacheControl(REVALIDATE)
+                                .varyBy(HttpHeaders.ACCEPT).body(detail))
+                        .orElseGet(() -> cartNotFound(cartId));
+            }
+            Optional<EncodedBody> cart = shopCartService.getShopCartJson(cartId, currentShopper.getId(), acceptEncoding);
+            if (cart.isEmpty()) {
+                return cartNotFound(cartId);
+            }
+            return encodedJson(eTag.get(), cart.get());
+        } catch (Exception e) {
+            logger.error("Error fetching cart {}", cartId, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @Operation(summary = "Stream live changes of one of the current authenticated shopper's carts",
+            description = "Server-Sent Events: a snapshot event first, then one delta event per change with only the "
+                    + "items and fields that changed. Reconnect with Last-Event-ID to receive only the missed events")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Event stream opened"),
+            @ApiResponse(responseCode = "404", description = "Unknown cart, or the shopper is not a member of it")
+    })
+    @GetMapping("/{cartId}/events")
+    public ResponseEntity<SseEmitter> streamCartEvents(
+            @PathVariable String cartId,
+            @AuthenticationPrincipal Shopper currentShopper,
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        // Declared as ResponseEntity<SseEmitter>: Spring only streams an emitter body it can see in the return type.
+        // Errors therefore carry no body, which an EventSource cannot read anyway.
+        if (currentShopper == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        try {
+            // Membership is checked from the cart's version alone; the stream itself reads the cart once per instance
+            if (shopCartService.getShopCartETag(cartId, currentShopper.getId()).isEmpty()) {
+                return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
+            }
+            SseEmitter emitter = cartEventHub.subscribe(cartId, currentShopper.getId(), lastEventId);
+            return ResponseEntity.ok()
+                    .cacheControl(CacheControl.noStore())
+                    .header("X-Accel-Buffering", "no") // Keep reverse proxies from holding events back
+                    .body(emitter);
+        } catch (Exception e) {
+            logger.error("Error opening event stream of cart {}", cartId, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+
     @PostMapping("/new")
     public ResponseEntity<?> createCart(
             @AuthenticationPrincipal Shopper currentShopper,
@@ -81,6 +246,40 @@ public class ShopCartController {
         }
     }
 
+    @Operation(summary = "Apply small field-level changes to a cart")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Cart updated successfully"),
+            @ApiResponse(responseCode = "400", description = "Invalid operation, unknown cart or item, or no access to the cart"),
+            @ApiResponse(responseCode = "409", description = "Cart changed concurrently; the body carries its current state")
+    })
+    @PatchMapping("/{cartId}")
+    public ResponseEntity<?> patchCart(
+            @PathVariable String cartId,
+            @Valid @RequestBody PatchShopCartRequestDTO request,
+            @AuthenticationPrincipal Shopper currentShopper) {
+        if (currentShopper == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .body(Map.of("error", "Authentication required"));
+        }
+        try {
+            logger.info("Shopper {} is applying {} operations to cart {}",
+                    currentShopper.getId(), request.getOperations().size(), cartId);
+
+            ShopCart updatedCart = shopCartService.patchShopCart(cartId, currentShopper.getId(), request.getOperations());
+            return ResponseEntity.ok(new ShopCartDetailDTO(updatedCart.getId(), updatedCart));
+
+        } catch (CartConflictException e) {
+            return conflictResponse(e);
+        } catch (IllegalArgumentException e) {
+            logger.warn("Rejected patch for cart {}: {}", cartId, e.getMessage());
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Error patching cart {}", cartId, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("error", e.getMessage()));
+        }
+    }
+
     @Operation(summary = "Share a cart with another shopper")
     @PostMapping("/{cartId}/share")
     public ResponseEntity<?> shareCart(
@@ -106,6 +305,8 @@ public class ShopCartController {
                     ? ResponseEntity.ok(Map.of("message", "Cart shared successfully"))
                     : ResponseEntity.badRequest().body(Map.of("error", "Failed to share cart"));
 
+        } catch (CartConflictException e) {
+            return conflictResponse(e);
         } catch (Exception e) {
             logger.error("Error sharing cart {}", cartId, e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -133,11 +334,55 @@ public class ShopCartController {
                     ? ResponseEntity.ok(Map.of("message", "Sharing removed successfully"))
                     : ResponseEntity.badRequest().body(Map.of("error", "Failed to remove sharing"));
 
+        } catch (CartConflictException e) {
+            return conflictResponse(e);
         } catch (Exception e) {
             logger.error("Error removing sharing for cart {}", cartId, e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(Map.of("error", e.getMessage()));
         }
     }
-}
 
+    /**
+     * 304 for a conditional GET whose ETag still matches. The ETag and cache headers are repeated, as RFC 9110 requires.
+     */
+    private static ResponseEntity<?> notModified(String eTag) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).cacheControl(REVALIDATE)
+                .varyBy(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING).build();
+    }
+
+    /**
+     * 200 with JSON the application compressed itself, in whichever coding was negotiated. The container's own
+     * compression leaves responses that already carry a Content-Encoding alone.
+     */
+    private static ResponseEntity<?> encodedJson(String eTag, EncodedBody body) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .eTag(CartETags.withCoding(eTag, body.coding()))
+                .cacheControl(REVALIDATE)
+                .varyBy(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING)
+                .contentType(MediaType.APPLICATION_JSON);
+        if (body.coding() != ContentCoding.IDENTITY) {
+            response.header(HttpHeaders.CONTENT_ENCODING, body.coding().token());
+        }
+        return response.body(body.bytes());
+    }
+
+    private static ResponseEntity<?> cartNotFound(String cartId) {
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(Map.of("error", "Cart with ID " + cartId + " not found."));
+    }
+
+    /**
+     * 409 for a write that lost an optimistic concurrency race, with the cart's current state
+     * so the client can reconcile without another round trip.
+     */
+    private ResponseEntity<?> conflictResponse(CartConflictException e) {
+        logger.info("Write conflict on cart {}: {}", e.getCartId(), e.getMessage());
+        Map<String, Object> body = new HashMap<>();
+        body.put("error", e.getMessage());
+        ShopCart currentCart = e.getCurrentCart();
+        if (currentCart != null) {
+            body.put("cart", new ShopCartDetailDTO(currentCart.getId(), currentCart));
+        }
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(body);
+    }
+}
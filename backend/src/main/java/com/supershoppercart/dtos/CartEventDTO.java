@@ -0,0 +1,119 @@
+package com.supershoppercart.dtos;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.supershoppercart.enums.CartEventType;
+import com.supershoppercart.enums.ShopCartState;
+import com.supershoppercart.models.GroceryItem;
+import com.supershoppercart.models.ShopCart;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Payload of one event on a cart's live event stream. A delta carries only what changed: items added or
+ * modified, IDs of items removed, and the cart fields whose value differs; every other field is left out
+ * of the JSON. A snapshot carries the whole cart.
+ */
+@Getter
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class CartEventDTO {
+
+    @JsonIgnore
+    private final CartEventType type;
+    private final String cartId;
+    private ShopCartDetailDTO cart;
+    private List<GroceryItem> upsertedItems;
+    private List<String> removedItemIds;
+    private String name;
+    private ShopCartState state;
+    private Long itemCount;
+    private Long purchasedCount;
+    private List<String> shopperIds;
+    private Date lastModified;
+
+    private CartEventDTO(CartEventType type, String cartId) {
+        this.type = type;
+        this.cartId = cartId;
+    }
+
+    public static CartEventDTO snapshot(ShopCart shopCart) {
+        CartEventDTO event = new CartEventDTO(CartEventType.SNAPSHOT, shopCart.getId());
+        event.cart = new ShopCartDetailDTO(shopCart.getId(), shopCart);
+        return event;
+    }
+
+    public static CartEventDTO deleted(String cartId) {
+        return new CartEventDTO(CartEventType.DELETED, cartId);
+    }
+
+    public static CartEventDTO accessRevoked(String cartId) {
+        return new CartEventDTO(CartEventType.ACCESS_REVOKED, cartId);
+    }
+
+    /**
+     * Compares two states of the same cart, matching items by their stable ID. The items are passed separately
+     * because a cart in the subcollection layout can change its items without a new cart document.
+     *
+     * @return The changes from previous to current, or null if nothing a client displays has changed.
+     */
+    public static CartEventDTO delta(ShopCart previous, List<GroceryItem> previousItemList,
+                                     ShopCart current, List<GroceryItem> currentItemList) {
+        CartEventDTO event = new CartEventDTO(CartEventType.DELTA, current.getId());
+        boolean changed = false;
+
+        Map<String, GroceryItem> previousItems = itemsById(previousItemList);
+        List<GroceryItem> upserted = new ArrayList<>();
+        for (GroceryItem item : currentItemList != null ? currentItemList : List.<GroceryItem>of()) {
+            GroceryItem before = previousItems.remove(item.getId());
+            if (before == null || !before.equals(item)) {
+                upserted.add(item);
+            }
+        }
+        if (!upserted.isEmpty()) {
+            event.upsertedItems = upserted;
+            changed = true;
+        }
+        if (!previousItems.isEmpty()) {
+            event.removedItemIds = new ArrayList<>(previousItems.keySet()); // Whatever was not matched is gone
+            changed = true;
+        }
+
+        if (!Objects.equals(previous.getName(), current.getName())) {
+            event.name = current.getName();
+            changed = true;
+        }
+        if (previous.getState() != current.getState()) {
+            event.state = current.getState();
+            changed = true;
+        }
+        if (previous.countItems() != current.countItems() || previous.countPurchasedItems() != current.countPurchasedItems()) {
+            event.itemCount = current.countItems();
+            event.purchasedCount = current.countPurchasedItems();
+            changed = true;
+        }
+        if (!Objects.equals(previous.getShopperIds(), current.getShopperIds())) {
+            event.shopperIds = current.getShopperIds();
+            changed = true;
+        }
+        if (changed) {
+            event.lastModified = current.getLastModified();
+        }
+        return changed ? event : null;
+    }
+
+    private static Map<String, GroceryItem> itemsById(List<GroceryItem> itemList) {
+        Map<String, GroceryItem> items = new LinkedHashMap<>();
+        if (itemList != null) {
+            for (GroceryItem item : itemList) {
+                items.put(item.getId(), item);
+            }
+        }
+        return items;
+    }
+}
@@ -0,0 +1,39 @@
+package com.supershoppercart.dtos;
+
+import com.supershoppercart.enums.CartRemovalReason;
+import com.supershoppercart.models.CartTombstone;
+import lombok.Getter;
+
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Response of a delta sync of a shopper's carts. Clients drop the removed carts first, then replace the
+ * returned carts whole, and pass the token to the next sync. When fullResync is set, the carts are every
+ * cart of the shopper and any cart the client holds that is not among them must be dropped.
+ */
+@Getter
+public class CartSyncResponseDTO {
+
+    private final String token;
+    private final boolean fullResync;
+    private final List<ShopCartDetailDTO> carts;
+    private final List<RemovedCart> removed;
+
+    public CartSyncResponseDTO(String token, boolean fullResync, List<ShopCartDetailDTO> carts, List<RemovedCart> removed) {
+        this.token = token;
+        this.fullResync = fullResync;
+        this.carts = carts;
+        this.removed = removed;
+    }
+
+    /**
+     * A cart that left the shopper's cart list since the previous sync.
+     */
+    public record RemovedCart(String cartId, CartRemovalReason reason, Date removedAt) {
+
+        public static RemovedCart of(CartTombstone tombstone) {
+            return new RemovedCart(tombstone.getCartId(), tombstone.getReason(), tombstone.getRemovedAt());
+        }
+    }
+}
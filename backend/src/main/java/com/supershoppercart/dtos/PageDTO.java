@@ -0,0 +1,23 @@
+package com.supershoppercart.dtos;
+
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * One page of an admin listing. Clients pass nextCursor back as the cursor parameter to get the following
+ * page; it is null on the last page.
+ *
+ * @param <T> The type of the listed items.
+ */
+@Getter
+public class PageDTO<T> {
+
+    private final List<T> items;
+    private final String nextCursor;
+
+    public PageDTO(List<T> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+}
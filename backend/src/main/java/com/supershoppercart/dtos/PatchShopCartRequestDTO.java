@@ -0,0 +1,18 @@
+package com.supershoppercart.dtos;
+
+import com.supershoppercart.models.CartPatchOperation;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Getter
+@Setter
+public class PatchShopCartRequestDTO {
+    @NotEmpty
+    @Valid
+    private List<CartPatchOperation> operations = new ArrayList<>();
+}
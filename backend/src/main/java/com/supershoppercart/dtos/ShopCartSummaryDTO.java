@@ -29,11 +29,20 @@ public class ShopCartSummaryDTO {
     @Setter
     private String templateName;
 
+    /**
+     * The cart document fields a summary is built from, for Firestore field-mask reads.
+     * itemStorage and itemCountersTracked tell whether the counters can be trusted without the items.
+     */
+    public static final String[] FIRESTORE_FIELDS = {
+            "dateKey", "itemCount", "purchasedCount", "itemCountersTracked", "itemStorage", "shopperIds",
+            "createdBy", "state", "createdAt", "lastModified", "template", "templateName"
+    };
+
     public ShopCartSummaryDTO(ShopCart shopCart) {
         this.identifier = shopCart.getId();
         this.dateKey = shopCart.getDateKey();
-        this.itemCount = shopCart.getItems().size();
-        this.purchasedCount = (int) shopCart.getItems().stream().mapToLong(item -> item.isPurchased() ? 1 : 0).sum();
+        this.itemCount = (int) shopCart.countItems(); // Read from the stored counters when the cart tracks them
+        this.purchasedCount = (int) shopCart.countPurchasedItems();
         this.shopperIds = shopCart.getShopperIds();
         this.createdBy = shopCart.getCreatedBy();
         this.state = shopCart.getState();
@@ -0,0 +1,16 @@
+package com.supershoppercart.enums;
+
+/**
+ * Kinds of events sent on a cart's live event stream. The SSE event name is the lower-case constant name.
+ */
+public enum CartEventType {
+    SNAPSHOT,       // The whole cart; sent first, and whenever a reconnecting client cannot be caught up from deltas
+    DELTA,          // Only the items and cart fields that changed since the previous event
+    DELETED,        // The cart was deleted; the stream ends
+    ACCESS_REVOKED  // The shopper is no longer a member of the cart; the stream ends
+    ;
+
+    public String eventName() {
+        return name().toLowerCase();
+    }
+}
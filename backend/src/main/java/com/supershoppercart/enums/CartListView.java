@@ -0,0 +1,24 @@
+package com.supershoppercart.enums;
+
+public enum CartListView {
+    FULL,       // Whole carts, items included
+    SUMMARY     // Only the fields of ShopCartSummaryDTO, read with a field mask
+    ;
+
+    /**
+     * Parses the {@code view} request parameter, ignoring case. A missing value means the full view.
+     *
+     * @throws IllegalArgumentException if the value names no view.
+     */
+    public static CartListView fromParameter(String value) {
+        if (value == null || value.isBlank()) {
+            return FULL;
+        }
+        for (CartListView view : values()) {
+            if (view.name().equalsIgnoreCase(value.trim())) {
+                return view;
+            }
+        }
+        throw new IllegalArgumentException("Unknown view '" + value + "'; expected 'full' or 'summary'.");
+    }
+}
@@ -0,0 +1,7 @@
+package com.supershoppercart.enums;
+
+public enum CartPatchOperationType {
+    ADD_ITEM,         // Append a grocery item to the cart
+    SET_PURCHASED,    // Set the purchased flag of one item, matched by designation
+    TOUCH             // Only refresh lastInteraction
+}
@@ -0,0 +1,9 @@
+package com.supershoppercart.enums;
+
+/**
+ * Why a cart left a shopper's cart list, as recorded in a cart tombstone for delta sync.
+ */
+public enum CartRemovalReason {
+    DELETED,    // The cart was deleted
+    UNSHARED    // The shopper was removed from the cart's members
+}
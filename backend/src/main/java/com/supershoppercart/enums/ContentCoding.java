@@ -0,0 +1,78 @@
+package com.supershoppercart.enums;
+
+import java.util.Collection;
+import java.util.Locale;
+
+public enum ContentCoding {
+    BROTLI("br"),
+    GZIP("gzip"),
+    IDENTITY("identity")
+    ;
+
+    private final String token;
+
+    ContentCoding(String token) {
+        this.token = token;
+    }
+
+    /**
+     * The name of the coding in Accept-Encoding and Content-Encoding.
+     */
+    public String token() {
+        return token;
+    }
+
+    /**
+     * Picks the coding to answer an Accept-Encoding header with, among those on offer. The client's highest
+     * q-value wins; on a tie the earlier constant is preferred, brotli being the smaller. Codings the client
+     * does not name fall under its {@code *} entry, if any.
+     *
+     * @param acceptEncoding The Accept-Encoding header, or null.
+     * @param offered        The codings the body is available in, besides identity.
+     * @return The chosen coding, or IDENTITY if the client accepts none on offer.
+     */
+    public static ContentCoding negotiate(String acceptEncoding, Collection<ContentCoding> offered) {
+        if (acceptEncoding == null || acceptEncoding.isBlank()) {
+            return IDENTITY;
+        }
+        ContentCoding best = IDENTITY;
+        double bestQuality = 0;
+        for (ContentCoding coding : values()) {
+            if (coding == IDENTITY || !offered.contains(coding)) {
+                continue;
+            }
+            double quality = qualityOf(acceptEncoding, coding.token);
+            if (quality > bestQuality) {
+                best = coding;
+                bestQuality = quality;
+            }
+        }
+        return best;
+    }
+
+    private static double qualityOf(String acceptEncoding, String token) {
+        double wildcard = 0;
+        for (String entry : acceptEncoding.split(",")) {
+            String[] parts = entry.split(";");
+            String name = parts[0].trim().toLowerCase(Locale.ROOT);
+            double quality = 1;
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim().toLowerCase(Locale.ROOT);
+                if (parameter.startsWith("q=")) {
+                    try {
+                        quality = Double.parseDouble(parameter.substring(2));
+                    } catch (NumberFormatException e) {
+                        quality = 0; // A malformed weight does not count as acceptance
+                    }
+                }
+            }
+            if (name.equals(token)) {
+                return quality;
+            }
+            if (name.equals("*")) {
+                wildcard = quality;
+            }
+        }
+        return wildcard;
+    }
+}
@@ -0,0 +1,6 @@
+package com.supershoppercart.enums;
+
+public enum ItemStorage {
+    EMBEDDED,         // Items live in the cart document's items array
+    SUBCOLLECTION     // Each item is its own document under shopcarts/{cartId}/items
+}
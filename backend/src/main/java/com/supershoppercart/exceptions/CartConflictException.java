@@ -0,0 +1,21 @@
+package com.supershoppercart.exceptions;
+
+import com.supershoppercart.models.ShopCart;
+import lombok.Getter;
+
+/**
+ * Thrown when a cart write loses an optimistic concurrency race: the cart changed
+ * between the read and the write, and the bounded retries did not get the write through.
+ */
+@Getter
+public class CartConflictException extends RuntimeException {
+
+    private final String cartId;
+    private final ShopCart currentCart; // Latest stored state, or null if it was not re-read
+
+    public CartConflictException(String cartId, ShopCart currentCart) {
+        super("ShopCart " + cartId + " was modified concurrently. Reload it and try again.");
+        this.cartId = cartId;
+        this.currentCart = currentCart;
+    }
+}
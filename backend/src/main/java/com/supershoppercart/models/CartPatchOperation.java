@@ -0,0 +1,101 @@
+package com.supershoppercart.models;
+
+import com.supershoppercart.enums.CartPatchOperationType;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotNull;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * A single small change to a shop cart, applied as a field-level update
+ * rather than a rewrite of the whole cart document.
+ */
+@Setter
+@Getter
+public class CartPatchOperation {
+
+    @NotNull
+    private CartPatchOperationType type;
+
+    @Valid
+    private GroceryItem item;          // ADD_ITEM
+    private String itemId;             // SET_PURCHASED, preferred
+    private String designation;        // SET_PURCHASED, when the item ID is not known
+    private Boolean purchased;         // SET_PURCHASED
+
+    public CartPatchOperation() {
+        // No-argument constructor required for JSON mapping
+    }
+
+    public static CartPatchOperation addItem(GroceryItem item) {
+        CartPatchOperation operation = new CartPatchOperation();
+        operation.setType(CartPatchOperationType.ADD_ITEM);
+        operation.setItem(item);
+        return operation;
+    }
+
+    public static CartPatchOperation setPurchased(String designation, boolean purchased) {
+        CartPatchOperation operation = new CartPatchOperation();
+        operation.setType(CartPatchOperationType.SET_PURCHASED);
+        operation.setDesignation(designation);
+        operation.setPurchased(purchased);
+        return operation;
+    }
+
+    public static CartPatchOperation setPurchasedById(String itemId, boolean purchased) {
+        CartPatchOperation operation = new CartPatchOperation();
+        operation.setType(CartPatchOperationType.SET_PURCHASED);
+        operation.setItemId(itemId);
+        operation.setPurchased(purchased);
+        return operation;
+    }
+
+    /**
+     * Whether the operation addresses its item by ID rather than by designation.
+     */
+    public boolean targetsItemId() {
+        return itemId != null && !itemId.isBlank();
+    }
+
+    public static CartPatchOperation touch() {
+        CartPatchOperation operation = new CartPatchOperation();
+        operation.setType(CartPatchOperationType.TOUCH);
+        return operation;
+    }
+
+    /**
+     * Checks that the fields required by the operation type are present.
+     * @throws IllegalArgumentException If a required field is missing.
+     */
+    public void validate() {
+        if (type == null) {
+            throw new IllegalArgumentException("Patch operation type is required.");
+        }
+        switch (type) {
+            case ADD_ITEM -> {
+                if (item == null || item.getDesignation() == null || item.getDesignation().isBlank()) {
+                    throw new IllegalArgumentException("ADD_ITEM requires an item with a designation.");
+                }
+            }
+            case SET_PURCHASED -> {
+                if ((!targetsItemId() && (designation == null || designation.isBlank())) || purchased == null) {
+                    throw new IllegalArgumentException("SET_PURCHASED requires an item ID or a designation, and a purchased flag.");
+                }
+            }
+            case TOUCH -> {
+                // Nothing to check
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "CartPatchOperation{" +
+                "type=" + type +
+                ", item=" + item +
+                ", itemId='" + itemId + '\'' +
+                ", designation='" + designation + '\'' +
+                ", purchased=" + purchased +
+                '}';
+    }
+}
@@ -0,0 +1,37 @@
+package com.supershoppercart.models;
+
+import com.supershoppercart.enums.CartRemovalReason;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.Date;
+
+/**
+ * Record that a cart left a shopper's cart list, so delta sync can tell clients to drop it.
+ * There is at most one per shopper and cart; a later removal of the same cart overwrites it.
+ */
+@Getter
+@Setter
+public class CartTombstone {
+
+    private String cartId;
+    private String shopperId;
+    private CartRemovalReason reason;
+    private Date removedAt; // Commit time of the removal; null until written
+
+    public CartTombstone() {
+    }
+
+    public CartTombstone(String cartId, String shopperId, CartRemovalReason reason) {
+        this.cartId = cartId;
+        this.shopperId = shopperId;
+        this.reason = reason;
+    }
+
+    /**
+     * The document ID of the tombstone of a shopper's cart.
+     */
+    public static String documentId(String shopperId, String cartId) {
+        return shopperId + "_" + cartId;
+    }
+}
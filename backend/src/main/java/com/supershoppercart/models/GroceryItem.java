@@ -1,15 +1,19 @@
 package com.supershoppercart.models;
 
+import com.google.cloud.firestore.annotation.IgnoreExtraProperties;
 import lombok.Getter;
 import lombok.Setter;
 
 import java.util.Objects;
+import java.util.UUID;
 
 // Make the class public so it can be accessed from other packages
 @Setter
 @Getter
+@IgnoreExtraProperties // Item documents in a cart's items subcollection also carry cartId and addedAt
 public class GroceryItem {
 
+    private String id; // Stable item ID; the document ID when the item lives in a cart's items subcollection
     private String designation;
     private String quantity;
     private boolean purchased;
@@ -30,6 +34,21 @@ public class GroceryItem {
         this.purchased = purchased;
     }
 
+    /**
+     * A new random item ID, for items added to a cart.
+     */
+    public static String newId() {
+        return UUID.randomUUID().toString();
+    }
+
+    /**
+     * The ID given to an item stored without one, derived from its position in the cart's list.
+     * Deterministic, so an item keeps the same ID across reads until the list is written back with it.
+     */
+    public static String positionalId(int position) {
+        return String.format("item-%04d", position);
+    }
+
     // --- Getters and Setters ---
 
     @Override
@@ -50,7 +69,8 @@ public class GroceryItem {
     @Override
     public String toString() {
         return "GroceryItem{" +
-                "designation='" + designation + '\'' +
+                "id='" + id + '\'' +
+                ", designation='" + designation + '\'' +
                 ", quantity='" + quantity + '\'' +
                 ", purchased=" + purchased +
                 '}';
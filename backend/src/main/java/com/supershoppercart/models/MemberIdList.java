@@ -0,0 +1,90 @@
+package com.supershoppercart.models;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+/**
+ * An ordered list of shopper IDs that answers {@code contains} from a hash index.
+ * It behaves like an ArrayList for Firestore and Jackson, while membership checks on large
+ * group carts stay constant-time. Every mutation, including those made through iterators,
+ * goes through {@link #add(int, String)}, {@link #set(int, String)} or {@link #remove(int)},
+ * which keep the index in step with the list.
+ */
+final class MemberIdList extends AbstractList<String> implements RandomAccess {
+
+    private final List<String> ids;
+    private final Map<String, Integer> occurrences; // Counts, so duplicate IDs are removed one at a time
+
+    MemberIdList() {
+        this.ids = new ArrayList<>();
+        this.occurrences = new HashMap<>();
+    }
+
+    MemberIdList(Collection<String> source) {
+        this.ids = new ArrayList<>(source.size());
+        this.occurrences = new HashMap<>(Math.max(16, source.size() * 2));
+        addAll(source);
+    }
+
+    @Override
+    public String get(int index) {
+        return ids.get(index);
+    }
+
+    @Override
+    public int size() {
+        return ids.size();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return occurrences.containsKey(o);
+    }
+
+    @Override
+    public void add(int index, String id) {
+        ids.add(index, id);
+        occurrences.merge(id, 1, Integer::sum);
+        modCount++;
+    }
+
+    @Override
+    public String set(int index, String id) {
+        String previous = ids.set(index, id);
+        forget(previous);
+        occurrences.merge(id, 1, Integer::sum);
+        return previous;
+    }
+
+    @Override
+    public String remove(int index) {
+        String removed = ids.remove(index);
+        forget(removed);
+        modCount++;
+        return removed;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (!occurrences.containsKey(o)) {
+            return false; // Skips the linear scan when the ID is not present
+        }
+        return super.remove(o);
+    }
+
+    @Override
+    public void clear() {
+        ids.clear();
+        occurrences.clear();
+        modCount++;
+    }
+
+    private void forget(String id) {
+        occurrences.computeIfPresent(id, (key, count) -> count > 1 ? count - 1 : null);
+    }
+}
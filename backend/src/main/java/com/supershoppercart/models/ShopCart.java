@@ -1,14 +1,20 @@
 package com.supershoppercart.models; // Ensure this matches your package structure
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.google.cloud.Timestamp;
 import com.google.cloud.firestore.annotation.DocumentId;
+import com.google.cloud.firestore.annotation.Exclude;
 import com.google.cloud.firestore.annotation.ServerTimestamp;
+import com.supershoppercart.enums.ItemStorage;
 import com.supershoppercart.enums.SharePermission;
 import com.supershoppercart.enums.ShopCartState;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 
 import java.time.LocalDate;
 import java.util.*;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 /**
@@ -26,9 +32,13 @@ public class ShopCart {
     private String name;
 
     // Default to empty lists to avoid NullPointerExceptions during Firestore deserialization
-    private List<GroceryItem> items = new ArrayList<>();
-    private List<String> shopperIds = new ArrayList<>(); // Store only shopper IDs for association
-    private List<SharePermissionEntry> sharePermissions = new ArrayList<>(); // List of shopper permissions
+    private List<GroceryItem> items = new ArrayList<>(); // Stored inline only for EMBEDDED carts
+    private ItemStorage itemStorage = ItemStorage.EMBEDDED; // Carts written before the subcollection layout have no value
+    private long itemCount; // Denormalized counters, kept in step with every item mutation
+    private long purchasedCount;
+    private boolean itemCountersTracked; // False for EMBEDDED carts written before the counters existed
+    private List<String> shopperIds = new MemberIdList(); // Store only shopper IDs for association; contains() is indexed
+    private Map<String, SharePermission> permissions = new LinkedHashMap<>(); // shopperId -> permission
 
     private String dateKey; // A key for the date, perhaps for grouping/filtering
     private String createdBy; // ID of the shopper who created the cart
@@ -48,6 +58,18 @@ public class ShopCart {
     private boolean isTemplate = false; // Reusable template cart
     private String templateName; // Name for template carts
 
+    // Firestore update time of the snapshot this cart was read from; used as a write precondition, never stored
+    @Exclude
+    private Timestamp updateTime;
+
+    // Item positions by ID and by designation; rebuilt on demand and never stored
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private transient Map<String, Integer> itemPositionsById;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private transient Map<String, Integer> itemPositionsByDesignation;
+
     public ShopCart() {
         // No-argument constructor required by Firestore for object mapping.
         // Fields with @DocumentId or @ServerTimestamp are handled by Firestore.
@@ -56,8 +78,238 @@ public class ShopCart {
 
     // --- Getters and Setters ---
 
+    /**
+     * Sets the items, giving any item stored without an ID a positional one.
+     */
+    public void setItems(List<GroceryItem> items) {
+        this.items = items;
+        this.itemPositionsById = null;
+        this.itemPositionsByDesignation = null;
+        assignMissingItemIds();
+    }
+
+    public void setShopperIds(List<String> shopperIds) {
+        this.shopperIds = shopperIds != null ? new MemberIdList(shopperIds) : null;
+    }
+
+    public void setPermissions(Map<String, SharePermission> permissions) {
+        this.permissions = permissions != null ? new LinkedHashMap<>(permissions) : new LinkedHashMap<>();
+    }
+
+    /**
+     * The share permissions as a list of entries, the format carts were stored in before the permission map.
+     * Derived from the map on each call and never written to Firestore.
+     */
+    @Exclude
+    public List<SharePermissionEntry> getSharePermissions() {
+        List<SharePermissionEntry> entries = new ArrayList<>(permissions.size());
+        permissions.forEach((shopperId, permission) -> entries.add(new SharePermissionEntry(shopperId, permission)));
+        return entries;
+    }
+
+    /**
+     * Replaces the share permissions from a list of entries.
+     * Firestore calls this for carts stored before the permission map, so they keep their permissions when read.
+     */
+    public void setSharePermissions(List<SharePermissionEntry> sharePermissions) {
+        permissions = new LinkedHashMap<>();
+        if (sharePermissions != null) {
+            for (SharePermissionEntry entry : sharePermissions) {
+                permissions.put(entry.getShopperId(), entry.getPermission());
+            }
+        }
+    }
+
+    @Exclude
+    @JsonIgnore
+    public Timestamp getUpdateTime() {
+        return updateTime;
+    }
+
+    /**
+     * Whether this cart's items live in its items subcollection rather than in the items array.
+     */
+    public boolean usesItemSubcollection() {
+        return itemStorage == ItemStorage.SUBCOLLECTION;
+    }
+
+    // --- Helper methods to work with items ---
+
+    /**
+     * Appends an item, giving it a new ID if it has none.
+     *
+     * @param item The item to add.
+     */
+    public void addItem(GroceryItem item) {
+        if (item.getId() == null || item.getId().isEmpty()) {
+            item.setId(GroceryItem.newId());
+        }
+        if (items == null) {
+            items = new ArrayList<>();
+        }
+        items.add(item);
+        if (itemPositionsById != null) {
+            itemPositionsById.put(item.getId(), items.size() - 1);
+            itemPositionsByDesignation.putIfAbsent(item.getDesignation(), items.size() - 1);
+        }
+        itemCount++;
+        if (item.isPurchased()) {
+            purchasedCount++;
+        }
+    }
+
+    /**
+     * Sets an item's purchased flag and adjusts the purchased counter if the flag actually changed.
+     *
+     * @param item An item of this cart.
+     * @param purchased The new purchased flag.
+     * @return Whether the flag changed.
+     */
+    public boolean setItemPurchased(GroceryItem item, boolean purchased) {
+        if (item.isPurchased() == purchased) {
+            return false;
+        }
+        item.setPurchased(purchased);
+        purchasedCount += purchased ? 1 : -1;
+        return true;
+    }
+
+    /**
+     * Whether {@code itemCount} and {@code purchasedCount} can be trusted without looking at the items.
+     * Subcollection carts always maintain them; embedded carts from before the counters need a recount first.
+     */
+    public boolean hasItemCounters() {
+        return itemCountersTracked || usesItemSubcollection();
+    }
+
+    /**
+     * Recomputes the counters from the items list and marks them as tracked from now on.
+     * Only meaningful when the items are loaded; used for new carts and to backfill legacy ones.
+     */
+    public void recountItems() {
+        itemCount = items != null ? items.size() : 0;
+        purchasedCount = items != null ? items.stream().filter(GroceryItem::isPurchased).count() : 0;
+        itemCountersTracked = true;
+    }
+
+    /**
+     * The number of items, from the counter when it is tracked, otherwise by counting the items list.
+     */
+    public long countItems() {
+        if (hasItemCounters()) {
+            return itemCount;
+        }
+        return items != null ? items.size() : 0;
+    }
+
+    /**
+     * The number of purchased items, from the counter when it is tracked, otherwise by scanning the items list.
+     */
+    public long countPurchasedItems() {
+        if (hasItemCounters()) {
+            return purchasedCount;
+        }
+        return items != null ? items.stream().filter(GroceryItem::isPurchased).count() : 0;
+    }
+
+    /**
+     * Finds an item by its ID through the item index.
+     *
+     * @param itemId The ID of the item.
+     * @return The item, or empty if the cart has no item with that ID.
+     */
+    public Optional<GroceryItem> findItemById(String itemId) {
+        return findIndexedItem(itemId, GroceryItem::getId, true);
+    }
+
+    /**
+     * Finds the first item with the given designation through the secondary designation index.
+     *
+     * @param designation The designation of the item.
+     * @return The item, or empty if the cart has no item with that designation.
+     */
+    public Optional<GroceryItem> findItemByDesignation(String designation) {
+        return findIndexedItem(designation, GroceryItem::getDesignation, false);
+    }
+
+    private Optional<GroceryItem> findIndexedItem(String key, Function<GroceryItem, String> keyOf, boolean byId) {
+        if (key == null || items == null) {
+            return Optional.empty();
+        }
+        GroceryItem item = indexedItem(byId ? itemPositionsById : itemPositionsByDesignation, key, keyOf);
+        if (item == null) {
+            reindexItems(); // The index is missing, or the list was changed directly since it was built
+            item = indexedItem(byId ? itemPositionsById : itemPositionsByDesignation, key, keyOf);
+        }
+        return Optional.ofNullable(item);
+    }
+
+    private GroceryItem indexedItem(Map<String, Integer> index, String key, Function<GroceryItem, String> keyOf) {
+        if (index == null) {
+            return null;
+        }
+        Integer position = index.get(key);
+        if (position == null || position >= items.size()) {
+            return null;
+        }
+        GroceryItem candidate = items.get(position);
+        // Only trust the position if it still holds the item it was indexed for
+        return candidate != null && key.equals(keyOf.apply(candidate)) ? candidate : null;
+    }
+
+    private void reindexItems() {
+        Map<String, Integer> byId = new HashMap<>(Math.max(16, items.size() * 2));
+        Map<String, Integer> byDesignation = new HashMap<>(Math.max(16, items.size() * 2));
+        for (int i = 0; i < items.size(); i++) {
+            GroceryItem item = items.get(i);
+            if (item == null) {
+                continue;
+            }
+            if (item.getId() != null) {
+                byId.put(item.getId(), i);
+            }
+            if (item.getDesignation() != null) {
+                byDesignation.putIfAbsent(item.getDesignation(), i);
+            }
+        }
+        itemPositionsById = byId;
+        itemPositionsByDesignation = byDesignation;
+    }
+
+    private void assignMissingItemIds() {
+        if (items == null) {
+            return;
+        }
+        Set<String> takenIds = null;
+        for (int i = 0; i < items.size(); i++) {
+            GroceryItem item = items.get(i);
+            if (item == null || (item.getId() != null && !item.getId().isEmpty())) {
+                continue;
+            }
+            if (takenIds == null) {
+                takenIds = items.stream()
+                        .filter(Objects::nonNull)
+                        .map(GroceryItem::getId)
+                        .filter(Objects::nonNull)
+                        .collect(Collectors.toSet());
+            }
+            String id = GroceryItem.positionalId(i);
+            item.setId(takenIds.add(id) ? id : GroceryItem.newId());
+        }
+    }
+
     // --- Helper methods to work with permissions ---
 
+    /**
+     * Whether the shopper is one of the cart's members.
+     *
+     * @param shopperId The ID of the shopper to check.
+     * @return true if the shopper ID is in shopperIds.
+     */
+    public boolean isMember(String shopperId) {
+        return shopperIds != null && shopperIds.contains(shopperId);
+    }
+
     /**
      * Retrieves the SharePermission for a given shopper ID.
      *
@@ -65,11 +317,7 @@ public class ShopCart {
      * @return The SharePermission if found, otherwise null.
      */
     public SharePermission getPermissionForShopper(String shopperId) {
-        return sharePermissions.stream()
-                .filter(entry -> entry.getShopperId().equals(shopperId))
-                .map(SharePermissionEntry::getPermission)
-                .findFirst()
-                .orElse(null);
+        return permissions.get(shopperId);
     }
 
     /**
@@ -79,10 +327,7 @@ public class ShopCart {
      * @param permission The permission level to set.
      */
     public void addOrUpdatePermission(String shopperId, SharePermission permission) {
-        // Remove existing permission for this shopper if it exists
-        sharePermissions.removeIf(entry -> entry.getShopperId().equals(shopperId));
-        // Add new permission
-        sharePermissions.add(new SharePermissionEntry(shopperId, permission));
+        permissions.put(shopperId, permission);
         this.updateLastInteraction(); // Update interaction time on permission change
     }
 
@@ -92,7 +337,7 @@ public class ShopCart {
      * @param shopperId The ID of the shopper whose permission to remove.
      */
     public void removePermission(String shopperId) {
-        boolean removed = sharePermissions.removeIf(entry -> entry.getShopperId().equals(shopperId));
+        boolean removed = permissions.remove(shopperId) != null;
         if (removed) {
             this.updateLastInteraction(); // Update interaction time if permission removed
         }
@@ -111,15 +356,17 @@ public class ShopCart {
 
     /**
      * Better state update logic for shared shopping, based on item purchase status.
+     * Driven by the item counters, so it does not scan the items once they are tracked.
      */
     public void updateStateBasedOnItems() {
-        if (items == null || items.isEmpty()) {
+        long total = countItems();
+        if (total == 0) {
             this.state = ShopCartState.ACTIVE;
             this.updateLastInteraction();
             return;
         }
 
-        boolean allPurchased = items.stream().allMatch(GroceryItem::isPurchased);
+        boolean allPurchased = countPurchasedItems() >= total;
 
         // Don't automatically mark as COMPLETED - let shoppers decide
         if (allPurchased && this.state == ShopCartState.ACTIVE) {
@@ -130,6 +377,18 @@ public class ShopCart {
         this.updateLastInteraction();
     }
 
+    /**
+     * Moves the cart between ACTIVE and SHOPPING to match its item counters; any other state is left alone.
+     * Item writes in the subcollection layout only increment the counters, so the state follows from them on read.
+     */
+    public void settleItemState() {
+        if (this.state != ShopCartState.ACTIVE && this.state != ShopCartState.SHOPPING) {
+            return;
+        }
+        long total = countItems();
+        this.state = total > 0 && countPurchasedItems() >= total ? ShopCartState.SHOPPING : ShopCartState.ACTIVE;
+    }
+
     /**
      * Marks the shopping trip as completed (manual action by a shopper).
      *
@@ -151,6 +410,7 @@ public class ShopCart {
         if (this.items != null) {
             this.items.forEach(item -> item.setPurchased(false));
         }
+        this.purchasedCount = 0;
         this.state = ShopCartState.ACTIVE;
         this.completedAt = null;
         this.currentShopper = null;
@@ -170,6 +430,7 @@ public class ShopCart {
         if (this.items != null) {
             this.items.forEach(item -> item.setPurchased(false));
         }
+        this.purchasedCount = 0;
         this.updateLastInteraction();
     }
 
@@ -205,6 +466,7 @@ public class ShopCart {
                 .collect(Collectors.toList()) : new ArrayList<>();
 
         newCart.setItems(templateItems);
+        newCart.recountItems();
         newCart.updateLastInteraction(); // Will set lastInteraction and lastModified for the new cart
         return newCart;
     }
@@ -300,9 +562,10 @@ public class ShopCart {
                 "id='" + id + '\'' +
                 ", dateKey='" + dateKey + '\'' +
                 ", items=" + (items != null ? items.size() : 0) + " items" +
-                ", shopperIds=" + shopperIds.size() + " shoppers" +
+                ", itemStorage=" + itemStorage +
+                ", shopperIds=" + (shopperIds != null ? shopperIds.size() : 0) + " shoppers" +
                 ", createdBy='" + createdBy + '\'' +
-                ", sharePermissions=" + (sharePermissions != null ? sharePermissions.size() : 0) + " entries" +
+                ", permissions=" + permissions.size() + " entries" +
                 ", isPublic=" + isPublic +
                 ", createdAt=" + createdAt +
                 ", lastModified=" + lastModified +
@@ -0,0 +1,28 @@
+package com.supershoppercart.repositories;
+
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Result of a batched read by document IDs.
+ * Found entities keep the order of the requested IDs; IDs with no matching document are reported separately
+ * so callers can clean up stale references to them.
+ *
+ * @param <T> The entity type that was read.
+ */
+@Getter
+public class BatchReadResult<T> {
+
+    private final List<T> found;
+    private final List<String> missingIds;
+
+    public BatchReadResult(List<T> found, List<String> missingIds) {
+        this.found = List.copyOf(found);
+        this.missingIds = List.copyOf(missingIds);
+    }
+
+    public boolean hasMissing() {
+        return !missingIds.isEmpty();
+    }
+}
@@ -0,0 +1,86 @@
+package com.supershoppercart.repositories;
+
+import com.google.cloud.firestore.CollectionReference;
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.FieldMask;
+import com.google.cloud.firestore.Firestore;
+import com.supershoppercart.codecs.FirestoreCodec;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Shared implementation of the repositories' batched reads by document ID.
+ */
+final class BatchReads {
+
+    private BatchReads() {
+    }
+
+    /**
+     * Reads the documents for the given IDs with a single {@code getAll} round trip.
+     * Null, blank and duplicate IDs are skipped; found entities keep the order of the given IDs.
+     *
+     * @param codec Decodes each document, setting the document ID on the entity.
+     */
+    static <T> BatchReadResult<T> getAllById(Firestore firestore, CollectionReference collection, Collection<String> ids,
+                                             FirestoreCodec<T> codec)
+            throws ExecutionException, InterruptedException {
+        return getAllById(firestore, collection, ids, codec, null);
+    }
+
+    /**
+     * Like {@link #getAllById(Firestore, CollectionReference, Collection, FirestoreCodec)}, but only the
+     * fields in the mask are transferred; the other properties of the decoded entities keep their defaults.
+     *
+     * @param mask The fields to read, or null for whole documents.
+     */
+    static <T> BatchReadResult<T> getAllById(Firestore firestore, CollectionReference collection, Collection<String> ids,
+                                             FirestoreCodec<T> codec, FieldMask mask)
+            throws ExecutionException, InterruptedException {
+        Set<String> distinctIds = new LinkedHashSet<>();
+        if (ids != null) {
+            for (String id : ids) {
+                if (id != null && !id.isBlank()) {
+                    distinctIds.add(id);
+                }
+            }
+        }
+        if (distinctIds.isEmpty()) {
+            return new BatchReadResult<>(List.of(), List.of());
+        }
+
+        DocumentReference[] refs = distinctIds.stream()
+                .map(collection::document)
+                .toArray(DocumentReference[]::new);
+        Map<String, T> byId = new HashMap<>();
+        List<DocumentSnapshot> snapshots = mask != null ? firestore.getAll(refs, mask).get() : firestore.getAll(refs).get();
+        for (DocumentSnapshot snapshot : snapshots) {
+            if (snapshot.exists()) {
+                T entity = codec.decode(snapshot);
+                if (entity != null) {
+                    byId.put(snapshot.getId(), entity);
+                }
+            }
+        }
+
+        List<T> found = new ArrayList<>();
+        List<String> missingIds = new ArrayList<>();
+        for (String id : distinctIds) {
+            T entity = byId.get(id);
+            if (entity != null) {
+                found.add(entity);
+            } else {
+                missingIds.add(id);
+            }
+        }
+        return new BatchReadResult<>(found, missingIds);
+    }
+}
@@ -0,0 +1,45 @@
+package com.supershoppercart.repositories;
+
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.WriteBatch;
+import com.supershoppercart.models.CartTombstone;
+import com.supershoppercart.utils.BulkDeleteListener;
+import com.supershoppercart.utils.BulkDeleteResult;
+
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Interface for the tombstones that record carts leaving a shopper's cart list, for delta sync.
+ */
+public interface CartTombstoneRepository {
+
+    String COLLECTION_NAME = "cartTombstones";
+
+    /**
+     * Stages the tombstone in the given batch, replacing any earlier tombstone of the same shopper and cart.
+     * Its removal time is the commit time of the batch.
+     * @param batch The batch that removes the cart from the shopper.
+     * @param tombstone The tombstone to write.
+     */
+    void stageSave(WriteBatch batch, CartTombstone tombstone);
+
+    /**
+     * Finds the tombstones of a shopper written after the given time, oldest first.
+     * @param shopperId The ID of the Shopper.
+     * @param since Only tombstones removed strictly after this time are returned.
+     * @return The tombstones and the time they were read at.
+     * @throws ExecutionException If an execution error occurs during the Firestore operation.
+     * @throws InterruptedException If the current thread is interrupted while waiting.
+     */
+    TimedReadResult<CartTombstone> findByShopperIdRemovedAfter(String shopperId, Timestamp since) throws ExecutionException, InterruptedException;
+
+    /**
+     * Deletes every tombstone removed before the cutoff, page by page through a BulkWriter.
+     * @param cutoff Tombstones removed strictly before this time are deleted.
+     * @param listener Called after each page of deletes has been flushed.
+     * @return The number of deleted and failed documents.
+     * @throws ExecutionException If an execution error occurs during the Firestore operation.
+     * @throws InterruptedException If the current thread is interrupted while waiting.
+     */
+    BulkDeleteResult deleteRemovedBefore(Timestamp cutoff, BulkDeleteListener listener) throws ExecutionException, InterruptedException;
+}
@@ -0,0 +1,71 @@
+package com.supershoppercart.repositories;
+
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.CollectionReference;
+import com.google.cloud.firestore.FieldPath;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.Query;
+import com.google.cloud.firestore.QueryDocumentSnapshot;
+import com.google.cloud.firestore.QuerySnapshot;
+import com.google.cloud.firestore.WriteBatch;
+import com.supershoppercart.codecs.FirestoreCodecs;
+import com.supershoppercart.models.CartTombstone;
+import com.supershoppercart.utils.BulkDeleteListener;
+import com.supershoppercart.utils.BulkDeleteResult;
+import com.supershoppercart.utils.FirestoreBulkDeleter;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Firestore implementation of the CartTombstoneRepository.
+ */
+@Repository
+public class CartTombstoneRepositoryImpl implements CartTombstoneRepository {
+
+    private static final String SHOPPER_ID_FIELD = "shopperId";
+    private static final String REMOVED_AT_FIELD = "removedAt";
+
+    private final FirestoreBulkDeleter bulkDeleter;
+    private final CollectionReference tombstonesCollection;
+
+    public CartTombstoneRepositoryImpl(Firestore firestore, FirestoreBulkDeleter bulkDeleter) {
+        this.bulkDeleter = bulkDeleter;
+        this.tombstonesCollection = firestore.collection(COLLECTION_NAME);
+    }
+
+    @Override
+    public void stageSave(WriteBatch batch, CartTombstone tombstone) {
+        String documentId = CartTombstone.documentId(tombstone.getShopperId(), tombstone.getCartId());
+        batch.set(tombstonesCollection.document(documentId), FirestoreCodecs.CART_TOMBSTONE.encode(tombstone));
+    }
+
+    @Override
+    public TimedReadResult<CartTombstone> findByShopperIdRemovedAfter(String shopperId, Timestamp since)
+            throws ExecutionException, InterruptedException {
+        // Needs the composite index (shopperId, removedAt) (see firestore.indexes.json)
+        QuerySnapshot snapshot = tombstonesCollection
+                .whereEqualTo(SHOPPER_ID_FIELD, shopperId)
+                .whereGreaterThan(REMOVED_AT_FIELD, since)
+                .orderBy(REMOVED_AT_FIELD)
+                .get().get();
+        List<CartTombstone> tombstones = new ArrayList<>(snapshot.size());
+        for (QueryDocumentSnapshot doc : snapshot.getDocuments()) {
+            tombstones.add(FirestoreCodecs.CART_TOMBSTONE.decode(doc));
+        }
+        return new TimedReadResult<>(tombstones, snapshot.getReadTime());
+    }
+
+    @Override
+    public BulkDeleteResult deleteRemovedBefore(Timestamp cutoff, BulkDeleteListener listener)
+            throws ExecutionException, InterruptedException {
+        Query expired = tombstonesCollection
+                .whereLessThan(REMOVED_AT_FIELD, cutoff)
+                .orderBy(REMOVED_AT_FIELD)
+                .orderBy(FieldPath.documentId())
+                .select(REMOVED_AT_FIELD);
+        return bulkDeleter.delete(expired, listener);
+    }
+}
@@ -0,0 +1,133 @@
+package com.supershoppercart.repositories;
+
+import com.google.cloud.firestore.EventListener;
+import com.google.cloud.firestore.ListenerRegistration;
+import com.google.cloud.firestore.WriteBatch;
+import com.supershoppercart.exceptions.CartConflictException;
+import com.supershoppercart.models.CartPatchOperation;
+import com.supershoppercart.models.GroceryItem;
+import com.supershoppercart.models.ShopCart;
+import com.supershoppercart.utils.BulkDeleteResult;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Interface for the items of carts stored in the subcollection layout, where each GroceryItem
+ * is its own document under {@code shopcarts/{cartId}/items} and the cart keeps denormalized counters.
+ */
+public interface GroceryItemRepository {
+
+    String COLLECTION_NAME = "items";
+
+    /**
+     * Reads all items of a cart with a single query, in the order they were added.
+     * @param cartId The ID of the ShopCart.
+     * @return The cart's items, each with its stable ID.
+     * @throws ExecutionException If an execution error occurs during the Firestore operation.
+     * @throws InterruptedException If the current thread is interrupted while waiting.
+     */
+    List<GroceryItem> findByCartId(String cartId) throws ExecutionException, InterruptedException;
+
+    /**
+     * Listens to the items of a cart. The listener is called with all items first and then after every change.
+     * @param cartId The ID of the ShopCart.
+     * @param listener Called on Firestore's listener thread with the cart's items in the order they were added,
+     *                 or with the error that ended the listen.
+     * @return The registration to remove the listener with.
+     */
+    ListenerRegistration addSnapshotListener(String cartId, EventListener<List<GroceryItem>> listener);
+
+    /**
+     * Reads the items of several carts with one collection group query per 30 carts.
+     * @param cartIds The IDs of the ShopCarts.
+     * @return The items of each cart, in the order they were added; carts without items are absent.
+     * @throws ExecutionException If an execution error occurs during the Firestore operation.
+     * @throws InterruptedException If the current thread is interrupted while waiting.
+     */
+    Map<String, List<GroceryItem>> findByCartIds(Collection<String> cartIds) throws ExecutionException, InterruptedException;
+
+    /**
+     * Finds the first item of a cart with the given designation.
+     * @param cartId The ID of the ShopCart.
+     * @param designation The designation of the item.
+     * @return An Optional containing the item if found, or empty if not.
+     * @throws ExecutionException If an execution error occurs during the Firestore operation.
+     * @throws InterruptedException If the current thread is interrupted while waiting.
+     */
+    Optional<GroceryItem> findByDesignation(String cartId, String designation) throws ExecutionException, InterruptedException;
+
+    /**
+     * Adds an item to a cart and bumps the cart's counters in the same batch.
+     * The item is given a new stable ID, which is set back on the object.
+     * @param cartId The ID of the ShopCart.
+     * @param item The grocery item to add.
+     * @return The item with its ID.
+     * @throws ExecutionException If the cart does not exist or the Firestore operation fails.
+     * @throws InterruptedException If the current thread is interrupted while waiting.
+     */
+    GroceryItem add(String cartId, GroceryItem item) throws ExecutionException, InterruptedException;
+
+    /**
+     * Stages the creation of an item document without touching the cart's counters.
+     * Used when the cart document itself is written in the same batch with its counters already set.
+     * @param batch The batch to add the write to.
+     * @param cartId The ID of the ShopCart.
+     * @param item The grocery item; given a new stable ID if it has none.
+     * @return The item with its ID.
+     */
+    GroceryItem stageAdd(WriteBatch batch, String cartId, GroceryItem item);
+
+    /**
+     * Sets an item's purchased flag and adjusts the cart's purchased counter.
+     * The item write is guarded by the item's own update time, so toggles of different items never
+     * conflict with each other; the counter is adjusted with an increment rather than a rewrite.
+     * @param cartId The ID of the ShopCart.
+     * @param itemId The stable ID of the item.
+     * @param purchased The new purchased flag.
+     * @return true if the flag changed, false if it already had the requested value.
+     * @throws IllegalArgumentException If the item is not found.
+     * @throws CartConflictException If the item changed between the read and the write.
+     * @throws ExecutionException If an execution error occurs during the Firestore operation.
+     * @throws InterruptedException If the current thread is interrupted while waiting.
+     */
+    boolean setPurchased(String cartId, String itemId, boolean purchased) throws ExecutionException, InterruptedException;
+
+    /**
+     * Applies patch operations to a cart's items in a single batch.
+     * Every targeted item is looked up before anything is staged, so an unknown item fails the whole
+     * patch without writing; the item documents and one counter update on the cart are then committed
+     * together. Each toggled item is guarded by its own update time.
+     * @param cartId The ID of the ShopCart.
+     * @param operations The operations to apply, in order.
+     * @throws IllegalArgumentException If an operation targets an item that is not found.
+     * @throws CartConflictException If a toggled item changed between the read and the write.
+     * @throws ExecutionException If an execution error occurs during the Firestore operation.
+     * @throws InterruptedException If the current thread is interrupted while waiting.
+     */
+    void applyPatch(String cartId, List<CartPatchOperation> operations) throws ExecutionException, InterruptedException;
+
+    /**
+     * Deletes every item document of a cart.
+     * @param cartId The ID of the ShopCart.
+     * @return The number of deleted and failed documents.
+     * @throws ExecutionException If an execution error occurs during the Firestore operation.
+     * @throws InterruptedException If the current thread is interrupted while waiting.
+     */
+    BulkDeleteResult deleteByCartId(String cartId) throws ExecutionException, InterruptedException;
+
+    /**
+     * Moves an EMBEDDED cart's items into its items subcollection.
+     * Item documents are written first under stable IDs, so a retried migration overwrites rather than
+     * duplicates them. The cart is then switched to the subcollection layout with its counters set and
+     * its items array cleared, guarded by the update time the cart was read at.
+     * @param cart The cart as read, carrying its update time.
+     * @throws CartConflictException If the cart changed after it was read.
+     * @throws ExecutionException If an execution error occurs during the Firestore operation.
+     * @throws InterruptedException If the current thread is interrupted while waiting.
+     */
+    void migrateEmbeddedItems(ShopCart cart) throws ExecutionException, InterruptedException;
+}
@@ -0,0 +1,305 @@
+package com.supershoppercart.repositories;
+
+import com.google.api.core.ApiFuture;
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.*;
+import com.supershoppercart.codecs.FirestoreCodecs;
+import com.supershoppercart.enums.ItemStorage;
+import com.supershoppercart.models.CartPatchOperation;
+import com.supershoppercart.models.GroceryItem;
+import com.supershoppercart.models.ShopCart;
+import com.supershoppercart.utils.BulkDeleteListener;
+import com.supershoppercart.utils.BulkDeleteResult;
+import com.supershoppercart.utils.FirestoreBulkDeleter;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Firestore implementation of the GroceryItemRepository.
+ */
+@Repository
+public class GroceryItemRepositoryImpl implements GroceryItemRepository {
+
+    private static final int MAX_WHERE_IN_VALUES = 30; // Firestore limit for an 'in' filter
+    private static final int MAX_ITEMS_PER_BATCH = 450; // Leaves room under the 500-write batch limit
+    private static final String CART_ID_FIELD = "cartId";
+    private static final String ADDED_AT_FIELD = "addedAt";
+
+    private final Firestore firestore;
+    private final FirestoreBulkDeleter bulkDeleter;
+    private final CollectionReference shopCartsCollection;
+
+    public GroceryItemRepositoryImpl(Firestore firestore, FirestoreBulkDeleter bulkDeleter) {
+        this.firestore = firestore;
+        this.bulkDeleter = bulkDeleter;
+        this.shopCartsCollection = firestore.collection(ShopCartRepositoryImpl.SHOPCARTS_COLLECTION_NAME);
+    }
+
+    @Override
+    public List<GroceryItem> findByCartId(String cartId) throws ExecutionException, InterruptedException {
+        QuerySnapshot snapshot = itemsOf(cartId).orderBy(ADDED_AT_FIELD).get().get();
+        List<GroceryItem> items = new ArrayList<>();
+        for (QueryDocumentSnapshot doc : snapshot.getDocuments()) {
+            items.add(toItem(doc));
+        }
+        return items;
+    }
+
+    @Override
+    public ListenerRegistration addSnapshotListener(String cartId, EventListener<List<GroceryItem>> listener) {
+        return itemsOf(cartId).orderBy(ADDED_AT_FIELD).addSnapshotListener((snapshot, error) -> {
+            if (error != null) {
+                listener.onEvent(null, error);
+                return;
+            }
+            List<GroceryItem> items = new ArrayList<>();
+            for (QueryDocumentSnapshot doc : snapshot.getDocuments()) {
+                items.add(toItem(doc));
+            }
+            listener.onEvent(items, null);
+        });
+    }
+
+    @Override
+    public Map<String, List<GroceryItem>> findByCartIds(Collection<String> cartIds) throws ExecutionException, InterruptedException {
+        List<String> distinctIds = new ArrayList<>(new LinkedHashSet<>(cartIds));
+        List<QueryDocumentSnapshot> docs = new ArrayList<>();
+        for (int from = 0; from < distinctIds.size(); from += MAX_WHERE_IN_VALUES) {
+            List<String> chunk = distinctIds.subList(from, Math.min(from + MAX_WHERE_IN_VALUES, distinctIds.size()));
+            // Ordered in memory: ordering a collection group 'in' query by addedAt would need a composite index
+            docs.addAll(firestore.collectionGroup(COLLECTION_NAME).whereIn(CART_ID_FIELD, new ArrayList<>(chunk))
+                    .get().get().getDocuments());
+        }
+        docs.sort(Comparator.comparing((QueryDocumentSnapshot doc) -> doc.getTimestamp(ADDED_AT_FIELD),
+                        Comparator.nullsLast(Comparator.naturalOrder()))
+                .thenComparing(QueryDocumentSnapshot::getId));
+
+        Map<String, List<GroceryItem>> itemsByCartId = new LinkedHashMap<>();
+        for (QueryDocumentSnapshot doc : docs) {
+            itemsByCartId.computeIfAbsent(doc.getString(CART_ID_FIELD), id -> new ArrayList<>()).add(toItem(doc));
+        }
+        return itemsByCartId;
+    }
+
+    @Override
+    public Optional<GroceryItem> findByDesignation(String cartId, String designation) throws ExecutionException, InterruptedException {
+        List<QueryDocumentSnapshot> docs = itemsOf(cartId).whereEqualTo("designation", designation)
+                .limit(1).get().get().getDocuments();
+        return docs.isEmpty() ? Optional.empty() : Optional.of(toItem(docs.get(0)));
+    }
+
+    @Override
+    public GroceryItem add(String cartId, GroceryItem item) throws ExecutionException, InterruptedException {
+        WriteBatch batch = firestore.batch();
+        stageAdd(batch, cartId, item);
+        stageCounterUpdate(batch, cartId, 1, item.isPurchased() ? 1 : 0);
+        batch.commit().get();
+        return item;
+    }
+
+    @Override
+    public GroceryItem stageAdd(WriteBatch batch, String cartId, GroceryItem item) {
+        DocumentReference itemRef = item.getId() == null || item.getId().isEmpty()
+                ? itemsOf(cartId).document() // Auto-generated ID, known before the batch commits
+                : itemsOf(cartId).document(item.getId());
+        item.setId(itemRef.getId());
+        batch.set(itemRef, toDocument(cartId, item, FieldValue.serverTimestamp()));
+        return item;
+    }
+
+    @Override
+    public boolean setPurchased(String cartId, String itemId, boolean purchased) throws ExecutionException, InterruptedException {
+        DocumentReference itemRef = itemsOf(cartId).document(itemId);
+        DocumentSnapshot snapshot = itemRef.get().get();
+        if (!snapshot.exists()) {
+            throw new IllegalArgumentException("Grocery item " + itemId + " not found in cart " + cartId);
+        }
+        if (Boolean.valueOf(purchased).equals(snapshot.getBoolean("purchased"))) {
+            return false;
+        }
+
+        WriteBatch batch = firestore.batch();
+        // Only this item is guarded; the counter is a blind increment, so toggles of other items never conflict
+        batch.update(itemRef, Map.of("purchased", purchased), Precondition.updatedAt(snapshot.getUpdateTime()));
+        stageCounterUpdate(batch, cartId, 0, purchased ? 1 : -1);
+        ShopCartRepositoryImpl.guardedWrite(cartId, batch.commit());
+        return true;
+    }
+
+    @Override
+    public void applyPatch(String cartId, List<CartPatchOperation> operations) throws ExecutionException, InterruptedException {
+        // Resolve every target first: an unknown item must fail the patch before anything is staged
+        List<GroceryItem> added = new ArrayList<>();
+        Map<String, DocumentSnapshot> stored = new LinkedHashMap<>();
+        Map<String, Boolean> purchasedById = new HashMap<>();
+        for (CartPatchOperation operation : operations) {
+            switch (operation.getType()) {
+                case ADD_ITEM -> added.add(operation.getItem());
+                case SET_PURCHASED -> {
+                    Optional<GroceryItem> pending = findAdded(added, operation);
+                    if (pending.isPresent()) {
+                        // Added earlier in this patch: the flag goes out with its creation
+                        pending.get().setPurchased(operation.getPurchased());
+                    } else {
+                        DocumentSnapshot snapshot = resolveStored(cartId, operation, stored);
+                        stored.putIfAbsent(snapshot.getId(), snapshot);
+                        purchasedById.put(snapshot.getId(), operation.getPurchased());
+                    }
+                }
+                case TOUCH -> {
+                    // lastInteraction is always refreshed below
+                }
+            }
+        }
+
+        WriteBatch batch = firestore.batch();
+        long purchasedDelta = 0;
+        for (GroceryItem item : added) {
+            stageAdd(batch, cartId, item);
+            if (item.isPurchased()) {
+                purchasedDelta++;
+            }
+        }
+        for (Map.Entry<String, Boolean> entry : purchasedById.entrySet()) {
+            DocumentSnapshot snapshot = stored.get(entry.getKey());
+            if (entry.getValue().equals(snapshot.getBoolean("purchased"))) {
+                continue;
+            }
+            batch.update(snapshot.getReference(), Map.of("purchased", entry.getValue()),
+                    Precondition.updatedAt(snapshot.getUpdateTime()));
+            purchasedDelta += entry.getValue() ? 1 : -1;
+        }
+        stageCounterUpdate(batch, cartId, added.size(), purchasedDelta);
+        ShopCartRepositoryImpl.guardedWrite(cartId, batch.commit());
+    }
+
+    /**
+     * Stages the cart's counter increments. The update is blind, so item writes never contend on the cart;
+     * the ACTIVE/SHOPPING state follows from the stored counters when the cart is read.
+     */
+    private void stageCounterUpdate(WriteBatch batch, String cartId, long addedCount, long purchasedDelta) {
+        Map<String, Object> counters = new HashMap<>();
+        if (addedCount != 0) {
+            counters.put("itemCount", FieldValue.increment(addedCount));
+        }
+        if (purchasedDelta != 0) {
+            counters.put("purchasedCount", FieldValue.increment(purchasedDelta));
+        }
+        counters.put("lastInteraction", new Date());
+        counters.put("lastModified", FieldValue.serverTimestamp());
+        batch.update(shopCartsCollection.document(cartId), counters);
+    }
+
+    private static Optional<GroceryItem> findAdded(List<GroceryItem> added, CartPatchOperation operation) {
+        return added.stream()
+                .filter(item -> operation.targetsItemId()
+                        ? operation.getItemId().equals(item.getId())
+                        : operation.getDesignation().equals(item.getDesignation()))
+                .findFirst();
+    }
+
+    private DocumentSnapshot resolveStored(String cartId, CartPatchOperation operation, Map<String, DocumentSnapshot> stored)
+            throws ExecutionException, InterruptedException {
+        if (operation.targetsItemId()) {
+            DocumentSnapshot known = stored.get(operation.getItemId());
+            if (known != null) {
+                return known;
+            }
+            DocumentSnapshot snapshot = itemsOf(cartId).document(operation.getItemId()).get().get();
+            if (!snapshot.exists()) {
+                throw new IllegalArgumentException("Grocery item " + operation.getItemId() + " not found in cart " + cartId);
+            }
+            return snapshot;
+        }
+        List<QueryDocumentSnapshot> docs = itemsOf(cartId).whereEqualTo("designation", operation.getDesignation())
+                .limit(1).get().get().getDocuments();
+        if (docs.isEmpty()) {
+            throw new IllegalArgumentException("Grocery item with designation " + operation.getDesignation()
+                    + " not found in cart " + cartId);
+        }
+        // Keep the first snapshot read for the item, so its guard matches the flag it was compared with
+        return stored.getOrDefault(docs.get(0).getId(), docs.get(0));
+    }
+
+    @Override
+    public BulkDeleteResult deleteByCartId(String cartId) throws ExecutionException, InterruptedException {
+        return bulkDeleter.deleteAll(itemsOf(cartId), BulkDeleteListener.NONE);
+    }
+
+    @Override
+    public void migrateEmbeddedItems(ShopCart cart) throws ExecutionException, InterruptedException {
+        List<GroceryItem> items = cart.getItems() != null ? cart.getItems() : List.of();
+        // Spread addedAt from the cart's creation time so the subcollection keeps the list's order
+        long baseMillis = cart.getCreatedAt() != null ? cart.getCreatedAt().getTime() : System.currentTimeMillis();
+        long purchasedCount = 0;
+        List<ApiFuture<List<WriteResult>>> commits = new ArrayList<>();
+        WriteBatch batch = firestore.batch();
+        for (int i = 0; i < items.size(); i++) {
+            GroceryItem item = items.get(i);
+            if (item.getId() == null || item.getId().isEmpty()) {
+                item.setId(GroceryItem.positionalId(i)); // Deterministic, so a retried migration overwrites
+            }
+            batch.set(itemsOf(cart.getId()).document(item.getId()),
+                    toDocument(cart.getId(), item, Timestamp.of(new Date(baseMillis + i))));
+            if (item.isPurchased()) {
+                purchasedCount++;
+            }
+            if ((i + 1) % MAX_ITEMS_PER_BATCH == 0) {
+                commits.add(batch.commit());
+                batch = firestore.batch();
+            }
+        }
+        for (ApiFuture<List<WriteResult>> commit : commits) {
+            commit.get();
+        }
+
+        Map<String, Object> layout = new HashMap<>();
+        layout.put("items", List.of());
+        layout.put("itemStorage", ItemStorage.SUBCOLLECTION);
+        layout.put("itemCount", items.size());
+        layout.put("purchasedCount", purchasedCount);
+        layout.put("lastModified", FieldValue.serverTimestamp());
+        DocumentReference cartRef = shopCartsCollection.document(cart.getId());
+        if (cart.getUpdateTime() != null) {
+            batch.update(cartRef, layout, Precondition.updatedAt(cart.getUpdateTime()));
+        } else {
+            batch.update(cartRef, layout);
+        }
+        ShopCartRepositoryImpl.guardedWrite(cart.getId(), batch.commit());
+
+        cart.setItemStorage(ItemStorage.SUBCOLLECTION);
+        cart.setItemCount(items.size());
+        cart.setPurchasedCount(purchasedCount);
+    }
+
+    private CollectionReference itemsOf(String cartId) {
+        return shopCartsCollection.document(cartId).collection(COLLECTION_NAME);
+    }
+
+    private static GroceryItem toItem(DocumentSnapshot doc) {
+        GroceryItem item = FirestoreCodecs.GROCERY_ITEM.decode(doc);
+        item.setId(doc.getId());
+        return item;
+    }
+
+    private static Map<String, Object> toDocument(String cartId, GroceryItem item, Object addedAt) {
+        Map<String, Object> document = new HashMap<>();
+        document.put("designation", item.getDesignation());
+        document.put("quantity", item.getQuantity());
+        document.put("purchased", item.isPurchased());
+        document.put(CART_ID_FIELD, cartId); // Lets a collection group query fetch the items of several carts at once
+        document.put(ADDED_AT_FIELD, addedAt);
+        return document;
+    }
+}
@@ -0,0 +1,29 @@
+package com.supershoppercart.repositories;
+
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * One page of a collection read in document ID order.
+ *
+ * @param <T> The entity type that was read.
+ */
+@Getter
+public class PageReadResult<T> {
+
+    private final List<T> found;
+    /**
+     * The ID to start the next page after, or null if this is the last page.
+     */
+    private final String nextStartAfterId;
+
+    public PageReadResult(List<T> found, String nextStartAfterId) {
+        this.found = List.copyOf(found);
+        this.nextStartAfterId = nextStartAfterId;
+    }
+
+    public boolean hasNext() {
+        return nextStartAfterId != null;
+    }
+}
@@ -0,0 +1,50 @@
+package com.supershoppercart.repositories;
+
+import com.google.cloud.firestore.FieldPath;
+import com.google.cloud.firestore.Query;
+import com.google.cloud.firestore.QueryDocumentSnapshot;
+import com.google.cloud.firestore.QuerySnapshot;
+import com.supershoppercart.codecs.FirestoreCodec;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Shared implementation of the repositories' keyset-paginated reads. Pages are ordered by document ID and
+ * resume after the last ID of the previous page, so every page costs one query of pageSize + 1 documents
+ * however deep into the collection it is, unlike an offset.
+ */
+final class PageReads {
+
+    private PageReads() {
+    }
+
+    /**
+     * Reads the page of the query's documents that follows startAfterId.
+     *
+     * @param query        The query to page through; must not be ordered already.
+     * @param pageSize     The maximum number of entities to return.
+     * @param startAfterId The last document ID of the previous page, or null for the first page.
+     * @param codec        Decodes each document, setting the document ID on the entity.
+     */
+    static <T> PageReadResult<T> readPage(Query query, int pageSize, String startAfterId, FirestoreCodec<T> codec)
+            throws ExecutionException, InterruptedException {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Page size must be positive.");
+        }
+        Query page = query.orderBy(FieldPath.documentId());
+        if (startAfterId != null) {
+            page = page.startAfter(startAfterId);
+        }
+        // One extra document tells whether another page follows, without a trailing empty page
+        QuerySnapshot snapshot = page.limit(pageSize + 1).get().get();
+        List<QueryDocumentSnapshot> docs = snapshot.getDocuments();
+        boolean hasNext = docs.size() > pageSize;
+        List<T> found = new ArrayList<>(Math.min(docs.size(), pageSize));
+        for (int i = 0; i < docs.size() && i < pageSize; i++) {
+            found.add(codec.decode(docs.get(i)));
+        }
+        return new PageReadResult<>(found, hasNext ? docs.get(pageSize - 1).getId() : null);
+    }
+}
@@ -1,8 +1,20 @@
 package com.supershoppercart.repositories;
 
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.EventListener;
+import com.google.cloud.firestore.ListenerRegistration;
+import com.google.cloud.firestore.WriteBatch;
+import com.supershoppercart.exceptions.CartConflictException;
+import com.supershoppercart.dtos.ShopCartSummaryDTO;
+import com.supershoppercart.models.CartPatchOperation;
+import com.supershoppercart.models.GroceryItem;
 import com.supershoppercart.models.ShopCart;
+import com.supershoppercart.utils.BulkDeleteListener;
+import com.supershoppercart.utils.BulkDeleteResult;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ExecutionException;
 
@@ -24,7 +36,76 @@ public interface ShopCartRepository {
     ShopCart save(ShopCart shopCart) throws ExecutionException, InterruptedException;
 
     /**
-     * Finds a ShopCart by its document ID.
+     * Stages a save of the ShopCart in the given batch. Nothing is written until the batch is committed.
+     * A cart without an ID is given a new auto-generated document ID, which is set back on the object.
+     * @param batch The batch to add the write to.
+     * @param shopCart The ShopCart object to save.
+     * @return The ShopCart with its Firestore document ID.
+     */
+    ShopCart stageSave(WriteBatch batch, ShopCart shopCart);
+
+    /**
+     * Appends an item to a cart with an arrayUnion update, touching only the items, item counter, state and timestamp fields.
+     * The item is given an ID first, so arrayUnion never drops it as a duplicate and the counters stay exact.
+     * The update is guarded by the cart's update time, since the state it writes depends on the counters it read.
+     * @param cartId The ID of the ShopCart.
+     * @param item The grocery item to append.
+     * @return The updated ShopCart.
+     * @throws IllegalArgumentException If the cart does not exist.
+     * @throws CartConflictException If the cart changed between the read and the write.
+     * @throws ExecutionException If the Firestore operation fails.
+     * @throws InterruptedException If the current thread is interrupted while waiting.
+     */
+    ShopCart appendItem(String cartId, GroceryItem item) throws ExecutionException, InterruptedException;
+
+    /**
+     * Sets the purchased flag of the first item with the given designation.
+     * @param cartId The ID of the ShopCart.
+     * @param designation The designation of the item.
+     * @param purchased The new purchased flag.
+     * @return The cart as it was written.
+     * @throws IllegalArgumentException If the cart or the item is not found.
+     * @throws CartConflictException If the cart changed between the read and the write.
+     * @throws ExecutionException If an execution error occurs during the Firestore operation.
+     * @throws InterruptedException If the current thread is interrupted while waiting.
+     */
+    ShopCart setItemPurchased(String cartId, String designation, boolean purchased) throws ExecutionException, InterruptedException;
+
+    /**
+     * Refreshes the cart's lastInteraction time without writing any other field.
+     * @param cartId The ID of the ShopCart.
+     * @throws ExecutionException If the cart does not exist or the Firestore operation fails.
+     * @throws InterruptedException If the current thread is interrupted while waiting.
+     */
+    void touchLastInteraction(String cartId) throws ExecutionException, InterruptedException;
+
+    /**
+     * Applies a list of small operations to a cart as one compare-and-set write.
+     * The cart is read once and the update is guarded by the update time that was read, so a concurrent
+     * write makes this call fail rather than being silently overwritten. Only the fields the operations
+     * change are written; shopper IDs and share permissions are never rewritten.
+     * @param cartId The ID of the ShopCart.
+     * @param operations The operations to apply, in order.
+     * @return The cart as it was written.
+     * @throws IllegalArgumentException If the cart or an item referenced by an operation is not found.
+     * @throws CartConflictException If the cart changed between the read and the write.
+     * @throws ExecutionException If an execution error occurs during the Firestore operation.
+     * @throws InterruptedException If the current thread is interrupted while waiting.
+     */
+    ShopCart applyPatch(String cartId, List<CartPatchOperation> operations) throws ExecutionException, InterruptedException;
+
+    /**
+     * Stages an update of the given cart fields in the batch. Nothing is written until the batch is committed.
+     * If the cart carries the update time it was read at, the update is guarded by it and the commit fails
+     * with a failed precondition when the cart has changed since.
+     * @param batch The batch to add the write to.
+     * @param shopCart The cart being updated, as read.
+     * @param fields The fields to write.
+     */
+    void stageUpdate(WriteBatch batch, ShopCart shopCart, Map<String, Object> fields);
+
+    /**
+     * Finds a ShopCart by its document ID. The returned cart carries the document's update time.
      * @param id The ID of the ShopCart.
      * @return An Optional containing the ShopCart if found, or empty if not.
      * @throws ExecutionException If an execution error occurs during the Firestore operation.
@@ -32,6 +113,47 @@ public interface ShopCartRepository {
      */
     Optional<ShopCart> findById(String id) throws ExecutionException, InterruptedException;
 
+    /**
+     * Finds several ShopCarts by their document IDs in a single batched read.
+     * Duplicate IDs are read once; found carts keep the order of the given IDs and carry their update time.
+     * @param ids The IDs of the ShopCarts.
+     * @return The carts that were found, plus the IDs that have no matching document.
+     * @throws ExecutionException If an execution error occurs during the Firestore operation.
+     * @throws InterruptedException If the current thread is interrupted while waiting.
+     */
+    BatchReadResult<ShopCart> findAllById(Collection<String> ids) throws ExecutionException, InterruptedException;
+
+    /**
+     * Reads only the version of several carts: the returned carts carry their ID, update time and shopperIds,
+     * and every other property keeps its default. Used to answer conditional requests without transferring items.
+     * @param ids The IDs of the ShopCarts.
+     * @return The carts that were found, plus the IDs that have no matching document.
+     * @throws ExecutionException If an execution error occurs during the Firestore operation.
+     * @throws InterruptedException If the current thread is interrupted while waiting.
+     */
+    BatchReadResult<ShopCart> findVersionsById(Collection<String> ids) throws ExecutionException, InterruptedException;
+
+    /**
+     * Finds the carts a shopper is a member of that were modified after the given time, with one query.
+     * Every cart write sets lastModified to its commit time, so nothing committed after the result's read time is missed
+     * by a later call that passes that read time.
+     * @param shopperId The ID of the Shopper.
+     * @param since Only carts modified strictly after this time are returned; null returns all of the shopper's carts.
+     * @return The carts, each with its update time, and the time they were read at.
+     * @throws ExecutionException If an execution error occurs during the Firestore operation.
+     * @throws InterruptedException If the current thread is interrupted while waiting.
+     */
+    TimedReadResult<ShopCart> findByShopperIdModifiedAfter(String shopperId, Timestamp since) throws ExecutionException, InterruptedException;
+
+    /**
+     * Listens to a cart document. The listener is called with the current cart first and then after every change,
+     * each time with the cart's update time set, or with null once the cart does not exist.
+     * @param cartId The ID of the ShopCart.
+     * @param listener Called on Firestore's listener thread with the decoded cart, or with the error that ended the listen.
+     * @return The registration to remove the listener with.
+     */
+    ListenerRegistration addSnapshotListener(String cartId, EventListener<ShopCart> listener);
+
     /**
      * Retrieves all ShopCarts from the collection.
      * @return A list of all ShopCart objects.
@@ -40,6 +162,44 @@ public interface ShopCartRepository {
      */
     List<ShopCart> findAll() throws ExecutionException, InterruptedException;
 
+    /**
+     * Retrieves one page of ShopCarts in document ID order.
+     * @param pageSize The maximum number of carts to return.
+     * @param startAfterId The last cart ID of the previous page, or null for the first page.
+     * @return The carts of the page, and the ID to start the next page after.
+     * @throws ExecutionException If an execution error occurs during the Firestore operation.
+     * @throws InterruptedException If the current thread is interrupted while waiting.
+     */
+    PageReadResult<ShopCart> findPage(int pageSize, String startAfterId) throws ExecutionException, InterruptedException;
+
+    /**
+     * Reads the summaries of several carts in a single batched read that transfers only the summary fields.
+     * Duplicate IDs are read once; found summaries keep the order of the given IDs.
+     * @param ids The IDs of the ShopCarts.
+     * @return The summaries of the carts that were found, plus the IDs that have no matching document.
+     * @throws ExecutionException If an execution error occurs during the Firestore operation.
+     * @throws InterruptedException If the current thread is interrupted while waiting.
+     */
+    BatchReadResult<ShopCartSummaryDTO> findSummariesById(Collection<String> ids) throws ExecutionException, InterruptedException;
+
+    /**
+     * Retrieves the summaries of all ShopCarts with a projection query; items and permissions are never read.
+     * @return A summary of every cart.
+     * @throws ExecutionException If an execution error occurs during the Firestore operation.
+     * @throws InterruptedException If the current thread is interrupted while waiting.
+     */
+    List<ShopCartSummaryDTO> findAllSummaries() throws ExecutionException, InterruptedException;
+
+    /**
+     * Retrieves the summaries of one page of ShopCarts in document ID order, with a projection query.
+     * @param pageSize The maximum number of summaries to return.
+     * @param startAfterId The last cart ID of the previous page, or null for the first page.
+     * @return The summaries of the page, and the ID to start the next page after.
+     * @throws ExecutionException If an execution error occurs during the Firestore operation.
+     * @throws InterruptedException If the current thread is interrupted while waiting.
+     */
+    PageReadResult<ShopCartSummaryDTO> findSummaryPage(int pageSize, String startAfterId) throws ExecutionException, InterruptedException;
+
     /**
      * Deletes a ShopCart by its document ID.
      * @param id The ID of the ShopCart to delete.
@@ -48,6 +208,13 @@ public interface ShopCartRepository {
      */
     void deleteById(String id) throws ExecutionException, InterruptedException;
 
+    /**
+     * Stages the deletion of a ShopCart in the given batch. Nothing is deleted until the batch is committed.
+     * @param batch The batch to add the delete to.
+     * @param id The ID of the ShopCart to delete.
+     */
+    void stageDelete(WriteBatch batch, String id);
+
     /**
      * Clears all documents from the ShopCart collection.
      * Primarily used for testing purposes.
@@ -56,11 +223,26 @@ public interface ShopCartRepository {
      */
     void deleteAll() throws ExecutionException, InterruptedException;
 
+    /**
+     * Clears all documents from the ShopCart collection page by page through a BulkWriter,
+     * reporting progress after each page. Item documents of carts in the subcollection layout are deleted too.
+     * @param listener Called after each page of deletes has been flushed.
+     * @return The number of deleted and failed documents.
+     * @throws ExecutionException If an execution error occurs during the Firestore operation.
+     * @throws InterruptedException If the current thread is interrupted while waiting.
+     */
+    BulkDeleteResult deleteAll(BulkDeleteListener listener) throws ExecutionException, InterruptedException;
+
     // A new method to find a cart in the 'shopcartTemplates' collection
     Optional<ShopCart> findTemplateById(String templateId) throws ExecutionException, InterruptedException;
 
     // You may also want a method to find all templates
     List<ShopCart> findAllTemplates() throws ExecutionException, InterruptedException;
 
+    /**
+     * Retrieves the summaries of all templates with a projection query.
+     */
+    List<ShopCartSummaryDTO> findAllTemplateSummaries() throws ExecutionException, InterruptedException;
+
     ShopCart saveTemplate(ShopCart shopCart) throws ExecutionException, InterruptedException;
 }
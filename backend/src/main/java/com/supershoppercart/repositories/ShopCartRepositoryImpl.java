@@ -1,11 +1,28 @@
 package com.supershoppercart.repositories;
 
 import com.google.api.core.ApiFuture;
+import com.google.cloud.Timestamp;
 import com.google.cloud.firestore.*;
+import com.supershoppercart.codecs.FirestoreCodec;
+import com.supershoppercart.codecs.FirestoreCodecs;
+import com.supershoppercart.dtos.ShopCartSummaryDTO;
+import com.supershoppercart.enums.ShopCartState;
+import com.supershoppercart.exceptions.CartConflictException;
+import com.supershoppercart.models.CartPatchOperation;
+import com.supershoppercart.models.GroceryItem;
 import com.supershoppercart.models.ShopCart;
+import com.supershoppercart.utils.BulkDeleteListener;
+import com.supershoppercart.utils.BulkDeleteResult;
+import com.supershoppercart.utils.FirestoreBulkDeleter;
+import com.supershoppercart.utils.FirestoreErrors;
 import org.springframework.stereotype.Repository;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ExecutionException;
 import java.util.stream.Collectors;
@@ -16,13 +33,43 @@ import java.util.stream.Collectors;
 @Repository
 public class ShopCartRepositoryImpl implements ShopCartRepository {
 
-    private static final String SHOPCARTS_COLLECTION_NAME = "shopcarts";
+    static final String SHOPCARTS_COLLECTION_NAME = "shopcarts";
     private static final String TEMPLATES_COLLECTION_NAME = "shopcartTemplates";
+    private static final FieldMask SUMMARY_MASK = FieldMask.of(ShopCartSummaryDTO.FIRESTORE_FIELDS);
+    private static final FieldMask VERSION_MASK = FieldMask.of("shopperIds"); // Membership for access checks; the update time comes with every snapshot
 
+    /**
+     * Decodes carts together with their update time, the version that guarded writes and cached responses compare against.
+     */
+    private static final FirestoreCodec<ShopCart> VERSIONED_SHOP_CART = new FirestoreCodec<>() {
+        @Override
+        public ShopCart decode(String documentId, Map<String, Object> data) {
+            return FirestoreCodecs.SHOP_CART.decode(documentId, data);
+        }
+
+        @Override
+        public Map<String, Object> encode(ShopCart shopCart) {
+            return FirestoreCodecs.SHOP_CART.encode(shopCart);
+        }
+
+        @Override
+        public ShopCart decode(DocumentSnapshot snapshot) {
+            ShopCart shopCart = FirestoreCodec.super.decode(snapshot);
+            if (shopCart != null) {
+                shopCart.setUpdateTime(snapshot.getUpdateTime());
+            }
+            return shopCart;
+        }
+    };
+
+    private final Firestore firestore;
+    private final FirestoreBulkDeleter bulkDeleter;
     private final CollectionReference shopCartsCollection;
     private final CollectionReference templatesCollection;
 
-    public ShopCartRepositoryImpl(Firestore firestore) {
+    public ShopCartRepositoryImpl(Firestore firestore, FirestoreBulkDeleter bulkDeleter) {
+        this.firestore = firestore;
+        this.bulkDeleter = bulkDeleter;
         this.shopCartsCollection = firestore.collection(SHOPCARTS_COLLECTION_NAME);
         this.templatesCollection = firestore.collection(TEMPLATES_COLLECTION_NAME);
     }
@@ -31,34 +78,230 @@ public class ShopCartRepositoryImpl implements ShopCartRepository {
     public ShopCart save(ShopCart shopCart) throws ExecutionException, InterruptedException {
         if (shopCart.getId() == null || shopCart.getId().isEmpty()) {
             // Create new document with auto-generated ID in the regular shopcarts collection
-            DocumentReference docRef = shopCartsCollection.add(shopCart).get();
+            DocumentReference docRef = shopCartsCollection.add(FirestoreCodecs.SHOP_CART.encode(shopCart)).get();
             shopCart.setId(docRef.getId()); // Set the generated ID back to the object
         } else {
             // Update existing document in the regular shopcarts collection
-            shopCartsCollection.document(shopCart.getId()).set(shopCart).get();
+            shopCartsCollection.document(shopCart.getId()).set(FirestoreCodecs.SHOP_CART.encode(shopCart)).get();
+        }
+        return shopCart;
+    }
+
+    @Override
+    public ShopCart stageSave(WriteBatch batch, ShopCart shopCart) {
+        DocumentReference docRef;
+        if (shopCart.getId() == null || shopCart.getId().isEmpty()) {
+            docRef = shopCartsCollection.document(); // Auto-generated ID, known before the batch commits
+            shopCart.setId(docRef.getId());
+        } else {
+            docRef = shopCartsCollection.document(shopCart.getId());
+        }
+        batch.set(docRef, FirestoreCodecs.SHOP_CART.encode(shopCart));
+        return shopCart;
+    }
+
+    @Override
+    public ShopCart appendItem(String cartId, GroceryItem item) throws ExecutionException, InterruptedException {
+        if (item.getId() == null || item.getId().isEmpty()) {
+            item.setId(GroceryItem.newId()); // Also keeps arrayUnion from dropping an item equal to an existing one
+        }
+        // Read first so the state transition is written with the counters; only the appended item travels over the wire
+        return applyPatch(cartId, List.of(CartPatchOperation.addItem(item)));
+    }
+
+    @Override
+    public ShopCart setItemPurchased(String cartId, String designation, boolean purchased) throws ExecutionException, InterruptedException {
+        return applyPatch(cartId, List.of(CartPatchOperation.setPurchased(designation, purchased)));
+    }
+
+    @Override
+    public void touchLastInteraction(String cartId) throws ExecutionException, InterruptedException {
+        shopCartsCollection.document(cartId).update(
+                "lastInteraction", new Date(),
+                "lastModified", FieldValue.serverTimestamp()).get();
+    }
+
+    @Override
+    public ShopCart applyPatch(String cartId, List<CartPatchOperation> operations) throws ExecutionException, InterruptedException {
+        DocumentReference docRef = shopCartsCollection.document(cartId);
+        DocumentSnapshot snapshot = docRef.get().get();
+        ShopCart shopCart = FirestoreCodecs.SHOP_CART.decode(snapshot);
+        if (shopCart == null) {
+            throw new IllegalArgumentException("ShopCart with ID " + cartId + " not found.");
         }
+        shopCart.setId(snapshot.getId());
+
+        Map<String, Object> updates = applyOperations(shopCart, operations);
+        // Compare-and-set on the update time we read: a concurrent writer makes this fail instead of being overwritten
+        WriteResult result = guardedWrite(cartId, docRef.update(updates, Precondition.updatedAt(snapshot.getUpdateTime())));
+        shopCart.setUpdateTime(result.getUpdateTime());
         return shopCart;
     }
 
+    @Override
+    public void stageUpdate(WriteBatch batch, ShopCart shopCart, Map<String, Object> fields) {
+        DocumentReference docRef = shopCartsCollection.document(shopCart.getId());
+        Map<String, Object> updates = new HashMap<>(fields);
+        updates.put("lastModified", FieldValue.serverTimestamp());
+        if (shopCart.getUpdateTime() != null) {
+            batch.update(docRef, updates, Precondition.updatedAt(shopCart.getUpdateTime()));
+        } else {
+            batch.update(docRef, updates);
+        }
+    }
+
+    /**
+     * Waits for a precondition-guarded write and reports a lost race as a {@link CartConflictException}.
+     */
+    static <T> T guardedWrite(String cartId, ApiFuture<T> write) throws ExecutionException, InterruptedException {
+        try {
+            return write.get();
+        } catch (ExecutionException e) {
+            if (FirestoreErrors.isFailedPrecondition(e)) {
+                throw new CartConflictException(cartId, null);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Applies the operations to the in-memory cart and returns the field updates that persist them.
+     * Items array elements cannot be addressed by path, so a purchased-flag change rewrites the items
+     * array; pure appends are sent as an arrayUnion of the new items only. The item counters are sent
+     * as increments of what actually changed; a cart that predates the counters gets them recounted
+     * and written in full once, under the same precondition as the rest of the write.
+     */
+    private static Map<String, Object> applyOperations(ShopCart shopCart, List<CartPatchOperation> operations) {
+        boolean backfillCounters = !shopCart.hasItemCounters();
+        if (backfillCounters) {
+            shopCart.recountItems();
+        }
+        List<GroceryItem> appended = new ArrayList<>();
+        boolean itemsChanged = false;
+        long purchasedDelta = 0;
+        for (CartPatchOperation operation : operations) {
+            switch (operation.getType()) {
+                case ADD_ITEM -> {
+                    shopCart.addItem(operation.getItem());
+                    appended.add(operation.getItem());
+                    if (operation.getItem().isPurchased()) {
+                        purchasedDelta++;
+                    }
+                }
+                case SET_PURCHASED -> {
+                    GroceryItem item = findTargetItem(shopCart, operation);
+                    if (shopCart.setItemPurchased(item, operation.getPurchased())) {
+                        purchasedDelta += operation.getPurchased() ? 1 : -1;
+                        itemsChanged = true;
+                    }
+                }
+                case TOUCH -> {
+                    // lastInteraction is always refreshed below
+                }
+            }
+        }
+
+        Map<String, Object> updates = new HashMap<>();
+        if (itemsChanged) {
+            updates.put("items", FirestoreCodecs.encodeItems(shopCart.getItems()));
+        } else if (!appended.isEmpty()) {
+            updates.put("items", FieldValue.arrayUnion(FirestoreCodecs.encodeItems(appended).toArray()));
+        }
+        if (backfillCounters) {
+            updates.put("itemCount", shopCart.getItemCount());
+            updates.put("purchasedCount", shopCart.getPurchasedCount());
+            updates.put("itemCountersTracked", true);
+        } else {
+            if (!appended.isEmpty()) {
+                updates.put("itemCount", FieldValue.increment(appended.size()));
+            }
+            if (purchasedDelta != 0) {
+                updates.put("purchasedCount", FieldValue.increment(purchasedDelta));
+            }
+        }
+        if (itemsChanged || !appended.isEmpty()) {
+            ShopCartState previousState = shopCart.getState();
+            shopCart.updateStateBasedOnItems();
+            if (shopCart.getState() != previousState) {
+                updates.put("state", shopCart.getState());
+            }
+        }
+        Date now = new Date();
+        shopCart.setLastInteraction(now);
+        updates.put("lastInteraction", now);
+        updates.put("lastModified", FieldValue.serverTimestamp());
+        return updates;
+    }
+
+    private static GroceryItem findTargetItem(ShopCart shopCart, CartPatchOperation operation) {
+        if (operation.targetsItemId()) {
+            return shopCart.findItemById(operation.getItemId())
+                    .orElseThrow(() -> new IllegalArgumentException("Grocery item with ID "
+                            + operation.getItemId() + " not found in cart " + shopCart.getId()));
+        }
+        return shopCart.findItemByDesignation(operation.getDesignation())
+                .orElseThrow(() -> new IllegalArgumentException("Grocery item with designation "
+                        + operation.getDesignation() + " not found in cart " + shopCart.getId()));
+    }
+
     @Override
     public Optional<ShopCart> findById(String id) throws ExecutionException, InterruptedException {
         DocumentSnapshot snapshot = shopCartsCollection.document(id).get().get();
         if (snapshot.exists()) {
-            ShopCart shopCart = snapshot.toObject(ShopCart.class);
+            ShopCart shopCart = FirestoreCodecs.SHOP_CART.decode(snapshot);
             if (shopCart != null) {
                 shopCart.setId(snapshot.getId()); // Ensure the ID is set from the document ID
+                shopCart.setUpdateTime(snapshot.getUpdateTime()); // Version for precondition-guarded writes
             }
             return Optional.ofNullable(shopCart);
         }
         return Optional.empty();
     }
 
+    @Override
+    public BatchReadResult<ShopCart> findAllById(Collection<String> ids) throws ExecutionException, InterruptedException {
+        // One getAll round trip for every cart instead of one blocking get() per ID
+        return BatchReads.getAllById(firestore, shopCartsCollection, ids, VERSIONED_SHOP_CART);
+    }
+
+    @Override
+    public BatchReadResult<ShopCart> findVersionsById(Collection<String> ids) throws ExecutionException, InterruptedException {
+        return BatchReads.getAllById(firestore, shopCartsCollection, ids, VERSIONED_SHOP_CART, VERSION_MASK);
+    }
+
+    @Override
+    public TimedReadResult<ShopCart> findByShopperIdModifiedAfter(String shopperId, Timestamp since)
+            throws ExecutionException, InterruptedException {
+        Query query = shopCartsCollection.whereArrayContains("shopperIds", shopperId);
+        if (since != null) {
+            // Needs the composite index (shopperIds array-contains, lastModified) (see firestore.indexes.json)
+            query = query.whereGreaterThan("lastModified", since).orderBy("lastModified");
+        }
+        QuerySnapshot snapshot = query.get().get();
+        List<ShopCart> carts = new ArrayList<>(snapshot.size());
+        for (QueryDocumentSnapshot doc : snapshot.getDocuments()) {
+            carts.add(VERSIONED_SHOP_CART.decode(doc));
+        }
+        return new TimedReadResult<>(carts, snapshot.getReadTime());
+    }
+
+    @Override
+    public ListenerRegistration addSnapshotListener(String cartId, EventListener<ShopCart> listener) {
+        return shopCartsCollection.document(cartId).addSnapshotListener((snapshot, error) -> {
+            if (error != null) {
+                listener.onEvent(null, error);
+            } else {
+                listener.onEvent(VERSIONED_SHOP_CART.decode(snapshot), null);
+            }
+        });
+    }
+
     @Override
     public List<ShopCart> findAll() throws ExecutionException, InterruptedException {
         QuerySnapshot snapshot = shopCartsCollection.get().get();
         return snapshot.getDocuments().stream()
                 .map(doc -> {
-                    ShopCart shopCart = doc.toObject(ShopCart.class);
+                    ShopCart shopCart = FirestoreCodecs.SHOP_CART.decode(doc);
                     shopCart.setId(doc.getId()); // Ensure ID is populated
                     return shopCart;
                 })
@@ -66,21 +309,92 @@ public class ShopCartRepositoryImpl implements ShopCartRepository {
                 .collect(Collectors.toList());
     }
 
+    @Override
+    public PageReadResult<ShopCart> findPage(int pageSize, String startAfterId) throws ExecutionException, InterruptedException {
+        return PageReads.readPage(shopCartsCollection, pageSize, startAfterId, FirestoreCodecs.SHOP_CART);
+    }
+
+    @Override
+    public BatchReadResult<ShopCartSummaryDTO> findSummariesById(Collection<String> ids) throws ExecutionException, InterruptedException {
+        BatchReadResult<ShopCart> carts = BatchReads.getAllById(firestore, shopCartsCollection, ids, FirestoreCodecs.SHOP_CART,
+                SUMMARY_MASK);
+        return new BatchReadResult<>(toSummaries(shopCartsCollection, carts.getFound()), carts.getMissingIds());
+    }
+
+    @Override
+    public List<ShopCartSummaryDTO> findAllSummaries() throws ExecutionException, InterruptedException {
+        return toSummaries(shopCartsCollection, findAllProjected(shopCartsCollection));
+    }
+
+    @Override
+    public PageReadResult<ShopCartSummaryDTO> findSummaryPage(int pageSize, String startAfterId)
+            throws ExecutionException, InterruptedException {
+        PageReadResult<ShopCart> page = PageReads.readPage(shopCartsCollection.select(ShopCartSummaryDTO.FIRESTORE_FIELDS),
+                pageSize, startAfterId, FirestoreCodecs.SHOP_CART);
+        return new PageReadResult<>(toSummaries(shopCartsCollection, page.getFound()), page.getNextStartAfterId());
+    }
+
+    /**
+     * Reads every document of the collection, transferring only the summary fields.
+     */
+    private static List<ShopCart> findAllProjected(CollectionReference collection) throws ExecutionException, InterruptedException {
+        QuerySnapshot snapshot = collection.select(ShopCartSummaryDTO.FIRESTORE_FIELDS).get().get();
+        List<ShopCart> carts = new ArrayList<>();
+        for (QueryDocumentSnapshot doc : snapshot.getDocuments()) {
+            ShopCart shopCart = FirestoreCodecs.SHOP_CART.decode(doc);
+            shopCart.setId(doc.getId());
+            carts.add(shopCart);
+        }
+        return carts;
+    }
+
+    /**
+     * Builds summaries from projected carts. A cart that predates the item counters cannot be counted
+     * without its items, so those carts alone are read again in full, with one batched read.
+     */
+    private List<ShopCartSummaryDTO> toSummaries(CollectionReference collection, List<ShopCart> projected)
+            throws ExecutionException, InterruptedException {
+        List<String> uncountedIds = projected.stream()
+                .filter(cart -> !cart.hasItemCounters())
+                .map(ShopCart::getId)
+                .toList();
+        Map<String, ShopCart> fullCarts = new HashMap<>();
+        if (!uncountedIds.isEmpty()) {
+            for (ShopCart cart : BatchReads.getAllById(firestore, collection, uncountedIds, FirestoreCodecs.SHOP_CART).getFound()) {
+                fullCarts.put(cart.getId(), cart);
+            }
+        }
+        List<ShopCartSummaryDTO> summaries = new ArrayList<>(projected.size());
+        for (ShopCart cart : projected) {
+            summaries.add(new ShopCartSummaryDTO(fullCarts.getOrDefault(cart.getId(), cart)));
+        }
+        return summaries;
+    }
+
     @Override
     public void deleteById(String id) throws ExecutionException, InterruptedException {
         shopCartsCollection.document(id).delete().get();
     }
 
+    @Override
+    public void stageDelete(WriteBatch batch, String id) {
+        batch.delete(shopCartsCollection.document(id));
+    }
+
     @Override
     public void deleteAll() throws ExecutionException, InterruptedException {
-        ApiFuture<QuerySnapshot> future = shopCartsCollection.get();
-        List<QueryDocumentSnapshot> documents = future.get().getDocuments();
+        deleteAll(BulkDeleteListener.NONE);
+    }
 
-        if (!documents.isEmpty()) {
-            for (QueryDocumentSnapshot doc : documents) {
-                doc.getReference().delete().get();
-            }
-        }
+    @Override
+    public BulkDeleteResult deleteAll(BulkDeleteListener listener) throws ExecutionException, InterruptedException {
+        BulkDeleteResult carts = bulkDeleter.deleteAll(shopCartsCollection, listener);
+        // Deleting a cart document leaves its items subcollection behind, so sweep every cart's items as well
+        Query allItems = firestore.collectionGroup(GroceryItemRepository.COLLECTION_NAME)
+                .orderBy(FieldPath.documentId())
+                .select(FieldPath.documentId());
+        BulkDeleteResult items = bulkDeleter.delete(allItems, listener);
+        return new BulkDeleteResult(carts.getDeleted() + items.getDeleted(), carts.getFailed() + items.getFailed());
     }
 
     // --- Template-specific methods ---
@@ -93,7 +407,7 @@ public class ShopCartRepositoryImpl implements ShopCartRepository {
      */
     public ShopCart saveTemplate(ShopCart templateCart) throws ExecutionException, InterruptedException {
         // Always create a new document for a template
-        DocumentReference docRef = templatesCollection.add(templateCart).get();
+        DocumentReference docRef = templatesCollection.add(FirestoreCodecs.SHOP_CART.encode(templateCart)).get();
         templateCart.setId(docRef.getId());
         return templateCart;
     }
@@ -106,7 +420,7 @@ public class ShopCartRepositoryImpl implements ShopCartRepository {
     public Optional<ShopCart> findTemplateById(String id) throws ExecutionException, InterruptedException {
         DocumentSnapshot snapshot = templatesCollection.document(id).get().get();
         if (snapshot.exists()) {
-            ShopCart templateCart = snapshot.toObject(ShopCart.class);
+            ShopCart templateCart = FirestoreCodecs.SHOP_CART.decode(snapshot);
             if (templateCart != null) {
                 templateCart.setId(snapshot.getId());
             }
@@ -123,11 +437,16 @@ public class ShopCartRepositoryImpl implements ShopCartRepository {
         QuerySnapshot snapshot = templatesCollection.get().get();
         return snapshot.getDocuments().stream()
                 .map(doc -> {
-                    ShopCart template = doc.toObject(ShopCart.class);
+                    ShopCart template = FirestoreCodecs.SHOP_CART.decode(doc);
                     template.setId(doc.getId());
                     return template;
                 })
                 .filter(java.util.Objects::nonNull) // Filter out any potential null objects
                 .collect(Collectors.toList());
     }
+
+    @Override
+    public List<ShopCartSummaryDTO> findAllTemplateSummaries() throws ExecutionException, InterruptedException {
+        return toSummaries(templatesCollection, findAllProjected(templatesCollection));
+    }
 }
@@ -1,7 +1,11 @@
 package com.supershoppercart.repositories;
 
+import com.google.cloud.firestore.WriteBatch;
 import com.supershoppercart.models.Shopper;
+import com.supershoppercart.utils.BulkDeleteListener;
+import com.supershoppercart.utils.BulkDeleteResult;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
@@ -32,6 +36,16 @@ public interface ShopperRepository {
      */
     Optional<Shopper> findById(String id) throws ExecutionException, InterruptedException;
 
+    /**
+     * Finds several Shoppers by their document IDs in a single batched read.
+     * Duplicate IDs are read once; found shoppers keep the order of the given IDs.
+     * @param ids The IDs of the Shoppers.
+     * @return The shoppers that were found, plus the IDs that have no matching document.
+     * @throws ExecutionException If an execution error occurs during the Firestore operation.
+     * @throws InterruptedException If the current thread is interrupted while waiting.
+     */
+    BatchReadResult<Shopper> findAllById(Collection<String> ids) throws ExecutionException, InterruptedException;
+
     /**
      * Finds a Shopper by their email address.
      * @param email The email address of the Shopper.
@@ -49,6 +63,36 @@ public interface ShopperRepository {
      */
     List<Shopper> findAll() throws ExecutionException, InterruptedException;
 
+    /**
+     * Retrieves one page of Shoppers in document ID order.
+     * @param pageSize The maximum number of shoppers to return.
+     * @param startAfterId The last shopper ID of the previous page, or null for the first page.
+     * @return The shoppers of the page, and the ID to start the next page after.
+     * @throws ExecutionException If an execution error occurs during the Firestore operation.
+     * @throws InterruptedException If the current thread is interrupted while waiting.
+     */
+    PageReadResult<Shopper> findPage(int pageSize, String startAfterId) throws ExecutionException, InterruptedException;
+
+    /**
+     * Stages adding a cart ID to the shopper's shopCartIds with arrayUnion, without rewriting the rest of the document.
+     * Nothing is written until the batch is committed, and the commit fails if the shopper does not exist.
+     * The shopper's cached principal is left alone: the caller invalidates it once the batch has committed.
+     * @param batch The batch to add the update to.
+     * @param shopperId The ID of the Shopper.
+     * @param cartId The cart ID to add.
+     */
+    void stageAddShopCartId(WriteBatch batch, String shopperId, String cartId);
+
+    /**
+     * Stages removing a cart ID from the shopper's shopCartIds with arrayRemove, without rewriting the rest of the document.
+     * Nothing is written until the batch is committed, and the commit fails if the shopper does not exist.
+     * The shopper's cached principal is left alone: the caller invalidates it once the batch has committed.
+     * @param batch The batch to add the update to.
+     * @param shopperId The ID of the Shopper.
+     * @param cartId The cart ID to remove.
+     */
+    void stageRemoveShopCartId(WriteBatch batch, String shopperId, String cartId);
+
     /**
      * Deletes a Shopper by its document ID.
      * @param id The ID of the Shopper to delete.
@@ -65,6 +109,16 @@ public interface ShopperRepository {
      */
     void deleteAll() throws ExecutionException, InterruptedException;
 
+    /**
+     * Clears all documents from the Shopper collection page by page through a BulkWriter,
+     * reporting progress after each page.
+     * @param listener Called after each page of deletes has been flushed.
+     * @return The number of deleted and failed documents.
+     * @throws ExecutionException If an execution error occurs during the Firestore operation.
+     * @throws InterruptedException If the current thread is interrupted while waiting.
+     */
+    BulkDeleteResult deleteAll(BulkDeleteListener listener) throws ExecutionException, InterruptedException;
+
     /**
      * @param email
      * @return
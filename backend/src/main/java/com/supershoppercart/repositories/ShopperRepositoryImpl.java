@@ -1,10 +1,15 @@
 package com.supershoppercart.repositories;
 
-import com.google.api.core.ApiFuture;
 import com.google.cloud.firestore.*;
+import com.supershoppercart.codecs.FirestoreCodecs;
 import com.supershoppercart.models.Shopper;
+import com.supershoppercart.security.ShopperPrincipalCache;
+import com.supershoppercart.utils.BulkDeleteListener;
+import com.supershoppercart.utils.BulkDeleteResult;
+import com.supershoppercart.utils.FirestoreBulkDeleter;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
@@ -17,22 +22,31 @@ import java.util.stream.Collectors;
 @Repository
 public class ShopperRepositoryImpl implements ShopperRepository {
 
+    private static final String SHOP_CART_IDS_FIELD = "shopCartIds";
+
+    private final Firestore firestore;
+    private final FirestoreBulkDeleter bulkDeleter;
     private final CollectionReference shoppersCollection;
+    private final ShopperPrincipalCache principalCache;
 
-    public ShopperRepositoryImpl(Firestore firestore) {
+    public ShopperRepositoryImpl(Firestore firestore, FirestoreBulkDeleter bulkDeleter, ShopperPrincipalCache principalCache) {
+        this.firestore = firestore;
+        this.bulkDeleter = bulkDeleter;
         this.shoppersCollection = firestore.collection(COLLECTION_NAME);
+        this.principalCache = principalCache;
     }
 
     @Override
     public Shopper save(Shopper shopper) throws ExecutionException, InterruptedException {
         if (shopper.getId() == null || shopper.getId().isEmpty()) {
             // Create new document with auto-generated ID
-            DocumentReference docRef = shoppersCollection.add(shopper).get();
+            DocumentReference docRef = shoppersCollection.add(FirestoreCodecs.SHOPPER.encode(shopper)).get();
             shopper.setId(docRef.getId()); // Set the generated ID back to the object
         } else {
             // Update existing document
-            shoppersCollection.document(shopper.getId()).set(shopper).get();
+            shoppersCollection.document(shopper.getId()).set(FirestoreCodecs.SHOPPER.encode(shopper)).get();
         }
+        principalCache.invalidate(shopper.getId()); // Authenticated principal must not outlive the write
         return shopper;
     }
 
@@ -40,23 +54,22 @@ public class ShopperRepositoryImpl implements ShopperRepository {
     public Optional<Shopper> findById(String id) throws ExecutionException, InterruptedException {
         DocumentSnapshot snapshot = shoppersCollection.document(id).get().get();
         if (snapshot.exists()) {
-            Shopper shopper = snapshot.toObject(Shopper.class);
-            if (shopper != null) {
-                shopper.setId(snapshot.getId()); // Ensure ID is set
-            }
-            return Optional.ofNullable(shopper);
+            return Optional.ofNullable(FirestoreCodecs.SHOPPER.decode(snapshot));
         }
         return Optional.empty();
     }
 
+    @Override
+    public BatchReadResult<Shopper> findAllById(Collection<String> ids) throws ExecutionException, InterruptedException {
+        return BatchReads.getAllById(firestore, shoppersCollection, ids, FirestoreCodecs.SHOPPER);
+    }
+
     @Override
     public Optional<Shopper> findByEmail(String email) throws ExecutionException, InterruptedException {
         QuerySnapshot snapshot = shoppersCollection.whereEqualTo("email", email).limit(1).get().get();
         if (!snapshot.isEmpty()) {
             DocumentSnapshot doc = snapshot.getDocuments().get(0);
-            Shopper shopper = doc.toObject(Shopper.class);
-            shopper.setId(doc.getId());
-            return Optional.of(shopper);
+            return Optional.of(FirestoreCodecs.SHOPPER.decode(doc));
         }
         return Optional.empty();
     }
@@ -65,26 +78,43 @@ public class ShopperRepositoryImpl implements ShopperRepository {
     public List<Shopper> findAll() throws ExecutionException, InterruptedException {
         QuerySnapshot snapshot = shoppersCollection.get().get();
         return snapshot.getDocuments().stream()
-                .map(doc -> {
-                    Shopper shopper = doc.toObject(Shopper.class);
-                    shopper.setId(doc.getId());
-                    return shopper;
-                })
+                .map(FirestoreCodecs.SHOPPER::decode)
                 .filter(obj -> true)
                 .collect(Collectors.toList());
     }
 
+    @Override
+    public PageReadResult<Shopper> findPage(int pageSize, String startAfterId) throws ExecutionException, InterruptedException {
+        return PageReads.readPage(shoppersCollection, pageSize, startAfterId, FirestoreCodecs.SHOPPER);
+    }
+
+    @Override
+    public void stageAddShopCartId(WriteBatch batch, String shopperId, String cartId) {
+        batch.update(shoppersCollection.document(shopperId), SHOP_CART_IDS_FIELD, FieldValue.arrayUnion(cartId));
+    }
+
+    @Override
+    public void stageRemoveShopCartId(WriteBatch batch, String shopperId, String cartId) {
+        batch.update(shoppersCollection.document(shopperId), SHOP_CART_IDS_FIELD, FieldValue.arrayRemove(cartId));
+    }
+
     @Override
     public void deleteById(String id) throws ExecutionException, InterruptedException {
         shoppersCollection.document(id).delete().get();
+        principalCache.invalidate(id);
     }
 
     @Override
     public void deleteAll() throws ExecutionException, InterruptedException {
-        ApiFuture<QuerySnapshot> snapshot = shoppersCollection.get();
-        List<QueryDocumentSnapshot> docs = snapshot.get().getDocuments();
-        for (DocumentSnapshot doc : docs) {
-            doc.getReference().delete().get();
+        deleteAll(BulkDeleteListener.NONE);
+    }
+
+    @Override
+    public BulkDeleteResult deleteAll(BulkDeleteListener listener) throws ExecutionException, InterruptedException {
+        try {
+            return bulkDeleter.deleteAll(shoppersCollection, listener);
+        } finally {
+            principalCache.invalidateAll();
         }
     }
 
@@ -0,0 +1,24 @@
+package com.supershoppercart.repositories;
+
+import com.google.cloud.Timestamp;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Result of a query together with the time Firestore read it at. Every write committed up to the read time
+ * is reflected in the result, so the read time can serve as the watermark of a later "changed since" query.
+ *
+ * @param <T> The entity type that was read.
+ */
+@Getter
+public class TimedReadResult<T> {
+
+    private final List<T> found;
+    private final Timestamp readTime;
+
+    public TimedReadResult(List<T> found, Timestamp readTime) {
+        this.found = List.copyOf(found);
+        this.readTime = readTime;
+    }
+}
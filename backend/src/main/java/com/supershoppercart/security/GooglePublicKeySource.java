@@ -0,0 +1,23 @@
+package com.supershoppercart.security;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.PublicKey;
+import java.util.List;
+
+/**
+ * Source of the public keys used to check Google ID token signatures.
+ * GoogleTokenVerifier refreshes from it in the background, so implementations
+ * may block on network I/O. Tests can plug in a local stand-in key set.
+ */
+@FunctionalInterface
+public interface GooglePublicKeySource {
+
+    /**
+     * Fetches the current signing keys.
+     * @return The public keys currently published by the issuer.
+     * @throws IOException If the key set cannot be read.
+     * @throws GeneralSecurityException If a key in the set cannot be decoded.
+     */
+    List<PublicKey> fetchPublicKeys() throws IOException, GeneralSecurityException;
+}
@@ -1,40 +1,115 @@
 package com.supershoppercart.security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import com.google.api.client.googleapis.auth.oauth2.GoogleIdToken;
-import com.google.api.client.googleapis.auth.oauth2.GoogleIdTokenVerifier;
-import com.google.api.client.http.javanet.NetHttpTransport;
+import com.google.api.client.json.JsonFactory;
 import com.google.api.client.json.gson.GsonFactory;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
-import javax.annotation.PostConstruct;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.PublicKey;
+import java.time.Duration;
+import java.util.Base64;
 import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Verifies Google ID tokens against an in-memory key set.
+ * Keys are refreshed proactively on a background thread so certificate fetches never sit on
+ * the login path, verified tokens are cached briefly by digest, and asynchronous verification
+ * runs on a dedicated bounded executor instead of the common ForkJoinPool.
+ */
 @Component
 public class GoogleTokenVerifier {
 
     private static final Logger logger = LoggerFactory.getLogger(GoogleTokenVerifier.class);
 
+    private static final JsonFactory JSON_FACTORY = GsonFactory.getDefaultInstance();
+    private static final List<String> GOOGLE_ISSUERS = List.of("accounts.google.com", "https://accounts.google.com");
+    private static final long ACCEPTABLE_TIME_SKEW_SECONDS = 300;
+
     @Value("${oauth.id}")
     private String googleClientId;
 
     @Value("${app.env:prod}")
     private String appEnv;
 
-    private GoogleIdTokenVerifier verifier;
+    @Value("${oauth.google.keys.refresh-interval:PT1H}")
+    private Duration keyRefreshInterval = Duration.ofHours(1);
+
+    @Value("${oauth.google.verified-cache.ttl:PT5M}")
+    private Duration verifiedCacheTtl = Duration.ofMinutes(5);
+
+    @Value("${oauth.google.verified-cache.max-size:10000}")
+    private long verifiedCacheSize = 10_000;
+
+    @Value("${oauth.google.executor.threads:4}")
+    private int executorThreads = 4;
+
+    @Value("${oauth.google.executor.queue-capacity:200}")
+    private int executorQueueCapacity = 200;
+
+    private final GooglePublicKeySource keySource;
+
+    private volatile List<PublicKey> publicKeys = Collections.emptyList();
+    private Cache<String, GoogleIdToken.Payload> verifiedTokens;
+    private ThreadPoolExecutor verificationExecutor;
+    private ScheduledExecutorService keyRefresher;
+
+    public GoogleTokenVerifier(GooglePublicKeySource keySource) {
+        this.keySource = keySource;
+    }
 
     @PostConstruct
     public void init() {
-        verifier = new GoogleIdTokenVerifier.Builder(new NetHttpTransport(), GsonFactory.getDefaultInstance())
-                .setAudience(Collections.singletonList(googleClientId))
+        verifiedTokens = Caffeine.newBuilder()
+                .maximumSize(verifiedCacheSize)
+                .expireAfterWrite(verifiedCacheTtl)
+                .recordStats()
                 .build();
+
+        // Bounded pool: when the queue is full the caller verifies inline rather than piling up work
+        verificationExecutor = new ThreadPoolExecutor(
+                executorThreads, executorThreads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(executorQueueCapacity),
+                namedDaemonThreads("google-token-verifier"),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+
+        refreshKeys();
+        keyRefresher = Executors.newSingleThreadScheduledExecutor(namedDaemonThreads("google-key-refresher"));
+        long intervalMillis = keyRefreshInterval.toMillis();
+        keyRefresher.scheduleAtFixedRate(this::refreshKeys, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+
         logger.info("GoogleTokenVerifier initialized with client ID: {}", googleClientId);
     }
 
+    @PreDestroy
+    public void shutdown() {
+        if (keyRefresher != null) {
+            keyRefresher.shutdownNow();
+        }
+        if (verificationExecutor != null) {
+            verificationExecutor.shutdown();
+        }
+    }
+
     public GoogleIdToken.Payload verify(String idTokenString) {
         try {
             if ("TEST_TOKEN".equals(idTokenString) && isDevEnvironment()) {
@@ -44,26 +119,107 @@ public class GoogleTokenVerifier {
                 fakePayload.set("name", "Test User");
                 return fakePayload;
             }
-            GoogleIdToken idToken = verifier.verify(idTokenString);
-            if (idToken != null) {
+            if (idTokenString == null || idTokenString.isBlank()) {
+                logger.warn("Token verification failed - empty token");
+                return null;
+            }
+
+            String digest = digest(idTokenString);
+            GoogleIdToken.Payload cached = getCachedPayload(digest);
+            if (cached != null) {
+                return cached;
+            }
+
+            GoogleIdToken idToken = GoogleIdToken.parse(JSON_FACTORY, idTokenString);
+            if (isValid(idToken)) {
                 GoogleIdToken.Payload payload = idToken.getPayload();
+                verifiedTokens.put(digest, payload);
                 logger.debug("Token verified successfully for user: {}", payload.getEmail());
                 return payload;
             } else {
                 logger.warn("Token verification failed - invalid token");
                 return null;
             }
-        } catch (GeneralSecurityException | IOException e) {
+        } catch (GeneralSecurityException | IOException | IllegalArgumentException e) {
             logger.error("Exception during token verification", e);
             return null;
         }
     }
 
     public CompletableFuture<GoogleIdToken.Payload> verifyAsync(String idTokenString) {
-        return CompletableFuture.supplyAsync(() -> verify(idTokenString));
+        return CompletableFuture.supplyAsync(() -> verify(idTokenString), verificationExecutor);
+    }
+
+    /**
+     * Replaces the in-memory key set with a fresh copy from the key source.
+     * On failure the previous keys are kept, so a transient outage does not break logins.
+     */
+    void refreshKeys() {
+        try {
+            List<PublicKey> fetched = keySource.fetchPublicKeys();
+            if (fetched == null || fetched.isEmpty()) {
+                logger.warn("Google public key source returned no keys; keeping {} cached keys", publicKeys.size());
+                return;
+            }
+            publicKeys = List.copyOf(fetched);
+            logger.debug("Refreshed {} Google public keys", fetched.size());
+        } catch (Exception e) {
+            logger.warn("Failed to refresh Google public keys; keeping {} cached keys: {}", publicKeys.size(), e.getMessage());
+        }
+    }
+
+    public CacheStats getVerifiedTokenCacheStats() {
+        return verifiedTokens.stats();
+    }
+
+    private GoogleIdToken.Payload getCachedPayload(String digest) {
+        GoogleIdToken.Payload cached = verifiedTokens.getIfPresent(digest);
+        if (cached == null) {
+            return null;
+        }
+        Long expiresAt = cached.getExpirationTimeSeconds();
+        if (expiresAt != null && expiresAt * 1000 + ACCEPTABLE_TIME_SKEW_SECONDS * 1000 < System.currentTimeMillis()) {
+            verifiedTokens.invalidate(digest);
+            return null;
+        }
+        return cached;
+    }
+
+    private boolean isValid(GoogleIdToken idToken) throws GeneralSecurityException {
+        if (!idToken.verifyIssuer(GOOGLE_ISSUERS)
+                || !idToken.verifyAudience(Collections.singletonList(googleClientId))
+                || !idToken.verifyTime(System.currentTimeMillis(), ACCEPTABLE_TIME_SKEW_SECONDS)) {
+            return false;
+        }
+        List<PublicKey> keys = publicKeys;
+        if (keys.isEmpty()) {
+            // Only reachable if every background refresh has failed so far
+            refreshKeys();
+            keys = publicKeys;
+        }
+        for (PublicKey key : keys) {
+            if (idToken.verifySignature(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String digest(String token) throws GeneralSecurityException {
+        byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+        return Base64.getEncoder().encodeToString(hash);
+    }
+
+    private static ThreadFactory namedDaemonThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
     }
 
     private boolean isDevEnvironment() {
         return "dev".equalsIgnoreCase(appEnv) || "development".equalsIgnoreCase(appEnv);
     }
-}
\ No newline at end of file
+}
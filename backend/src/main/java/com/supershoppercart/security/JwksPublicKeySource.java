@@ -0,0 +1,61 @@
+package com.supershoppercart.security;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.net.URI;
+import java.net.URLConnection;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.PublicKey;
+import java.security.spec.RSAPublicKeySpec;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Reads RSA signing keys from a JWKS document.
+ * Defaults to Google's published key set; any URL (including file:) can be configured,
+ * which allows running the verifier against a local stand-in JWKS.
+ */
+@Component
+public class JwksPublicKeySource implements GooglePublicKeySource {
+
+    private static final int TIMEOUT_MILLIS = 5000;
+
+    private final String jwksUri;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public JwksPublicKeySource(@Value("${oauth.google.jwks-uri:https://www.googleapis.com/oauth2/v3/certs}") String jwksUri) {
+        this.jwksUri = jwksUri;
+    }
+
+    @Override
+    public List<PublicKey> fetchPublicKeys() throws IOException, GeneralSecurityException {
+        URLConnection connection = URI.create(jwksUri).toURL().openConnection();
+        connection.setConnectTimeout(TIMEOUT_MILLIS);
+        connection.setReadTimeout(TIMEOUT_MILLIS);
+
+        JsonNode root;
+        try (InputStream in = connection.getInputStream()) {
+            root = objectMapper.readTree(in);
+        }
+
+        KeyFactory keyFactory = KeyFactory.getInstance("RSA");
+        List<PublicKey> keys = new ArrayList<>();
+        for (JsonNode key : root.path("keys")) {
+            if (!"RSA".equals(key.path("kty").asText())) {
+                continue; // Google only signs ID tokens with RS256
+            }
+            BigInteger modulus = new BigInteger(1, Base64.getUrlDecoder().decode(key.path("n").asText()));
+            BigInteger exponent = new BigInteger(1, Base64.getUrlDecoder().decode(key.path("e").asText()));
+            keys.add(keyFactory.generatePublic(new RSAPublicKeySpec(modulus, exponent)));
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,76 @@
+package com.supershoppercart.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.supershoppercart.models.Shopper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Bounded, TTL-based in-process cache of authenticated Shopper principals.
+ * Lets JwtAuthFilter skip the Firestore read for shoppers seen recently.
+ * Entries are invalidated by ShopperRepository whenever a shopper is saved or deleted, and by
+ * ShopCartService once a batch changing a shopper's cart list has committed,
+ * so the TTL only bounds staleness for writes made outside this instance.
+ */
+@Component
+public class ShopperPrincipalCache {
+
+    static final String CACHE_NAME = "shopperPrincipals";
+
+    private final Cache<String, Shopper> cache;
+
+    public ShopperPrincipalCache(
+            MeterRegistry meterRegistry,
+            @Value("${security.principal-cache.max-size:10000}") long maxSize,
+            @Value("${security.principal-cache.ttl:PT5M}") Duration ttl
+    ) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    /**
+     * @param shopperId The ID of the shopper.
+     * @return The cached Shopper, or null if absent or expired.
+     */
+    public Shopper get(String shopperId) {
+        return cache.getIfPresent(shopperId);
+    }
+
+    /**
+     * Caches a shopper under its ID. Shoppers without an ID are ignored.
+     * @param shopper The Shopper to cache.
+     */
+    public void put(Shopper shopper) {
+        if (shopper != null && shopper.getId() != null) {
+            cache.put(shopper.getId(), shopper);
+        }
+    }
+
+    public void invalidate(String shopperId) {
+        if (shopperId != null) {
+            cache.invalidate(shopperId);
+        }
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+}
@@ -2,6 +2,7 @@ package com.supershoppercart.security.filter;
 
 import com.supershoppercart.models.Shopper;
 import com.supershoppercart.repositories.ShopperRepository;
+import com.supershoppercart.security.ShopperPrincipalCache;
 import com.supershoppercart.services.JwtTokenService;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
@@ -25,6 +26,7 @@ public class JwtAuthFilter extends OncePerRequestFilter {
     private final ShopperRepository shopperRepository;
     private final JwtTokenService jwtTokenService;
     private final Environment environment;              // 1. Add Spring Environment
+    private final ShopperPrincipalCache principalCache;
 
     private static final String DEV_MAGIC_TOKEN = "DEV_MAGIC_TOKEN";
     private static final String DEV_PROFILE = "dev";    // or "local" as needed
@@ -32,11 +34,13 @@ public class JwtAuthFilter extends OncePerRequestFilter {
     public JwtAuthFilter(
             ShopperRepository shopperRepository,
             JwtTokenService jwtTokenService,
-            Environment environment                      // 2. Add to constructor
+            Environment environment,                     // 2. Add to constructor
+            ShopperPrincipalCache principalCache
     ) {
         this.shopperRepository = shopperRepository;
         this.jwtTokenService = jwtTokenService;
         this.environment = environment;
+        this.principalCache = principalCache;
     }
 
     @Override
@@ -75,10 +79,11 @@ public class JwtAuthFilter extends OncePerRequestFilter {
 
             if (SecurityContextHolder.getContext().getAuthentication() == null) {
                 try {
-                    if (jwtTokenService.isTokenValid(jwt)) {
-                        String shopperId = jwtTokenService.extractShopperId(jwt);
+                    JwtTokenService.VerifiedToken verifiedToken = jwtTokenService.verifyToken(jwt);
+                    if (verifiedToken != null) {
+                        String shopperId = verifiedToken.getShopperId();
                         if (shopperId != null) {
-                            Optional<Shopper> shopperOptional = shopperRepository.findById(shopperId);
+                            Optional<Shopper> shopperOptional = findShopper(shopperId);
                             if (shopperOptional.isPresent()) {
                                 Shopper shopper = shopperOptional.get();
                                 UsernamePasswordAuthenticationToken authentication =
@@ -117,6 +122,17 @@ public class JwtAuthFilter extends OncePerRequestFilter {
         filterChain.doFilter(request, response);
     }
 
+    // Helper to resolve the principal, hitting Firestore only on a cache miss
+    private Optional<Shopper> findShopper(String shopperId) throws ExecutionException, InterruptedException {
+        Shopper cached = principalCache.get(shopperId);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        Optional<Shopper> shopperOptional = shopperRepository.findById(shopperId);
+        shopperOptional.ifPresent(principalCache::put);
+        return shopperOptional;
+    }
+
     // Helper to check if running in dev profile
     private boolean isDevProfileActive() {
         return Arrays.asList(environment.getActiveProfiles()).contains(DEV_PROFILE);
@@ -6,6 +6,8 @@ import com.supershoppercart.models.Shopper;
 import com.supershoppercart.repositories.ShopCartRepository;
 import com.supershoppercart.repositories.ShopperRepository;
 import com.supershoppercart.services.ShopCartService;
+import com.supershoppercart.utils.BulkDeleteListener;
+import com.supershoppercart.utils.BulkDeleteResult;
 // Import Qualifier
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.context.annotation.Profile;
@@ -51,12 +53,12 @@ public class ShopCartSeeder implements CommandLineRunner {
         logger.info("Clearing existing data from Firestore emulator...");
         try {
             // Clear ShopCarts first, as they contain shopper IDs (though not strictly necessary for deletion order)
-            shopCartRepository.deleteAll(); // Requires this method in ShopCartRepository
-            logger.info("All ShopCart documents cleared.");
+            BulkDeleteResult carts = shopCartRepository.deleteAll(progressLogger("ShopCart"));
+            logger.info("All ShopCart documents cleared ({} deleted).", carts.getDeleted());
 
             // Then clear Shoppers
-            shopperRepository.deleteAll(); // Requires this method in ShopperRepository
-            logger.info("All Shopper documents cleared.");
+            BulkDeleteResult shoppers = shopperRepository.deleteAll(progressLogger("Shopper"));
+            logger.info("All Shopper documents cleared ({} deleted).", shoppers.getDeleted());
         } catch (ExecutionException | InterruptedException e) {
             logger.error("Error clearing existing data: {}", e.getMessage());
             throw new RuntimeException("Failed to clear existing data before seeding", e);
@@ -140,4 +142,8 @@ public class ShopCartSeeder implements CommandLineRunner {
             throw new RuntimeException("Failed to seed shop carts", e);
         }
     }
+
+    private static BulkDeleteListener progressLogger(String label) {
+        return (deleted, failed, lastDocument) -> logger.info("Clearing {} documents: {} deleted, {} failed so far", label, deleted, failed);
+    }
 }
\ No newline at end of file
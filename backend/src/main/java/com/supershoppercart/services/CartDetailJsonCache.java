@@ -0,0 +1,177 @@
+package com.supershoppercart.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.supershoppercart.dtos.ShopCartDetailDTO;
+import com.supershoppercart.enums.ContentCoding;
+import com.supershoppercart.models.ShopCart;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.time.Duration;
+import java.util.EnumSet;
+import java.util.List;
+
+/**
+ * Bounded in-process cache of the serialized JSON of {@link ShopCartDetailDTO}, keyed by cart ID.
+ * Each entry remembers the cart version it was built from, the Firestore update time, and is only served
+ * for a cart read at that same version, so a shared cart viewed by several members is serialized once per change.
+ * ShopCartService invalidates a cart's entry whenever it writes the cart; the version check covers writes
+ * made outside this instance. An entry's compressed variants are built the first time a client accepts them,
+ * and then served as they are until the entry is replaced.
+ */
+@Component
+public class CartDetailJsonCache {
+
+    static final String CACHE_NAME = "cartDetailJson";
+
+    private static final class Entry {
+        private final String version;
+        private final byte[] json;
+        private volatile PrecompressedBody compressed; // Built on first use; racing builders produce equal bodies
+
+        private Entry(String version, byte[] json) {
+            this.version = version;
+            this.json = json;
+        }
+    }
+
+    private final Cache<String, Entry> cache;
+    private final ObjectWriter detailWriter;
+    private final ResponseCompressor compressor;
+
+    public CartDetailJsonCache(
+            ObjectMapper objectMapper,
+            ResponseCompressor compressor,
+            MeterRegistry meterRegistry,
+            @Value("${carts.detail-json-cache.max-size:5000}") long maxSize,
+            @Value("${carts.detail-json-cache.ttl:PT10M}") Duration ttl
+    ) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterAccess(ttl)
+                .recordStats()
+                .build();
+        this.detailWriter = objectMapper.writerFor(ShopCartDetailDTO.class);
+        this.compressor = compressor;
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+    }
+
+    /**
+     * Returns the JSON of the cart's detail DTO, serializing it only if no entry exists for the cart's version.
+     * Carts without a known version, such as ones that were never read from Firestore, are serialized and not cached.
+     *
+     * @param cart A cart as read from Firestore, with its items attached.
+     * @return The UTF-8 JSON bytes; callers must not modify them.
+     */
+    public byte[] getJson(ShopCart cart) throws JsonProcessingException {
+        Entry entry = entryFor(cart);
+        return entry != null ? entry.json : serialize(cart);
+    }
+
+    /**
+     * Returns the JSON of the cart's detail DTO in the coding the client prefers, compressing the cached entry
+     * only once per cart version.
+     *
+     * @param cart           A cart as read from Firestore, with its items attached.
+     * @param acceptEncoding The request's Accept-Encoding header, or null.
+     */
+    public EncodedBody getEncodedJson(ShopCart cart, String acceptEncoding) throws JsonProcessingException {
+        Entry entry = entryFor(cart);
+        if (entry == null) {
+            return compressor.encode(serialize(cart), acceptEncoding);
+        }
+        if (ContentCoding.negotiate(acceptEncoding, EnumSet.allOf(ContentCoding.class)) == ContentCoding.IDENTITY) {
+            return EncodedBody.identity(entry.json); // Nothing to build variants for
+        }
+        PrecompressedBody compressed = entry.compressed;
+        if (compressed == null) {
+            compressed = compressor.precompress(entry.json, ResponseCompressor.Effort.CACHED);
+            entry.compressed = compressed;
+        }
+        return compressed.select(acceptEncoding);
+    }
+
+    /**
+     * The cached entry for the cart's version, created if missing; null for carts without a known version.
+     */
+    private Entry entryFor(ShopCart cart) throws JsonProcessingException {
+        String version = versionOf(cart);
+        if (version == null || cart.getId() == null) {
+            return null;
+        }
+        Entry entry = cache.getIfPresent(cart.getId());
+        if (entry != null && entry.version.equals(version)) {
+            return entry;
+        }
+        entry = new Entry(version, serialize(cart));
+        cache.put(cart.getId(), entry);
+        return entry;
+    }
+
+    /**
+     * Returns a JSON array of the carts' detail DTOs, in the given order, built from the cached entries.
+     */
+    public byte[] getJsonArray(List<ShopCart> carts) throws JsonProcessingException {
+        byte[][] elements = new byte[carts.size()][];
+        int length = 2 + Math.max(0, carts.size() - 1);
+        for (int i = 0; i < elements.length; i++) {
+            elements[i] = getJson(carts.get(i));
+            length += elements[i].length;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(length);
+        out.write('[');
+        for (int i = 0; i < elements.length; i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            out.writeBytes(elements[i]);
+        }
+        out.write(']');
+        return out.toByteArray();
+    }
+
+    /**
+     * Returns the JSON array of {@link #getJsonArray(List)} in the coding the client prefers. A shopper's list is
+     * rarely requested twice at the same versions, so it is compressed per request rather than cached.
+     */
+    public EncodedBody getEncodedJsonArray(List<ShopCart> carts, String acceptEncoding) throws JsonProcessingException {
+        return compressor.encode(getJsonArray(carts), acceptEncoding);
+    }
+
+    public void invalidate(String cartId) {
+        if (cartId != null) {
+            cache.invalidate(cartId);
+        }
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    private byte[] serialize(ShopCart cart) throws JsonProcessingException {
+        return detailWriter.writeValueAsBytes(new ShopCartDetailDTO(cart.getId(), cart));
+    }
+
+    /**
+     * The version a cached entry must match: the Firestore update time when the cart was read from Firestore.
+     */
+    static String versionOf(ShopCart cart) {
+        return cart.getUpdateTime() != null ? cart.getUpdateTime().toString() : null;
+    }
+}
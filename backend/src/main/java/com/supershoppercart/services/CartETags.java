@@ -0,0 +1,107 @@
+package com.supershoppercart.services;
+
+import com.supershoppercart.enums.ContentCoding;
+import com.supershoppercart.models.ShopCart;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Strong entity tags for cart responses, derived from the carts' IDs and Firestore update times.
+ * Any write to a cart changes its update time, and adding or removing a cart changes the ID list,
+ * so the tag changes whenever the response would. The tag can therefore be computed from a read
+ * of the versions alone, before deciding whether the carts themselves need to be loaded.
+ */
+public final class CartETags {
+
+    private static final String CODING_SEPARATOR = "--";
+
+    private CartETags() {
+    }
+
+    /**
+     * @param representation Distinguishes responses built from the same carts, e.g. the full and summary views.
+     * @param carts The carts in response order, each with its update time.
+     * @return The quoted strong ETag.
+     */
+    public static String of(String representation, List<ShopCart> carts) {
+        MessageDigest digest = sha256();
+        update(digest, representation);
+        for (ShopCart cart : carts) {
+            update(digest, cart.getId() != null ? cart.getId() : "");
+            update(digest, cart.getUpdateTime() != null ? cart.getUpdateTime().toString() : "");
+        }
+        byte[] hash = digest.digest();
+        return '"' + Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(hash, 16)) + '"';
+    }
+
+    /**
+     * The tag of another encoding of the same response, e.g. protobuf instead of JSON.
+     * Strong tags promise identical bytes, so each encoding needs a tag of its own.
+     *
+     * @param eTag    A quoted tag returned by {@link #of(String, List)}.
+     * @param variant A short name of the encoding.
+     */
+    public static String variant(String eTag, String variant) {
+        return eTag.substring(0, eTag.length() - 1) + '.' + variant + '"';
+    }
+
+    /**
+     * The tag of a content-coded body. Strong tags promise identical bytes, so a compressed body gets its own tag;
+     * {@link #matches} strips the suffix again, since every coding of a body is equally current.
+     *
+     * @param eTag   A quoted tag.
+     * @param coding The coding the body is sent in.
+     */
+    public static String withCoding(String eTag, ContentCoding coding) {
+        return coding == ContentCoding.IDENTITY ? eTag : eTag.substring(0, eTag.length() - 1) + CODING_SEPARATOR + coding.token() + '"';
+    }
+
+    /**
+     * Evaluates an If-None-Match header against the current tag, using the weak comparison
+     * that RFC 9110 prescribes for If-None-Match. A tag of any content coding of the current body matches.
+     *
+     * @return true if the client's copy is current and a 304 can be returned.
+     */
+    public static boolean matches(String ifNoneMatch, String eTag) {
+        if (ifNoneMatch == null || eTag == null) {
+            return false;
+        }
+        String current = opaqueTag(eTag);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.equals("*") || opaqueTag(tag).equals(current)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String opaqueTag(String tag) {
+        String opaque = tag.startsWith("W/") ? tag.substring(2) : tag;
+        for (ContentCoding coding : ContentCoding.values()) {
+            String suffix = CODING_SEPARATOR + coding.token() + '"';
+            if (coding != ContentCoding.IDENTITY && opaque.endsWith(suffix)) {
+                return opaque.substring(0, opaque.length() - suffix.length()) + '"';
+            }
+        }
+        return opaque;
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        digest.update(value.getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) 0); // Separator, so ("ab", "c") and ("a", "bc") hash differently
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e); // Required of every JVM
+        }
+    }
+}
@@ -0,0 +1,527 @@
+package com.supershoppercart.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.google.cloud.firestore.FirestoreException;
+import com.google.cloud.firestore.ListenerRegistration;
+import com.supershoppercart.dtos.CartEventDTO;
+import com.supershoppercart.enums.CartEventType;
+import com.supershoppercart.models.GroceryItem;
+import com.supershoppercart.models.ShopCart;
+import com.supershoppercart.repositories.GroceryItemRepository;
+import com.supershoppercart.repositories.ShopCartRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fans out live cart changes to Server-Sent Events connections.
+ * A watched cart has one Firestore snapshot listener on this instance however many clients watch it, plus one
+ * on its items for carts in the subcollection layout. Each change becomes one compact delta that is serialized
+ * once and queued to every connection. Queues are bounded: a connection whose client reads too slowly to keep
+ * up is closed, and the client reconnects with Last-Event-ID. The last events of each cart are kept, so a
+ * reconnecting client receives only the events it missed, or a snapshot when it missed too many.
+ */
+@Component
+public class CartEventHub {
+
+    private static final Logger logger = LoggerFactory.getLogger(CartEventHub.class);
+
+    private static final Object HEARTBEAT = new Object();
+
+    /**
+     * An event as sent to every connection of a cart, serialized once. The ID is null for per-connection events.
+     */
+    record Event(String id, CartEventType type, String json) {
+    }
+
+    private final ShopCartRepository shopCartRepository;
+    private final GroceryItemRepository groceryItemRepository;
+    private final ObjectWriter eventWriter;
+    private final Duration connectionTimeout;
+    private final int queueCapacity;
+    private final int replaySize;
+    private final Duration idleGrace;
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService sendExecutor;
+    private final Map<String, CartWatch> watches = new ConcurrentHashMap<>();
+    private final AtomicInteger connectionCount = new AtomicInteger();
+    private final Counter evictions;
+
+    public CartEventHub(
+            ShopCartRepository shopCartRepository,
+            GroceryItemRepository groceryItemRepository,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${carts.events.heartbeat-interval:PT15S}") Duration heartbeatInterval,
+            @Value("${carts.events.connection-timeout:PT30M}") Duration connectionTimeout,
+            @Value("${carts.events.queue-capacity:64}") int queueCapacity,
+            @Value("${carts.events.replay-size:100}") int replaySize,
+            @Value("${carts.events.idle-grace:PT30S}") Duration idleGrace,
+            @Value("${carts.events.send-threads:4}") int sendThreads
+    ) {
+        this.shopCartRepository = shopCartRepository;
+        this.groceryItemRepository = groceryItemRepository;
+        this.eventWriter = objectMapper.writerFor(CartEventDTO.class);
+        this.connectionTimeout = connectionTimeout;
+        this.queueCapacity = Math.max(1, queueCapacity);
+        this.replaySize = Math.max(0, replaySize);
+        this.idleGrace = idleGrace;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(namedDaemonThreads("cart-events-timer"));
+        this.sendExecutor = Executors.newFixedThreadPool(Math.max(1, sendThreads), namedDaemonThreads("cart-events-sender"));
+        long heartbeatMillis = heartbeatInterval.toMillis();
+        scheduler.scheduleAtFixedRate(this::sendHeartbeats, heartbeatMillis, heartbeatMillis, TimeUnit.MILLISECONDS);
+
+        this.evictions = Counter.builder("shopcart.events.evictions")
+                .description("Cart event connections closed because the client could not keep up")
+                .register(meterRegistry);
+        Gauge.builder("shopcart.events.connections", connectionCount, AtomicInteger::get)
+                .description("Open cart event connections")
+                .register(meterRegistry);
+        Gauge.builder("shopcart.events.watched-carts", watches, Map::size)
+                .description("Carts with a Firestore snapshot listener on this instance")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Opens an event stream of a cart for a shopper whose membership the caller has checked.
+     * The stream starts with a snapshot of the cart, or, when lastEventId names an event this instance still
+     * holds, with the events that followed it.
+     *
+     * @param cartId      The ID of the shop cart.
+     * @param shopperId   The shopper the stream is for; the stream ends if they stop being a member.
+     * @param lastEventId The Last-Event-ID sent by a reconnecting client, or null.
+     * @return The emitter to return from the controller.
+     */
+    public SseEmitter subscribe(String cartId, String shopperId, String lastEventId) {
+        Connection connection = new Connection(shopperId, newEmitter(connectionTimeout.toMillis()), queueCapacity);
+        connection.emitter.onCompletion(() -> detach(connection));
+        connection.emitter.onTimeout(() -> detach(connection));
+        connection.emitter.onError(error -> detach(connection));
+        while (true) {
+            CartWatch watch = watches.computeIfAbsent(cartId, CartWatch::new);
+            if (watch.attach(connection, lastEventId)) {
+                return connection.emitter;
+            }
+            watches.remove(cartId, watch); // Closed between the lookup and the attach; start a new one
+        }
+    }
+
+    SseEmitter newEmitter(long timeoutMillis) {
+        return new SseEmitter(timeoutMillis);
+    }
+
+    public int connectionCount() {
+        return connectionCount.get();
+    }
+
+    public int watchedCartCount() {
+        return watches.size();
+    }
+
+    /**
+     * Ends every stream and removes every snapshot listener.
+     */
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        for (CartWatch watch : new ArrayList<>(watches.values())) {
+            watch.closeAll();
+        }
+        sendExecutor.shutdown();
+    }
+
+    private void detach(Connection connection) {
+        if (connection.detached.compareAndSet(false, true)) {
+            connectionCount.decrementAndGet();
+            CartWatch watch = connection.watch;
+            if (watch != null) {
+                watch.remove(connection);
+            }
+        }
+    }
+
+    private void sendHeartbeats() {
+        for (CartWatch watch : watches.values()) {
+            for (Connection connection : watch.connectionsSnapshot()) {
+                if (connection.queue.isEmpty()) { // A connection with events in flight needs no keep-alive
+                    enqueue(connection, HEARTBEAT);
+                }
+            }
+        }
+    }
+
+    /**
+     * Queues an event for a connection, closing the connection if its queue is full.
+     */
+    private void enqueue(Connection connection, Object event) {
+        if (connection.ending || connection.evicted) {
+            return;
+        }
+        if (!connection.queue.offer(event)) {
+            evict(connection);
+            return;
+        }
+        scheduleDrain(connection);
+    }
+
+    /**
+     * Queues a last event and ends the stream once it has been sent.
+     */
+    private void end(Connection connection, Event event) {
+        enqueue(connection, event);
+        connection.ending = true;
+        scheduleDrain(connection);
+    }
+
+    private void evict(Connection connection) {
+        if (connection.evicted) {
+            return;
+        }
+        connection.evicted = true;
+        connection.queue.clear();
+        evictions.increment();
+        logger.debug("Closing slow cart event connection of shopper {}", connection.shopperId);
+        scheduleDrain(connection);
+    }
+
+    private void scheduleDrain(Connection connection) {
+        if (connection.draining.compareAndSet(false, true)) {
+            try {
+                sendExecutor.execute(() -> drain(connection));
+            } catch (RejectedExecutionException e) {
+                connection.draining.set(false); // Shutting down
+            }
+        }
+    }
+
+    /**
+     * Sends a connection's queued events in order. At most one drain runs per connection, so a client
+     * that blocks the write only ever holds one sender thread.
+     */
+    private void drain(Connection connection) {
+        try {
+            while (true) {
+                Object next;
+                while (!connection.evicted && (next = connection.queue.poll()) != null) {
+                    send(connection.emitter, next);
+                }
+                if (connection.evicted || (connection.ending && connection.queue.isEmpty())) {
+                    connection.emitter.complete();
+                    detach(connection);
+                    return;
+                }
+                connection.draining.set(false);
+                if (connection.queue.isEmpty() || !connection.draining.compareAndSet(false, true)) {
+                    return;
+                }
+            }
+        } catch (IOException | IllegalStateException e) {
+            // The client went away or the emitter already completed; Spring reports the error to the emitter callbacks
+            logger.debug("Cart event connection of shopper {} closed: {}", connection.shopperId, e.getMessage());
+            detach(connection);
+        }
+    }
+
+    private static void send(SseEmitter emitter, Object queued) throws IOException {
+        if (queued == HEARTBEAT) {
+            emitter.send(SseEmitter.event().comment("heartbeat"));
+            return;
+        }
+        Event event = (Event) queued;
+        SseEmitter.SseEventBuilder builder = SseEmitter.event().name(event.type().eventName()).data(event.json());
+        if (event.id() != null) {
+            builder.id(event.id());
+        }
+        emitter.send(builder);
+    }
+
+    private String serialize(CartEventDTO event) {
+        try {
+            return eventWriter.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            logger.error("Could not serialize {} event of cart {}", event.getType(), event.getCartId(), e);
+            return null;
+        }
+    }
+
+    private static final class Connection {
+        private final String shopperId;
+        private final SseEmitter emitter;
+        private final BlockingQueue<Object> queue;
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicBoolean detached = new AtomicBoolean();
+        private volatile CartWatch watch;
+        private volatile boolean ending;
+        private volatile boolean evicted;
+
+        private Connection(String shopperId, SseEmitter emitter, int queueCapacity) {
+            this.shopperId = shopperId;
+            this.emitter = emitter;
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        }
+    }
+
+    /**
+     * The snapshot listener of one cart and the connections watching it. Every field is guarded by the watch itself;
+     * Firestore calls the listeners on its own threads.
+     */
+    private final class CartWatch {
+        private final String cartId;
+        private final String epoch = Long.toHexString(ThreadLocalRandom.current().nextLong() >>> 16);
+        private final List<Connection> connections = new ArrayList<>();
+        private final Deque<Event> replay = new ArrayDeque<>();
+        private ListenerRegistration cartRegistration;
+        private ListenerRegistration itemsRegistration;
+        private ShopCart cart;                         // Latest cart document
+        private List<GroceryItem> subcollectionItems;  // Latest items of a subcollection-layout cart; null until read
+        private ShopCart published;                    // Cart as of the last event, and its items
+        private List<GroceryItem> publishedItems;
+        private long sequence;
+        private Event snapshot;                        // Snapshot as of the last event, built for the first joiner that needs it
+        private ScheduledFuture<?> idleClose;
+        private boolean closed;
+
+        private CartWatch(String cartId) {
+            this.cartId = cartId;
+        }
+
+        private synchronized boolean attach(Connection connection, String lastEventId) {
+            if (closed) {
+                return false;
+            }
+            if (idleClose != null) {
+                idleClose.cancel(false);
+                idleClose = null;
+            }
+            connection.watch = this;
+            connectionCount.incrementAndGet();
+            connections.add(connection);
+            if (cartRegistration == null) {
+                cartRegistration = shopCartRepository.addSnapshotListener(cartId, this::onCart);
+            } else if (published != null) {
+                catchUp(connection, lastEventId);
+            } // Otherwise the first snapshot is on its way and will be sent to every connection
+            return true;
+        }
+
+        private synchronized void remove(Connection connection) {
+            if (connections.remove(connection) && connections.isEmpty() && !closed) {
+                // Kept for a while, so a client that reconnects straight away can still be caught up from the replay
+                try {
+                    idleClose = scheduler.schedule(this::closeIfIdle, idleGrace.toMillis(), TimeUnit.MILLISECONDS);
+                } catch (RejectedExecutionException e) {
+                    close();
+                }
+            }
+        }
+
+        private synchronized List<Connection> connectionsSnapshot() {
+            return List.copyOf(connections);
+        }
+
+        private synchronized void closeIfIdle() {
+            if (connections.isEmpty()) {
+                close();
+            }
+        }
+
+        private synchronized void closeAll() {
+            for (Connection connection : List.copyOf(connections)) {
+                connection.ending = true;
+                scheduleDrain(connection);
+            }
+            close();
+        }
+
+        private void close() {
+            closed = true;
+            watches.remove(cartId, this);
+            if (cartRegistration != null) {
+                cartRegistration.remove();
+            }
+            if (itemsRegistration != null) {
+                itemsRegistration.remove();
+            }
+        }
+
+        private synchronized void onCart(ShopCart value, FirestoreException error) {
+            if (closed) {
+                return;
+            }
+            if (error != null) {
+                logger.warn("Snapshot listener of cart {} failed; closing {} event connections", cartId, connections.size(), error);
+                closeAll(); // Clients reconnect and get a fresh listener
+                return;
+            }
+            if (value == null) {
+                Event deleted = new Event(nextId(), CartEventType.DELETED, serialize(CartEventDTO.deleted(cartId)));
+                for (Connection connection : List.copyOf(connections)) {
+                    end(connection, deleted);
+                }
+                close();
+                return;
+            }
+            cart = value;
+            if (cart.usesItemSubcollection() && itemsRegistration == null) {
+                itemsRegistration = groceryItemRepository.addSnapshotListener(cartId, this::onItems);
+            }
+            publishChanges();
+        }
+
+        private synchronized void onItems(List<GroceryItem> items, FirestoreException error) {
+            if (closed) {
+                return;
+            }
+            if (error != null) {
+                logger.warn("Item snapshot listener of cart {} failed; closing {} event connections", cartId, connections.size(), error);
+                closeAll();
+                return;
+            }
+            subcollectionItems = items;
+            publishChanges();
+        }
+
+        private void publishChanges() {
+            List<GroceryItem> items = cart.getItems();
+            if (cart.usesItemSubcollection()) {
+                if (subcollectionItems == null) {
+                    return; // A snapshot without its items would look like every item was removed
+                }
+                items = subcollectionItems;
+                cart.setItems(items);
+            }
+
+            CartEventDTO event;
+            if (published == null) {
+                event = CartEventDTO.snapshot(cart);
+            } else {
+                event = CartEventDTO.delta(published, publishedItems, cart, items);
+            }
+            published = cart;
+            publishedItems = items;
+            revokeFormerMembers();
+            if (event == null) {
+                return; // Nothing clients display has changed, e.g. only lastInteraction was touched
+            }
+            String json = serialize(event);
+            if (json == null) {
+                return;
+            }
+            Event sent = new Event(nextId(), event.getType(), json);
+            snapshot = event.getType() == CartEventType.SNAPSHOT ? sent : null;
+            replay.addLast(sent);
+            while (replay.size() > replaySize) {
+                replay.removeFirst();
+            }
+            for (Connection connection : connections) {
+                enqueue(connection, sent);
+            }
+        }
+
+        /**
+         * Ends the streams of shoppers who are no longer members. Each connection leaves the watch once its
+         * last event is sent, and is sent nothing else meanwhile.
+         */
+        private void revokeFormerMembers() {
+            for (Connection connection : connections) {
+                if (!connection.ending && !published.isMember(connection.shopperId)) {
+                    end(connection, accessRevoked());
+                }
+            }
+        }
+
+        /**
+         * Brings a connection that joined after the first snapshot up to date.
+         */
+        private void catchUp(Connection connection, String lastEventId) {
+            if (!published.isMember(connection.shopperId)) {
+                end(connection, accessRevoked());
+                return;
+            }
+            if (lastEventId != null) {
+                List<Event> missed = eventsAfter(lastEventId);
+                if (missed != null && missed.size() < queueCapacity) {
+                    missed.forEach(event -> enqueue(connection, event));
+                    return;
+                }
+            }
+            Event current = currentSnapshot();
+            if (current != null) {
+                enqueue(connection, current);
+            }
+        }
+
+        /**
+         * @return The events after the given one, or null if it is not among the events still held.
+         */
+        private List<Event> eventsAfter(String lastEventId) {
+            List<Event> missed = null;
+            for (Event event : replay) {
+                if (missed != null) {
+                    missed.add(event);
+                } else if (lastEventId.equals(event.id())) {
+                    missed = new ArrayList<>();
+                }
+            }
+            return missed;
+        }
+
+        private Event currentSnapshot() {
+            if (snapshot == null) {
+                String json = serialize(CartEventDTO.snapshot(published));
+                if (json == null) {
+                    return null;
+                }
+                // Same ID as the last event: a client reconnecting with it has seen everything
+                snapshot = new Event(replay.isEmpty() ? null : replay.getLast().id(), CartEventType.SNAPSHOT, json);
+            }
+            return snapshot;
+        }
+
+        private Event accessRevoked() {
+            return new Event(null, CartEventType.ACCESS_REVOKED, serialize(CartEventDTO.accessRevoked(cartId)));
+        }
+
+        private String nextId() {
+            return epoch + "-" + (++sequence);
+        }
+    }
+
+    private static ThreadFactory namedDaemonThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,74 @@
+package com.supershoppercart.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A fixed set of locks that serializes in-process mutations of the same cart.
+ * A cart ID is hashed onto one of the stripes, so two requests for the same cart on this instance
+ * run one after the other instead of racing each other into Firestore precondition failures.
+ * Unrelated carts share a stripe only by hash collision. The stripes and meters are created once,
+ * so taking a lock allocates nothing and no per-cart state is ever kept.
+ */
+public class CartLockStripes {
+
+    private final ReentrantLock[] stripes;
+    private final int mask;
+    private final Counter acquisitions;
+    private final Counter contended;
+    private final Timer waitTime;
+
+    /**
+     * @param stripeCount The number of locks; rounded up to a power of two.
+     */
+    public CartLockStripes(int stripeCount, MeterRegistry meterRegistry) {
+        int size = stripeCount <= 1 ? 1 : Integer.highestOneBit(stripeCount - 1) << 1;
+        this.stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+        this.mask = size - 1;
+        this.acquisitions = Counter.builder("shopcart.lock.acquisitions")
+                .description("Per-cart lock acquisitions around cart mutations")
+                .register(meterRegistry);
+        this.contended = Counter.builder("shopcart.lock.contended")
+                .description("Per-cart lock acquisitions that had to wait for another request")
+                .register(meterRegistry);
+        this.waitTime = Timer.builder("shopcart.lock.wait")
+                .description("Time spent waiting for a contended per-cart lock")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Takes the lock of the cart's stripe, waiting for it if another thread holds it.
+     * The lock is reentrant, so a mutation may call another one for the same cart.
+     * Callers must release it with {@link Lock#unlock()} in a finally block.
+     *
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    public Lock acquire(String cartId) throws InterruptedException {
+        ReentrantLock lock = stripes[stripeIndex(cartId)];
+        acquisitions.increment();
+        if (!lock.tryLock()) {
+            contended.increment();
+            long waitStart = System.nanoTime();
+            lock.lockInterruptibly();
+            waitTime.record(System.nanoTime() - waitStart, TimeUnit.NANOSECONDS);
+        }
+        return lock;
+    }
+
+    public int getStripeCount() {
+        return stripes.length;
+    }
+
+    int stripeIndex(String cartId) {
+        int hash = cartId.hashCode();
+        return (hash ^ (hash >>> 16)) & mask; // Spread the high bits, as HashMap does
+    }
+}
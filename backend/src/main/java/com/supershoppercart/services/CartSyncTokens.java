@@ -0,0 +1,40 @@
+package com.supershoppercart.services;
+
+import com.google.cloud.Timestamp;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque delta sync tokens. A token is the Firestore read time a sync response was built from; clients
+ * only hand it back, so its format can change without an API change.
+ */
+public final class CartSyncTokens {
+
+    private CartSyncTokens() {
+    }
+
+    public static String encode(Timestamp readTime) {
+        String plain = readTime.getSeconds() + ":" + readTime.getNanos();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(plain.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param token A token returned by an earlier sync.
+     * @return The read time it stands for.
+     * @throws IllegalArgumentException If the token was not issued by {@link #encode(Timestamp)}.
+     */
+    public static Timestamp decode(String token) {
+        try {
+            String plain = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int colon = plain.indexOf(':');
+            if (colon < 0) {
+                throw new IllegalArgumentException("Malformed sync token.");
+            }
+            return Timestamp.ofTimeSecondsAndNanos(Long.parseLong(plain.substring(0, colon)),
+                    Integer.parseInt(plain.substring(colon + 1)));
+        } catch (IllegalArgumentException e) { // Also covers NumberFormatException and out-of-range times
+            throw new IllegalArgumentException("Malformed sync token.", e);
+        }
+    }
+}
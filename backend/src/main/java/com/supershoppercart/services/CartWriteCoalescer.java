@@ -0,0 +1,261 @@
+package com.supershoppercart.services;
+
+import com.supershoppercart.models.CartPatchOperation;
+import com.supershoppercart.models.ShopCart;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Merges rapid successive patch operations on the same cart into a single write.
+ * Operations submitted for a cart are held for a short window, or until the size cap is reached,
+ * and then handed to the writer as one list, so a shopper ticking off a dozen items produces one
+ * read and one guarded write instead of a dozen. Flushes of the same cart run one after another,
+ * in submission order. Callers can wait for a cart's pending operations before reading it, which
+ * keeps reads on this instance consistent with the writes it has accepted.
+ */
+public class CartWriteCoalescer implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(CartWriteCoalescer.class);
+
+    /**
+     * Applies a merged list of operations to a cart and returns the cart as written.
+     */
+    @FunctionalInterface
+    public interface CartPatchWriter {
+        ShopCart write(String cartId, List<CartPatchOperation> operations) throws ExecutionException, InterruptedException;
+    }
+
+    private record Submission(List<CartPatchOperation> operations, CompletableFuture<ShopCart> result) {
+    }
+
+    /**
+     * The operations collected for one cart that have not been handed to the writer yet.
+     * Only touched inside the pending map's per-key compute, or after being removed from it.
+     */
+    private static final class PendingWrites {
+        private final List<Submission> submissions = new ArrayList<>();
+        private int operationCount;
+
+        private void add(Submission submission) {
+            submissions.add(submission);
+            operationCount += submission.operations().size();
+        }
+    }
+
+    private static final CompletableFuture<Void> IDLE = CompletableFuture.completedFuture(null);
+
+    private final CartPatchWriter writer;
+    private final Duration window;
+    private final int maxOperations;
+    private final MeterRegistry meterRegistry;
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService flushExecutor;
+    private final Map<String, PendingWrites> pending = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<Void>> flushChains = new ConcurrentHashMap<>();
+    private volatile boolean closed;
+
+    public CartWriteCoalescer(CartPatchWriter writer, Duration window, int maxOperations, int flushThreads,
+                              MeterRegistry meterRegistry) {
+        this.writer = writer;
+        this.window = window;
+        this.maxOperations = Math.max(1, maxOperations);
+        this.meterRegistry = meterRegistry;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(namedDaemonThreads("cart-write-coalescer-timer"));
+        this.flushExecutor = Executors.newFixedThreadPool(Math.max(1, flushThreads), namedDaemonThreads("cart-write-coalescer"));
+    }
+
+    /**
+     * Queues operations for a cart. The operations of one submission are always written together.
+     *
+     * @return A future completed with the cart as written once the merged write has been committed.
+     */
+    public CompletableFuture<ShopCart> submit(String cartId, List<CartPatchOperation> operations) {
+        CompletableFuture<ShopCart> result = new CompletableFuture<>();
+        if (closed) {
+            result.completeExceptionally(new IllegalStateException("Cart write coalescer is shut down."));
+            return result;
+        }
+        Submission submission = new Submission(List.copyOf(operations), result);
+        PendingWrites[] ready = new PendingWrites[1];
+        String[] trigger = {"size"};
+        pending.compute(cartId, (id, writes) -> {
+            boolean flushNow = false;
+            if (writes == null) {
+                writes = new PendingWrites();
+                PendingWrites scheduled = writes;
+                try {
+                    scheduler.schedule(() -> flushIfPending(id, scheduled, "window"), window.toMillis(), TimeUnit.MILLISECONDS);
+                } catch (RejectedExecutionException e) {
+                    flushNow = true; // Raced with close(); write straight away rather than strand the submission
+                    trigger[0] = "shutdown";
+                }
+            }
+            writes.add(submission);
+            if (flushNow || writes.operationCount >= maxOperations) {
+                ready[0] = writes;
+                return null;
+            }
+            return writes;
+        });
+        if (ready[0] != null) {
+            dispatch(cartId, ready[0], trigger[0]);
+        }
+        return result;
+    }
+
+    /**
+     * Flushes the cart's pending operations now and waits until every write accepted for it so far
+     * has been committed or has failed. Failures are reported to the submitters, not to the caller.
+     */
+    public void awaitPending(String cartId) throws InterruptedException {
+        PendingWrites writes = pending.remove(cartId);
+        if (writes != null) {
+            dispatch(cartId, writes, "read");
+        }
+        CompletableFuture<Void> chain = flushChains.get(cartId);
+        if (chain != null) {
+            try {
+                chain.get();
+            } catch (ExecutionException e) {
+                // Flushes complete their submitters themselves and never fail the chain
+            }
+        }
+    }
+
+    /**
+     * Waits for the pending operations of several carts, skipping carts with nothing queued.
+     */
+    public void awaitPending(Collection<String> cartIds) throws InterruptedException {
+        for (String cartId : cartIds) {
+            if (pending.containsKey(cartId) || flushChains.containsKey(cartId)) {
+                awaitPending(cartId);
+            }
+        }
+    }
+
+    /**
+     * Flushes every pending cart and waits, up to the timeout, for the writes to finish.
+     * Submissions made after this call are rejected.
+     */
+    @Override
+    public void close() {
+        close(Duration.ofSeconds(10));
+    }
+
+    public void close(Duration timeout) {
+        closed = true;
+        scheduler.shutdownNow();
+        for (String cartId : new ArrayList<>(pending.keySet())) {
+            PendingWrites writes = pending.remove(cartId);
+            if (writes != null) {
+                dispatch(cartId, writes, "shutdown");
+            }
+        }
+        try {
+            CompletableFuture.allOf(flushChains.values().toArray(new CompletableFuture[0]))
+                    .get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            logger.warn("Timed out after {} flushing pending cart writes for {} carts", timeout, flushChains.size());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // Flushes complete their submitters themselves and never fail the chain
+        }
+        flushExecutor.shutdown();
+    }
+
+    private void flushIfPending(String cartId, PendingWrites writes, String trigger) {
+        // A no-op when a size cap or a read already took this batch
+        if (pending.remove(cartId, writes)) {
+            dispatch(cartId, writes, trigger);
+        }
+    }
+
+    /**
+     * Chains the flush after any flush of the same cart that is still running, so writes
+     * of one cart are applied in order while different carts flush in parallel.
+     */
+    private void dispatch(String cartId, PendingWrites writes, String trigger) {
+        CompletableFuture<Void> next = flushChains.compute(cartId, (id, previous) ->
+                (previous != null ? previous : IDLE).thenRunAsync(() -> flush(id, writes, trigger), flushExecutor));
+        next.whenComplete((ignored, error) -> flushChains.remove(cartId, next));
+    }
+
+    private void flush(String cartId, PendingWrites writes, String trigger) {
+        List<CartPatchOperation> merged = new ArrayList<>(writes.operationCount);
+        for (Submission submission : writes.submissions) {
+            merged.addAll(submission.operations());
+        }
+        recordFlush(trigger, merged.size());
+        try {
+            ShopCart written = writer.write(cartId, merged);
+            writes.submissions.forEach(submission -> submission.result().complete(written));
+        } catch (IllegalArgumentException e) {
+            if (writes.submissions.size() == 1) {
+                writes.submissions.get(0).result().completeExceptionally(e);
+                return;
+            }
+            // One bad submission (e.g. an unknown item) must not fail the others, so write them one by one
+            logger.debug("Merged write of {} operations on cart {} was rejected; writing submissions separately", merged.size(), cartId);
+            for (Submission submission : writes.submissions) {
+                writeAlone(cartId, submission);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            writes.submissions.forEach(submission -> submission.result().completeExceptionally(e));
+        } catch (Exception e) {
+            writes.submissions.forEach(submission -> submission.result().completeExceptionally(e));
+        }
+    }
+
+    private void writeAlone(String cartId, Submission submission) {
+        try {
+            submission.result().complete(writer.write(cartId, submission.operations()));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            submission.result().completeExceptionally(e);
+        } catch (Exception e) {
+            submission.result().completeExceptionally(e);
+        }
+    }
+
+    private void recordFlush(String trigger, int operationCount) {
+        Counter.builder("shopcart.write.coalesced.flushes")
+                .description("Merged cart writes issued by the write coalescer")
+                .tag("trigger", trigger)
+                .register(meterRegistry)
+                .increment();
+        Counter.builder("shopcart.write.coalesced.operations")
+                .description("Patch operations written through the write coalescer")
+                .register(meterRegistry)
+                .increment(operationCount);
+    }
+
+    private static ThreadFactory namedDaemonThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
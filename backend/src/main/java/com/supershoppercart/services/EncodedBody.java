@@ -0,0 +1,16 @@
+package com.supershoppercart.services;
+
+import com.supershoppercart.enums.ContentCoding;
+
+/**
+ * A response body together with the content coding its bytes are in.
+ *
+ * @param coding The coding to send as Content-Encoding; IDENTITY means none.
+ * @param bytes  The bytes to send; callers must not modify them.
+ */
+public record EncodedBody(ContentCoding coding, byte[] bytes) {
+
+    public static EncodedBody identity(byte[] bytes) {
+        return new EncodedBody(ContentCoding.IDENTITY, bytes);
+    }
+}
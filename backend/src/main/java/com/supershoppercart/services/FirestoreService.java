@@ -1,6 +1,5 @@
 package com.supershoppercart.services;
 
-import com.google.api.core.ApiFuture;
 import com.google.cloud.firestore.*;
 import com.supershoppercart.dtos.ShopCartDetailDTO;
 import com.supershoppercart.dtos.ShopperSummaryDTO;
@@ -110,23 +109,8 @@ public class FirestoreService {
                     .get()
                     .get();
 
-            List<ShopCartDetailDTO> shopCartDetailDTOS = new ArrayList<>();
-            for (DocumentSnapshot doc : snapshot.getDocuments()) {
-                ShopCart shopCart = doc.toObject(ShopCart.class);
-                if (shopCart != null) {
-                    // Fetch full Shopper objects based on shopperIds stored in the ShopCart
-                    List<Shopper> associatedShoppers = fetchShoppersByIds(shopCart.getShopperIds());
-                    // Convert List<Shopper> to List<ShopperSummaryDTO>
-                    List<ShopperSummaryDTO> shopperSummaries = associatedShoppers.stream()
-                            .map(ShopperSummaryDTO::new)
-                            .toList();
-
-                    ShopCartDetailDTO dto = new ShopCartDetailDTO(doc.getId(), shopCart);
-                    dto.setShoppers(shopperSummaries); // Set the fetched Shopper objects in the DTO
-                    shopCartDetailDTOS.add(dto);
-                }
-            }
-            return shopCartDetailDTOS;
+            // Hydrate every cart from one shared shopper lookup instead of one lookup per cart
+            return hydrateShopCartDTOs(snapshot.getDocuments());
         } catch (InterruptedException | ExecutionException e) {
             logger.error("Error getting shop carts by shopper ID: {}", e.getMessage(), e);
             throw new RuntimeException("Error getting shop carts by shopper ID: " + e.getMessage(), e);
@@ -149,22 +133,11 @@ public class FirestoreService {
             DocumentReference docRef = firestore.collection("shopcarts").document(cartId);
             DocumentSnapshot doc = docRef.get().get();
 
-            if (doc.exists()) {
-                ShopCart shopCart = doc.toObject(ShopCart.class);
-                if (shopCart != null) {
-                    // Fetch full Shopper objects based on shopperIds stored in the ShopCart
-                    List<Shopper> associatedShoppers = fetchShoppersByIds(shopCart.getShopperIds());
-                    // Convert List<Shopper> to List<ShopperSummaryDTO>
-                    List<ShopperSummaryDTO> shopperSummaries = associatedShoppers.stream()
-                            .map(ShopperSummaryDTO::new)
-                            .toList();
-
-                    ShopCartDetailDTO dto = new ShopCartDetailDTO(doc.getId(), shopCart);
-                    dto.setShoppers(shopperSummaries); // Set the fetched Shopper objects in the DTO
-                    return dto;
-                }
+            if (!doc.exists()) {
+                return null;
             }
-            return null;
+            List<ShopCartDetailDTO> hydrated = hydrateShopCartDTOs(List.of(doc));
+            return hydrated.isEmpty() ? null : hydrated.get(0);
         } catch (InterruptedException | ExecutionException e) {
             logger.error("Error getting shop cart by ID: {}", e.getMessage(), e);
             throw new RuntimeException("Error getting shop cart by ID: " + e.getMessage(), e);
@@ -175,7 +148,7 @@ public class FirestoreService {
      * Helper method to fetch Shopper objects given a list of their IDs.
      *
      * @param shopperIds A list of shopper IDs.
-     * @return A list of Shopper objects. Returns an empty list if input is null or empty,
+     * @return A list of Shopper objects in the order of the given IDs. Returns an empty list if input is null or empty,
      * or if no shoppers are found for the given IDs.
      * @throws RuntimeException if there's an error during Firestore operation.
      */
@@ -183,49 +156,58 @@ public class FirestoreService {
         if (shopperIds == null || shopperIds.isEmpty()) {
             return new ArrayList<>();
         }
-
+        Map<String, Shopper> shoppersById = fetchShoppersById(shopperIds);
         List<Shopper> shoppers = new ArrayList<>();
+        for (String shopperId : new LinkedHashSet<>(shopperIds)) {
+            Shopper shopper = shoppersById.get(shopperId);
+            if (shopper != null) {
+                shoppers.add(shopper);
+            }
+        }
+        return shoppers;
+    }
+
+    /**
+     * Fetches the distinct shoppers for the given IDs in a single batched {@code getAll} call.
+     * Duplicate, null and blank IDs are ignored, and IDs with no matching document are simply absent from the map.
+     *
+     * @param shopperIds The shopper IDs to fetch, possibly collected across several carts.
+     * @return A map of shopper document ID to Shopper.
+     * @throws RuntimeException if there's an error during Firestore operation.
+     */
+    Map<String, Shopper> fetchShoppersById(Collection<String> shopperIds) {
+        Map<String, Shopper> shoppersById = new HashMap<>();
+        if (shopperIds == null || shopperIds.isEmpty()) {
+            return shoppersById;
+        }
+
+        CollectionReference shoppersCollection = firestore.collection("shoppers");
+        DocumentReference[] shopperRefs = shopperIds.stream()
+                .filter(id -> id != null && !id.isBlank())
+                .distinct()
+                .map(shoppersCollection::document)
+                .toArray(DocumentReference[]::new);
+        if (shopperRefs.length == 0) {
+            return shoppersById;
+        }
+
         try {
-            // Firestore 'in' query supports a maximum of 10 values.
-            // For lists larger than 10, we must split them into batches.
-            if (shopperIds.size() > 10) {
-                // Split the list of IDs into sub-lists of size 10
-                for (int i = 0; i < shopperIds.size(); i += 10) {
-                    int end = Math.min(shopperIds.size(), i + 10);
-                    List<String> batchIds = shopperIds.subList(i, end);
-
-                    // Execute a 'whereIn' query for the current batch
-                    QuerySnapshot snapshot = firestore.collection("shoppers")
-                            .whereIn(FieldPath.documentId(), batchIds)
-                            .get()
-                            .get();
-
-                    // Add the results to the main list
-                    for (DocumentSnapshot doc : snapshot.getDocuments()) {
-                        Shopper shopper = doc.toObject(Shopper.class);
-                        if (shopper != null) {
-                            shoppers.add(shopper);
-                        }
-                    }
-                }
-            } else {
-                // For 10 or fewer IDs, a single 'whereIn' query is sufficient and efficient.
-                QuerySnapshot snapshot = firestore.collection("shoppers")
-                        .whereIn(FieldPath.documentId(), shopperIds)
-                        .get()
-                        .get();
-                for (DocumentSnapshot doc : snapshot.getDocuments()) {
+            for (DocumentSnapshot doc : firestore.getAll(shopperRefs).get()) {
+                if (doc.exists()) {
                     Shopper shopper = doc.toObject(Shopper.class);
                     if (shopper != null) {
-                        shoppers.add(shopper);
+                        shoppersById.put(doc.getId(), shopper);
                     }
                 }
             }
-        } catch (InterruptedException | ExecutionException e) {
-            logger.error("Error fetching shoppers using 'whereIn' query: {}", e.getMessage(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while fetching associated shoppers", e);
+        } catch (ExecutionException e) {
+            logger.error("Error fetching shoppers using 'getAll': {}", e.getMessage(), e);
             throw new RuntimeException("Error fetching associated shoppers: " + e.getMessage(), e);
         }
-        return shoppers;
+        return shoppersById;
     }
 
     // Cart sharing methods ----------------------------------------------------------------------------------
@@ -272,7 +254,8 @@ public class FirestoreService {
 
             // 5. Update the cart in Firestore
             Map<String, Object> updates = new HashMap<>();
-            updates.put("sharePermissions", cart.getSharePermissions());
+            updates.put("permissions", cart.getPermissions());
+            updates.put("sharePermissions", FieldValue.delete()); // Drops the list format used before the permission map
             updates.put("shopperIds", shopperIds);
             updates.put("lastModified", FieldValue.serverTimestamp());
 
@@ -310,7 +293,8 @@ public class FirestoreService {
             shopperIds.remove(targetShopperId);
 
             Map<String, Object> updates = new HashMap<>();
-            updates.put("sharePermissions", cart.getSharePermissions());
+            updates.put("permissions", cart.getPermissions());
+            updates.put("sharePermissions", FieldValue.delete()); // Drops the list format used before the permission map
             updates.put("shopperIds", shopperIds);
             updates.put("lastModified", FieldValue.serverTimestamp());
 
@@ -382,7 +366,7 @@ public class FirestoreService {
         shopCart.setCreatedBy(creatorId);
 
         // Ensure creator is in shopperIds
-        if (!shopCart.getShopperIds().contains(creatorId)) {
+        if (!shopCart.isMember(creatorId)) {
             shopCart.getShopperIds().add(creatorId);
         }
 
@@ -399,24 +383,45 @@ public class FirestoreService {
      * including fetching and attaching all associated shopper details.
      */
     ShopCartDetailDTO hydrateShopCartDTO(DocumentSnapshot cartDoc) throws Exception {
-        ShopCart cart = cartDoc.toObject(ShopCart.class);
-        if (cart == null) return null;
-
-        ShopCartDetailDTO dto = new ShopCartDetailDTO(cartDoc.getId(), cart);
-
-        // Hydration Step: Fetch all shoppers in one go
-        if (cart.getShopperIds() != null && !cart.getShopperIds().isEmpty()) {
-            Query shoppersQuery = firestore.collection("shoppers").whereIn(FieldPath.documentId(), cart.getShopperIds());
-            ApiFuture<QuerySnapshot> shoppersFuture = shoppersQuery.get();
-            List<ShopperSummaryDTO> shopperDTOs = new ArrayList<>();
-            for (DocumentSnapshot shopperDoc : shoppersFuture.get().getDocuments()) {
-                Shopper shopper = shopperDoc.toObject(Shopper.class);
+        List<ShopCartDetailDTO> hydrated = hydrateShopCartDTOs(List.of(cartDoc));
+        return hydrated.isEmpty() ? null : hydrated.get(0);
+    }
+
+    /**
+     * Converts a set of ShopCart documents into DTOs. The distinct shopper IDs across all carts
+     * are fetched once, and each DTO is filled from that shared map in its cart's shopperIds order.
+     * Documents that cannot be mapped to a ShopCart are skipped.
+     */
+    List<ShopCartDetailDTO> hydrateShopCartDTOs(List<? extends DocumentSnapshot> cartDocs) {
+        List<ShopCartDetailDTO> dtos = new ArrayList<>();
+        List<ShopCart> carts = new ArrayList<>();
+        Set<String> shopperIds = new LinkedHashSet<>();
+        for (DocumentSnapshot cartDoc : cartDocs) {
+            ShopCart cart = cartDoc.toObject(ShopCart.class);
+            if (cart != null) {
+                dtos.add(new ShopCartDetailDTO(cartDoc.getId(), cart));
+                carts.add(cart);
+                if (cart.getShopperIds() != null) {
+                    shopperIds.addAll(cart.getShopperIds());
+                }
+            }
+        }
+
+        Map<String, Shopper> shoppersById = fetchShoppersById(shopperIds);
+        for (int i = 0; i < dtos.size(); i++) {
+            List<String> cartShopperIds = carts.get(i).getShopperIds();
+            if (cartShopperIds == null) {
+                continue;
+            }
+            List<ShopperSummaryDTO> shopperSummaries = new ArrayList<>();
+            for (String shopperId : new LinkedHashSet<>(cartShopperIds)) {
+                Shopper shopper = shoppersById.get(shopperId);
                 if (shopper != null) {
-                    shopperDTOs.add(new ShopperSummaryDTO(shopper));
+                    shopperSummaries.add(new ShopperSummaryDTO(shopper));
                 }
             }
-            dto.setShoppers(shopperDTOs);
+            dtos.get(i).setShoppers(shopperSummaries);
         }
-        return dto;
+        return dtos;
     }
-}
\ No newline at end of file
+}
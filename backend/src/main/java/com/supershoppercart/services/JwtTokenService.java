@@ -1,11 +1,17 @@
 package com.supershoppercart.services;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
 import com.google.api.core.ApiFuture;
 import com.google.cloud.firestore.*;
+import com.supershoppercart.codecs.FirestoreCodecs;
 import com.supershoppercart.models.RefreshToken;
 import com.supershoppercart.models.Shopper;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.security.Keys;
 import jakarta.annotation.PostConstruct;
@@ -19,16 +25,24 @@ import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import javax.crypto.SecretKey;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.Base64;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class JwtTokenService {
     private static final Logger logger = LoggerFactory.getLogger(JwtTokenService.class);
 
+    // Upper bound for cached verifications of tokens that carry no 'exp' claim
+    private static final long MAX_UNBOUNDED_CACHE_TTL_MILLIS = 5 * 60 * 1000L;
+
     @Value("${jwt.secret}")
     private String secretKeyString;
 
@@ -39,7 +53,12 @@ public class JwtTokenService {
     @Value("${jwt.refresh-token.expiration}")
     private long refreshTokenExpiration;
 
+    @Value("${jwt.verified-cache.max-size:10000}")
+    private long verifiedTokenCacheSize = 10_000;
+
     private SecretKey secretKey;
+    private JwtParser jwtParser; // Immutable and thread-safe, built once per key
+    private Cache<String, VerifiedToken> verifiedTokens;
     private Firestore firestore;
 
     public JwtTokenService(Firestore firestore) {
@@ -76,6 +95,12 @@ public class JwtTokenService {
             }
 
             this.secretKey = Keys.hmacShaKeyFor(keyBytes);
+            this.jwtParser = Jwts.parser().verifyWith(secretKey).build();
+            this.verifiedTokens = Caffeine.newBuilder()
+                    .maximumSize(verifiedTokenCacheSize)
+                    .expireAfter(new TokenExpiry())
+                    .recordStats()
+                    .build();
             logger.info("JWT secret key initialized successfully!");
 
         } catch (Exception e) {
@@ -136,11 +161,10 @@ public class JwtTokenService {
             return null;
         }
         try {
-            Claims claims = Jwts.parser()
-                    .verifyWith(secretKey)
-                    .build()
-                    .parseSignedClaims(token)
-                    .getPayload();
+            Claims claims = extractAllClaims(token);
+            if (claims == null) {
+                return null;
+            }
             String shopperId = claims.getSubject();
             if (shopperId == null || shopperId.trim().isEmpty()) {
                 logger.warn("JWT subject (shopper ID) is empty or null");
@@ -161,11 +185,7 @@ public class JwtTokenService {
             return null;
         }
         try {
-            return Jwts.parser()
-                    .verifyWith(secretKey)
-                    .build()
-                    .parseSignedClaims(token)
-                    .getPayload();
+            return jwtParser.parseSignedClaims(token).getPayload();
         } catch (JwtException e) {
             logger.debug("Invalid JWT token: {}", e.getMessage());
             return null;
@@ -175,6 +195,56 @@ public class JwtTokenService {
         }
     }
 
+    /**
+     * Verifies a token with a single signature check and returns its relevant claims.
+     * Successful verifications are cached by token digest until the token's own expiry,
+     * so repeated requests with the same token skip parsing entirely.
+     *
+     * @param token The compact JWT string.
+     * @return The verified token, or null if the token is missing, malformed, tampered with or expired.
+     */
+    public VerifiedToken verifyToken(String token) {
+        if (token == null || token.trim().isEmpty()) {
+            return null;
+        }
+        try {
+            String digest = digest(token);
+            VerifiedToken cached = verifiedTokens.getIfPresent(digest);
+            if (cached != null) {
+                if (!cached.isExpired()) {
+                    return cached;
+                }
+                verifiedTokens.invalidate(digest);
+                return null;
+            }
+
+            Claims claims = jwtParser.parseSignedClaims(token).getPayload();
+            String subject = claims.getSubject();
+            VerifiedToken verified = new VerifiedToken(
+                    subject == null || subject.trim().isEmpty() ? null : subject,
+                    claims.get("deviceId", String.class),
+                    claims.getExpiration() != null ? claims.getExpiration().toInstant() : null
+            );
+            verifiedTokens.put(digest, verified);
+            return verified;
+        } catch (JwtException e) {
+            logger.debug("Invalid JWT token: {}", e.getMessage());
+            return null;
+        } catch (Exception e) {
+            logger.error("Unexpected error verifying JWT token", e);
+            return null;
+        }
+    }
+
+    public CacheStats getVerifiedTokenCacheStats() {
+        return verifiedTokens.stats();
+    }
+
+    private static String digest(String token) throws NoSuchAlgorithmException {
+        byte[] hash = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+        return Base64.getEncoder().encodeToString(hash);
+    }
+
     public boolean isTokenExpired(String token) {
         try {
             Claims claims = extractAllClaims(token);
@@ -194,10 +264,8 @@ public class JwtTokenService {
             return false;
         }
         try {
-            String extractedShopperId = extractShopperId(token);
-            return extractedShopperId != null &&
-                    extractedShopperId.equals(shopperId) &&
-                    !isTokenExpired(token);
+            VerifiedToken verified = verifyToken(token);
+            return verified != null && shopperId.equals(verified.getShopperId());
         } catch (Exception e) {
             logger.debug("Error validating token for shopper {}: {}", shopperId, e.getMessage());
             return false;
@@ -209,7 +277,7 @@ public class JwtTokenService {
             return false;
         }
         try {
-            return extractAllClaims(token) != null && !isTokenExpired(token);
+            return verifyToken(token) != null;
         } catch (Exception e) {
             logger.debug("JWT token validation failed: {}", e.getMessage());
             return false;
@@ -254,13 +322,56 @@ public class JwtTokenService {
 
     }
 
+    /**
+     * Immutable result of a successful token verification.
+     */
+    @Getter
+    public static final class VerifiedToken {
+        private final String shopperId;
+        private final String deviceId;
+        private final Instant expiresAt;
+
+        public VerifiedToken(String shopperId, String deviceId, Instant expiresAt) {
+            this.shopperId = shopperId;
+            this.deviceId = deviceId;
+            this.expiresAt = expiresAt;
+        }
+
+        public boolean isExpired() {
+            return expiresAt != null && expiresAt.isBefore(Instant.now());
+        }
+    }
+
+    /**
+     * Expires each cached verification exactly when the underlying token expires.
+     */
+    private static final class TokenExpiry implements Expiry<String, VerifiedToken> {
+        @Override
+        public long expireAfterCreate(String key, VerifiedToken value, long currentTime) {
+            long ttlMillis = value.getExpiresAt() != null
+                    ? value.getExpiresAt().toEpochMilli() - System.currentTimeMillis()
+                    : MAX_UNBOUNDED_CACHE_TTL_MILLIS;
+            return TimeUnit.MILLISECONDS.toNanos(Math.max(0, ttlMillis));
+        }
+
+        @Override
+        public long expireAfterUpdate(String key, VerifiedToken value, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, value, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(String key, VerifiedToken value, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+
     // ==== ASYNC FIRESTORE OPERATIONS ====
 
     @Async
     public CompletableFuture<Void> saveRefreshTokenAsync(String refreshToken, RefreshToken tokenRecord) {
         return CompletableFuture.runAsync(() -> {
             try {
-                firestore.collection("refresh_tokens").document(refreshToken).set(tokenRecord).get();
+                firestore.collection("refresh_tokens").document(refreshToken).set(FirestoreCodecs.REFRESH_TOKEN.encode(tokenRecord)).get();
             } catch (Exception e) {
                 throw new RuntimeException("Failed to save refresh token", e);
             }
@@ -286,7 +397,7 @@ public class JwtTokenService {
                     return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "Invalid refresh token"));
                 }
 
-                RefreshToken stored = doc.toObject(RefreshToken.class);
+                RefreshToken stored = FirestoreCodecs.REFRESH_TOKEN.decode(doc);
                 if (stored == null || !deviceId.equals(stored.getDeviceId()) || stored.getExpiry() < System.currentTimeMillis()) {
                     logger.warn("Failed refresh attempt: Refresh token expired or device mismatch [{}] [{}]", refreshToken, deviceId);
                     return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(Map.of("error", "Refresh token expired or device mismatch"));
@@ -304,7 +415,7 @@ public class JwtTokenService {
                         System.currentTimeMillis() + getRefreshTokenExpiration()
                 );
 
-                firestore.collection("refresh_tokens").document(newRefreshToken).set(rotated).get();
+                firestore.collection("refresh_tokens").document(newRefreshToken).set(FirestoreCodecs.REFRESH_TOKEN.encode(rotated)).get();
 
                 logger.info("Refresh token rotated for shopperId [{}] and device [{}]", stored.getShopperId(), deviceId);
 
@@ -337,7 +448,7 @@ public class JwtTokenService {
                 DocumentSnapshot doc = ref.get().get();
 
                 if (doc.exists()) {
-                    RefreshToken stored = doc.toObject(RefreshToken.class);
+                    RefreshToken stored = FirestoreCodecs.REFRESH_TOKEN.decode(doc);
                     if (stored != null && deviceId.equals(stored.getDeviceId())) {
                         ref.delete().get();
                         logger.info("Logout successful for device [{}] and shopperId [{}]", deviceId, stored.getShopperId());
@@ -0,0 +1,45 @@
+package com.supershoppercart.services;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque cursors of paginated listings. A cursor is the last document ID of the page that returned it;
+ * clients only hand it back, so its format can change without an API change.
+ */
+public final class PageCursors {
+
+    private PageCursors() {
+    }
+
+    /**
+     * @param lastId The last document ID of a page, or null if it was the last page.
+     * @return The cursor of the next page, or null if there is none.
+     */
+    public static String encode(String lastId) {
+        if (lastId == null) {
+            return null;
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(lastId.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param cursor A cursor returned with an earlier page, or null for the first page.
+     * @return The document ID to start after, or null for the first page.
+     * @throws IllegalArgumentException If the cursor was not issued by {@link #encode(String)}.
+     */
+    public static String decode(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return null;
+        }
+        try {
+            String lastId = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (lastId.isBlank() || lastId.contains("/")) {
+                throw new IllegalArgumentException("Malformed page cursor.");
+            }
+            return lastId;
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed page cursor.", e);
+        }
+    }
+}
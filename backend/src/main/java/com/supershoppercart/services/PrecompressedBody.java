@@ -0,0 +1,39 @@
+package com.supershoppercart.services;
+
+import com.supershoppercart.enums.ContentCoding;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * A cacheable body stored in every coding that makes it meaningfully smaller, so requests pick a variant
+ * instead of compressing it again. Built by {@link ResponseCompressor#precompress}.
+ */
+public final class PrecompressedBody {
+
+    private final byte[] identity;
+    private final Map<ContentCoding, byte[]> variants;
+
+    PrecompressedBody(byte[] identity, Map<ContentCoding, byte[]> variants) {
+        this.identity = identity;
+        this.variants = variants.isEmpty() ? Map.of() : new EnumMap<>(variants);
+    }
+
+    /**
+     * The variant to answer a request with.
+     *
+     * @param acceptEncoding The request's Accept-Encoding header, or null.
+     */
+    public EncodedBody select(String acceptEncoding) {
+        ContentCoding coding = ContentCoding.negotiate(acceptEncoding, variants.keySet());
+        return coding == ContentCoding.IDENTITY ? EncodedBody.identity(identity) : new EncodedBody(coding, variants.get(coding));
+    }
+
+    public byte[] identity() {
+        return identity;
+    }
+
+    public boolean hasVariant(ContentCoding coding) {
+        return variants.containsKey(coding);
+    }
+}
@@ -0,0 +1,179 @@
+package com.supershoppercart.services;
+
+import com.aayushatharva.brotli4j.Brotli4jLoader;
+import com.aayushatharva.brotli4j.encoder.Encoder;
+import com.supershoppercart.enums.ContentCoding;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Brotli and gzip compression of response bodies that the application builds itself, such as cached cart JSON
+ * and static pages. Bodies under the size threshold, or that would not shrink by at least the minimum saving,
+ * are sent as they are. Everything else is left to the servlet container's gzip compression, which shares the threshold.
+ * <p>
+ * Per-request compression uses a fast setting; bodies compressed once and cached use a denser one, which costs more
+ * CPU once and saves bytes on every request after. The ratio and the thread CPU time of every compression are recorded
+ * per coding and effort.
+ */
+@Component
+public class ResponseCompressor {
+
+    private static final Logger logger = LoggerFactory.getLogger(ResponseCompressor.class);
+
+    /**
+     * How much CPU to spend on a body, depending on how often the result is reused.
+     */
+    public enum Effort {
+        PER_REQUEST,    // Compressed for a single response
+        CACHED,         // Stored with a cache entry and reused until the entry changes
+        STATIC          // Compressed once for the life of the application
+    }
+
+    private final int minSize;
+    private final double maxRatio;
+    private final Map<Effort, Integer> brotliQuality = new EnumMap<>(Effort.class);
+    private final Set<ContentCoding> codings;
+    private final MeterRegistry meterRegistry;
+    private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+
+    public ResponseCompressor(
+            MeterRegistry meterRegistry,
+            @Value("${server.compression.min-response-size:2KB}") DataSize minSize,
+            @Value("${compression.min-saving:0.1}") double minSaving,
+            @Value("${compression.brotli.enabled:true}") boolean brotliEnabled,
+            @Value("${compression.brotli.quality.per-request:5}") int perRequestQuality,
+            @Value("${compression.brotli.quality.cached:9}") int cachedQuality,
+            @Value("${compression.brotli.quality.static:11}") int staticQuality
+    ) {
+        this.meterRegistry = meterRegistry;
+        this.minSize = (int) minSize.toBytes();
+        this.maxRatio = 1 - minSaving;
+        this.brotliQuality.put(Effort.PER_REQUEST, perRequestQuality);
+        this.brotliQuality.put(Effort.CACHED, cachedQuality);
+        this.brotliQuality.put(Effort.STATIC, staticQuality);
+        this.codings = brotliEnabled && loadBrotli()
+                ? EnumSet.of(ContentCoding.BROTLI, ContentCoding.GZIP)
+                : EnumSet.of(ContentCoding.GZIP);
+        logger.info("Compressing responses of at least {} bytes with {}", this.minSize, codings);
+    }
+
+    private static boolean loadBrotli() {
+        try {
+            Brotli4jLoader.ensureAvailability();
+            return true;
+        } catch (Throwable e) { // UnsatisfiedLinkError when there is no native library for this platform
+            logger.warn("Brotli is not available on this platform, compressing with gzip only: {}", e.toString());
+            return false;
+        }
+    }
+
+    /**
+     * Compresses a body for a single response, in the coding the client prefers.
+     *
+     * @param body           The uncompressed body.
+     * @param acceptEncoding The request's Accept-Encoding header, or null.
+     */
+    public EncodedBody encode(byte[] body, String acceptEncoding) {
+        if (body.length < minSize) {
+            return EncodedBody.identity(body);
+        }
+        ContentCoding coding = ContentCoding.negotiate(acceptEncoding, codings);
+        if (coding == ContentCoding.IDENTITY) {
+            return EncodedBody.identity(body);
+        }
+        byte[] compressed = compress(body, coding, Effort.PER_REQUEST);
+        return worthSending(body, compressed) ? new EncodedBody(coding, compressed) : EncodedBody.identity(body);
+    }
+
+    /**
+     * Compresses a body to be cached, in every supported coding that is worth it.
+     *
+     * @param body   The uncompressed body.
+     * @param effort CACHED or STATIC.
+     */
+    public PrecompressedBody precompress(byte[] body, Effort effort) {
+        Map<ContentCoding, byte[]> variants = new EnumMap<>(ContentCoding.class);
+        if (body.length >= minSize) {
+            for (ContentCoding coding : codings) {
+                byte[] compressed = compress(body, coding, effort);
+                if (worthSending(body, compressed)) {
+                    variants.put(coding, compressed);
+                }
+            }
+        }
+        return new PrecompressedBody(body, variants);
+    }
+
+    private boolean worthSending(byte[] body, byte[] compressed) {
+        return compressed.length <= body.length * maxRatio;
+    }
+
+    private byte[] compress(byte[] body, ContentCoding coding, Effort effort) {
+        long cpuStart = cpuTime();
+        byte[] compressed = switch (coding) {
+            case BROTLI -> brotli(body, brotliQuality.get(effort));
+            case GZIP -> gzip(body, effort == Effort.PER_REQUEST ? Deflater.DEFAULT_COMPRESSION : Deflater.BEST_COMPRESSION);
+            case IDENTITY -> body;
+        };
+        long cpuNanos = cpuTime() - cpuStart;
+
+        String codingTag = coding.token();
+        String effortTag = effort.name().toLowerCase();
+        Timer.builder("http.compression.cpu")
+                .description("Thread CPU time spent compressing response bodies")
+                .tags("coding", codingTag, "effort", effortTag)
+                .register(meterRegistry)
+                .record(cpuNanos, TimeUnit.NANOSECONDS);
+        DistributionSummary.builder("http.compression.ratio")
+                .description("Compressed size divided by original size of response bodies")
+                .tags("coding", codingTag, "effort", effortTag)
+                .register(meterRegistry)
+                .record((double) compressed.length / body.length);
+        return compressed;
+    }
+
+    private long cpuTime() {
+        return threadMXBean.isCurrentThreadCpuTimeSupported() ? threadMXBean.getCurrentThreadCpuTime() : System.nanoTime();
+    }
+
+    private static byte[] brotli(byte[] body, int quality) {
+        try {
+            return Encoder.compress(body, new Encoder.Parameters().setQuality(quality));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Brotli compression failed", e);
+        }
+    }
+
+    private static byte[] gzip(byte[] body, int level) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out) {
+            {
+                def.setLevel(level);
+            }
+        }) {
+            gzip.write(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Gzip compression failed", e); // Not thrown by in-memory streams
+        }
+        return out.toByteArray();
+    }
+}
@@ -1,35 +1,146 @@
 package com.supershoppercart.services;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.FieldValue;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.WriteBatch;
+import com.supershoppercart.dtos.CartSyncResponseDTO;
 import com.supershoppercart.dtos.ShopCartDetailDTO;
+import com.supershoppercart.dtos.ShopCartSummaryDTO;
+import com.supershoppercart.enums.CartListView;
+import com.supershoppercart.enums.CartRemovalReason;
+import com.supershoppercart.enums.ItemStorage;
 import com.supershoppercart.enums.SharePermission;
+import com.supershoppercart.exceptions.CartConflictException;
+import com.supershoppercart.models.CartPatchOperation;
+import com.supershoppercart.models.CartTombstone;
 import com.supershoppercart.models.GroceryItem;
 import com.supershoppercart.models.ShopCart;
 import com.supershoppercart.models.Shopper;
+import com.supershoppercart.repositories.BatchReadResult;
+import com.supershoppercart.repositories.CartTombstoneRepository;
+import com.supershoppercart.repositories.GroceryItemRepository;
 import com.supershoppercart.repositories.ShopCartRepository;
 import com.supershoppercart.repositories.ShopperRepository;
+import com.supershoppercart.repositories.TimedReadResult;
+import com.supershoppercart.security.ShopperPrincipalCache;
+import com.supershoppercart.utils.FirestoreErrors;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.Lock;
 
 /**
  * Service layer for managing ShopCarts and their interactions with Shoppers.
+ * Mutations of the same cart are serialized within this instance through a fixed set of lock stripes.
+ * Every write of a cart drops its cached detail JSON, and every removal of a cart from a shopper leaves a tombstone
+ * in the same batch for delta sync.
  */
 @Service
 public class ShopCartService {
 
+    private static final Logger logger = LoggerFactory.getLogger(ShopCartService.class);
+
+    private static final int CART_LOCK_STRIPES = 64;
+    private static final String CART_REPRESENTATION = "cart";
+
+    @Value("${carts.write.max-attempts:3}")
+    private int maxWriteAttempts = 3;
+
+    @Value("${carts.write.retry-backoff:PT0.025S}")
+    private Duration writeRetryBackoff = Duration.ofMillis(25);
+
+    @Value("${carts.items.storage:EMBEDDED}")
+    private ItemStorage newCartItemStorage = ItemStorage.EMBEDDED;
+
+    @Value("${carts.write.coalesce.enabled:true}")
+    private boolean coalesceWrites = true;
+
+    @Value("${carts.write.coalesce.window:PT0.05S}")
+    private Duration coalesceWindow = Duration.ofMillis(50);
+
+    @Value("${carts.write.coalesce.max-operations:25}")
+    private int coalesceMaxOperations = 25;
+
+    @Value("${carts.write.coalesce.flush-threads:4}")
+    private int coalesceFlushThreads = 4;
+
+    @Value("${carts.sync.tombstone-retention:P30D}")
+    private Duration tombstoneRetention = Duration.ofDays(30);
+
     private final ShopCartRepository shopCartRepository;
     private final ShopperRepository shopperRepository;
-
-    public ShopCartService(ShopCartRepository shopCartRepository, ShopperRepository shopperRepository) {
+    private final GroceryItemRepository groceryItemRepository;
+    private final CartTombstoneRepository cartTombstoneRepository;
+    private final Firestore firestore;
+    private final MeterRegistry meterRegistry;
+    private final CartLockStripes cartLocks;
+    private final CartDetailJsonCache detailJsonCache;
+    private final ShopperPrincipalCache principalCache;
+
+    private CartWriteCoalescer writeCoalescer; // Null until started; writes then go straight to the repository
+
+    public ShopCartService(ShopCartRepository shopCartRepository, ShopperRepository shopperRepository,
+                           GroceryItemRepository groceryItemRepository, CartTombstoneRepository cartTombstoneRepository,
+                           Firestore firestore, MeterRegistry meterRegistry, CartDetailJsonCache detailJsonCache,
+                           ShopperPrincipalCache principalCache) {
         this.shopCartRepository = shopCartRepository;
         this.shopperRepository = shopperRepository;
+        this.groceryItemRepository = groceryItemRepository;
+        this.cartTombstoneRepository = cartTombstoneRepository;
+        this.firestore = firestore;
+        this.meterRegistry = meterRegistry;
+        this.cartLocks = new CartLockStripes(CART_LOCK_STRIPES, meterRegistry);
+        this.detailJsonCache = detailJsonCache;
+        this.principalCache = principalCache;
+    }
+
+    /**
+     * Starts merging rapid patch writes to the same embedded-layout cart, if enabled.
+     * Each merged flush is one read plus one guarded write, retried on conflict like any other cart write.
+     */
+    @PostConstruct
+    public void startWriteCoalescer() {
+        if (coalesceWrites) {
+            writeCoalescer = new CartWriteCoalescer(
+                    (cartId, operations) -> withOptimisticRetry(cartId, "coalescedPatch",
+                            () -> shopCartRepository.applyPatch(cartId, operations)),
+                    coalesceWindow, coalesceMaxOperations, coalesceFlushThreads, meterRegistry);
+            logger.info("Coalescing cart writes within {} (at most {} operations per write)", coalesceWindow, coalesceMaxOperations);
+        }
+    }
+
+    /**
+     * Writes out every coalesced operation still pending before the application stops.
+     */
+    @PreDestroy
+    public void flushPendingWrites() {
+        if (writeCoalescer != null) {
+            writeCoalescer.close();
+        }
     }
 
     /**
      * Creates a new shopping cart and optionally links it to existing shoppers.
+     * The cart and every shopper's membership update are written in a single batch.
      *
      * @param dateKey The date key for the cart.
      * @param items Initial grocery items for the cart.
@@ -58,26 +169,39 @@ public class ShopCartService {
         }
         newCart.setShopperIds(shopperIds);
 
-        ShopCart savedCart = shopCartRepository.save(newCart);
-
+        WriteBatch batch = firestore.batch();
+        ShopCart savedCart = stageNewCart(batch, newCart);
         // Update shoppers to include the new cart's ID
         for (String shopperId : shopperIds) {
-            shopperRepository.findById(shopperId).ifPresent(shopper -> {
-                if (!shopper.getShopCartIds().contains(savedCart.getId())) {
-                    shopper.getShopCartIds().add(savedCart.getId());
-                    try {
-                        shopperRepository.save(shopper);
-                    } catch (ExecutionException | InterruptedException e) {
-                        System.err.println("Error updating shopper's cart list: " + e.getMessage());
-                        // Consider more robust error handling / rollback
-                    }
-                }
-            });
+            shopperRepository.stageAddShopCartId(batch, shopperId, savedCart.getId());
         }
+        batch.commit().get();
+        shopperIds.forEach(principalCache::invalidate);
 
         return savedCart;
     }
 
+    /**
+     * Stages the write of a new cart in the layout configured by {@code carts.items.storage}.
+     * Either way the cart starts with tracked item counters. In the subcollection layout the cart document is written with its counters and an empty items array,
+     * and each item becomes its own document in the same batch.
+     */
+    private ShopCart stageNewCart(WriteBatch batch, ShopCart newCart) {
+        newCart.recountItems();
+        if (newCartItemStorage != ItemStorage.SUBCOLLECTION) {
+            return shopCartRepository.stageSave(batch, newCart);
+        }
+        List<GroceryItem> items = newCart.getItems() != null ? newCart.getItems() : new ArrayList<>();
+        newCart.setItemStorage(ItemStorage.SUBCOLLECTION);
+        newCart.setItems(new ArrayList<>());
+        ShopCart savedCart = shopCartRepository.stageSave(batch, newCart);
+        savedCart.setItems(items); // The batch has already captured the document, so the returned cart can keep its items
+        for (GroceryItem item : items) {
+            groceryItemRepository.stageAdd(batch, savedCart.getId(), item);
+        }
+        return savedCart;
+    }
+
     /**
      * Retrieves a ShopCart by its ID.
      *
@@ -87,7 +211,12 @@ public class ShopCartService {
      * @throws InterruptedException If the thread is interrupted.
      */
     public Optional<ShopCart> getShopCartById(String cartId) throws ExecutionException, InterruptedException {
-        return shopCartRepository.findById(cartId);
+        awaitPendingWrites(List.of(cartId));
+        Optional<ShopCart> cartOpt = shopCartRepository.findById(cartId);
+        if (cartOpt.isPresent() && cartOpt.get().usesItemSubcollection()) {
+            cartOpt.get().setItems(groceryItemRepository.findByCartId(cartId));
+        }
+        return cartOpt;
     }
 
     /**
@@ -103,6 +232,8 @@ public class ShopCartService {
 
     /**
      * Adds an item to an existing shopping cart.
+     * Only the new item, the item counters and, for an embedded cart, its state are written; the rest of
+     * the cart document is left untouched.
      *
      * @param cartId The ID of the shop cart to update.
      * @param item The grocery item to add.
@@ -110,75 +241,154 @@ public class ShopCartService {
      * @throws ExecutionException If a Firestore operation fails.
      * @throws InterruptedException If the thread is interrupted.
      * @throws IllegalArgumentException If the cart is not found.
+     * @throws CartConflictException If concurrent writes kept winning the race until the retries ran out.
      */
     public ShopCart addItemToCart(String cartId, GroceryItem item)
             throws ExecutionException, InterruptedException, IllegalArgumentException {
         Optional<ShopCart> cartOptional = shopCartRepository.findById(cartId);
-        if (cartOptional.isPresent()) {
-            ShopCart cart = cartOptional.get();
-            cart.getItems().add(item);
-            return shopCartRepository.save(cart);
-        } else {
+        if (cartOptional.isEmpty()) {
             throw new IllegalArgumentException("ShopCart with ID " + cartId + " not found.");
         }
+        if (!cartOptional.get().usesItemSubcollection()) {
+            // The write is guarded by the cart's update time, since it also carries the cart's new state
+            return withOptimisticRetry(cartId, "addItem", () -> shopCartRepository.appendItem(cartId, item));
+        }
+        withOptimisticRetry(cartId, "addItem", () -> groceryItemRepository.add(cartId, item));
+        // Reloaded after unlocking, like a subcollection patch, so the state is settled from the stored counters
+        return getShopCartById(cartId)
+                .orElseThrow(() -> new IllegalArgumentException("ShopCart with ID " + cartId + " not found."));
     }
 
     /**
      * Marks an item in a shop cart as purchased.
+     * For embedded-layout carts the change may be merged with other writes to the same cart made
+     * within the coalescing window; the call returns once the merged write has been committed.
      *
      * @param cartId      The ID of the shop cart.
      * @param designation The designation of the item to mark.
      * @throws ExecutionException       If a Firestore operation fails.
      * @throws InterruptedException     If the thread is interrupted.
      * @throws IllegalArgumentException If the cart or item is not found.
+     * @throws CartConflictException    If concurrent writes kept winning the race until the retries ran out.
      */
     public void markItemAsPurchased(String cartId, String designation)
             throws ExecutionException, InterruptedException, IllegalArgumentException {
         Optional<ShopCart> cartOptional = shopCartRepository.findById(cartId);
-        if (cartOptional.isPresent()) {
-            ShopCart cart = cartOptional.get();
-            boolean itemFound = false;
-            for (GroceryItem item : cart.getItems()) {
-                if (item.getDesignation().equals(designation)) {
-                    item.setPurchased(true);
-                    itemFound = true;
-                    break;
-                }
-            }
-            if (!itemFound) {
-                throw new IllegalArgumentException("Grocery item with designation " + designation + " not found in cart " + cartId);
-            }
-            shopCartRepository.save(cart);
-        } else {
+        if (cartOptional.isEmpty()) {
             throw new IllegalArgumentException("ShopCart with ID " + cartId + " not found.");
         }
+        if (cartOptional.get().usesItemSubcollection()) {
+            setSubcollectionItemPurchased(cartId, designation, true);
+            return;
+        }
+        if (writeCoalescer != null) {
+            awaitCoalesced(writeCoalescer.submit(cartId, List.of(CartPatchOperation.setPurchased(designation, true))));
+            return;
+        }
+        withOptimisticRetry(cartId, "markItemAsPurchased",
+                () -> shopCartRepository.setItemPurchased(cartId, designation, true));
     }
 
     /**
-     * Deletes a shopping cart.
+     * Applies a list of small operations to a cart the shopper is a member of.
+     * The operations are written together as field-level updates, never as a whole-cart rewrite,
+     * possibly merged with other patches of the same cart made within the coalescing window.
+     *
+     * @param cartId     The ID of the shop cart.
+     * @param shopperId  The shopper performing the change.
+     * @param operations The operations to apply, in order.
+     * @return The updated ShopCart.
+     * @throws ExecutionException       If a Firestore operation fails.
+     * @throws InterruptedException     If the thread is interrupted.
+     * @throws IllegalArgumentException If an operation is invalid, the cart or an item is not found,
+     *                                  or the shopper is not a member of the cart.
+     * @throws CartConflictException    If concurrent writes kept winning the race until the retries ran out.
+     */
+    public ShopCart patchShopCart(String cartId, String shopperId, List<CartPatchOperation> operations)
+            throws ExecutionException, InterruptedException, IllegalArgumentException {
+        if (operations == null || operations.isEmpty()) {
+            throw new IllegalArgumentException("At least one patch operation is required.");
+        }
+        operations.forEach(CartPatchOperation::validate);
+
+        Optional<ShopCart> cartOpt = shopCartRepository.findById(cartId);
+        if (cartOpt.isEmpty()) {
+            throw new IllegalArgumentException("Cart with ID " + cartId + " not found.");
+        }
+        if (!cartOpt.get().isMember(shopperId)) {
+            throw new IllegalArgumentException("You do not have permission to modify this cart.");
+        }
+
+        if (cartOpt.get().usesItemSubcollection()) {
+            return patchSubcollectionItems(cartId, operations);
+        }
+        if (writeCoalescer != null) {
+            return awaitCoalesced(writeCoalescer.submit(cartId, operations));
+        }
+        return withOptimisticRetry(cartId, "patch", () -> shopCartRepository.applyPatch(cartId, operations));
+    }
+
+    /**
+     * Applies patch operations to a cart in the subcollection layout in one batch: the item documents
+     * plus a counter increment on the cart. Only the toggled items are guarded, so edits to different
+     * items do not contend, and a patch naming an unknown item writes nothing.
+     */
+    private ShopCart patchSubcollectionItems(String cartId, List<CartPatchOperation> operations)
+            throws ExecutionException, InterruptedException {
+        withOptimisticRetry(cartId, "patch", () -> {
+            groceryItemRepository.applyPatch(cartId, operations);
+            return null;
+        });
+        // Reloaded after unlocking: the read waits for coalesced writes, and their flush takes this lock
+        return getShopCartById(cartId)
+                .orElseThrow(() -> new IllegalArgumentException("Cart with ID " + cartId + " not found."));
+    }
+
+    private void setSubcollectionItemPurchased(String cartId, String designation, boolean purchased)
+            throws ExecutionException, InterruptedException {
+        withOptimisticRetry(cartId, "setItemPurchased", () -> {
+            GroceryItem item = groceryItemRepository.findByDesignation(cartId, designation)
+                    .orElseThrow(() -> new IllegalArgumentException(
+                            "Grocery item with designation " + designation + " not found in cart " + cartId));
+            return groceryItemRepository.setPurchased(cartId, item.getId(), purchased);
+        });
+    }
+
+    /**
+     * Deletes a shopping cart and removes it from its members' cart lists in a single batch,
+     * together with a tombstone for every member.
      *
      * @param cartId The ID of the shop cart to delete.
      * @throws ExecutionException If a Firestore operation fails.
      * @throws InterruptedException If the thread is interrupted.
      */
     public void deleteShopCart(String cartId) throws ExecutionException, InterruptedException {
-        // Also consider removing this cart ID from any associated shoppers
-        Optional<ShopCart> cartOptional = shopCartRepository.findById(cartId);
-        if (cartOptional.isPresent()) {
-            ShopCart cart = cartOptional.get();
-            for (String shopperId : cart.getShopperIds()) {
-                shopperRepository.findById(shopperId).ifPresent(shopper -> {
-                    shopper.getShopCartIds().remove(cartId);
-                    try {
-                        shopperRepository.save(shopper);
-                    } catch (ExecutionException | InterruptedException e) {
-                        System.err.println("Error removing cart ID from shopper: " + e.getMessage());
-                    }
-                });
+        Lock lock = cartLocks.acquire(cartId);
+        try {
+            Optional<ShopCart> cartOptional = shopCartRepository.findById(cartId);
+            if (cartOptional.isPresent()) {
+                ShopCart cart = cartOptional.get();
+                WriteBatch batch = firestore.batch();
+                // Only existing shoppers can be updated; a batched update of a missing document fails the whole commit
+                BatchReadResult<Shopper> members = shopperRepository.findAllById(cart.getShopperIds());
+                for (Shopper shopper : members.getFound()) {
+                    shopperRepository.stageRemoveShopCartId(batch, shopper.getId(), cartId);
+                }
+                for (String shopperId : cart.getShopperIds()) {
+                    cartTombstoneRepository.stageSave(batch, new CartTombstone(cartId, shopperId, CartRemovalReason.DELETED));
+                }
+                shopCartRepository.stageDelete(batch, cartId);
+                batch.commit().get();
+                members.getFound().forEach(shopper -> principalCache.invalidate(shopper.getId()));
+                if (cart.usesItemSubcollection()) {
+                    groceryItemRepository.deleteByCartId(cartId);
+                }
+            } else {
+                logger.info("ShopCart with ID {} not found for deletion.", cartId);
             }
-            shopCartRepository.deleteById(cartId);
-        } else {
-            System.out.println("ShopCart with ID " + cartId + " not found for deletion.");
+        } finally {
+            detailJsonCache.invalidate(cartId);
+            lock.unlock();
         }
     }
 
@@ -223,6 +433,12 @@ public class ShopCartService {
         ShopCart newCart = templateCart.createFromTemplate(creatorId, List.of(creatorId));
 
         // Save the new cart to Firestore
+        if (newCartItemStorage == ItemStorage.SUBCOLLECTION) {
+            WriteBatch batch = firestore.batch();
+            ShopCart savedCart = stageNewCart(batch, newCart);
+            batch.commit().get();
+            return savedCart;
+        }
         return shopCartRepository.save(newCart);
     }
 
@@ -254,6 +470,147 @@ public class ShopCartService {
      * @return list of carts belonging to that shopper
      */
     public List<ShopCartDetailDTO> getShopCartsByShopperId(String shopperId) throws ExecutionException, InterruptedException {
+        List<ShopCartDetailDTO> result = new ArrayList<>();
+        for (ShopCart cart : findCartsOfShopper(shopperId)) {
+            result.add(new ShopCartDetailDTO(cart.getId(), cart));
+        }
+        return result;
+    }
+
+    /**
+     * Retrieves all carts associated with a specific shopper ID as a serialized JSON array of cart details.
+     * Each cart's JSON comes from the detail JSON cache when the cart has not changed since it was last serialized.
+     *
+     * @param shopperId      the shopper ID
+     * @param acceptEncoding the request's Accept-Encoding header, or null
+     * @return the UTF-8 JSON array, in the same format as {@link #getShopCartsByShopperId(String)} would serialize to,
+     * compressed if the client accepts it and it is large enough to be worth it
+     * @throws JsonProcessingException if a cart cannot be serialized
+     */
+    public EncodedBody getShopCartsJsonByShopperId(String shopperId, String acceptEncoding)
+            throws ExecutionException, InterruptedException, JsonProcessingException {
+        return detailJsonCache.getEncodedJsonArray(findCartsOfShopper(shopperId), acceptEncoding);
+    }
+
+    /**
+     * Computes the ETag of the shopper's cart list in the given view from the carts' versions alone.
+     * Only the update time and membership of each cart are read, so a client polling with If-None-Match
+     * can be told nothing changed without items ever being transferred.
+     *
+     * @param shopperId the shopper ID
+     * @param view      the view the list is returned in
+     * @return the quoted strong ETag
+     */
+    public String getShopCartsETag(String shopperId, CartListView view) throws ExecutionException, InterruptedException {
+        Optional<Shopper> shopperOpt = shopperRepository.findById(shopperId);
+        if (shopperOpt.isEmpty()) {
+            throw new IllegalArgumentException("Shopper with ID " + shopperId + " not found.");
+        }
+        List<String> cartIds = shopperOpt.get().getShopCartIds();
+        String representation = "carts:" + view.name();
+        if (cartIds == null || cartIds.isEmpty()) {
+            return CartETags.of(representation, List.of());
+        }
+        awaitPendingWrites(cartIds);
+        return CartETags.of(representation, shopCartRepository.findVersionsById(cartIds).getFound());
+    }
+
+    /**
+     * Computes the ETag of a single cart from its version alone.
+     *
+     * @param cartId    The ID of the shop cart.
+     * @param shopperId The shopper requesting the cart.
+     * @return The quoted strong ETag, or empty if the cart does not exist or the shopper is not a member.
+     */
+    public Optional<String> getShopCartETag(String cartId, String shopperId) throws ExecutionException, InterruptedException {
+        awaitPendingWrites(List.of(cartId));
+        for (ShopCart version : shopCartRepository.findVersionsById(List.of(cartId)).getFound()) {
+            if (version.isMember(shopperId)) {
+                return Optional.of(CartETags.of(CART_REPRESENTATION, List.of(version)));
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Retrieves a cart the shopper is a member of as the serialized JSON of its details, from the
+     * detail JSON cache when the cart has not changed since it was last serialized.
+     *
+     * @param cartId         The ID of the shop cart.
+     * @param shopperId      The shopper requesting the cart.
+     * @param acceptEncoding The request's Accept-Encoding header, or null.
+     * @return The UTF-8 JSON, compressed once per cart version in the coding the client prefers,
+     * or empty if the cart does not exist or the shopper is not a member.
+     * @throws JsonProcessingException If the cart cannot be serialized.
+     */
+    public Optional<EncodedBody> getShopCartJson(String cartId, String shopperId, String acceptEncoding)
+            throws ExecutionException, InterruptedException, JsonProcessingException {
+        Optional<ShopCart> cartOpt = getShopCartById(cartId);
+        if (cartOpt.isEmpty() || !cartOpt.get().isMember(shopperId)) {
+            return Optional.empty();
+        }
+        return Optional.of(detailJsonCache.getEncodedJson(cartOpt.get(), acceptEncoding));
+    }
+
+    /**
+     * Returns what changed in the shopper's carts since an earlier sync: the carts modified since, whole and with
+     * their items, and the carts that left the shopper's list since. Without a token, or with one older than the
+     * tombstone retention, every cart of the shopper is returned instead and the response is marked as a full resync.
+     * <p>
+     * Tombstones are read before carts and the token is the tombstone read time, so a cart removed between
+     * the two reads is reported by the next sync rather than lost; carts changed in that gap are merely sent twice.
+     *
+     * @param shopperId  the shopper ID
+     * @param sinceToken the token of the previous sync, or null
+     * @return the changes and the token for the next sync
+     * @throws IllegalArgumentException if the token is malformed
+     */
+    public CartSyncResponseDTO syncShopCarts(String shopperId, String sinceToken) throws ExecutionException, InterruptedException {
+        Timestamp since = sinceToken == null || sinceToken.isBlank() ? null : CartSyncTokens.decode(sinceToken);
+        boolean fullResync = since == null
+                || since.toDate().toInstant().isBefore(Instant.now().minus(tombstoneRetention));
+
+        List<CartSyncResponseDTO.RemovedCart> removed = new ArrayList<>();
+        Timestamp readTime = null;
+        if (!fullResync) {
+            TimedReadResult<CartTombstone> tombstones = cartTombstoneRepository.findByShopperIdRemovedAfter(shopperId, since);
+            for (CartTombstone tombstone : tombstones.getFound()) {
+                removed.add(CartSyncResponseDTO.RemovedCart.of(tombstone));
+            }
+            readTime = tombstones.getReadTime();
+        }
+
+        TimedReadResult<ShopCart> changed = shopCartRepository.findByShopperIdModifiedAfter(shopperId, fullResync ? null : since);
+        List<ShopCart> carts = new ArrayList<>(changed.getFound());
+        attachSubcollectionItems(carts);
+        List<ShopCartDetailDTO> details = new ArrayList<>(carts.size());
+        for (ShopCart cart : carts) {
+            details.add(new ShopCartDetailDTO(cart.getId(), cart));
+        }
+        if (readTime == null) {
+            readTime = changed.getReadTime();
+        }
+        return new CartSyncResponseDTO(CartSyncTokens.encode(readTime), fullResync, details, removed);
+    }
+
+    /**
+     * Retrieves the details of a cart the shopper is a member of.
+     *
+     * @param cartId    The ID of the shop cart.
+     * @param shopperId The shopper requesting the cart.
+     * @return The details, or empty if the cart does not exist or the shopper is not a member.
+     */
+    public Optional<ShopCartDetailDTO> getShopCartDetail(String cartId, String shopperId)
+            throws ExecutionException, InterruptedException {
+        return getShopCartById(cartId)
+                .filter(cart -> cart.isMember(shopperId))
+                .map(cart -> new ShopCartDetailDTO(cart.getId(), cart));
+    }
+
+    /**
+     * Reads the shopper's carts with their items, dropping IDs of carts that no longer exist from the shopper.
+     */
+    private List<ShopCart> findCartsOfShopper(String shopperId) throws ExecutionException, InterruptedException {
         Optional<Shopper> shopperOpt = shopperRepository.findById(shopperId);
         if (shopperOpt.isEmpty()) {
             throw new IllegalArgumentException("Shopper with ID " + shopperId + " not found.");
@@ -261,14 +618,133 @@ public class ShopCartService {
 
         Shopper shopper = shopperOpt.get();
         List<String> cartIds = shopper.getShopCartIds();
-        List<ShopCartDetailDTO> result = new ArrayList<>();
+        if (cartIds == null || cartIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        awaitPendingWrites(cartIds);
+        BatchReadResult<ShopCart> carts = shopCartRepository.findAllById(cartIds);
+        attachSubcollectionItems(carts.getFound());
 
-        for (String cartId : cartIds) {
-            shopCartRepository.findById(cartId).ifPresent(cart ->
-                    result.add(new ShopCartDetailDTO(cartId, cart))
-            );
+        if (carts.hasMissing()) {
+            removeStaleCartIds(shopper, carts.getMissingIds());
+        }
+        return carts.getFound();
+    }
+
+    /**
+     * Retrieves summaries of all carts associated with a specific shopper ID.
+     * Only the summary fields of each cart are read, so items and permissions are never transferred.
+     *
+     * @param shopperId the shopper ID
+     * @return summaries of the carts belonging to that shopper
+     */
+    public List<ShopCartSummaryDTO> getShopCartSummariesByShopperId(String shopperId) throws ExecutionException, InterruptedException {
+        Optional<Shopper> shopperOpt = shopperRepository.findById(shopperId);
+        if (shopperOpt.isEmpty()) {
+            throw new IllegalArgumentException("Shopper with ID " + shopperId + " not found.");
+        }
+
+        Shopper shopper = shopperOpt.get();
+        List<String> cartIds = shopper.getShopCartIds();
+        if (cartIds == null || cartIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        awaitPendingWrites(cartIds);
+        BatchReadResult<ShopCartSummaryDTO> summaries = shopCartRepository.findSummariesById(cartIds);
+        if (summaries.hasMissing()) {
+            removeStaleCartIds(shopper, summaries.getMissingIds());
+        }
+        return new ArrayList<>(summaries.getFound());
+    }
+
+    /**
+     * Fills in the items of carts in the subcollection layout with a single collection group query.
+     */
+    private void attachSubcollectionItems(List<ShopCart> carts) throws ExecutionException, InterruptedException {
+        List<String> subcollectionCartIds = carts.stream()
+                .filter(ShopCart::usesItemSubcollection)
+                .map(ShopCart::getId)
+                .toList();
+        if (subcollectionCartIds.isEmpty()) {
+            return;
+        }
+        Map<String, List<GroceryItem>> itemsByCartId = groceryItemRepository.findByCartIds(subcollectionCartIds);
+        for (ShopCart cart : carts) {
+            if (cart.usesItemSubcollection()) {
+                cart.setItems(itemsByCartId.getOrDefault(cart.getId(), new ArrayList<>()));
+            }
+        }
+    }
+
+    /**
+     * Moves a cart's embedded items into its items subcollection.
+     *
+     * @param cartId The ID of the shop cart to migrate.
+     * @return true if the cart was migrated, false if it already used the subcollection layout.
+     * @throws ExecutionException       If a Firestore operation fails.
+     * @throws InterruptedException     If the thread is interrupted.
+     * @throws IllegalArgumentException If the cart is not found.
+     * @throws CartConflictException    If concurrent writes kept winning the race until the retries ran out.
+     */
+    public boolean migrateCartItemsToSubcollection(String cartId)
+            throws ExecutionException, InterruptedException, IllegalArgumentException {
+        return withOptimisticRetry(cartId, "migrateItems", () -> {
+            ShopCart cart = shopCartRepository.findById(cartId)
+                    .orElseThrow(() -> new IllegalArgumentException("ShopCart with ID " + cartId + " not found."));
+            if (cart.usesItemSubcollection()) {
+                return false;
+            }
+            groceryItemRepository.migrateEmbeddedItems(cart);
+            return true;
+        });
+    }
+
+    /**
+     * Moves the embedded items of every cart still in the embedded layout into item subcollections.
+     * A cart that keeps conflicting is logged and skipped so one busy cart does not stop the run.
+     *
+     * @return The number of carts migrated.
+     * @throws ExecutionException If a Firestore operation fails.
+     * @throws InterruptedException If the thread is interrupted.
+     */
+    public int migrateAllCartItemsToSubcollection() throws ExecutionException, InterruptedException {
+        int migrated = 0;
+        for (ShopCart cart : shopCartRepository.findAll()) {
+            if (cart.usesItemSubcollection()) {
+                continue;
+            }
+            try {
+                if (migrateCartItemsToSubcollection(cart.getId())) {
+                    migrated++;
+                }
+            } catch (CartConflictException e) {
+                logger.warn("Skipping item migration of cart {}: {}", cart.getId(), e.getMessage());
+            }
+        }
+        logger.info("Migrated the items of {} carts to the subcollection layout", migrated);
+        return migrated;
+    }
+
+    /**
+     * Drops cart IDs that no longer resolve to a cart from the shopper's membership list.
+     * The IDs are removed with arrayRemove in one batch rather than by saving the shopper, so a cart ID added
+     * concurrently by arrayUnion is not overwritten. This is best-effort: a failure is logged and the read still succeeds.
+     */
+    private void removeStaleCartIds(Shopper shopper, List<String> staleCartIds) throws InterruptedException {
+        logger.info("Removing {} stale cart IDs from shopper {}: {}", staleCartIds.size(), shopper.getId(), staleCartIds);
+        WriteBatch batch = firestore.batch();
+        for (String cartId : staleCartIds) {
+            shopperRepository.stageRemoveShopCartId(batch, shopper.getId(), cartId);
+        }
+        try {
+            batch.commit().get();
+            principalCache.invalidate(shopper.getId());
+            shopper.getShopCartIds().removeAll(staleCartIds);
+        } catch (ExecutionException e) {
+            logger.warn("Error removing stale cart IDs from shopper {}: {}", shopper.getId(), e.getMessage());
         }
-        return result;
     }
 
     /**
@@ -279,42 +755,52 @@ public class ShopCartService {
      * @param targetEmail     the email of the target shopper
      * @param permission      permission type (e.g. "VIEW", "EDIT")
      * @return true if shared successfully
+     * @throws CartConflictException if concurrent writes kept winning the race until the retries ran out
      */
     public boolean shareShopCart(String cartId, String ownerShopperId, String targetEmail, SharePermission permission)
             throws ExecutionException, InterruptedException {
-        Optional<ShopCart> cartOpt = shopCartRepository.findById(cartId);
-        if (cartOpt.isEmpty()) {
-            throw new IllegalArgumentException("Cart with ID " + cartId + " not found.");
-        }
-
-        ShopCart cart = cartOpt.get();
-        if (!cart.getShopperIds().contains(ownerShopperId)) {
-            throw new IllegalArgumentException("You do not have permission to share this cart.");
-        }
-
-        Optional<Shopper> targetOpt = shopperRepository.findByEmail(targetEmail);
-        if (targetOpt.isEmpty()) {
-            throw new IllegalArgumentException("Target shopper with email " + targetEmail + " not found.");
-        }
+        Lock lock = cartLocks.acquire(cartId);
+        try {
+            Optional<Shopper> targetOpt = Optional.empty();
+            for (int attempt = 1; ; attempt++) {
+                Optional<ShopCart> cartOpt = shopCartRepository.findById(cartId);
+                if (cartOpt.isEmpty()) {
+                    throw new IllegalArgumentException("Cart with ID " + cartId + " not found.");
+                }
 
-        Shopper target = targetOpt.get();
-        if (!cart.getShopperIds().contains(target.getId())) {
-            cart.getShopperIds().add(target.getId());
-        }
+                ShopCart cart = cartOpt.get();
+                if (!cart.isMember(ownerShopperId)) {
+                    throw new IllegalArgumentException("You do not have permission to share this cart.");
+                }
 
-        // record share permission
-        cart.addOrUpdatePermission(target.getId(), permission);
+                if (targetOpt.isEmpty()) {
+                    targetOpt = shopperRepository.findByEmail(targetEmail);
+                    if (targetOpt.isEmpty()) {
+                        throw new IllegalArgumentException("Target shopper with email " + targetEmail + " not found.");
+                    }
+                }
 
-        // persist cart update
-        shopCartRepository.save(cart);
+                Shopper target = targetOpt.get();
+                if (!cart.isMember(target.getId())) {
+                    cart.getShopperIds().add(target.getId());
+                }
 
-        // also update shopper doc to include cart
-        if (!target.getShopCartIds().contains(cartId)) {
-            target.getShopCartIds().add(cartId);
-            shopperRepository.save(target);
+                // record share permission
+                cart.addOrUpdatePermission(target.getId(), permission);
+
+                // persist the cart's membership fields and the shopper's membership together,
+                // guarded by the cart version that was read
+                WriteBatch batch = firestore.batch();
+                shopCartRepository.stageUpdate(batch, cart, membershipFields(cart));
+                shopperRepository.stageAddShopCartId(batch, target.getId(), cartId);
+                if (commitGuarded(batch, cartId, "share", attempt)) {
+                    principalCache.invalidate(target.getId());
+                    return true;
+                }
+            }
+        } finally {
+            lock.unlock();
         }
-
-        return true;
     }
 
     /**
@@ -324,33 +810,166 @@ public class ShopCartService {
      * @param ownerShopperId the owner performing the removal
      * @param targetShopperId the shopper to remove
      * @return true if removed successfully
+     * @throws CartConflictException if concurrent writes kept winning the race until the retries ran out
      */
     public boolean removeSharing(String cartId, String ownerShopperId, String targetShopperId)
             throws ExecutionException, InterruptedException {
-        Optional<ShopCart> cartOpt = shopCartRepository.findById(cartId);
-        if (cartOpt.isEmpty()) {
-            throw new IllegalArgumentException("Cart with ID " + cartId + " not found.");
+        Lock lock = cartLocks.acquire(cartId);
+        try {
+            for (int attempt = 1; ; attempt++) {
+                Optional<ShopCart> cartOpt = shopCartRepository.findById(cartId);
+                if (cartOpt.isEmpty()) {
+                    throw new IllegalArgumentException("Cart with ID " + cartId + " not found.");
+                }
+
+                ShopCart cart = cartOpt.get();
+                if (!cart.isMember(ownerShopperId)) {
+                    throw new IllegalArgumentException("You do not have permission to modify this cart.");
+                }
+
+                boolean removed = cart.getShopperIds().remove(targetShopperId);
+                cart.removePermission(targetShopperId);
+
+                WriteBatch batch = firestore.batch();
+                shopCartRepository.stageUpdate(batch, cart, membershipFields(cart));
+                if (shopperRepository.findById(targetShopperId).isPresent()) {
+                    shopperRepository.stageRemoveShopCartId(batch, targetShopperId, cartId);
+                }
+                if (removed) {
+                    cartTombstoneRepository.stageSave(batch, new CartTombstone(cartId, targetShopperId, CartRemovalReason.UNSHARED));
+                }
+                if (commitGuarded(batch, cartId, "removeSharing", attempt)) {
+                    principalCache.invalidate(targetShopperId);
+                    return removed;
+                }
+            }
+        } finally {
+            lock.unlock();
         }
+    }
 
-        ShopCart cart = cartOpt.get();
-        if (!cart.getShopperIds().contains(ownerShopperId)) {
-            throw new IllegalArgumentException("You do not have permission to modify this cart.");
+    // --- Write coalescing ---
+
+    /**
+     * Lets reads on this instance see the cart writes it has already accepted.
+     */
+    private void awaitPendingWrites(List<String> cartIds) throws InterruptedException {
+        if (writeCoalescer != null) {
+            writeCoalescer.awaitPending(cartIds);
+        }
+    }
+
+    /**
+     * Waits for a coalesced write, rethrowing the failure the direct write would have thrown.
+     */
+    private static ShopCart awaitCoalesced(CompletableFuture<ShopCart> write) throws ExecutionException, InterruptedException {
+        try {
+            return write.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException; // IllegalArgumentException and CartConflictException keep their meaning for callers
+            }
+            if (e.getCause() instanceof ExecutionException executionException) {
+                throw executionException;
+            }
+            throw e;
         }
+    }
 
-        boolean removed = cart.getShopperIds().remove(targetShopperId);
-        cart.removePermission(targetShopperId);
+    // --- Optimistic concurrency ---
 
-        shopCartRepository.save(cart);
+    @FunctionalInterface
+    private interface CartWrite<T> {
+        T attempt() throws ExecutionException, InterruptedException;
+    }
 
-        shopperRepository.findById(targetShopperId).ifPresent(shopper -> {
-            shopper.getShopCartIds().remove(cartId);
-            try {
-                shopperRepository.save(shopper);
-            } catch (Exception e) {
-                throw new RuntimeException("Error updating shopper after removing sharing: " + e.getMessage(), e);
+    /**
+     * Runs a read-modify-write of a cart whose write is guarded by the update time it read.
+     * When another writer got there first the whole attempt is repeated on fresh state, up to
+     * {@code carts.write.max-attempts} times; after that the caller gets a {@link CartConflictException}
+     * carrying the cart's current state. The loop holds the cart's lock stripe, so requests for the same
+     * cart on this instance take turns instead of conflicting with each other in Firestore.
+     * The cart's cached detail JSON is dropped however the write ends.
+     */
+    private <T> T withOptimisticRetry(String cartId, String operation, CartWrite<T> write)
+            throws ExecutionException, InterruptedException {
+        Lock lock = cartLocks.acquire(cartId);
+        try {
+            for (int attempt = 1; ; attempt++) {
+                recordWriteAttempt(operation);
+                try {
+                    return write.attempt();
+                } catch (CartConflictException e) {
+                    onConflict(cartId, operation, attempt);
+                }
             }
-        });
+        } finally {
+            detailJsonCache.invalidate(cartId);
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Commits a batch that contains a precondition-guarded cart update.
+     * @return true if the batch was committed, false if the cart changed concurrently and the caller should retry.
+     */
+    private boolean commitGuarded(WriteBatch batch, String cartId, String operation, int attempt)
+            throws ExecutionException, InterruptedException {
+        recordWriteAttempt(operation);
+        try {
+            batch.commit().get();
+            detailJsonCache.invalidate(cartId);
+            return true;
+        } catch (ExecutionException e) {
+            if (!FirestoreErrors.isFailedPrecondition(e)) {
+                throw e;
+            }
+            onConflict(cartId, operation, attempt);
+            return false;
+        }
+    }
+
+    /**
+     * Counts a lost race, then either backs off before the next attempt or, once the attempts
+     * are used up, gives up with the current cart state.
+     */
+    private void onConflict(String cartId, String operation, int attempt) throws ExecutionException, InterruptedException {
+        Counter.builder("shopcart.write.conflicts")
+                .description("Cart writes rejected because the cart changed after it was read")
+                .tag("operation", operation)
+                .register(meterRegistry)
+                .increment();
+        if (attempt >= maxWriteAttempts) {
+            Counter.builder("shopcart.write.conflicts.exhausted")
+                    .description("Cart writes given up after every retry lost to a concurrent write")
+                    .tag("operation", operation)
+                    .register(meterRegistry)
+                    .increment();
+            logger.warn("Giving up {} on cart {} after {} conflicting attempts", operation, cartId, attempt);
+            throw new CartConflictException(cartId, shopCartRepository.findById(cartId).orElse(null));
+        }
+        logger.debug("Cart {} changed during {}; retrying (attempt {} of {})", cartId, operation, attempt + 1, maxWriteAttempts);
+        long backoffMillis = writeRetryBackoff.toMillis() * attempt;
+        if (backoffMillis > 0) {
+            // Jitter keeps two racing writers from retrying in lockstep
+            Thread.sleep(backoffMillis + ThreadLocalRandom.current().nextLong(backoffMillis));
+        }
+    }
+
+    private void recordWriteAttempt(String operation) {
+        Counter.builder("shopcart.write.attempts")
+                .description("Precondition-guarded cart write attempts, including retries")
+                .tag("operation", operation)
+                .register(meterRegistry)
+                .increment();
+    }
 
-        return removed;
+    private static Map<String, Object> membershipFields(ShopCart cart) {
+        Map<String, Object> fields = new HashMap<>();
+        fields.put("shopperIds", cart.getShopperIds());
+        fields.put("permissions", cart.getPermissions());
+        fields.put("sharePermissions", FieldValue.delete()); // Drops the list format used before the permission map
+        fields.put("lastInteraction", new Date());
+        return fields;
     }
 }
@@ -3,6 +3,10 @@ package com.supershoppercart.services;
 import com.supershoppercart.models.Shopper;
 import com.supershoppercart.repositories.ShopCartRepository;
 import com.supershoppercart.repositories.ShopperRepository;
+import com.supershoppercart.utils.BulkDeleteListener;
+import com.supershoppercart.utils.BulkDeleteResult;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
@@ -12,6 +16,8 @@ import java.util.concurrent.ExecutionException;
 @Service
 public class ShopperService {
 
+    private static final Logger logger = LoggerFactory.getLogger(ShopperService.class);
+
     private final ShopCartRepository shopCartRepository;
     private final ShopperRepository shopperRepository;
 
@@ -86,9 +92,16 @@ public class ShopperService {
 
     /**
      * Clears all data in the repositories. Useful for testing.
+     * Collections are deleted page by page through a BulkWriter, with progress logged per page.
      */
     public void clearAllData() throws ExecutionException, InterruptedException {
-        shopCartRepository.deleteAll();
-        shopperRepository.deleteAll();
+        BulkDeleteResult carts = shopCartRepository.deleteAll(progressLogger("shop carts"));
+        BulkDeleteResult shoppers = shopperRepository.deleteAll(progressLogger("shoppers"));
+        logger.info("Cleared {} shop carts and {} shoppers ({} failed deletes)",
+                carts.getDeleted(), shoppers.getDeleted(), carts.getFailed() + shoppers.getFailed());
+    }
+
+    private static BulkDeleteListener progressLogger(String label) {
+        return (deleted, failed, lastDocument) -> logger.debug("Deleting {}: {} deleted, {} failed", label, deleted, failed);
     }
 }
@@ -0,0 +1,19 @@
+package com.supershoppercart.utils;
+
+import com.google.cloud.firestore.DocumentSnapshot;
+
+/**
+ * Progress callback for {@link FirestoreBulkDeleter}, invoked once per page after the page's deletes have been flushed.
+ */
+@FunctionalInterface
+public interface BulkDeleteListener {
+
+    BulkDeleteListener NONE = (deleted, failed, lastDocument) -> { };
+
+    /**
+     * @param deleted Total number of documents deleted so far.
+     * @param failed Total number of deletes that failed after BulkWriter's retries.
+     * @param lastDocument The last document of the page just processed, usable as a resume cursor.
+     */
+    void onPage(long deleted, long failed, DocumentSnapshot lastDocument);
+}
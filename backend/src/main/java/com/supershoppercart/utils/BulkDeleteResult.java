@@ -0,0 +1,18 @@
+package com.supershoppercart.utils;
+
+import lombok.Getter;
+
+/**
+ * Outcome of a {@link FirestoreBulkDeleter} run.
+ */
+@Getter
+public class BulkDeleteResult {
+
+    private final long deleted;
+    private final long failed;
+
+    public BulkDeleteResult(long deleted, long failed) {
+        this.deleted = deleted;
+        this.failed = failed;
+    }
+}
@@ -0,0 +1,81 @@
+package com.supershoppercart.utils;
+
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.supershoppercart.repositories.CartTombstoneRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+
+/**
+ * Nightly sweep of cart tombstones older than the delta sync retention.
+ * A sync token older than the retention gets a full resync, so these tombstones can no longer be asked for.
+ * A sweep that is interrupted simply starts again from the oldest tombstone, which is then the next to delete.
+ */
+@Component
+public class CartTombstoneCleanupJob {
+
+    private static final Logger logger = LoggerFactory.getLogger(CartTombstoneCleanupJob.class);
+
+    private final CartTombstoneRepository cartTombstoneRepository;
+    private final Duration retention;
+    private final Counter deletedCounter;
+    private final Counter failedCounter;
+    private final Timer sweepTimer;
+
+    public CartTombstoneCleanupJob(CartTombstoneRepository cartTombstoneRepository, MeterRegistry meterRegistry,
+                                   @Value("${carts.sync.tombstone-retention:P30D}") Duration retention) {
+        this.cartTombstoneRepository = cartTombstoneRepository;
+        this.retention = retention;
+        this.deletedCounter = Counter.builder("cart_tombstones.cleanup.deleted")
+                .description("Expired cart tombstones deleted by the cleanup job")
+                .register(meterRegistry);
+        this.failedCounter = Counter.builder("cart_tombstones.cleanup.failed")
+                .description("Expired cart tombstone deletes that failed after retries")
+                .register(meterRegistry);
+        this.sweepTimer = Timer.builder("cart_tombstones.cleanup.duration")
+                .description("Duration of each expired cart tombstone sweep")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(cron = "${jobs.cart-tombstone-cleanup.cron:0 30 2 * * *}") // 2:30 AM every day
+    public void deleteExpiredTombstones() throws Exception {
+        Timestamp cutoff = Timestamp.of(Date.from(Instant.now().minus(retention)));
+        logger.info("🧹 Starting cleanup of cart tombstones removed before {}...", cutoff);
+
+        Timer.Sample sample = Timer.start();
+        try {
+            BulkDeleteResult result = cartTombstoneRepository.deleteRemovedBefore(cutoff, new MetricsListener());
+            logger.info("✅ Cart tombstone cleanup completed. Total deleted: {}, failed: {}", result.getDeleted(), result.getFailed());
+        } finally {
+            sample.stop(sweepTimer);
+        }
+    }
+
+    /**
+     * Turns the cumulative per-page totals into counter increments.
+     */
+    private class MetricsListener implements BulkDeleteListener {
+
+        private long reportedDeleted;
+        private long reportedFailed;
+
+        @Override
+        public void onPage(long deleted, long failed, DocumentSnapshot lastDocument) {
+            deletedCounter.increment(deleted - reportedDeleted);
+            failedCounter.increment(failed - reportedFailed);
+            reportedDeleted = deleted;
+            reportedFailed = failed;
+            logger.debug("Cart tombstone cleanup progress: {} deleted, {} failed", deleted, failed);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.supershoppercart.utils;
+
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutureCallback;
+import com.google.api.core.ApiFutures;
+import com.google.cloud.firestore.BulkWriter;
+import com.google.cloud.firestore.BulkWriterOptions;
+import com.google.cloud.firestore.CollectionReference;
+import com.google.cloud.firestore.FieldPath;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.Query;
+import com.google.cloud.firestore.QueryDocumentSnapshot;
+import com.google.cloud.firestore.WriteResult;
+import com.google.common.util.concurrent.MoreExecutors;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Deletes large result sets page by page through a Firestore {@link BulkWriter}.
+ * Only one page of document references is held in memory, and only one page of deletes is in flight;
+ * BulkWriter sends those deletes in parallel, throttled to the configured ops per second, and retries transient failures.
+ */
+@Component
+public class FirestoreBulkDeleter {
+
+    private static final Logger logger = LoggerFactory.getLogger(FirestoreBulkDeleter.class);
+
+    private static final int DEFAULT_INITIAL_OPS_PER_SECOND = 500;
+
+    private final Firestore firestore;
+    private final int pageSize;
+    private final int maxOpsPerSecond;
+
+    public FirestoreBulkDeleter(
+            Firestore firestore,
+            @Value("${firestore.bulk-delete.page-size:500}") int pageSize,
+            @Value("${firestore.bulk-delete.max-ops-per-second:1000}") int maxOpsPerSecond
+    ) {
+        if (pageSize <= 0 || maxOpsPerSecond <= 0) {
+            throw new IllegalArgumentException("Bulk delete page size and max ops per second must be positive.");
+        }
+        this.firestore = firestore;
+        this.pageSize = pageSize;
+        this.maxOpsPerSecond = maxOpsPerSecond;
+    }
+
+    /**
+     * Deletes every document in a collection, paging by document ID and reading only document names.
+     *
+     * @param collection The collection to empty.
+     * @param listener Called after each page has been flushed.
+     * @return The number of deleted and failed documents.
+     * @throws ExecutionException If a page query or flush fails.
+     * @throws InterruptedException If the current thread is interrupted while waiting.
+     */
+    public BulkDeleteResult deleteAll(CollectionReference collection, BulkDeleteListener listener)
+            throws ExecutionException, InterruptedException {
+        Query byId = collection.orderBy(FieldPath.documentId()).select(FieldPath.documentId());
+        return delete(byId, listener);
+    }
+
+    /**
+     * Deletes every document matched by the query, one page at a time.
+     * The query must have a stable order, and any projection must keep its order-by fields,
+     * because each page starts after the last document of the previous one.
+     *
+     * @param orderedQuery The ordered query selecting the documents to delete.
+     * @param listener Called after each page has been flushed.
+     * @return The number of deleted and failed documents.
+     * @throws ExecutionException If a page query or flush fails.
+     * @throws InterruptedException If the current thread is interrupted while waiting.
+     */
+    public BulkDeleteResult delete(Query orderedQuery, BulkDeleteListener listener)
+            throws ExecutionException, InterruptedException {
+        AtomicLong deleted = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+        ApiFutureCallback<WriteResult> outcome = new ApiFutureCallback<>() {
+            @Override
+            public void onSuccess(WriteResult result) {
+                deleted.incrementAndGet();
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                failed.incrementAndGet();
+                logger.warn("Bulk delete failed after retries: {}", t.getMessage());
+            }
+        };
+
+        BulkWriter bulkWriter = firestore.bulkWriter(BulkWriterOptions.builder()
+                .setInitialOpsPerSecond(Math.min(DEFAULT_INITIAL_OPS_PER_SECOND, maxOpsPerSecond))
+                .setMaxOpsPerSecond(maxOpsPerSecond)
+                .build());
+        try {
+            Query page = orderedQuery.limit(pageSize);
+            while (true) {
+                List<QueryDocumentSnapshot> docs = page.get().get().getDocuments();
+                if (docs.isEmpty()) {
+                    break;
+                }
+                for (QueryDocumentSnapshot doc : docs) {
+                    ApiFuture<WriteResult> future = bulkWriter.delete(doc.getReference());
+                    ApiFutures.addCallback(future, outcome, MoreExecutors.directExecutor());
+                }
+                bulkWriter.flush().get();
+
+                QueryDocumentSnapshot last = docs.get(docs.size() - 1);
+                listener.onPage(deleted.get(), failed.get(), last);
+                if (docs.size() < pageSize) {
+                    break;
+                }
+                page = orderedQuery.startAfter(last).limit(pageSize);
+            }
+        } finally {
+            bulkWriter.close();
+        }
+        return new BulkDeleteResult(deleted.get(), failed.get());
+    }
+}
@@ -0,0 +1,37 @@
+package com.supershoppercart.utils;
+
+import com.google.api.gax.rpc.ApiException;
+import com.google.api.gax.rpc.StatusCode;
+import com.google.cloud.firestore.FirestoreException;
+import io.grpc.Status;
+
+/**
+ * Classifies errors returned by the Firestore client.
+ */
+public final class FirestoreErrors {
+
+    private FirestoreErrors() {
+    }
+
+    /**
+     * Returns true if the error, or any of its causes, is a failed write precondition,
+     * e.g. an update guarded by {@code Precondition.updatedAt} on a document that has changed since.
+     */
+    public static boolean isFailedPrecondition(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ApiException apiException
+                    && apiException.getStatusCode().getCode() == StatusCode.Code.FAILED_PRECONDITION) {
+                return true;
+            }
+            if (cause instanceof FirestoreException firestoreException
+                    && firestoreException.getStatus() != null
+                    && firestoreException.getStatus().getCode() == Status.Code.FAILED_PRECONDITION) {
+                return true;
+            }
+            if (cause.getCause() == cause) {
+                break;
+            }
+        }
+        return false;
+    }
+}
@@ -1,53 +1,138 @@
 package com.supershoppercart.utils;
 
-import com.google.api.core.ApiFuture;
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.FieldPath;
+import com.google.cloud.firestore.FieldValue;
 import com.google.cloud.firestore.Firestore;
-import com.google.cloud.firestore.QueryDocumentSnapshot;
-import com.google.cloud.firestore.QuerySnapshot;
+import com.google.cloud.firestore.Query;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
 
-import java.util.List;
+import java.util.HashMap;
+import java.util.Map;
 
+/**
+ * Nightly sweep of expired refresh tokens.
+ * Tokens are paged by expiry and deleted through {@link FirestoreBulkDeleter}, so memory and in-flight writes
+ * stay bounded by one page. After every flushed page the cursor is checkpointed, and an interrupted sweep
+ * resumes after the last checkpoint instead of rescanning from the oldest token.
+ */
+@Component
 public class RefreshTokenCleanupJob {
 
     private static final Logger logger = LoggerFactory.getLogger(RefreshTokenCleanupJob.class);
+
+    static final String REFRESH_TOKENS_COLLECTION = "refresh_tokens";
+    static final String CHECKPOINTS_COLLECTION = "job_checkpoints";
+    static final String CHECKPOINT_ID = "refreshTokenCleanup";
+    private static final String EXPIRY_FIELD = "expiry";
+
     final Firestore firestore; // Declare Firestore to be injected
+    private final FirestoreBulkDeleter bulkDeleter;
+    private final Counter deletedCounter;
+    private final Counter failedCounter;
+    private final Timer sweepTimer;
 
     /**
      * Constructor injection for the Firestore instance.
      * Spring will automatically provide the 'Firestore' bean configured in FirebaseConfig.
      *
      * @param firestore The Firestore client instance.
+     * @param bulkDeleter Paged BulkWriter deletes.
+     * @param meterRegistry Registry for the sweep's throughput and duration metrics.
      */
     @Autowired // Mark constructor for Spring's autowiring
-    public RefreshTokenCleanupJob(Firestore firestore) {
+    public RefreshTokenCleanupJob(Firestore firestore, FirestoreBulkDeleter bulkDeleter, MeterRegistry meterRegistry) {
         this.firestore = firestore; // Assign the injected Firestore instance
+        this.bulkDeleter = bulkDeleter;
+        this.deletedCounter = Counter.builder("refresh_tokens.cleanup.deleted")
+                .description("Expired refresh tokens deleted by the cleanup job")
+                .register(meterRegistry);
+        this.failedCounter = Counter.builder("refresh_tokens.cleanup.failed")
+                .description("Expired refresh token deletes that failed after retries")
+                .register(meterRegistry);
+        this.sweepTimer = Timer.builder("refresh_tokens.cleanup.duration")
+                .description("Duration of each expired refresh token sweep")
+                .register(meterRegistry);
     }
 
     /**
      * Run every night at 2 AM
      */
-    @Scheduled(cron = "0 0 2 * * *") // 2:00 AM every day
+    @Scheduled(cron = "${jobs.refresh-token-cleanup.cron:0 0 2 * * *}") // 2:00 AM every day
     public void deleteExpiredRefreshTokens() throws Exception {
         long now = System.currentTimeMillis();
+        DocumentReference checkpointRef = firestore.collection(CHECKPOINTS_COLLECTION).document(CHECKPOINT_ID);
 
         logger.info("🧹 Starting cleanup of expired refresh tokens...");
 
-        // Use the injected 'firestore' instance
-        ApiFuture<QuerySnapshot> future = firestore.collection("refresh_tokens")
-                .whereLessThan("expiry", now)
-                .get();
+        Timer.Sample sample = Timer.start();
+        try {
+            // Project to the order-by field only: the pager needs it for its cursor, nothing else is read
+            Query expired = firestore.collection(REFRESH_TOKENS_COLLECTION)
+                    .whereLessThan(EXPIRY_FIELD, now)
+                    .orderBy(EXPIRY_FIELD)
+                    .orderBy(FieldPath.documentId())
+                    .select(EXPIRY_FIELD);
+
+            DocumentSnapshot checkpoint = checkpointRef.get().get();
+            Long checkpointExpiry = checkpoint.exists() ? checkpoint.getLong(EXPIRY_FIELD) : null;
+            String checkpointTokenId = checkpoint.exists() ? checkpoint.getString("tokenId") : null;
+            if (checkpointExpiry != null && checkpointTokenId != null) {
+                logger.info("Resuming refresh token cleanup after checkpoint (expiry={}, token={})", checkpointExpiry, checkpointTokenId);
+                expired = expired.startAfter(checkpointExpiry, checkpointTokenId);
+            }
+
+            BulkDeleteResult result = bulkDeleter.delete(expired, new CheckpointingListener(checkpointRef));
+
+            // A completed sweep starts from the oldest token next time
+            checkpointRef.delete().get();
+            logger.info("✅ Expired token cleanup completed. Total deleted: {}, failed: {}", result.getDeleted(), result.getFailed());
+        } finally {
+            sample.stop(sweepTimer);
+        }
+    }
+
+    /**
+     * Updates the metrics and saves a resume cursor once each page has been flushed.
+     */
+    private class CheckpointingListener implements BulkDeleteListener {
 
-        List<QueryDocumentSnapshot> expiredTokens = future.get().getDocuments();
+        private final DocumentReference checkpointRef;
+        private long reportedDeleted;
+        private long reportedFailed;
 
-        for (QueryDocumentSnapshot doc : expiredTokens) { // Use QueryDocumentSnapshot for iteration
-            doc.getReference().delete();
-            logger.info("Deleted expired token: {}", doc.getId());
+        CheckpointingListener(DocumentReference checkpointRef) {
+            this.checkpointRef = checkpointRef;
         }
 
-        logger.info("✅ Expired token cleanup completed. Total deleted: {}", expiredTokens.size());
+        @Override
+        public void onPage(long deleted, long failed, DocumentSnapshot lastDocument) {
+            deletedCounter.increment(deleted - reportedDeleted);
+            failedCounter.increment(failed - reportedFailed);
+            reportedDeleted = deleted;
+            reportedFailed = failed;
+
+            Map<String, Object> cursor = new HashMap<>();
+            cursor.put(EXPIRY_FIELD, lastDocument.getLong(EXPIRY_FIELD));
+            cursor.put("tokenId", lastDocument.getId());
+            cursor.put("updatedAt", FieldValue.serverTimestamp());
+            try {
+                checkpointRef.set(cursor).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                // Losing a checkpoint only means a restarted sweep rescans one more page
+                logger.warn("Failed to save refresh token cleanup checkpoint: {}", e.getMessage());
+            }
+            logger.debug("Refresh token cleanup progress: {} deleted, {} failed", deleted, failed);
+        }
     }
 }
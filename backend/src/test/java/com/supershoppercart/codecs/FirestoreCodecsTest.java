@@ -0,0 +1,284 @@
+package com.supershoppercart.codecs;
+
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.FieldValue;
+import com.supershoppercart.enums.ItemStorage;
+import com.supershoppercart.enums.SharePermission;
+import com.supershoppercart.enums.ShopCartState;
+import com.supershoppercart.models.GroceryItem;
+import com.supershoppercart.models.RefreshToken;
+import com.supershoppercart.models.SharePermissionEntry;
+import com.supershoppercart.models.ShopCart;
+import com.supershoppercart.models.Shopper;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Unit tests for the Firestore codecs, checking that each model survives a round trip
+ * and that documents written by the bean mapper, or read through a field mask, decode correctly.
+ */
+@DisplayName("FirestoreCodecs Unit Tests")
+class FirestoreCodecsTest {
+
+    private static final Date CREATED_AT = new Date(1_700_000_000_000L);
+
+    private static ShopCart sampleCart() {
+        ShopCart cart = new ShopCart();
+        cart.setId("cart1");
+        cart.setName("Weekly Shopping");
+        GroceryItem apples = new GroceryItem("Apples", "2kg");
+        apples.setId("item-1");
+        apples.setPurchased(true);
+        GroceryItem bread = new GroceryItem("Bread", "1 loaf");
+        bread.setId("item-2");
+        cart.setItems(new ArrayList<>(List.of(apples, bread)));
+        cart.recountItems();
+        cart.setShopperIds(new ArrayList<>(List.of("shopper1", "shopper2")));
+        cart.addOrUpdatePermission("shopper2", SharePermission.EDIT);
+        cart.setDateKey("2025-08-01");
+        cart.setCreatedBy("shopper1");
+        cart.setPublic(true);
+        cart.setCreatedAt(CREATED_AT);
+        cart.setLastModified(CREATED_AT);
+        cart.setState(ShopCartState.SHOPPING);
+        cart.setLastInteraction(CREATED_AT);
+        cart.setCurrentShopper("shopper1");
+        return cart;
+    }
+
+    @Test
+    @DisplayName("Should decode an encoded cart to an equal cart")
+    void shopCart_roundTrip_shouldKeepEveryField() {
+        // Arrange
+        ShopCart cart = sampleCart();
+
+        // Act
+        ShopCart decoded = FirestoreCodecs.SHOP_CART.decode("cart1", FirestoreCodecs.SHOP_CART.encode(cart));
+
+        // Assert
+        assertEquals("cart1", decoded.getId());
+        assertEquals("Weekly Shopping", decoded.getName());
+        assertEquals(List.of("item-1", "item-2"), decoded.getItems().stream().map(GroceryItem::getId).toList());
+        assertTrue(decoded.getItems().get(0).isPurchased());
+        assertEquals("1 loaf", decoded.getItems().get(1).getQuantity());
+        assertEquals(2, decoded.getItemCount());
+        assertEquals(1, decoded.getPurchasedCount());
+        assertTrue(decoded.isItemCountersTracked());
+        assertEquals(cart.getItemStorage(), decoded.getItemStorage());
+        assertEquals(List.of("shopper1", "shopper2"), decoded.getShopperIds());
+        assertEquals(SharePermission.EDIT, decoded.getPermissionForShopper("shopper2"));
+        assertEquals("2025-08-01", decoded.getDateKey());
+        assertEquals("shopper1", decoded.getCreatedBy());
+        assertTrue(decoded.isPublic());
+        assertEquals(CREATED_AT, decoded.getCreatedAt());
+        assertEquals(CREATED_AT, decoded.getLastModified());
+        assertEquals(ShopCartState.SHOPPING, decoded.getState());
+        assertEquals(CREATED_AT, decoded.getLastInteraction());
+        assertNull(decoded.getCompletedAt());
+        assertEquals("shopper1", decoded.getCurrentShopper());
+        assertFalse(decoded.isTemplate());
+    }
+
+    @Test
+    @DisplayName("Should write server timestamps for unset creation and modification dates")
+    void shopCart_encodeWithoutDates_shouldUseServerTimestamps() {
+        // Arrange
+        ShopCart cart = new ShopCart();
+        cart.setCreatedAt(null);
+        cart.setLastModified(null);
+
+        // Act
+        Map<String, Object> data = FirestoreCodecs.SHOP_CART.encode(cart);
+
+        // Assert
+        assertEquals(FieldValue.serverTimestamp(), data.get("createdAt"));
+        assertEquals(FieldValue.serverTimestamp(), data.get("lastModified"));
+        assertFalse(data.containsKey("id"));
+    }
+
+    @Test
+    @DisplayName("Should read values as Firestore returns them, including the legacy permission list")
+    void shopCart_decodeStoredDocument_shouldConvertFirestoreTypes() {
+        // Arrange
+        Map<String, Object> data = new HashMap<>();
+        data.put("name", "Template");
+        data.put("itemStorage", "SUBCOLLECTION");
+        data.put("itemCount", 7L);
+        data.put("state", "COMPLETED");
+        data.put("completedAt", Timestamp.of(CREATED_AT));
+        data.put("template", true);
+        data.put("templateName", "Weekly");
+        data.put("sharePermissions", List.of(Map.of("shopperId", "shopper3", "permission", "ADMIN")));
+
+        // Act
+        ShopCart decoded = FirestoreCodecs.SHOP_CART.decode("t1", data);
+
+        // Assert
+        assertEquals(ItemStorage.SUBCOLLECTION, decoded.getItemStorage());
+        assertEquals(7, decoded.getItemCount());
+        assertEquals(ShopCartState.COMPLETED, decoded.getState());
+        assertEquals(CREATED_AT, decoded.getCompletedAt());
+        assertTrue(decoded.isTemplate());
+        assertEquals("Weekly", decoded.getTemplateName());
+        assertEquals(SharePermission.ADMIN, decoded.getPermissionForShopper("shopper3"));
+    }
+
+    @Test
+    @DisplayName("Should keep new-cart defaults for fields left out of a field-mask read")
+    void shopCart_decodeProjection_shouldKeepDefaults() {
+        // Arrange
+        ShopCart defaults = new ShopCart();
+        Map<String, Object> data = Map.of("itemCount", 3L, "itemCountersTracked", true);
+
+        // Act
+        ShopCart decoded = FirestoreCodecs.SHOP_CART.decode("cart1", data);
+
+        // Assert
+        assertEquals(3, decoded.getItemCount());
+        assertEquals(defaults.getItems(), decoded.getItems());
+        assertEquals(defaults.getItemStorage(), decoded.getItemStorage());
+        assertEquals(defaults.getState(), decoded.getState());
+        assertEquals(defaults.getShopperIds(), decoded.getShopperIds());
+    }
+
+    @Test
+    @DisplayName("Should settle a subcollection cart's state from the counters in a summary projection")
+    void shopCart_decodeSubcollectionSummary_shouldSettleStateFromCounters() {
+        // Arrange: the counters were incremented blindly, so the stored state lags behind them
+        Map<String, Object> allPurchased = Map.of("itemStorage", "SUBCOLLECTION",
+                "itemCount", 2L, "purchasedCount", 2L, "state", "ACTIVE");
+        Map<String, Object> itemAdded = Map.of("itemStorage", "SUBCOLLECTION",
+                "itemCount", 3L, "purchasedCount", 2L, "state", "SHOPPING");
+
+        // Act & Assert
+        assertEquals(ShopCartState.SHOPPING, FirestoreCodecs.SHOP_CART.decode("cart1", allPurchased).getState());
+        assertEquals(ShopCartState.ACTIVE, FirestoreCodecs.SHOP_CART.decode("cart1", itemAdded).getState());
+    }
+
+    @Test
+    @DisplayName("Should decode a snapshot, and return null when the document does not exist")
+    void decodeSnapshot_shouldUseDocumentIdAndHandleMissingDocuments() {
+        // Arrange
+        DocumentSnapshot stored = mock(DocumentSnapshot.class);
+        when(stored.getId()).thenReturn("cart1");
+        when(stored.getData()).thenReturn(FirestoreCodecs.SHOP_CART.encode(sampleCart()));
+        DocumentSnapshot missing = mock(DocumentSnapshot.class);
+        when(missing.getData()).thenReturn(null);
+
+        // Act & Assert
+        assertEquals("cart1", FirestoreCodecs.SHOP_CART.decode(stored).getId());
+        assertNull(FirestoreCodecs.SHOP_CART.decode(missing));
+    }
+
+    @Test
+    @DisplayName("Should take an item subcollection document's ID from the document")
+    void groceryItem_subcollectionDocument_shouldUseDocumentId() {
+        // Arrange
+        Map<String, Object> data = Map.of("designation", "Milk", "quantity", "1 liter", "purchased", true,
+                "cartId", "cart1", "addedAt", Timestamp.now());
+
+        // Act
+        GroceryItem item = FirestoreCodecs.GROCERY_ITEM.decode("item-0003", data);
+
+        // Assert
+        assertEquals("item-0003", item.getId());
+        assertEquals("Milk", item.getDesignation());
+        assertTrue(item.isPurchased());
+    }
+
+    @Test
+    @DisplayName("Should encode items in order and pass a null list through")
+    void encodeItems_shouldEncodeEachItem() {
+        // Arrange
+        GroceryItem milk = new GroceryItem("Milk", "1 liter");
+        milk.setId("item-1");
+
+        // Act
+        List<Map<String, Object>> encoded = FirestoreCodecs.encodeItems(List.of(milk));
+
+        // Assert
+        assertEquals(1, encoded.size());
+        assertEquals("item-1", encoded.get(0).get("id"));
+        assertEquals(false, encoded.get(0).get("purchased"));
+        assertNull(FirestoreCodecs.encodeItems(null));
+    }
+
+    @Test
+    @DisplayName("Should round-trip a share permission entry")
+    void sharePermissionEntry_roundTrip() {
+        // Arrange
+        SharePermissionEntry entry = new SharePermissionEntry("shopper2", SharePermission.VIEW);
+
+        // Act
+        SharePermissionEntry decoded = FirestoreCodecs.SHARE_PERMISSION_ENTRY.decode(null,
+                FirestoreCodecs.SHARE_PERMISSION_ENTRY.encode(entry));
+
+        // Assert
+        assertEquals("shopper2", decoded.getShopperId());
+        assertEquals(SharePermission.VIEW, decoded.getPermission());
+    }
+
+    @Test
+    @DisplayName("Should round-trip a shopper without storing its ID")
+    void shopper_roundTrip() {
+        // Arrange
+        Shopper shopper = new Shopper("user@example.com", "User", "email");
+        shopper.setId("shopper1");
+        shopper.setPassword("hashed");
+        shopper.setShopCartIds(new ArrayList<>(List.of("cart1")));
+
+        // Act
+        Map<String, Object> data = FirestoreCodecs.SHOPPER.encode(shopper);
+        Shopper decoded = FirestoreCodecs.SHOPPER.decode("shopper1", data);
+
+        // Assert
+        assertFalse(data.containsKey("id"));
+        assertEquals("shopper1", decoded.getId());
+        assertEquals("user@example.com", decoded.getEmail());
+        assertEquals("User", decoded.getName());
+        assertEquals("hashed", decoded.getPassword());
+        assertEquals("email", decoded.getProvider());
+        assertEquals(List.of("cart1"), decoded.getShopCartIds());
+    }
+
+    @Test
+    @DisplayName("Should keep the default provider and cart list when a shopper document lacks them")
+    void shopper_missingFields_shouldKeepDefaults() {
+        // Act
+        Shopper decoded = FirestoreCodecs.SHOPPER.decode("shopper1", Map.of("email", "user@example.com"));
+
+        // Assert
+        assertEquals(new Shopper().getProvider(), decoded.getProvider());
+        assertNotNull(decoded.getShopCartIds());
+        assertTrue(decoded.getShopCartIds().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should round-trip a refresh token with the token as document ID")
+    void refreshToken_roundTrip() {
+        // Arrange
+        RefreshToken token = new RefreshToken("token-1", "shopper1", "device-1", 123_456L);
+
+        // Act
+        Map<String, Object> data = FirestoreCodecs.REFRESH_TOKEN.encode(token);
+        RefreshToken decoded = FirestoreCodecs.REFRESH_TOKEN.decode("token-1", data);
+
+        // Assert
+        assertFalse(data.containsKey("token"));
+        assertEquals("token-1", decoded.getToken());
+        assertEquals("shopper1", decoded.getShopperId());
+        assertEquals("device-1", decoded.getDeviceId());
+        assertEquals(123_456L, decoded.getExpiry());
+    }
+}
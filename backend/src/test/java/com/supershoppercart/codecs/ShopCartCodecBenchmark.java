@@ -0,0 +1,113 @@
+package com.supershoppercart.codecs;
+
+import com.google.cloud.NoCredentials;
+import com.google.cloud.firestore.DocumentReference;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.FirestoreOptions;
+import com.google.cloud.firestore.encoding.CustomClassMapper;
+import com.supershoppercart.enums.SharePermission;
+import com.supershoppercart.models.GroceryItem;
+import com.supershoppercart.models.ShopCart;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares decoding and encoding a cart with {@link FirestoreCodecs#SHOP_CART} against Firestore's
+ * reflective mapper, which is what {@code DocumentSnapshot.toObject} and {@code set(model)} use.
+ * Both sides work on the same {@code getData()}-shaped map, so no Firestore connection is needed.
+ * Run it with {@code mvn test-compile exec:java -Dexec.mainClass=com.supershoppercart.codecs.ShopCartCodecBenchmark
+ * -Dexec.classpathScope=test}, or from the IDE through {@link #main}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ShopCartCodecBenchmark {
+
+    @Param({"10", "100"})
+    int itemCount;
+
+    private Firestore firestore;
+    private DocumentReference documentReference;
+    private ShopCart cart;
+    private Map<String, Object> storedData;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        firestore = FirestoreOptions.newBuilder()
+                .setProjectId("bench")
+                .setCredentials(NoCredentials.getInstance())
+                .build()
+                .getService();
+        documentReference = firestore.collection("shopcarts").document("cart1");
+
+        cart = new ShopCart();
+        cart.setName("Weekly Shopping");
+        List<GroceryItem> items = new ArrayList<>(itemCount);
+        for (int i = 0; i < itemCount; i++) {
+            items.add(new GroceryItem("Item " + i, i + " units", i % 3 == 0));
+        }
+        cart.setItems(items);
+        cart.recountItems();
+        cart.setShopperIds(new ArrayList<>(List.of("shopper1", "shopper2", "shopper3")));
+        cart.addOrUpdatePermission("shopper2", SharePermission.EDIT);
+        cart.addOrUpdatePermission("shopper3", SharePermission.VIEW);
+        cart.setCreatedBy("shopper1");
+        cart.setCreatedAt(new Date());
+        cart.setLastModified(new Date());
+        storedData = FirestoreCodecs.SHOP_CART.encode(cart);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        firestore.close();
+    }
+
+    @Benchmark
+    public ShopCart decodeWithCodec() {
+        return FirestoreCodecs.SHOP_CART.decode("cart1", storedData);
+    }
+
+    @Benchmark
+    public ShopCart decodeWithReflection() {
+        return CustomClassMapper.convertToCustomClass(storedData, ShopCart.class, documentReference);
+    }
+
+    @Benchmark
+    public Map<String, Object> encodeWithCodec() {
+        return FirestoreCodecs.SHOP_CART.encode(cart);
+    }
+
+    @Benchmark
+    public Object encodeWithReflection() {
+        return CustomClassMapper.serialize(cart);
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(ShopCartCodecBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+}
@@ -0,0 +1,129 @@
+package com.supershoppercart.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.supershoppercart.dtos.ShopCartDetailDTO;
+import com.supershoppercart.dtos.ShopCartSummaryDTO;
+import com.supershoppercart.enums.SharePermission;
+import com.supershoppercart.models.GroceryItem;
+import com.supershoppercart.models.ShopCart;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.core.ResolvableType;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the protobuf encoding of {@link ProtobufMessageConverter} against Jackson JSON, configured as Spring Boot
+ * configures it (ISO dates), for a shopper's cart list in the detail and summary views. {@link #main} prints the
+ * payload sizes before running the timings.
+ * Run it with {@code mvn test-compile exec:java -Dexec.mainClass=com.supershoppercart.config.CartEncodingBenchmark
+ * -Dexec.classpathScope=test}, or from the IDE through {@link #main}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CartEncodingBenchmark {
+
+    private static final int CART_COUNT = 5;
+    private static final Type DETAIL_LIST = ResolvableType.forClassWithGenerics(List.class, ShopCartDetailDTO.class).getType();
+    private static final Type SUMMARY_LIST = ResolvableType.forClassWithGenerics(List.class, ShopCartSummaryDTO.class).getType();
+
+    @Param({"10", "100"})
+    int itemCount;
+
+    private ObjectMapper jsonMapper;
+    private ProtobufMessageConverter protobufConverter;
+    private List<ShopCartDetailDTO> details;
+    private List<ShopCartSummaryDTO> summaries;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        jsonMapper = new ObjectMapper().disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        protobufConverter = new ProtobufMessageConverter();
+        details = new ArrayList<>(CART_COUNT);
+        summaries = new ArrayList<>(CART_COUNT);
+        for (int c = 0; c < CART_COUNT; c++) {
+            ShopCart cart = cart("cart" + c, itemCount);
+            details.add(new ShopCartDetailDTO(cart.getId(), cart));
+            summaries.add(new ShopCartSummaryDTO(cart));
+        }
+    }
+
+    private static ShopCart cart(String id, int itemCount) {
+        ShopCart cart = new ShopCart();
+        cart.setId(id);
+        cart.setName("Weekly Shopping");
+        cart.setDateKey("2025-08-01");
+        List<GroceryItem> items = new ArrayList<>(itemCount);
+        for (int i = 0; i < itemCount; i++) {
+            GroceryItem item = new GroceryItem("Item " + i, i + " units", i % 3 == 0);
+            item.setId(GroceryItem.newId());
+            items.add(item);
+        }
+        cart.setItems(items);
+        cart.recountItems();
+        cart.setShopperIds(new ArrayList<>(List.of("shopper1", "shopper2", "shopper3")));
+        cart.addOrUpdatePermission("shopper2", SharePermission.EDIT);
+        cart.addOrUpdatePermission("shopper3", SharePermission.VIEW);
+        cart.setCreatedBy("shopper1");
+        cart.setCreatedAt(new Date());
+        cart.setLastModified(new Date());
+        return cart;
+    }
+
+    @Benchmark
+    public byte[] detailsAsJson() throws Exception {
+        return jsonMapper.writeValueAsBytes(details);
+    }
+
+    @Benchmark
+    public byte[] detailsAsProtobuf() throws Exception {
+        return protobufConverter.encode(details, DETAIL_LIST);
+    }
+
+    @Benchmark
+    public byte[] summariesAsJson() throws Exception {
+        return jsonMapper.writeValueAsBytes(summaries);
+    }
+
+    @Benchmark
+    public byte[] summariesAsProtobuf() throws Exception {
+        return protobufConverter.encode(summaries, SUMMARY_LIST);
+    }
+
+    public static void main(String[] args) throws Exception {
+        for (int itemCount : new int[]{10, 100}) {
+            CartEncodingBenchmark sizes = new CartEncodingBenchmark();
+            sizes.itemCount = itemCount;
+            sizes.setUp();
+            System.out.printf("%d carts of %d items: details %d bytes JSON, %d bytes protobuf; summaries %d bytes JSON, %d bytes protobuf%n",
+                    CART_COUNT, itemCount,
+                    sizes.detailsAsJson().length, sizes.detailsAsProtobuf().length,
+                    sizes.summariesAsJson().length, sizes.summariesAsProtobuf().length);
+        }
+        new Runner(new OptionsBuilder()
+                .include(CartEncodingBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+}
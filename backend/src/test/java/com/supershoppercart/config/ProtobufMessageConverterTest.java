@@ -0,0 +1,147 @@
+package com.supershoppercart.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.protobuf.ProtobufMapper;
+import com.fasterxml.jackson.dataformat.protobuf.schema.NativeProtobufSchema;
+import com.fasterxml.jackson.dataformat.protobuf.schema.ProtobufSchemaLoader;
+import com.supershoppercart.dtos.ShopCartDetailDTO;
+import com.supershoppercart.dtos.ShopCartSummaryDTO;
+import com.supershoppercart.dtos.ShopperSummaryDTO;
+import com.supershoppercart.enums.SharePermission;
+import com.supershoppercart.enums.ShopCartState;
+import com.supershoppercart.models.GroceryItem;
+import com.supershoppercart.models.ShopCart;
+import com.supershoppercart.models.Shopper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.ResolvableType;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("ProtobufMessageConverter Unit Tests")
+class ProtobufMessageConverterTest {
+
+    private final ProtobufMessageConverter converter = new ProtobufMessageConverter();
+    private final ProtobufMapper mapper = new ProtobufMapper();
+    private NativeProtobufSchema schema;
+    private ShopCart cart;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        schema = ProtobufSchemaLoader.std.loadNative(getClass().getClassLoader().getResource(ProtobufMessageConverter.SCHEMA_LOCATION));
+
+        // Every field set, so a DTO property missing from the schema fails the encode
+        cart = new ShopCart();
+        cart.setId("cart1");
+        cart.setName("Weekly");
+        cart.setDateKey("2025-08-01");
+        cart.setItems(new ArrayList<>(List.of(new GroceryItem("Milk", "1 liter", true), new GroceryItem("Bread", "1 loaf"))));
+        cart.setShopperIds(new ArrayList<>(List.of("shopper1", "shopper2")));
+        cart.addOrUpdatePermission("shopper2", SharePermission.EDIT);
+        cart.setCreatedBy("shopper1");
+        cart.setState(ShopCartState.SHOPPING);
+        cart.setCreatedAt(new Date(1_000));
+        cart.setLastModified(new Date(2_000));
+        cart.setLastInteraction(new Date(3_000));
+        cart.setTemplateName("Weekly template");
+    }
+
+    private static Type listOf(Class<?> elementType) {
+        return ResolvableType.forClassWithGenerics(List.class, elementType).getType();
+    }
+
+    private Map<?, ?> decode(byte[] bytes, String messageType) throws Exception {
+        return mapper.readerFor(Map.class).with(schema.forType(messageType)).readValue(bytes);
+    }
+
+    @Test
+    @DisplayName("Should encode a cart detail by the shared schema")
+    void encode_detail_shouldFollowSchema() throws Exception {
+        ShopCartDetailDTO detail = new ShopCartDetailDTO("cart1", cart);
+        Shopper shopper = new Shopper();
+        shopper.setId("shopper1");
+        shopper.setEmail("shopper1@example.com");
+        shopper.setName("Shopper One");
+        detail.setShoppers(List.of(new ShopperSummaryDTO(shopper)));
+
+        Map<?, ?> decoded = decode(converter.encode(detail), "ShopCartDetail");
+
+        assertEquals("cart1", decoded.get("identifier"));
+        assertEquals(2, ((List<?>) decoded.get("items")).size());
+        assertEquals("Milk", ((Map<?, ?>) ((List<?>) decoded.get("items")).get(0)).get("designation"));
+        assertEquals(List.of("shopper1", "shopper2"), decoded.get("shopperIds"));
+        assertEquals("shopper1@example.com", ((Map<?, ?>) ((List<?>) decoded.get("shoppers")).get(0)).get("email"));
+        assertEquals(ShopCartState.SHOPPING.ordinal(), decoded.get("state"));
+        assertEquals(2_000L, ((Number) decoded.get("lastModified")).longValue());
+        assertEquals("Weekly template", decoded.get("templateName"));
+    }
+
+    @Test
+    @DisplayName("Should wrap a list in its list message, and be smaller than the JSON")
+    void encode_list_shouldUseListMessage() throws Exception {
+        List<ShopCartSummaryDTO> summaries = List.of(new ShopCartSummaryDTO(cart), new ShopCartSummaryDTO(cart));
+
+        byte[] bytes = converter.encode(summaries, listOf(ShopCartSummaryDTO.class));
+        Map<?, ?> decoded = decode(bytes, "ShopCartSummaryList");
+
+        List<?> items = (List<?>) decoded.get("items");
+        assertEquals(2, items.size());
+        assertEquals(2, ((Map<?, ?>) items.get(0)).get("itemCount"));
+        assertEquals(1, ((Map<?, ?>) items.get(0)).get("purchasedCount"));
+        assertTrue(bytes.length < new ObjectMapper().writeValueAsBytes(summaries).length / 2);
+        assertArrayEquals(bytes, converter.encode(summaries.toArray(ShopCartSummaryDTO[]::new)));
+    }
+
+    @Test
+    @DisplayName("Should encode an empty list of a supported type as its list message")
+    void encode_emptyTypedList_shouldUseListMessage() throws Exception {
+        byte[] bytes = converter.encode(List.of(), listOf(ShopperSummaryDTO.class));
+
+        assertEquals(bytes.length, converter.encode(new ShopperSummaryDTO[0]).length);
+        assertNull(decode(bytes, "ShopperSummaryList").get("items"));
+    }
+
+    @Test
+    @DisplayName("Should accept a list only when its declared element type has a message")
+    void canWrite_list_shouldDependOnDeclaredElementType() {
+        assertTrue(converter.canWrite(listOf(ShopCartDetailDTO.class), ArrayList.class, ProtobufMessageConverter.PROTOBUF));
+        assertTrue(converter.canWrite(listOf(ShopperSummaryDTO.class), List.class, ProtobufMessageConverter.PROTOBUF));
+        assertTrue(converter.canWrite(ShopCartSummaryDTO[].class, ShopCartSummaryDTO[].class, ProtobufMessageConverter.PROTOBUF));
+        assertFalse(converter.canWrite(listOf(ShopCart.class), ArrayList.class, ProtobufMessageConverter.PROTOBUF));
+        assertFalse(converter.canWrite(Object.class, ArrayList.class, ProtobufMessageConverter.PROTOBUF));
+        assertFalse(converter.canWrite(List.class, MediaType.APPLICATION_JSON));
+        assertFalse(converter.canWrite(ShopCart[].class, ShopCart[].class, ProtobufMessageConverter.PROTOBUF));
+        assertFalse(converter.canWrite(listOf(ShopCartDetailDTO.class), ArrayList.class, MediaType.APPLICATION_JSON));
+    }
+
+    @Test
+    @DisplayName("Should refuse types the schema has no message for")
+    void encode_unsupportedType_shouldFail() {
+        assertThrows(HttpMessageNotWritableException.class, () -> converter.encode(Map.of("error", "x")));
+        assertThrows(HttpMessageNotWritableException.class, () -> converter.encode(List.of("x")));
+        assertThrows(HttpMessageNotWritableException.class, () -> converter.encode(List.of(), listOf(ShopCart.class)));
+        assertFalse(converter.canWrite(Map.class, ProtobufMessageConverter.PROTOBUF));
+        assertFalse(converter.canWrite(ShopCartDetailDTO.class, MediaType.APPLICATION_JSON));
+        assertFalse(converter.canRead(ShopCartDetailDTO.class, ProtobufMessageConverter.PROTOBUF));
+    }
+
+    @Test
+    @DisplayName("Should prefer protobuf only when the client names it at least as highly as JSON")
+    void isPreferredBy_shouldWeighQualities() {
+        assertTrue(ProtobufMessageConverter.isPreferredBy("application/x-protobuf"));
+        assertTrue(ProtobufMessageConverter.isPreferredBy("application/x-protobuf, application/json;q=0.5"));
+        assertFalse(ProtobufMessageConverter.isPreferredBy("application/json, application/x-protobuf;q=0.5"));
+        assertFalse(ProtobufMessageConverter.isPreferredBy("*/*"));
+        assertFalse(ProtobufMessageConverter.isPreferredBy(null));
+        assertFalse(ProtobufMessageConverter.isPreferredBy("not a media type"));
+    }
+}
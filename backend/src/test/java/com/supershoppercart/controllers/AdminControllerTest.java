@@ -1,17 +1,33 @@
 package com.supershoppercart.controllers;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.supershoppercart.config.ProtobufMessageConverter;
+import com.supershoppercart.dtos.PageDTO;
+import com.supershoppercart.dtos.ShopCartSummaryDTO;
+import com.supershoppercart.exceptions.CartConflictException;
 import com.supershoppercart.models.ShopCart;
 import com.supershoppercart.models.Shopper;
+import com.supershoppercart.repositories.PageReadResult;
 import com.supershoppercart.repositories.ShopCartRepository;
 import com.supershoppercart.repositories.ShopperRepository;
+import com.supershoppercart.services.ShopCartService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
@@ -19,6 +35,8 @@ import java.util.Optional;
 import java.util.concurrent.ExecutionException;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @ExtendWith(MockitoExtension.class)
 class AdminControllerTest {
@@ -29,7 +47,9 @@ class AdminControllerTest {
     @Mock
     private ShopCartRepository shopCartRepository;
 
-    @InjectMocks
+    @Mock
+    private ShopCartService shopCartService;
+
     private AdminController adminController;
 
     private Shopper testShopper1;
@@ -39,6 +59,9 @@ class AdminControllerTest {
 
     @BeforeEach
     void setUp() {
+        adminController = new AdminController(shopperRepository, shopCartRepository, shopCartService, new ObjectMapper(),
+                100, 1000, 2);
+
         // Initialize dummy shopper and shop cart objects for testing
         testShopper1 = new Shopper("shopper1@example.com", "Shopper One");
         testShopper1.setId("s1");
@@ -62,35 +85,108 @@ class AdminControllerTest {
     // --- Shopper Endpoints Tests ---
 
     @Test
-    void getAllShoppers_ReturnsOkAndListOfShoppers() throws ExecutionException, InterruptedException {
+    void getAllShoppers_ReturnsOkAndFirstPageWithCursor() throws ExecutionException, InterruptedException {
         // Arrange
-        List<Shopper> shoppers = List.of(testShopper1, testShopper2);
-        when(shopperRepository.findAll()).thenReturn(shoppers);
+        when(shopperRepository.findPage(100, null)).thenReturn(new PageReadResult<>(List.of(testShopper1, testShopper2), "s2"));
 
         // Act
-        ResponseEntity<List<Shopper>> response = adminController.getAllShoppers();
+        ResponseEntity<?> response = adminController.getAllShoppers(null, null);
 
         // Assert
         assertEquals(HttpStatus.OK, response.getStatusCode());
-        assertNotNull(response.getBody());
-        assertEquals(2, response.getBody().size());
-        assertEquals(testShopper1, response.getBody().get(0));
-        assertEquals(testShopper2, response.getBody().get(1));
-        verify(shopperRepository, times(1)).findAll();
+        PageDTO<?> page = (PageDTO<?>) response.getBody();
+        assertNotNull(page);
+        assertEquals(List.of(testShopper1, testShopper2), page.getItems());
+        assertNotNull(page.getNextCursor());
+        verify(shopperRepository, never()).findAll();
+    }
+
+    @Test
+    void getAllShoppers_WithCursor_ResumesAfterLastIdOfPreviousPage() throws ExecutionException, InterruptedException {
+        // Arrange
+        when(shopperRepository.findPage(2, null)).thenReturn(new PageReadResult<>(List.of(testShopper1, testShopper2), "s2"));
+        when(shopperRepository.findPage(2, "s2")).thenReturn(new PageReadResult<>(List.of(), null));
+
+        // Act
+        PageDTO<?> first = (PageDTO<?>) adminController.getAllShoppers(2, null).getBody();
+        PageDTO<?> second = (PageDTO<?>) adminController.getAllShoppers(2, first.getNextCursor()).getBody();
+
+        // Assert
+        assertNotEquals("s2", first.getNextCursor(), "The cursor is opaque");
+        assertTrue(second.getItems().isEmpty());
+        assertNull(second.getNextCursor());
+    }
+
+    @Test
+    void getAllShoppers_InvalidPageSizeOrCursor_ReturnsBadRequest() throws ExecutionException, InterruptedException {
+        // Act & Assert
+        assertEquals(HttpStatus.BAD_REQUEST, adminController.getAllShoppers(0, null).getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, adminController.getAllShoppers(1001, null).getStatusCode());
+        assertEquals(HttpStatus.BAD_REQUEST, adminController.getAllShoppers(null, "not a cursor!").getStatusCode());
+        verify(shopperRepository, never()).findPage(anyInt(), any());
     }
 
     @Test
     void getAllShoppers_RepositoryThrowsException_ReturnsInternalServerError() throws ExecutionException, InterruptedException {
         // Arrange
-        when(shopperRepository.findAll()).thenThrow(new ExecutionException(new Throwable("Test Exception")));
+        when(shopperRepository.findPage(100, null)).thenThrow(new ExecutionException(new Throwable("Test Exception")));
 
         // Act
-        ResponseEntity<List<Shopper>> response = adminController.getAllShoppers();
+        ResponseEntity<?> response = adminController.getAllShoppers(null, null);
 
         // Assert
         assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, response.getStatusCode());
         assertEquals(null, response.getBody());
-        verify(shopperRepository, times(1)).findAll();
+        verify(shopperRepository, times(1)).findPage(100, null);
+    }
+
+    @Test
+    void streamAllShoppers_WritesOneLinePerShopperAcrossPages() throws Exception {
+        // Arrange
+        when(shopperRepository.findPage(2, null)).thenReturn(new PageReadResult<>(List.of(testShopper1, testShopper2), "s2"));
+        when(shopperRepository.findPage(2, "s2")).thenReturn(new PageReadResult<>(List.of(testShopper1), null));
+
+        // Act
+        ResponseEntity<StreamingResponseBody> response = adminController.streamAllShoppers(null);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        response.getBody().writeTo(out);
+
+        // Assert
+        assertEquals(MediaType.APPLICATION_NDJSON, response.getHeaders().getContentType());
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(3, lines.length);
+        assertEquals("s2", new ObjectMapper().readTree(lines[1]).get("id").asText());
+        verify(shopperRepository, never()).findAll();
+    }
+
+    @Test
+    void streamAllShoppers_ReadFailsMidStream_AbortsResponse() throws Exception {
+        // Arrange
+        when(shopperRepository.findPage(2, null)).thenReturn(new PageReadResult<>(List.of(testShopper1, testShopper2), "s2"));
+        when(shopperRepository.findPage(2, "s2")).thenThrow(new ExecutionException(new Throwable("Test Exception")));
+
+        // Act & Assert
+        StreamingResponseBody body = adminController.streamAllShoppers(null).getBody();
+        assertThrows(IOException.class, () -> body.writeTo(new ByteArrayOutputStream()));
+        assertEquals(HttpStatus.BAD_REQUEST, adminController.streamAllShoppers("not a cursor!").getStatusCode());
+    }
+
+    @Test
+    void shoppersListing_AcceptHeaderSelectsPageOrStream() throws Exception {
+        // Arrange
+        when(shopperRepository.findPage(anyInt(), isNull())).thenReturn(new PageReadResult<>(List.of(testShopper1), null));
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(adminController).build();
+
+        // Act & Assert
+        mockMvc.perform(get("/api/v1/admin/shoppers").accept(MediaType.ALL))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].id").value("s1"));
+        MvcResult streaming = mockMvc.perform(get("/api/v1/admin/shoppers").accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        streaming.getAsyncResult(2000);
+        assertTrue(streaming.getResponse().getContentType().startsWith(MediaType.APPLICATION_NDJSON_VALUE));
+        assertTrue(streaming.getResponse().getContentAsString().endsWith("\n"));
     }
 
     @Test
@@ -173,35 +269,96 @@ class AdminControllerTest {
     // --- ShopCart Endpoints Tests ---
 
     @Test
-    void getAllShopCarts_ReturnsOkAndListOfShopCarts() throws ExecutionException, InterruptedException {
+    void getAllShopCarts_ReturnsOkAndPageOfShopCarts() throws ExecutionException, InterruptedException {
         // Arrange
-        List<ShopCart> shopCarts = List.of(testShopCart1, testShopCart2);
-        when(shopCartRepository.findAll()).thenReturn(shopCarts);
+        when(shopCartRepository.findPage(100, null)).thenReturn(new PageReadResult<>(List.of(testShopCart1, testShopCart2), null));
 
         // Act
-        ResponseEntity<List<ShopCart>> response = adminController.getAllShopCarts();
+        ResponseEntity<?> response = adminController.getAllShopCarts(null, null, null);
 
         // Assert
         assertEquals(HttpStatus.OK, response.getStatusCode());
-        assertNotNull(response.getBody());
-        assertEquals(2, response.getBody().size());
-        assertEquals(testShopCart1, response.getBody().get(0));
-        assertEquals(testShopCart2, response.getBody().get(1));
-        verify(shopCartRepository, times(1)).findAll();
+        PageDTO<?> page = (PageDTO<?>) response.getBody();
+        assertNotNull(page);
+        assertEquals(List.of(testShopCart1, testShopCart2), page.getItems());
+        assertNull(page.getNextCursor());
+        verify(shopCartRepository, never()).findAll();
+    }
+
+    @Test
+    void getAllShopCarts_SummaryView_UsesProjectionRead() throws ExecutionException, InterruptedException {
+        // Arrange
+        List<ShopCartSummaryDTO> summaries = List.of(new ShopCartSummaryDTO(testShopCart1));
+        when(shopCartRepository.findSummaryPage(100, null)).thenReturn(new PageReadResult<>(summaries, null));
+
+        // Act
+        ResponseEntity<?> response = adminController.getAllShopCarts("summary", null, null);
+
+        // Assert
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(summaries, ((PageDTO<?>) response.getBody()).getItems());
+        verify(shopCartRepository, never()).findPage(anyInt(), any());
+    }
+
+    @Test
+    void streamAllShopCarts_SummaryView_StreamsSummaries() throws Exception {
+        // Arrange
+        when(shopCartRepository.findSummaryPage(2, null))
+                .thenReturn(new PageReadResult<>(List.of(new ShopCartSummaryDTO(testShopCart1)), null));
+
+        // Act
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        adminController.streamAllShopCarts("summary", null).getBody().writeTo(out);
+
+        // Assert
+        assertEquals("c1", new ObjectMapper().readTree(out.toString(StandardCharsets.UTF_8)).get("identifier").asText());
+        assertEquals(HttpStatus.BAD_REQUEST, adminController.streamAllShopCarts("everything", null).getStatusCode());
+        verify(shopCartRepository, never()).findPage(anyInt(), any());
+    }
+
+    @Test
+    void getAllTemplates_SummaryView_UsesProjectionRead() throws ExecutionException, InterruptedException {
+        // Arrange
+        List<ShopCartSummaryDTO> summaries = List.of(new ShopCartSummaryDTO(testShopCart1));
+        when(shopCartRepository.findAllTemplateSummaries()).thenReturn(summaries);
+
+        // Act
+        ResponseEntity<?> response = adminController.getAllTemplates("SUMMARY");
+
+        // Assert
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(summaries, response.getBody());
+        verify(shopCartRepository, never()).findAllTemplates();
+    }
+
+    @Test
+    void getAllTemplates_ProtobufAccepted_ReturnsNotAcceptable() throws Exception {
+        // Arrange
+        when(shopCartRepository.findAllTemplates()).thenReturn(List.of());
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(adminController)
+                .setMessageConverters(new MappingJackson2HttpMessageConverter(), new ProtobufMessageConverter())
+                .build();
+
+        // Act & Assert: the schema has no message for ShopCart, even for an empty list
+        mockMvc.perform(get("/api/v1/admin/templates").accept(ProtobufMessageConverter.PROTOBUF))
+                .andExpect(status().isNotAcceptable());
+        mockMvc.perform(get("/api/v1/admin/templates").accept(MediaType.ALL))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON));
     }
 
     @Test
     void getAllShopCarts_RepositoryThrowsException_ReturnsInternalServerError() throws ExecutionException, InterruptedException {
         // Arrange
-        when(shopCartRepository.findAll()).thenThrow(new ExecutionException(new Throwable("Test Exception")));
+        when(shopCartRepository.findPage(100, null)).thenThrow(new ExecutionException(new Throwable("Test Exception")));
 
         // Act
-        ResponseEntity<List<ShopCart>> response = adminController.getAllShopCarts();
+        ResponseEntity<?> response = adminController.getAllShopCarts(null, null, null);
 
         // Assert
         assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, response.getStatusCode());
         assertNull(response.getBody());
-        verify(shopCartRepository, times(1)).findAll();
+        verify(shopCartRepository, times(1)).findPage(100, null);
     }
 
     @Test
@@ -251,4 +408,58 @@ class AdminControllerTest {
         assertEquals(expectedBody, response.getBody());
         verify(shopCartRepository, times(1)).findById(testId);
     }
-}
\ No newline at end of file
+
+    // --- Item Migration Endpoints Tests ---
+
+    @Test
+    void migrateAllCartItems_ReturnsOkAndMigratedCount() throws ExecutionException, InterruptedException {
+        // Arrange
+        when(shopCartService.migrateAllCartItemsToSubcollection()).thenReturn(2);
+
+        // Act
+        ResponseEntity<?> response = adminController.migrateAllCartItems();
+
+        // Assert
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(Map.of("migrated", 2), response.getBody());
+    }
+
+    @Test
+    void migrateCartItems_ShopCartFound_ReturnsOk() throws ExecutionException, InterruptedException {
+        // Arrange
+        when(shopCartService.migrateCartItemsToSubcollection("c1")).thenReturn(true);
+
+        // Act
+        ResponseEntity<?> response = adminController.migrateCartItems("c1");
+
+        // Assert
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(Map.of("migrated", true), response.getBody());
+    }
+
+    @Test
+    void migrateCartItems_ShopCartNotFound_ReturnsNotFound() throws ExecutionException, InterruptedException {
+        // Arrange
+        when(shopCartService.migrateCartItemsToSubcollection("missing"))
+                .thenThrow(new IllegalArgumentException("ShopCart not found"));
+
+        // Act
+        ResponseEntity<?> response = adminController.migrateCartItems("missing");
+
+        // Assert
+        assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
+    }
+
+    @Test
+    void migrateCartItems_ConcurrentEdit_ReturnsConflict() throws ExecutionException, InterruptedException {
+        // Arrange
+        when(shopCartService.migrateCartItemsToSubcollection("c1"))
+                .thenThrow(new CartConflictException("c1", testShopCart1));
+
+        // Act
+        ResponseEntity<?> response = adminController.migrateCartItems("c1");
+
+        // Assert
+        assertEquals(HttpStatus.CONFLICT, response.getStatusCode());
+    }
+}
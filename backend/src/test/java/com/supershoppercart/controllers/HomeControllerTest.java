@@ -1,6 +1,9 @@
 package com.supershoppercart.controllers;
 
+import com.aayushatharva.brotli4j.decoder.Decoder;
+import com.supershoppercart.services.ResponseCompressor;
 import io.jsonwebtoken.io.IOException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -10,15 +13,15 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.core.io.ClassPathResource;
 import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
-import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.util.unit.DataSize;
 
 import java.io.ByteArrayInputStream;
-import java.util.Map;
-import java.util.function.Supplier;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Function;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -35,17 +38,25 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
 @DisplayName("HomeController Tests")
 class HomeControllerTest {
 
-    @Mock
-    private Supplier<ClassPathResource> resourceSupplier;
+    private static final String PAGE = "<html><body>" + "<p>Super Shopper Cart is up</p>".repeat(100) + "</body></html>";
 
-    @InjectMocks
-    private HomeController homeController;
+    @Mock
+    private Function<String, Resource> resourceLoader;
 
     private MockMvc mockMvc;
 
     @BeforeEach
     void setUp() {
-        mockMvc = MockMvcBuilders.standaloneSetup(homeController).build();
+        ResponseCompressor compressor = new ResponseCompressor(new SimpleMeterRegistry(), DataSize.ofKilobytes(2), 0.1, true, 5, 9, 11);
+        mockMvc = MockMvcBuilders.standaloneSetup(new HomeController(compressor, resourceLoader)).build();
+    }
+
+    private ClassPathResource existingResource(String content) throws Exception {
+        ClassPathResource mockResource = mock(ClassPathResource.class);
+        when(resourceLoader.apply(HomeController.HEALTH_PAGE)).thenReturn(mockResource);
+        when(mockResource.exists()).thenReturn(true);
+        when(mockResource.getInputStream()).thenReturn(new ByteArrayInputStream(content.getBytes(StandardCharsets.UTF_8)));
+        return mockResource;
     }
 
     // ---
@@ -56,33 +67,63 @@ class HomeControllerTest {
     @DisplayName("Should return 200 OK and HTML content when file exists")
     void shouldReturnHtmlContentWhenFileExists() throws Exception {
         // Dado (Given)
-        ClassPathResource mockResource = mock(ClassPathResource.class);
-        when(resourceSupplier.get()).thenReturn(mockResource);
-        when(mockResource.exists()).thenReturn(true);
-        when(mockResource.getInputStream()).thenReturn(new ByteArrayInputStream("<h1>Test</h1>".getBytes()));
+        existingResource("<h1>Test</h1>");
 
         // Quando & Então (When & Then)
         mockMvc.perform(get("/"))
                 .andExpect(status().isOk())
                 .andExpect(content().contentType(MediaType.TEXT_HTML))
-                .andExpect(content().string("<h1>Test</h1>")); // Verificar o conteúdo
+                .andExpect(content().string("<h1>Test</h1>")) // Verificar o conteúdo
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING));
     }
 
     @Test
-    @DisplayName("Should set correct HTTP headers for HTML response")
+    @DisplayName("Should set revalidation headers for HTML response")
     void shouldSetCorrectHttpHeadersForHtmlResponse() throws Exception {
         // Dado (Given)
-        ClassPathResource mockResource = mock(ClassPathResource.class);
-        when(resourceSupplier.get()).thenReturn(mockResource);
-        when(mockResource.exists()).thenReturn(true);
+        existingResource("<h1>Test</h1>");
 
         // Quando & Então (When & Then)
         mockMvc.perform(get("/"))
                 .andExpect(status().isOk())
                 .andExpect(header().string("Content-Type", MediaType.TEXT_HTML_VALUE))
-                .andExpect(header().string("Pragma", "no-cache"))
-                .andExpect(header().string("Cache-Control", "no-cache, no-store, must-revalidate"))
-                .andExpect(header().string("Expires", "Thu, 01 Jan 1970 00:00:00 GMT"));
+                .andExpect(header().string("Cache-Control", "no-cache"))
+                .andExpect(header().string("Vary", "Accept-Encoding"))
+                .andExpect(header().exists("ETag"));
+    }
+
+    @Test
+    @DisplayName("Should serve the precompressed page in the coding the client prefers, reading the file once")
+    void shouldServePrecompressedHtml() throws Exception {
+        // Dado (Given)
+        ClassPathResource mockResource = existingResource(PAGE);
+
+        // Quando & Então (When & Then)
+        MvcResult brotli = mockMvc.perform(get("/").header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate, br"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "br"))
+                .andReturn();
+        mockMvc.perform(get("/").header(HttpHeaders.ACCEPT_ENCODING, "gzip"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"));
+
+        byte[] compressed = brotli.getResponse().getContentAsByteArray();
+        assertTrue(compressed.length < PAGE.length());
+        assertEquals(PAGE, new String(Decoder.decompress(compressed).getDecompressedData(), StandardCharsets.UTF_8));
+        verify(mockResource, times(1)).getInputStream();
+    }
+
+    @Test
+    @DisplayName("Should return 304 Not Modified when the ETag of any variant matches")
+    void shouldReturn304WhenETagMatches() throws Exception {
+        // Dado (Given)
+        existingResource(PAGE);
+        String eTag = mockMvc.perform(get("/").header(HttpHeaders.ACCEPT_ENCODING, "br"))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        // Quando & Então (When & Then)
+        mockMvc.perform(get("/").header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andExpect(status().isNotModified());
     }
 
     // ---
@@ -94,7 +135,7 @@ class HomeControllerTest {
     void shouldReturn404WhenFileDoesNotExist() throws Exception {
         // Dado (Given)
         ClassPathResource mockResource = mock(ClassPathResource.class);
-        when(resourceSupplier.get()).thenReturn(mockResource);
+        when(resourceLoader.apply(HomeController.HEALTH_PAGE)).thenReturn(mockResource);
         when(mockResource.exists()).thenReturn(false);
 
         // Quando & Então (When & Then)
@@ -107,7 +148,7 @@ class HomeControllerTest {
     void shouldReturn500WhenIOExceptionOccurs() throws Exception {
         // Dado (Given)
         ClassPathResource mockResource = mock(ClassPathResource.class);
-        when(resourceSupplier.get()).thenReturn(mockResource);
+        when(resourceLoader.apply(HomeController.HEALTH_PAGE)).thenReturn(mockResource);
         when(mockResource.exists()).thenThrow(new IOException("Simulated I/O Error"));
 
         // Quando & Então (When & Then)
@@ -115,6 +156,24 @@ class HomeControllerTest {
                 .andExpect(status().isInternalServerError());
     }
 
+    // ---
+    // Testes para o endpoint da imagem
+    // ---
+
+    @Test
+    @DisplayName("Should serve the logo uncompressed with a public cache lifetime")
+    void shouldServeLogoUncompressed() throws Exception {
+        // Dado (Given)
+        when(resourceLoader.apply(HomeController.LOGO)).thenAnswer(invocation -> new ClassPathResource(HomeController.LOGO));
+
+        // Quando & Então (When & Then)
+        mockMvc.perform(get("/supershoppercart_3.png").header(HttpHeaders.ACCEPT_ENCODING, "br, gzip"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.IMAGE_PNG))
+                .andExpect(header().string("Cache-Control", "max-age=86400, public"))
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING));
+    }
+
     // ---
     // Testes de métodos HTTP não suportados
     // ---
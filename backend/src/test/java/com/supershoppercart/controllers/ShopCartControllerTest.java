@@ -1,13 +1,22 @@
 package com.supershoppercart.controllers;
 
+import com.supershoppercart.dtos.CartSyncResponseDTO;
 import com.supershoppercart.dtos.CreateShopCartRequestDTO;
+import com.supershoppercart.dtos.PatchShopCartRequestDTO;
 import com.supershoppercart.dtos.ShareCartRequestDTO;
 import com.supershoppercart.dtos.ShopCartDetailDTO;
+import com.supershoppercart.dtos.ShopCartSummaryDTO;
+import com.supershoppercart.enums.CartListView;
+import com.supershoppercart.enums.ContentCoding;
 import com.supershoppercart.enums.SharePermission;
 import com.supershoppercart.enums.ShopCartState;
+import com.supershoppercart.exceptions.CartConflictException;
+import com.supershoppercart.models.CartPatchOperation;
 import com.supershoppercart.models.GroceryItem;
 import com.supershoppercart.models.ShopCart;
 import com.supershoppercart.models.Shopper;
+import com.supershoppercart.services.CartEventHub;
+import com.supershoppercart.services.EncodedBody;
 import com.supershoppercart.services.ShopCartService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -16,15 +25,30 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.bind.support.WebDataBinderFactory;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.method.support.HandlerMethodArgumentResolver;
+import org.springframework.web.method.support.ModelAndViewContainer;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import org.testcontainers.shaded.com.fasterxml.jackson.databind.ObjectMapper;
 
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.ExecutionException;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 
 @ExtendWith(MockitoExtension.class)
 class ShopCartControllerTest {
@@ -32,6 +56,9 @@ class ShopCartControllerTest {
     @Mock
     private ShopCartService shopCartService;
 
+    @Mock
+    private CartEventHub cartEventHub;
+
     @InjectMocks
     private ShopCartController shopCartController;
 
@@ -41,6 +68,8 @@ class ShopCartControllerTest {
     private CreateShopCartRequestDTO validRequest;
     private ObjectMapper objectMapper;
 
+    private static final String ETAG = "\"carts-v1\"";
+
     @BeforeEach
     void setUp() {
         objectMapper = new ObjectMapper();
@@ -71,7 +100,7 @@ class ShopCartControllerTest {
     @Test
     @DisplayName("getMyCarts should return UNAUTHORIZED when shopper is null")
     void getMyCarts_UnauthorizedWhenNullShopper() {
-        ResponseEntity<?> response = shopCartController.getMyCarts(null);
+        ResponseEntity<?> response = shopCartController.getMyCarts(null, null, null, null, null);
 
         assertEquals(HttpStatus.UNAUTHORIZED, response.getStatusCode());
         verifyNoInteractions(shopCartService);
@@ -79,30 +108,282 @@ class ShopCartControllerTest {
 
     @Test
     @DisplayName("getMyCarts should return list of carts successfully")
-    void getMyCarts_ReturnsCarts() throws ExecutionException, InterruptedException {
+    void getMyCarts_ReturnsCarts() throws Exception {
+        byte[] json = "[{\"identifier\":\"cart123\"}]".getBytes(StandardCharsets.UTF_8);
+        when(shopCartService.getShopCartsETag("test_shopper_id", CartListView.FULL)).thenReturn(ETAG);
+        when(shopCartService.getShopCartsJsonByShopperId("test_shopper_id", null)).thenReturn(EncodedBody.identity(json));
+
+        ResponseEntity<?> response = shopCartController.getMyCarts(testShopper, null, null, null, null);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(MediaType.APPLICATION_JSON, response.getHeaders().getContentType());
+        assertSame(json, response.getBody());
+        assertEquals(ETAG, response.getHeaders().getETag());
+        assertEquals("no-cache, private", response.getHeaders().getCacheControl());
+        verify(shopCartService).getShopCartsJsonByShopperId("test_shopper_id", null);
+    }
+
+    @Test
+    @DisplayName("getMyCarts should return 304 without loading carts when the ETag still matches")
+    void getMyCarts_MatchingETag_ReturnsNotModified() throws Exception {
+        when(shopCartService.getShopCartsETag("test_shopper_id", CartListView.SUMMARY)).thenReturn(ETAG);
+
+        ResponseEntity<?> response = shopCartController.getMyCarts(testShopper, "summary", "W/\"other\", " + ETAG, null, null);
+
+        assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+        assertEquals(ETAG, response.getHeaders().getETag());
+        assertNull(response.getBody());
+        verify(shopCartService, never()).getShopCartSummariesByShopperId(anyString());
+        verify(shopCartService, never()).getShopCartsJsonByShopperId(anyString(), any());
+    }
+
+    @Test
+    @DisplayName("getMyCarts with view=summary should return summaries without loading full carts")
+    void getMyCarts_SummaryView_ReturnsSummaries() throws Exception {
+        ShopCart cart = new ShopCart();
+        cart.setId("cart123");
+        when(shopCartService.getShopCartsETag("test_shopper_id", CartListView.SUMMARY)).thenReturn(ETAG);
+        when(shopCartService.getShopCartSummariesByShopperId("test_shopper_id")).thenReturn(List.of(new ShopCartSummaryDTO(cart)));
+
+        ResponseEntity<?> response = shopCartController.getMyCarts(testShopper, "summary", null, null, null);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        ShopCartSummaryDTO[] carts = assertInstanceOf(ShopCartSummaryDTO[].class, response.getBody());
+        assertEquals("cart123", carts[0].getIdentifier());
+        verify(shopCartService, never()).getShopCartsJsonByShopperId(anyString(), any());
+    }
+
+    @Test
+    @DisplayName("getMyCarts should return cart DTOs instead of cached JSON when protobuf is preferred")
+    void getMyCarts_ProtobufAccepted_ReturnsDtos() throws Exception {
+        when(shopCartService.getShopCartsETag("test_shopper_id", CartListView.FULL)).thenReturn(ETAG);
         when(shopCartService.getShopCartsByShopperId("test_shopper_id")).thenReturn(List.of(testCartDto));
 
-        ResponseEntity<?> response = shopCartController.getMyCarts(testShopper);
+        ResponseEntity<?> response = shopCartController.getMyCarts(testShopper, null, null, "application/x-protobuf", null);
 
         assertEquals(HttpStatus.OK, response.getStatusCode());
-        List<?> carts = (List<?>) response.getBody();
-        assertNotNull(carts);
-        assertEquals(1, carts.size());
-        verify(shopCartService).getShopCartsByShopperId("test_shopper_id");
+        assertArrayEquals(new ShopCartDetailDTO[]{testCartDto}, (Object[]) response.getBody());
+        assertEquals("\"carts-v1.pb\"", response.getHeaders().getETag());
+        verify(shopCartService, never()).getShopCartsJsonByShopperId(anyString(), any());
+    }
+
+    @Test
+    @DisplayName("getMyCarts should reject an unknown view")
+    void getMyCarts_UnknownView_ReturnsBadRequest() {
+        ResponseEntity<?> response = shopCartController.getMyCarts(testShopper, "everything", null, null, null);
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        verifyNoInteractions(shopCartService);
     }
 
     @Test
     @DisplayName("getMyCarts should return 500 on exception")
-    void getMyCarts_Exception() throws ExecutionException, InterruptedException {
-        when(shopCartService.getShopCartsByShopperId(anyString())).thenThrow(new RuntimeException("DB error"));
+    void getMyCarts_Exception() throws Exception {
+        when(shopCartService.getShopCartsETag(anyString(), any(CartListView.class))).thenThrow(new RuntimeException("DB error"));
 
-        ResponseEntity<?> response = shopCartController.getMyCarts(testShopper);
+        ResponseEntity<?> response = shopCartController.getMyCarts(testShopper, null, null, null, null);
 
         assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, response.getStatusCode());
         Map<?, ?> body = (Map<?, ?>) response.getBody();
         assertTrue(body.get("error").toString().contains("DB error"));
     }
 
+    // ===== syncMyCarts Tests =====
+    @Test
+    @DisplayName("syncMyCarts should return UNAUTHORIZED when shopper is null")
+    void syncMyCarts_UnauthorizedWhenNullShopper() {
+        ResponseEntity<?> response = shopCartController.syncMyCarts(null, "token");
+
+        assertEquals(HttpStatus.UNAUTHORIZED, response.getStatusCode());
+        verifyNoInteractions(shopCartService);
+    }
+
+    @Test
+    @DisplayName("syncMyCarts should return the changes uncached")
+    void syncMyCarts_ReturnsChanges() throws Exception {
+        CartSyncResponseDTO changes = new CartSyncResponseDTO("next", false, List.of(testCartDto), List.of());
+        when(shopCartService.syncShopCarts("test_shopper_id", "token")).thenReturn(changes);
+
+        ResponseEntity<?> response = shopCartController.syncMyCarts(testShopper, "token");
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertSame(changes, response.getBody());
+        assertEquals("no-store", response.getHeaders().getCacheControl());
+    }
+
+    @Test
+    @DisplayName("syncMyCarts should reject a malformed token")
+    void syncMyCarts_MalformedToken_ReturnsBadRequest() throws Exception {
+        when(shopCartService.syncShopCarts("test_shopper_id", "junk"))
+                .thenThrow(new IllegalArgumentException("Malformed sync token."));
+
+        ResponseEntity<?> response = shopCartController.syncMyCarts(testShopper, "junk");
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+    }
+
+    // ===== getCart Tests =====
+    @Test
+    @DisplayName("getCart should return the cart JSON with its ETag")
+    void getCart_ReturnsCartWithETag() throws Exception {
+        byte[] json = "{\"identifier\":\"cart-123\"}".getBytes(StandardCharsets.UTF_8);
+        when(shopCartService.getShopCartETag("cart-123", "test_shopper_id")).thenReturn(Optional.of(ETAG));
+        when(shopCartService.getShopCartJson("cart-123", "test_shopper_id", null)).thenReturn(Optional.of(EncodedBody.identity(json)));
+
+        ResponseEntity<?> response = shopCartController.getCart("cart-123", testShopper, "\"stale\"", null, null);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(ETAG, response.getHeaders().getETag());
+        assertSame(json, response.getBody());
+    }
+
+    @Test
+    @DisplayName("getCart should send the compressed JSON with Content-Encoding and a coding-specific ETag")
+    void getCart_CompressedJson_SetsContentEncoding() throws Exception {
+        byte[] compressed = {1, 2, 3};
+        when(shopCartService.getShopCartETag("cart-123", "test_shopper_id")).thenReturn(Optional.of(ETAG));
+        when(shopCartService.getShopCartJson("cart-123", "test_shopper_id", "gzip, br"))
+                .thenReturn(Optional.of(new EncodedBody(ContentCoding.BROTLI, compressed)));
+
+        ResponseEntity<?> response = shopCartController.getCart("cart-123", testShopper, null, null, "gzip, br");
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertSame(compressed, response.getBody());
+        assertEquals("br", response.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(List.of("Accept", "Accept-Encoding"), response.getHeaders().getVary());
+        String eTag = response.getHeaders().getETag();
+        assertNotEquals(ETAG, eTag);
+        assertEquals(HttpStatus.NOT_MODIFIED,
+                shopCartController.getCart("cart-123", testShopper, eTag, null, null).getStatusCode(),
+                "The compressed ETag still revalidates the same version");
+    }
+
+    @Test
+    @DisplayName("getCart should return 304 without loading the cart when the ETag still matches")
+    void getCart_MatchingETag_ReturnsNotModified() throws Exception {
+        when(shopCartService.getShopCartETag("cart-123", "test_shopper_id")).thenReturn(Optional.of(ETAG));
+
+        ResponseEntity<?> response = shopCartController.getCart("cart-123", testShopper, ETAG, null, null);
+
+        assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+        verify(shopCartService, never()).getShopCartJson(anyString(), anyString(), any());
+    }
+
+    @Test
+    @DisplayName("getCart should return 404 for an unknown cart or a non-member")
+    void getCart_UnknownOrForeignCart_ReturnsNotFound() throws Exception {
+        when(shopCartService.getShopCartETag("cart-123", "test_shopper_id")).thenReturn(Optional.empty());
+
+        ResponseEntity<?> response = shopCartController.getCart("cart-123", testShopper, null, null, null);
+
+        assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
+        verify(shopCartService, never()).getShopCartJson(anyString(), anyString(), any());
+    }
+
+    @Test
+    @DisplayName("getCart should return 404 when the cart disappears between the version and the full read")
+    void getCart_DeletedAfterVersionRead_ReturnsNotFound() throws Exception {
+        when(shopCartService.getShopCartETag("cart-123", "test_shopper_id")).thenReturn(Optional.of(ETAG));
+        when(shopCartService.getShopCartJson("cart-123", "test_shopper_id", null)).thenReturn(Optional.empty());
+
+        ResponseEntity<?> response = shopCartController.getCart("cart-123", testShopper, null, null, null);
+
+        assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
+    }
+
+    @Test
+    @DisplayName("getCart should return the cart DTO for the protobuf converter, under its own ETag, when protobuf is preferred")
+    void getCart_ProtobufAccepted_ReturnsDtoWithVariantETag() throws Exception {
+        when(shopCartService.getShopCartETag("cart-123", "test_shopper_id")).thenReturn(Optional.of(ETAG));
+        when(shopCartService.getShopCartDetail("cart-123", "test_shopper_id")).thenReturn(Optional.of(testCartDto));
+
+        ResponseEntity<?> response = shopCartController.getCart("cart-123", testShopper, ETAG,
+                "application/x-protobuf, application/json;q=0.5", null);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode(), "The JSON ETag does not match the protobuf encoding");
+        assertSame(testCartDto, response.getBody());
+        assertNull(response.getHeaders().getContentType());
+        assertNotEquals(ETAG, response.getHeaders().getETag());
+        assertEquals(List.of("Accept"), response.getHeaders().getVary());
+        verify(shopCartService, never()).getShopCartJson(anyString(), anyString(), any());
+    }
+
+    @Test
+    @DisplayName("getCart should return UNAUTHORIZED when shopper is null, and 500 on exception")
+    void getCart_UnauthorizedAndException() throws Exception {
+        assertEquals(HttpStatus.UNAUTHORIZED, shopCartController.getCart("cart-123", null, null, null, null).getStatusCode());
+
+        when(shopCartService.getShopCartETag(anyString(), anyString())).thenThrow(new RuntimeException("DB error"));
+
+        assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, shopCartController.getCart("cart-123", testShopper, null, null, null).getStatusCode());
+    }
+
+    // ===== streamCartEvents Tests =====
+    @Test
+    @DisplayName("streamCartEvents should open a stream for a member, passing on Last-Event-ID")
+    void streamCartEvents_Member_ReturnsEmitter() throws Exception {
+        SseEmitter emitter = new SseEmitter();
+        when(shopCartService.getShopCartETag("cart-123", "test_shopper_id")).thenReturn(Optional.of(ETAG));
+        when(cartEventHub.subscribe("cart-123", "test_shopper_id", "abc-7")).thenReturn(emitter);
+
+        ResponseEntity<?> response = shopCartController.streamCartEvents("cart-123", testShopper, "abc-7");
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertSame(emitter, response.getBody());
+        assertEquals("no-store", response.getHeaders().getCacheControl());
+    }
+
+    @Test
+    @DisplayName("streamCartEvents should be served as an event stream, not serialized as a JSON body")
+    void streamCartEvents_OverHttp_StartsAsyncEventStream() throws Exception {
+        SseEmitter emitter = new SseEmitter();
+        when(shopCartService.getShopCartETag("cart-123", "test_shopper_id")).thenReturn(Optional.of(ETAG));
+        when(cartEventHub.subscribe("cart-123", "test_shopper_id", null)).thenReturn(emitter);
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(shopCartController)
+                .setCustomArgumentResolvers(new HandlerMethodArgumentResolver() {
+                    @Override
+                    public boolean supportsParameter(MethodParameter parameter) {
+                        return parameter.hasParameterAnnotation(AuthenticationPrincipal.class);
+                    }
+
+                    @Override
+                    public Object resolveArgument(MethodParameter parameter, ModelAndViewContainer container,
+                                                  NativeWebRequest request, WebDataBinderFactory binderFactory) {
+                        return testShopper;
+                    }
+                })
+                .build();
+
+        MvcResult result = mockMvc.perform(get("/api/v1/carts/cart-123/events").accept(MediaType.TEXT_EVENT_STREAM))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        emitter.send(SseEmitter.event().name("snapshot").data("{}"));
+
+        assertTrue(result.getResponse().getContentType().startsWith(MediaType.TEXT_EVENT_STREAM_VALUE));
+        assertTrue(result.getResponse().getContentAsString().contains("event:snapshot"));
+        emitter.complete();
+    }
+
+    @Test
+    @DisplayName("streamCartEvents should return 404 without subscribing for an unknown cart or a non-member")
+    void streamCartEvents_NonMember_ReturnsNotFound() throws Exception {
+        when(shopCartService.getShopCartETag("cart-123", "test_shopper_id")).thenReturn(Optional.empty());
+
+        ResponseEntity<?> response = shopCartController.streamCartEvents("cart-123", testShopper, null);
+
+        assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
+        verifyNoInteractions(cartEventHub);
+    }
+
+    @Test
+    @DisplayName("streamCartEvents should return UNAUTHORIZED when shopper is null")
+    void streamCartEvents_UnauthorizedWhenNullShopper() {
+        ResponseEntity<?> response = shopCartController.streamCartEvents("cart-123", null, null);
+
+        assertEquals(HttpStatus.UNAUTHORIZED, response.getStatusCode());
+        verifyNoInteractions(shopCartService, cartEventHub);
+    }
+
     // ===== createCart Tests =====
     @Test
     @DisplayName("createCart returns UNAUTHORIZED when shopper is null")
@@ -239,5 +520,89 @@ class ShopCartControllerTest {
         Map<?, ?> body = (Map<?, ?>) response.getBody();
         assertTrue(body.get("error").toString().contains("Removal error"));
     }
-}
 
+    // ===== patchCart Tests =====
+    @Test
+    @DisplayName("patchCart returns Unauthorized when shopper is null")
+    void patchCart_Unauthorized() {
+        PatchShopCartRequestDTO dto = new PatchShopCartRequestDTO();
+        dto.setOperations(List.of(CartPatchOperation.touch()));
+
+        ResponseEntity<?> response = shopCartController.patchCart("cart-123", dto, null);
+
+        assertEquals(HttpStatus.UNAUTHORIZED, response.getStatusCode());
+        verifyNoInteractions(shopCartService);
+    }
+
+    @Test
+    @DisplayName("patchCart success returns the updated cart")
+    void patchCart_Success() throws ExecutionException, InterruptedException {
+        PatchShopCartRequestDTO dto = new PatchShopCartRequestDTO();
+        dto.setOperations(List.of(CartPatchOperation.setPurchased("Milk", true)));
+        when(shopCartService.patchShopCart("cart-123", "test_shopper_id", dto.getOperations())).thenReturn(dummyCart);
+
+        ResponseEntity<?> response = shopCartController.patchCart("cart-123", dto, testShopper);
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("cart-123", ((ShopCartDetailDTO) response.getBody()).getIdentifier());
+    }
+
+    @Test
+    @DisplayName("patchCart invalid operation returns BadRequest")
+    void patchCart_InvalidOperation() throws ExecutionException, InterruptedException {
+        PatchShopCartRequestDTO dto = new PatchShopCartRequestDTO();
+        dto.setOperations(List.of(CartPatchOperation.setPurchased("Unknown", true)));
+        when(shopCartService.patchShopCart(anyString(), anyString(), anyList()))
+                .thenThrow(new IllegalArgumentException("Grocery item with designation Unknown not found"));
+
+        ResponseEntity<?> response = shopCartController.patchCart("cart-123", dto, testShopper);
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        Map<?, ?> body = (Map<?, ?>) response.getBody();
+        assertTrue(body.get("error").toString().contains("Unknown"));
+    }
+
+    @Test
+    @DisplayName("patchCart exception returns 500")
+    void patchCart_Exception() throws ExecutionException, InterruptedException {
+        PatchShopCartRequestDTO dto = new PatchShopCartRequestDTO();
+        dto.setOperations(List.of(CartPatchOperation.touch()));
+        when(shopCartService.patchShopCart(anyString(), anyString(), anyList()))
+                .thenThrow(new ExecutionException("Firestore unavailable", new RuntimeException()));
+
+        ResponseEntity<?> response = shopCartController.patchCart("cart-123", dto, testShopper);
+
+        assertEquals(HttpStatus.INTERNAL_SERVER_ERROR, response.getStatusCode());
+    }
+
+    @Test
+    @DisplayName("patchCart conflict returns 409 with the current cart")
+    void patchCart_Conflict() throws ExecutionException, InterruptedException {
+        PatchShopCartRequestDTO dto = new PatchShopCartRequestDTO();
+        dto.setOperations(List.of(CartPatchOperation.setPurchased("Milk", true)));
+        when(shopCartService.patchShopCart(anyString(), anyString(), anyList()))
+                .thenThrow(new CartConflictException("cart-123", dummyCart));
+
+        ResponseEntity<?> response = shopCartController.patchCart("cart-123", dto, testShopper);
+
+        assertEquals(HttpStatus.CONFLICT, response.getStatusCode());
+        Map<?, ?> body = (Map<?, ?>) response.getBody();
+        assertEquals("cart-123", ((ShopCartDetailDTO) body.get("cart")).getIdentifier());
+    }
+
+    @Test
+    @DisplayName("shareCart conflict returns 409")
+    void shareCart_Conflict() throws ExecutionException, InterruptedException {
+        ShareCartRequestDTO dto = new ShareCartRequestDTO();
+        dto.setTargetShopperEmail("target@example.com");
+        dto.setPermission(SharePermission.VIEW);
+        when(shopCartService.shareShopCart(anyString(), anyString(), anyString(), any()))
+                .thenThrow(new CartConflictException("cart1", null));
+
+        ResponseEntity<?> response = shopCartController.shareCart("cart1", dto, testShopper);
+
+        assertEquals(HttpStatus.CONFLICT, response.getStatusCode());
+        Map<?, ?> body = (Map<?, ?>) response.getBody();
+        assertFalse(body.containsKey("cart"));
+    }
+}
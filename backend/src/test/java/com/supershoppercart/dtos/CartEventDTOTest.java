@@ -0,0 +1,90 @@
+package com.supershoppercart.dtos;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.supershoppercart.enums.CartEventType;
+import com.supershoppercart.enums.ShopCartState;
+import com.supershoppercart.models.GroceryItem;
+import com.supershoppercart.models.ShopCart;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("CartEventDTO Unit Tests")
+class CartEventDTOTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private static GroceryItem item(String id, String designation, boolean purchased) {
+        GroceryItem item = new GroceryItem(designation, "1", purchased);
+        item.setId(id);
+        return item;
+    }
+
+    private static ShopCart cart(GroceryItem... items) {
+        ShopCart cart = new ShopCart();
+        cart.setId("cart1");
+        cart.setName("Weekly");
+        cart.setShopperIds(List.of("shopper1"));
+        cart.setItems(new ArrayList<>(List.of(items)));
+        return cart;
+    }
+
+    @Test
+    @DisplayName("Should carry only the changed items and fields")
+    void delta_shouldCarryOnlyChanges() throws Exception {
+        ShopCart previous = cart(item("i1", "Milk", false), item("i2", "Bread", false), item("i3", "Eggs", false));
+        ShopCart current = cart(item("i1", "Milk", true), item("i2", "Bread", false), item("i4", "Butter", false));
+
+        CartEventDTO delta = CartEventDTO.delta(previous, previous.getItems(), current, current.getItems());
+
+        assertEquals(CartEventType.DELTA, delta.getType());
+        assertEquals(List.of("i1", "i4"), delta.getUpsertedItems().stream().map(GroceryItem::getId).toList());
+        assertEquals(List.of("i3"), delta.getRemovedItemIds());
+        assertEquals(1L, delta.getPurchasedCount());
+        JsonNode json = objectMapper.readTree(objectMapper.writeValueAsString(delta));
+        assertFalse(json.has("name"));
+        assertFalse(json.has("shopperIds"));
+        assertFalse(json.has("cart"));
+        assertFalse(json.has("type"));
+    }
+
+    @Test
+    @DisplayName("Should report membership and state changes without item changes")
+    void delta_shouldReportCartFields() {
+        ShopCart previous = cart(item("i1", "Milk", false));
+        ShopCart current = cart(item("i1", "Milk", false));
+        current.setShopperIds(List.of("shopper1", "shopper2"));
+        current.setState(ShopCartState.COMPLETED);
+
+        CartEventDTO delta = CartEventDTO.delta(previous, previous.getItems(), current, current.getItems());
+
+        assertNull(delta.getUpsertedItems());
+        assertNull(delta.getRemovedItemIds());
+        assertEquals(List.of("shopper1", "shopper2"), delta.getShopperIds());
+        assertEquals(ShopCartState.COMPLETED, delta.getState());
+    }
+
+    @Test
+    @DisplayName("Should return null when nothing displayed has changed")
+    void delta_noChange_shouldBeNull() {
+        ShopCart previous = cart(item("i1", "Milk", false));
+        ShopCart current = cart(item("i1", "Milk", false));
+
+        assertNull(CartEventDTO.delta(previous, previous.getItems(), current, current.getItems()));
+    }
+
+    @Test
+    @DisplayName("Should wrap the whole cart in a snapshot")
+    void snapshot_shouldCarryWholeCart() {
+        CartEventDTO snapshot = CartEventDTO.snapshot(cart(item("i1", "Milk", false)));
+
+        assertEquals(CartEventType.SNAPSHOT, snapshot.getType());
+        assertEquals("cart1", snapshot.getCart().getIdentifier());
+        assertEquals(1, snapshot.getCart().getItems().size());
+    }
+}
@@ -123,8 +123,10 @@ public class ShopCartSummaryDTOTest {
         shopCart.setTemplate(false);
         shopCart.setTemplateName(null);
 
-        // This should throw a NullPointerException due to calling .size() on null
-        assertThrows(NullPointerException.class, () -> new ShopCartSummaryDTO(shopCart));
+        // The counts come from the cart's counters, so a null item list reads as empty
+        ShopCartSummaryDTO dto = new ShopCartSummaryDTO(shopCart);
+        assertEquals(0, dto.getItemCount());
+        assertEquals(0, dto.getPurchasedCount());
     }
 
     /**
@@ -326,4 +328,24 @@ public class ShopCartSummaryDTOTest {
         assertEquals("null-shoppers", dto.getIdentifier());
         assertEquals(1, dto.getItemCount());
     }
-}
\ No newline at end of file
+
+    /**
+     * Tests that a cart with tracked counters is summarized from the counters alone.
+     * Verifies that the items do not need to be loaded or scanned.
+     */
+    @Test
+    @DisplayName("Should take the counts from tracked counters without the items")
+    void testConstructorWithTrackedCounters() {
+        ShopCart shopCart = new ShopCart();
+        shopCart.setId("counted");
+        shopCart.setItems(new ArrayList<>());
+        shopCart.setItemCountersTracked(true);
+        shopCart.setItemCount(12);
+        shopCart.setPurchasedCount(7);
+
+        ShopCartSummaryDTO dto = new ShopCartSummaryDTO(shopCart);
+
+        assertEquals(12, dto.getItemCount());
+        assertEquals(7, dto.getPurchasedCount());
+    }
+}
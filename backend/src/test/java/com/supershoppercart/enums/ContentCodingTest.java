@@ -0,0 +1,38 @@
+package com.supershoppercart.enums;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("ContentCoding negotiation Tests")
+class ContentCodingTest {
+
+    private static final Set<ContentCoding> ALL = EnumSet.allOf(ContentCoding.class);
+
+    @Test
+    @DisplayName("Should prefer brotli over gzip when both are equally acceptable")
+    void negotiate_tie_shouldPreferBrotli() {
+        assertEquals(ContentCoding.BROTLI, ContentCoding.negotiate("gzip, deflate, br", ALL));
+        assertEquals(ContentCoding.BROTLI, ContentCoding.negotiate("*", ALL));
+    }
+
+    @Test
+    @DisplayName("Should follow q-values and skip codings the client refuses")
+    void negotiate_shouldFollowQValues() {
+        assertEquals(ContentCoding.GZIP, ContentCoding.negotiate("br;q=0.5, gzip", ALL));
+        assertEquals(ContentCoding.GZIP, ContentCoding.negotiate("br;q=0, *", ALL));
+        assertEquals(ContentCoding.GZIP, ContentCoding.negotiate("GZIP;Q=1.0, BR;Q=0.2", ALL));
+    }
+
+    @Test
+    @DisplayName("Should fall back to identity for a missing header or codings that are not offered")
+    void negotiate_nothingUsable_shouldBeIdentity() {
+        assertEquals(ContentCoding.IDENTITY, ContentCoding.negotiate(null, ALL));
+        assertEquals(ContentCoding.IDENTITY, ContentCoding.negotiate("deflate", ALL));
+        assertEquals(ContentCoding.IDENTITY, ContentCoding.negotiate("br", EnumSet.of(ContentCoding.GZIP)));
+    }
+}
@@ -1,12 +1,15 @@
 package com.supershoppercart.models;
 
+import com.supershoppercart.enums.ItemStorage;
 import com.supershoppercart.enums.SharePermission;
 import com.supershoppercart.enums.ShopCartState;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 class ShopCartTest {
@@ -99,6 +102,34 @@ class ShopCartTest {
         assertEquals(ShopCartState.COMPLETED, cart.getState());
     }
 
+    // --- settleItemState() tests ---
+
+    @Test
+    void settleItemStateFromCounters_movesBetweenActiveAndShoppingWithoutTouchingLastInteraction() {
+        cart.setItemStorage(ItemStorage.SUBCOLLECTION);
+        cart.setItemCount(2);
+        cart.setPurchasedCount(2);
+        cart.setLastInteraction(null);
+
+        cart.settleItemState();
+        assertEquals(ShopCartState.SHOPPING, cart.getState());
+
+        cart.setItemCount(3);
+        cart.settleItemState();
+        assertEquals(ShopCartState.ACTIVE, cart.getState());
+        assertNull(cart.getLastInteraction());
+    }
+
+    @Test
+    void settleItemStateOfCompletedCart_keepsCompleted() {
+        cart.setItemStorage(ItemStorage.SUBCOLLECTION);
+        cart.setState(ShopCartState.COMPLETED);
+
+        cart.settleItemState();
+
+        assertEquals(ShopCartState.COMPLETED, cart.getState());
+    }
+
     // --- completeShoppingTrip() tests ---
 
     @Test
@@ -265,4 +296,149 @@ class ShopCartTest {
         // No permission set for this shopper
         assertFalse(cart.canDelete(shopperId));
     }
-}
\ No newline at end of file
+
+    // --- Permission map and membership index tests ---
+
+    @Test
+    void addOrUpdatePermission_replacesExistingPermissionInPlace() {
+        cart.addOrUpdatePermission("s1", SharePermission.VIEW);
+        cart.addOrUpdatePermission("s2", SharePermission.EDIT);
+        cart.addOrUpdatePermission("s1", SharePermission.ADMIN);
+
+        assertEquals(SharePermission.ADMIN, cart.getPermissionForShopper("s1"));
+        assertEquals(Map.of("s1", SharePermission.ADMIN, "s2", SharePermission.EDIT), cart.getPermissions());
+        assertEquals(2, cart.getSharePermissions().size());
+    }
+
+    @Test
+    void removePermission_dropsOnlyThatShopper() {
+        cart.addOrUpdatePermission("s1", SharePermission.EDIT);
+        cart.addOrUpdatePermission("s2", SharePermission.VIEW);
+
+        cart.removePermission("s1");
+
+        assertNull(cart.getPermissionForShopper("s1"));
+        assertEquals(SharePermission.VIEW, cart.getPermissionForShopper("s2"));
+    }
+
+    @Test
+    void setSharePermissions_readsLegacyListIntoPermissionMap() {
+        cart.setSharePermissions(List.of(
+                new SharePermissionEntry("s1", SharePermission.ADMIN),
+                new SharePermissionEntry("s2", SharePermission.VIEW)));
+
+        assertEquals(SharePermission.ADMIN, cart.getPermissionForShopper("s1"));
+        assertEquals(SharePermission.VIEW, cart.getPermissionForShopper("s2"));
+        assertEquals(List.of(
+                new SharePermissionEntry("s1", SharePermission.ADMIN),
+                new SharePermissionEntry("s2", SharePermission.VIEW)), cart.getSharePermissions());
+        assertTrue(cart.canEdit("s1"));
+        assertFalse(cart.canEdit("s2"));
+    }
+
+    @Test
+    void isMember_followsChangesMadeThroughTheShopperIdList() {
+        cart.setShopperIds(new ArrayList<>(List.of("s1", "s2", "s2")));
+
+        cart.getShopperIds().add("s3");
+        cart.getShopperIds().remove("s1");
+        cart.getShopperIds().remove("s2"); // One of the two copies
+
+        assertFalse(cart.isMember("s1"));
+        assertTrue(cart.isMember("s2"));
+        assertTrue(cart.isMember("s3"));
+        assertEquals(List.of("s2", "s3"), cart.getShopperIds());
+
+        cart.getShopperIds().removeIf("s2"::equals);
+        assertFalse(cart.isMember("s2"));
+    }
+
+    @Test
+    void isMember_returnsFalseWithoutShopperIds() {
+        cart.setShopperIds(null);
+
+        assertNull(cart.getShopperIds());
+        assertFalse(cart.isMember("s1"));
+    }
+
+    // --- Item ID and index tests ---
+
+    @Test
+    void setItems_givesStoredItemsWithoutIdsPositionalIds() {
+        GroceryItem withId = new GroceryItem("Bread", "1 loaf");
+        withId.setId("bread-id");
+
+        cart.setItems(new ArrayList<>(List.of(new GroceryItem("Apples", "2kg"), withId, new GroceryItem("Milk", "1 liter"))));
+
+        assertEquals("item-0000", cart.getItems().get(0).getId());
+        assertEquals("bread-id", cart.getItems().get(1).getId());
+        assertEquals("item-0002", cart.getItems().get(2).getId());
+    }
+
+    @Test
+    void findItemById_distinguishesItemsWithTheSameDesignation() {
+        cart.setItems(new ArrayList<>());
+        GroceryItem firstMilk = new GroceryItem("Milk", "1 liter");
+        GroceryItem secondMilk = new GroceryItem("Milk", "2 liters");
+        cart.addItem(firstMilk);
+        cart.addItem(secondMilk);
+
+        assertNotEquals(firstMilk.getId(), secondMilk.getId());
+        assertSame(secondMilk, cart.findItemById(secondMilk.getId()).orElseThrow());
+        assertSame(firstMilk, cart.findItemByDesignation("Milk").orElseThrow());
+        assertTrue(cart.findItemById("unknown").isEmpty());
+    }
+
+    @Test
+    void findItemById_staysCorrectAfterTheItemListIsChangedDirectly() {
+        GroceryItem apples = new GroceryItem("Apples", "2kg");
+        GroceryItem bread = new GroceryItem("Bread", "1 loaf");
+        cart.setItems(new ArrayList<>(List.of(apples, bread)));
+        assertSame(bread, cart.findItemById(bread.getId()).orElseThrow()); // Builds the index
+
+        cart.getItems().remove(0);
+
+        assertSame(bread, cart.findItemById(bread.getId()).orElseThrow());
+        assertTrue(cart.findItemById(apples.getId()).isEmpty());
+        assertTrue(cart.findItemByDesignation("Apples").isEmpty());
+    }
+
+    @Test
+    void addItemAndSetItemPurchased_keepTheCountersInStep() {
+        cart.setItems(new ArrayList<>());
+        cart.recountItems();
+        GroceryItem apples = new GroceryItem("Apples", "2kg");
+        cart.addItem(apples);
+        cart.addItem(new GroceryItem("Bread", "1 loaf"));
+
+        assertTrue(cart.setItemPurchased(apples, true));
+        assertFalse(cart.setItemPurchased(apples, true)); // Unchanged flag, no double count
+
+        assertEquals(2, cart.getItemCount());
+        assertEquals(1, cart.getPurchasedCount());
+    }
+
+    @Test
+    void updateStateBasedOnItems_usesTrackedCountersWithoutScanningItems() {
+        cart.setItems(new ArrayList<>()); // Items not loaded, as for a summary read of a large cart
+        cart.setItemCountersTracked(true);
+        cart.setItemCount(3);
+        cart.setPurchasedCount(3);
+        cart.setState(ShopCartState.ACTIVE);
+
+        cart.updateStateBasedOnItems();
+
+        assertEquals(ShopCartState.SHOPPING, cart.getState());
+    }
+
+    @Test
+    void countPurchasedItems_fallsBackToTheItemsForUntrackedCarts() {
+        GroceryItem apples = new GroceryItem("Apples", "2kg");
+        apples.setPurchased(true);
+        cart.setItems(new ArrayList<>(List.of(apples, new GroceryItem("Bread", "1 loaf"))));
+
+        assertFalse(cart.hasItemCounters());
+        assertEquals(2, cart.countItems());
+        assertEquals(1, cart.countPurchasedItems());
+    }
+}
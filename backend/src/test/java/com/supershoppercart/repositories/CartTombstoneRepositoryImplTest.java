@@ -0,0 +1,146 @@
+package com.supershoppercart.repositories;
+
+import com.google.api.core.ApiFutures;
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.*;
+import com.supershoppercart.enums.CartRemovalReason;
+import com.supershoppercart.models.CartTombstone;
+import com.supershoppercart.utils.BulkDeleteListener;
+import com.supershoppercart.utils.BulkDeleteResult;
+import com.supershoppercart.utils.FirestoreBulkDeleter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for CartTombstoneRepositoryImpl, with the Firestore query chain mocked.
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("CartTombstoneRepositoryImpl Unit Tests")
+class CartTombstoneRepositoryImplTest {
+
+    private static final Timestamp SINCE = Timestamp.ofTimeSecondsAndNanos(1_700_000_000L, 0);
+    private static final Timestamp READ_AT = Timestamp.ofTimeSecondsAndNanos(1_700_000_050L, 0);
+
+    @Mock
+    private Firestore firestore;
+    @Mock
+    private FirestoreBulkDeleter bulkDeleter;
+    @Mock
+    private CollectionReference tombstonesCollection;
+    @Mock
+    private Query query;
+    @Mock
+    private QuerySnapshot querySnapshot;
+
+    private CartTombstoneRepositoryImpl repository;
+
+    @BeforeEach
+    void setUp() {
+        when(firestore.collection("cartTombstones")).thenReturn(tombstonesCollection);
+        repository = new CartTombstoneRepositoryImpl(firestore, bulkDeleter);
+    }
+
+    @Test
+    @DisplayName("Should query a shopper's tombstones removed after the token time and return the read time")
+    void findByShopperIdRemovedAfter_shouldQueryByShopperAndRemovedAt() throws Exception {
+        // Arrange
+        when(tombstonesCollection.whereEqualTo("shopperId", "shopper1")).thenReturn(query);
+        when(query.whereGreaterThan("removedAt", SINCE)).thenReturn(query);
+        when(query.orderBy("removedAt")).thenReturn(query);
+        when(query.get()).thenReturn(ApiFutures.immediateFuture(querySnapshot));
+        QueryDocumentSnapshot doc = mock(QueryDocumentSnapshot.class);
+        when(doc.getId()).thenReturn("shopper1_cart1");
+        when(doc.getData()).thenReturn(Map.of(
+                "cartId", "cart1",
+                "shopperId", "shopper1",
+                "reason", "UNSHARED",
+                "removedAt", Timestamp.ofTimeSecondsAndNanos(1_700_000_010L, 0)));
+        when(querySnapshot.getDocuments()).thenReturn(List.of(doc));
+        when(querySnapshot.getReadTime()).thenReturn(READ_AT);
+
+        // Act
+        TimedReadResult<CartTombstone> result = repository.findByShopperIdRemovedAfter("shopper1", SINCE);
+
+        // Assert
+        assertEquals(READ_AT, result.getReadTime());
+        assertEquals(1, result.getFound().size());
+        CartTombstone tombstone = result.getFound().get(0);
+        assertEquals("cart1", tombstone.getCartId());
+        assertEquals("shopper1", tombstone.getShopperId());
+        assertEquals(CartRemovalReason.UNSHARED, tombstone.getReason());
+        assertEquals(new Date(1_700_000_010_000L), tombstone.getRemovedAt());
+    }
+
+    @Test
+    @DisplayName("Should keep the read time when no tombstones were written since the token")
+    void findByShopperIdRemovedAfter_noTombstones_shouldReturnReadTime() throws Exception {
+        // Arrange
+        when(tombstonesCollection.whereEqualTo("shopperId", "shopper1")).thenReturn(query);
+        when(query.whereGreaterThan("removedAt", SINCE)).thenReturn(query);
+        when(query.orderBy("removedAt")).thenReturn(query);
+        when(query.get()).thenReturn(ApiFutures.immediateFuture(querySnapshot));
+        when(querySnapshot.getDocuments()).thenReturn(List.of());
+        when(querySnapshot.getReadTime()).thenReturn(READ_AT);
+
+        // Act
+        TimedReadResult<CartTombstone> result = repository.findByShopperIdRemovedAfter("shopper1", SINCE);
+
+        // Assert
+        assertTrue(result.getFound().isEmpty());
+        assertEquals(READ_AT, result.getReadTime());
+    }
+
+    @Test
+    @DisplayName("Should store one tombstone per shopper and cart, stamped by the server")
+    void stageSave_shouldSetDocumentKeyedByShopperAndCart() {
+        // Arrange
+        WriteBatch batch = mock(WriteBatch.class);
+        DocumentReference tombstoneRef = mock(DocumentReference.class);
+        when(tombstonesCollection.document("shopper1_cart1")).thenReturn(tombstoneRef);
+        CartTombstone tombstone = new CartTombstone();
+        tombstone.setCartId("cart1");
+        tombstone.setShopperId("shopper1");
+        tombstone.setReason(CartRemovalReason.DELETED);
+
+        // Act
+        repository.stageSave(batch, tombstone);
+
+        // Assert
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Map<String, Object>> document = ArgumentCaptor.forClass(Map.class);
+        verify(batch).set(eq(tombstoneRef), document.capture());
+        assertEquals("DELETED", document.getValue().get("reason"));
+        assertEquals(FieldValue.serverTimestamp(), document.getValue().get("removedAt"));
+    }
+
+    @Test
+    @DisplayName("Should bulk-delete tombstones removed before the cutoff through a removedAt-only projection")
+    void deleteRemovedBefore_shouldDeleteExpiredTombstones() throws Exception {
+        // Arrange
+        when(tombstonesCollection.whereLessThan("removedAt", SINCE)).thenReturn(query);
+        when(query.orderBy("removedAt")).thenReturn(query);
+        when(query.orderBy(FieldPath.documentId())).thenReturn(query);
+        when(query.select("removedAt")).thenReturn(query);
+        when(bulkDeleter.delete(query, BulkDeleteListener.NONE)).thenReturn(new BulkDeleteResult(12, 1));
+
+        // Act
+        BulkDeleteResult result = repository.deleteRemovedBefore(SINCE, BulkDeleteListener.NONE);
+
+        // Assert
+        assertEquals(12, result.getDeleted());
+        assertEquals(1, result.getFailed());
+        verify(query, never()).get(); // Tombstones are never loaded in one go
+    }
+}
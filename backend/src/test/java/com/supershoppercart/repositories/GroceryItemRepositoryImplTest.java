@@ -0,0 +1,291 @@
+package com.supershoppercart.repositories;
+
+import com.google.api.core.ApiFutures;
+import com.google.api.gax.grpc.GrpcStatusCode;
+import com.google.api.gax.rpc.FailedPreconditionException;
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.*;
+import com.supershoppercart.enums.ItemStorage;
+import com.supershoppercart.exceptions.CartConflictException;
+import com.supershoppercart.models.CartPatchOperation;
+import com.supershoppercart.models.GroceryItem;
+import com.supershoppercart.models.ShopCart;
+import com.supershoppercart.utils.FirestoreBulkDeleter;
+import io.grpc.Status;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for GroceryItemRepositoryImpl, with the Firestore document and batch chain mocked.
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("GroceryItemRepositoryImpl Unit Tests")
+class GroceryItemRepositoryImplTest {
+
+    private static final Timestamp READ_AT = Timestamp.ofTimeSecondsAndNanos(1_700_000_000L, 0);
+
+    @Mock
+    private Firestore firestore;
+    @Mock
+    private FirestoreBulkDeleter bulkDeleter;
+    @Mock
+    private CollectionReference shopCartsCollection;
+    @Mock
+    private DocumentReference cartRef;
+    @Mock
+    private CollectionReference itemsCollection;
+    @Mock
+    private DocumentReference itemRef;
+    @Mock
+    private DocumentSnapshot itemSnapshot;
+    @Mock
+    private WriteBatch batch;
+
+    private GroceryItemRepositoryImpl repository;
+
+    @BeforeEach
+    void setUp() {
+        when(firestore.collection("shopcarts")).thenReturn(shopCartsCollection);
+        lenient().when(shopCartsCollection.document("cart1")).thenReturn(cartRef);
+        lenient().when(cartRef.collection("items")).thenReturn(itemsCollection);
+        lenient().when(firestore.batch()).thenReturn(batch);
+        repository = new GroceryItemRepositoryImpl(firestore, bulkDeleter);
+    }
+
+    private void stubStoredItem(String itemId, boolean purchased) {
+        when(itemsCollection.document(itemId)).thenReturn(itemRef);
+        when(itemRef.get()).thenReturn(ApiFutures.immediateFuture(itemSnapshot));
+        when(itemSnapshot.exists()).thenReturn(true);
+        when(itemSnapshot.getBoolean("purchased")).thenReturn(purchased);
+        lenient().when(itemSnapshot.getUpdateTime()).thenReturn(READ_AT);
+    }
+
+    @Test
+    @DisplayName("Should guard only the toggled item and adjust the cart counter with an increment")
+    void setPurchased_shouldGuardItemAndIncrementCounter() throws Exception {
+        // Arrange
+        stubStoredItem("item-1", false);
+        when(batch.commit()).thenReturn(ApiFutures.immediateFuture(List.of()));
+
+        // Act
+        boolean changed = repository.setPurchased("cart1", "item-1", true);
+
+        // Assert
+        assertTrue(changed);
+        verify(batch).update(itemRef, Map.of("purchased", true), Precondition.updatedAt(READ_AT));
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Map<String, Object>> counters = ArgumentCaptor.forClass(Map.class);
+        verify(batch).update(eq(cartRef), counters.capture());
+        assertEquals(FieldValue.increment(1), counters.getValue().get("purchasedCount"));
+        assertFalse(counters.getValue().containsKey("state"));
+        verify(batch, never()).set(eq(cartRef), any());
+        verify(cartRef, never()).get(); // The cart is never read, so there is nothing to guard it with
+    }
+
+    @Test
+    @DisplayName("Should commit concurrent toggles of different items without either conflicting on the cart")
+    void setPurchased_concurrentTogglesOfDifferentItems_shouldBothCommit() throws Exception {
+        // Arrange: both toggles read their item before either of them writes
+        CyclicBarrier bothRead = new CyclicBarrier(2);
+        stubConcurrentItem("item-1", itemRef, itemSnapshot, bothRead);
+        stubConcurrentItem("item-2", mock(DocumentReference.class), mock(DocumentSnapshot.class), bothRead);
+        when(batch.commit()).thenReturn(ApiFutures.immediateFuture(List.of()));
+
+        // Act
+        ExecutorService shoppers = Executors.newFixedThreadPool(2);
+        try {
+            Future<Boolean> first = shoppers.submit(() -> repository.setPurchased("cart1", "item-1", true));
+            Future<Boolean> second = shoppers.submit(() -> repository.setPurchased("cart1", "item-2", true));
+
+            // Assert
+            assertTrue(first.get(5, TimeUnit.SECONDS));
+            assertTrue(second.get(5, TimeUnit.SECONDS));
+        } finally {
+            shoppers.shutdownNow();
+        }
+        verify(batch, times(2)).update(eq(cartRef), anyMap());
+        verify(batch, never()).update(eq(cartRef), anyMap(), any(Precondition.class));
+        verify(batch, times(2)).commit();
+    }
+
+    private void stubConcurrentItem(String itemId, DocumentReference ref, DocumentSnapshot snapshot, CyclicBarrier bothRead) {
+        when(itemsCollection.document(itemId)).thenReturn(ref);
+        when(ref.get()).thenAnswer(invocation -> {
+            bothRead.await(5, TimeUnit.SECONDS);
+            return ApiFutures.immediateFuture(snapshot);
+        });
+        when(snapshot.exists()).thenReturn(true);
+        when(snapshot.getBoolean("purchased")).thenReturn(false);
+        when(snapshot.getUpdateTime()).thenReturn(READ_AT);
+    }
+
+    @Test
+    @DisplayName("Should not write when the item already has the requested flag")
+    void setPurchased_unchanged_shouldNotWrite() throws Exception {
+        // Arrange
+        stubStoredItem("item-1", true);
+
+        // Act & Assert
+        assertFalse(repository.setPurchased("cart1", "item-1", true));
+        verify(firestore, never()).batch();
+    }
+
+    @Test
+    @DisplayName("Should report a stale item as a conflict")
+    void setPurchased_staleItem_shouldThrowConflict() throws Exception {
+        // Arrange
+        stubStoredItem("item-1", false);
+        when(batch.commit()).thenReturn(ApiFutures.immediateFailedFuture(new FailedPreconditionException(
+                "update time mismatch", null, GrpcStatusCode.of(Status.Code.FAILED_PRECONDITION), false)));
+
+        // Act & Assert
+        assertThrows(CartConflictException.class, () -> repository.setPurchased("cart1", "item-1", true));
+    }
+
+    @Test
+    @DisplayName("Should reject a toggle of an unknown item")
+    void setPurchased_missingItem_shouldThrowIllegalArgument() {
+        // Arrange
+        when(itemsCollection.document("missing")).thenReturn(itemRef);
+        when(itemRef.get()).thenReturn(ApiFutures.immediateFuture(itemSnapshot));
+        when(itemSnapshot.exists()).thenReturn(false);
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> repository.setPurchased("cart1", "missing", true));
+    }
+
+    @Test
+    @DisplayName("Should create the item under a new stable ID and bump the item counter in one batch")
+    void add_shouldAssignIdAndIncrementItemCount() throws Exception {
+        // Arrange
+        GroceryItem item = new GroceryItem("Milk", "1 liter");
+        when(itemsCollection.document()).thenReturn(itemRef);
+        when(itemRef.getId()).thenReturn("generated-1");
+        when(batch.commit()).thenReturn(ApiFutures.immediateFuture(List.of()));
+
+        // Act
+        GroceryItem added = repository.add("cart1", item);
+
+        // Assert
+        assertEquals("generated-1", added.getId());
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Map<String, Object>> document = ArgumentCaptor.forClass(Map.class);
+        verify(batch).set(eq(itemRef), document.capture());
+        assertEquals("cart1", document.getValue().get("cartId"));
+        assertEquals("Milk", document.getValue().get("designation"));
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Map<String, Object>> counters = ArgumentCaptor.forClass(Map.class);
+        verify(batch).update(eq(cartRef), counters.capture());
+        assertEquals(FieldValue.increment(1), counters.getValue().get("itemCount"));
+        assertFalse(counters.getValue().containsKey("purchasedCount"));
+    }
+
+    @Test
+    @DisplayName("Should stage a patch's added and toggled items with one counter update and commit once")
+    void applyPatch_shouldCommitAllOperationsInOneBatch() throws Exception {
+        // Arrange
+        GroceryItem milk = new GroceryItem("Milk", "1 liter");
+        DocumentReference milkRef = mock(DocumentReference.class);
+        when(itemsCollection.document()).thenReturn(milkRef);
+        when(milkRef.getId()).thenReturn("generated-1");
+        Query byDesignation = mock(Query.class);
+        QuerySnapshot querySnapshot = mock(QuerySnapshot.class);
+        QueryDocumentSnapshot apples = mock(QueryDocumentSnapshot.class);
+        when(itemsCollection.whereEqualTo("designation", "Apples")).thenReturn(byDesignation);
+        when(byDesignation.limit(1)).thenReturn(byDesignation);
+        when(byDesignation.get()).thenReturn(ApiFutures.immediateFuture(querySnapshot));
+        when(querySnapshot.getDocuments()).thenReturn(List.of(apples));
+        when(apples.getId()).thenReturn("item-1");
+        when(apples.getReference()).thenReturn(itemRef);
+        when(apples.getBoolean("purchased")).thenReturn(false);
+        when(apples.getUpdateTime()).thenReturn(READ_AT);
+        when(batch.commit()).thenReturn(ApiFutures.immediateFuture(List.of()));
+
+        // Act
+        repository.applyPatch("cart1", List.of(
+                CartPatchOperation.addItem(milk),
+                CartPatchOperation.setPurchased("Milk", true),
+                CartPatchOperation.setPurchased("Apples", true),
+                CartPatchOperation.touch()));
+
+        // Assert
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Map<String, Object>> document = ArgumentCaptor.forClass(Map.class);
+        verify(batch).set(eq(milkRef), document.capture());
+        assertEquals(true, document.getValue().get("purchased"));
+        verify(batch).update(itemRef, Map.of("purchased", true), Precondition.updatedAt(READ_AT));
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Map<String, Object>> counters = ArgumentCaptor.forClass(Map.class);
+        verify(batch).update(eq(cartRef), counters.capture());
+        assertEquals(FieldValue.increment(1), counters.getValue().get("itemCount"));
+        assertEquals(FieldValue.increment(2), counters.getValue().get("purchasedCount"));
+        verify(batch, times(1)).commit();
+    }
+
+    @Test
+    @DisplayName("Should write nothing when a later operation targets an unknown item")
+    void applyPatch_unknownItem_shouldNotWrite() throws Exception {
+        // Arrange
+        when(itemsCollection.document("missing")).thenReturn(itemRef);
+        when(itemRef.get()).thenReturn(ApiFutures.immediateFuture(itemSnapshot));
+        when(itemSnapshot.exists()).thenReturn(false);
+        List<CartPatchOperation> operations = List.of(
+                CartPatchOperation.addItem(new GroceryItem("Milk", "1 liter")),
+                CartPatchOperation.setPurchasedById("missing", true));
+
+        // Act & Assert
+        assertThrows(IllegalArgumentException.class, () -> repository.applyPatch("cart1", operations));
+        verify(firestore, never()).batch();
+    }
+
+    @Test
+    @DisplayName("Should move embedded items under deterministic IDs and switch the cart layout guarded by its update time")
+    void migrateEmbeddedItems_shouldWriteItemsAndGuardCartUpdate() throws Exception {
+        // Arrange
+        ShopCart cart = new ShopCart();
+        cart.setId("cart1");
+        cart.setUpdateTime(READ_AT);
+        GroceryItem apples = new GroceryItem("Apples", "2kg", true);
+        GroceryItem bread = new GroceryItem("Bread", "1 loaf");
+        cart.setItems(new ArrayList<>(List.of(apples, bread)));
+        DocumentReference applesRef = mock(DocumentReference.class);
+        DocumentReference breadRef = mock(DocumentReference.class);
+        when(itemsCollection.document("item-0000")).thenReturn(applesRef);
+        when(itemsCollection.document("item-0001")).thenReturn(breadRef);
+        when(batch.commit()).thenReturn(ApiFutures.immediateFuture(List.of()));
+
+        // Act
+        repository.migrateEmbeddedItems(cart);
+
+        // Assert
+        verify(batch).set(eq(applesRef), anyMap());
+        verify(batch).set(eq(breadRef), anyMap());
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Map<String, Object>> layout = ArgumentCaptor.forClass(Map.class);
+        verify(batch).update(eq(cartRef), layout.capture(), eq(Precondition.updatedAt(READ_AT)));
+        assertEquals(ItemStorage.SUBCOLLECTION, layout.getValue().get("itemStorage"));
+        assertEquals(List.of(), layout.getValue().get("items"));
+        assertEquals(2, layout.getValue().get("itemCount"));
+        assertEquals(1L, layout.getValue().get("purchasedCount"));
+        assertEquals(ItemStorage.SUBCOLLECTION, cart.getItemStorage());
+        assertEquals("item-0000", apples.getId());
+        verify(batch, times(1)).commit();
+    }
+}
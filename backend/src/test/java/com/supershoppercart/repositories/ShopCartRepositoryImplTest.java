@@ -1,16 +1,34 @@
 package com.supershoppercart.repositories;
 
 import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutures;
+import com.google.api.gax.grpc.GrpcStatusCode;
+import com.google.api.gax.rpc.FailedPreconditionException;
+import com.google.cloud.Timestamp;
 import com.google.cloud.firestore.*;
+import com.supershoppercart.codecs.FirestoreCodecs;
+import com.supershoppercart.dtos.ShopCartSummaryDTO;
+import com.supershoppercart.enums.ShopCartState;
+import com.supershoppercart.exceptions.CartConflictException;
+import com.supershoppercart.models.CartPatchOperation;
+import com.supershoppercart.models.GroceryItem;
 import com.supershoppercart.models.ShopCart;
+import com.supershoppercart.utils.BulkDeleteListener;
+import com.supershoppercart.utils.BulkDeleteResult;
+import com.supershoppercart.utils.FirestoreBulkDeleter;
+import io.grpc.Status;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.ExecutionException;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -18,12 +36,21 @@ import static org.mockito.Mockito.*;
 
 class ShopCartRepositoryImplTest {
 
+    private static final Timestamp READ_AT = Timestamp.ofTimeSecondsAndNanos(1_700_000_000L, 0);
+    private static final Timestamp WRITTEN_AT = Timestamp.ofTimeSecondsAndNanos(1_700_000_005L, 0);
+
     @Mock
     private Firestore firestore;
 
     @Mock
     private CollectionReference templatesCollection;
 
+    @Mock
+    private CollectionReference shopCartsCollection;
+
+    @Mock
+    private FirestoreBulkDeleter bulkDeleter;
+
     @Mock
     private DocumentReference documentReference;
 
@@ -51,10 +78,10 @@ class ShopCartRepositoryImplTest {
 
             // Mock the return value for shopcartTemplates collection immediately
             when(firestore.collection("shopcartTemplates")).thenReturn(templatesCollection);
-            when(firestore.collection("shopcarts")).thenReturn(mock(CollectionReference.class));
+            when(firestore.collection("shopcarts")).thenReturn(shopCartsCollection);
 
             // Now instantiate repository AFTER mocks are configured
-            shopCartRepository = new ShopCartRepositoryImpl(firestore);
+            shopCartRepository = new ShopCartRepositoryImpl(firestore, bulkDeleter);
         }
 
     @Test
@@ -63,7 +90,7 @@ class ShopCartRepositoryImplTest {
         ShopCart cart = new ShopCart();
         cart.setName("Test Template");
 
-        when(templatesCollection.add(cart)).thenReturn(docRefFuture);
+        when(templatesCollection.add(anyMap())).thenReturn(docRefFuture);
         when(docRefFuture.get()).thenReturn(documentReference);
         when(documentReference.getId()).thenReturn("template123");
 
@@ -72,7 +99,7 @@ class ShopCartRepositoryImplTest {
 
         // Assert
         assertEquals("template123", savedCart.getId());
-        verify(templatesCollection).add(cart);
+        verify(templatesCollection).add(anyMap());
     }
 
     @Test
@@ -85,7 +112,7 @@ class ShopCartRepositoryImplTest {
         expectedCart.setName("Template Name");
 
         when(documentSnapshot.exists()).thenReturn(true);
-        when(documentSnapshot.toObject(ShopCart.class)).thenReturn(expectedCart);
+        when(documentSnapshot.getData()).thenReturn(FirestoreCodecs.SHOP_CART.encode(expectedCart));
         when(documentSnapshot.getId()).thenReturn("template123");
 
         Optional<ShopCart> result = shopCartRepository.findTemplateById("template123");
@@ -118,9 +145,9 @@ class ShopCartRepositoryImplTest {
         ShopCart cart2 = new ShopCart();
         cart2.setName("Cart2");
 
-        when(doc1.toObject(ShopCart.class)).thenReturn(cart1);
+        when(doc1.getData()).thenReturn(FirestoreCodecs.SHOP_CART.encode(cart1));
         when(doc1.getId()).thenReturn("id1");
-        when(doc2.toObject(ShopCart.class)).thenReturn(cart2);
+        when(doc2.getData()).thenReturn(FirestoreCodecs.SHOP_CART.encode(cart2));
         when(doc2.getId()).thenReturn("id2");
 
         when(templatesCollection.get()).thenReturn(queryFuture);
@@ -133,4 +160,393 @@ class ShopCartRepositoryImplTest {
         assertEquals("id1", templates.get(0).getId());
         assertEquals("id2", templates.get(1).getId());
     }
-}
\ No newline at end of file
+
+    @Test
+    void testFindAllById_KeepsOrderAndReportsMissing() throws Exception {
+        DocumentSnapshot snapA = mock(DocumentSnapshot.class);
+        DocumentSnapshot snapB = mock(DocumentSnapshot.class);
+        DocumentSnapshot snapGone = mock(DocumentSnapshot.class);
+
+        ShopCart cartA = new ShopCart();
+        cartA.setName("A");
+        ShopCart cartB = new ShopCart();
+        cartB.setName("B");
+
+        when(shopCartsCollection.document(anyString())).thenReturn(documentReference);
+        when(snapA.exists()).thenReturn(true);
+        when(snapA.getId()).thenReturn("a");
+        when(snapA.getData()).thenReturn(FirestoreCodecs.SHOP_CART.encode(cartA));
+        when(snapA.getUpdateTime()).thenReturn(READ_AT);
+        when(snapB.exists()).thenReturn(true);
+        when(snapB.getId()).thenReturn("b");
+        when(snapB.getData()).thenReturn(FirestoreCodecs.SHOP_CART.encode(cartB));
+        when(snapGone.exists()).thenReturn(false);
+        when(snapGone.getId()).thenReturn("gone");
+
+        ApiFuture<List<DocumentSnapshot>> getAllFuture = mock(ApiFuture.class);
+        when(firestore.getAll(any(DocumentReference[].class))).thenReturn(getAllFuture);
+        // Firestore does not guarantee getAll results come back in request order
+        when(getAllFuture.get()).thenReturn(List.of(snapGone, snapA, snapB));
+
+        BatchReadResult<ShopCart> result = shopCartRepository.findAllById(List.of("b", "gone", "a", "b"));
+
+        assertEquals(List.of("b", "a"), result.getFound().stream().map(ShopCart::getId).toList());
+        assertEquals(READ_AT, result.getFound().get(1).getUpdateTime()); // The version cached responses are keyed on
+        assertEquals(List.of("gone"), result.getMissingIds());
+        assertTrue(result.hasMissing());
+        verify(firestore, times(1)).getAll(any(DocumentReference[].class));
+        verify(shopCartsCollection, times(3)).document(anyString());
+    }
+
+    @Test
+    void testFindAllById_EmptyIds_DoesNotCallFirestore() throws Exception {
+        BatchReadResult<ShopCart> result = shopCartRepository.findAllById(List.of());
+
+        assertTrue(result.getFound().isEmpty());
+        assertFalse(result.hasMissing());
+        verify(firestore, never()).getAll(any(DocumentReference[].class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testFindSummariesById_ReadsFieldMaskAndRereadsOnlyUncountedCarts() throws Exception {
+        ShopCart counted = new ShopCart();
+        counted.setItemCountersTracked(true);
+        counted.setItemCount(40);
+        counted.setPurchasedCount(10);
+        ShopCart legacyProjected = new ShopCart(); // No counters and, being projected, no items either
+        ShopCart legacyFull = new ShopCart();
+        legacyFull.setItems(new ArrayList<>(List.of(new GroceryItem("Apples", "2kg"), new GroceryItem("Bread", "1 loaf"))));
+
+        DocumentSnapshot countedSnap = mock(DocumentSnapshot.class);
+        when(countedSnap.exists()).thenReturn(true);
+        when(countedSnap.getId()).thenReturn("counted");
+        when(countedSnap.getData()).thenReturn(FirestoreCodecs.SHOP_CART.encode(counted));
+        DocumentSnapshot legacySnap = mock(DocumentSnapshot.class);
+        when(legacySnap.exists()).thenReturn(true);
+        when(legacySnap.getId()).thenReturn("legacy");
+        when(legacySnap.getData()).thenReturn(FirestoreCodecs.SHOP_CART.encode(legacyProjected));
+        DocumentSnapshot legacyFullSnap = mock(DocumentSnapshot.class);
+        when(legacyFullSnap.exists()).thenReturn(true);
+        when(legacyFullSnap.getId()).thenReturn("legacy");
+        when(legacyFullSnap.getData()).thenReturn(FirestoreCodecs.SHOP_CART.encode(legacyFull));
+        when(shopCartsCollection.document(anyString())).thenReturn(documentReference);
+
+        ApiFuture<List<DocumentSnapshot>> maskedFuture = mock(ApiFuture.class);
+        when(maskedFuture.get()).thenReturn(List.of(countedSnap, legacySnap));
+        when(firestore.getAll(any(DocumentReference[].class), any(FieldMask.class))).thenReturn(maskedFuture);
+        ApiFuture<List<DocumentSnapshot>> fullFuture = mock(ApiFuture.class);
+        when(fullFuture.get()).thenReturn(List.of(legacyFullSnap));
+        when(firestore.getAll(any(DocumentReference[].class))).thenReturn(fullFuture);
+
+        BatchReadResult<ShopCartSummaryDTO> result = shopCartRepository.findSummariesById(List.of("counted", "legacy", "gone"));
+
+        assertEquals(List.of("counted", "legacy"), result.getFound().stream().map(ShopCartSummaryDTO::getIdentifier).toList());
+        assertEquals(40, result.getFound().get(0).getItemCount());
+        assertEquals(10, result.getFound().get(0).getPurchasedCount());
+        assertEquals(2, result.getFound().get(1).getItemCount());
+        assertEquals(List.of("gone"), result.getMissingIds());
+        verify(firestore).getAll(any(DocumentReference[].class), any(FieldMask.class));
+        verify(firestore, times(1)).getAll(any(DocumentReference[].class)); // Only the uncounted cart
+    }
+
+    @Test
+    void testFindAllSummaries_SelectsSummaryFieldsOnly() throws Exception {
+        Query projected = mock(Query.class);
+        QueryDocumentSnapshot doc = mock(QueryDocumentSnapshot.class);
+        ShopCart cart = new ShopCart();
+        cart.setItemCountersTracked(true);
+        cart.setItemCount(3);
+        when(doc.getId()).thenReturn("cart1");
+        when(doc.getData()).thenReturn(FirestoreCodecs.SHOP_CART.encode(cart));
+        when(shopCartsCollection.select(ShopCartSummaryDTO.FIRESTORE_FIELDS)).thenReturn(projected);
+        when(projected.get()).thenReturn(queryFuture);
+        when(queryFuture.get()).thenReturn(querySnapshot);
+        when(querySnapshot.getDocuments()).thenReturn(List.of(doc));
+
+        List<ShopCartSummaryDTO> summaries = shopCartRepository.findAllSummaries();
+
+        assertEquals(1, summaries.size());
+        assertEquals("cart1", summaries.get(0).getIdentifier());
+        assertEquals(3, summaries.get(0).getItemCount());
+        verify(shopCartsCollection, never()).get();
+        verify(firestore, never()).getAll(any(DocumentReference[].class));
+    }
+
+    @Test
+    void testFindPage_ResumesAfterCursorAndReadsOneExtraDocument() throws Exception {
+        Query ordered = mock(Query.class);
+        Query resumed = mock(Query.class);
+        Query limited = mock(Query.class);
+        List<QueryDocumentSnapshot> docs = new ArrayList<>();
+        for (String id : List.of("c2", "c3", "c4")) {
+            QueryDocumentSnapshot doc = mock(QueryDocumentSnapshot.class);
+            when(doc.getId()).thenReturn(id);
+            when(doc.getData()).thenReturn(FirestoreCodecs.SHOP_CART.encode(new ShopCart()));
+            docs.add(doc);
+        }
+        when(shopCartsCollection.orderBy(FieldPath.documentId())).thenReturn(ordered);
+        when(ordered.startAfter("c1")).thenReturn(resumed);
+        when(resumed.limit(3)).thenReturn(limited);
+        when(limited.get()).thenReturn(queryFuture);
+        when(queryFuture.get()).thenReturn(querySnapshot);
+        when(querySnapshot.getDocuments()).thenReturn(docs).thenReturn(docs.subList(0, 2));
+
+        PageReadResult<ShopCart> page = shopCartRepository.findPage(2, "c1");
+        PageReadResult<ShopCart> lastPage = shopCartRepository.findPage(2, "c1");
+
+        assertEquals(List.of("c2", "c3"), page.getFound().stream().map(ShopCart::getId).toList());
+        assertEquals("c3", page.getNextStartAfterId());
+        assertEquals(2, lastPage.getFound().size());
+        assertFalse(lastPage.hasNext());
+        assertThrows(IllegalArgumentException.class, () -> shopCartRepository.findPage(0, null));
+    }
+
+    @Test
+    void testStageSave_NewCart_AssignsGeneratedIdWithoutWriting() {
+        WriteBatch batch = mock(WriteBatch.class);
+        ShopCart cart = new ShopCart();
+        when(shopCartsCollection.document()).thenReturn(documentReference);
+        when(documentReference.getId()).thenReturn("generated123");
+
+        ShopCart staged = shopCartRepository.stageSave(batch, cart);
+
+        assertEquals("generated123", staged.getId());
+        verify(batch).set(eq(documentReference), anyMap());
+        verify(batch, never()).commit();
+    }
+
+    @Test
+    void testDeleteAll_DelegatesToBulkDeleter() throws Exception {
+        BulkDeleteListener listener = (deleted, failed, last) -> { };
+        CollectionGroup itemsGroup = mock(CollectionGroup.class);
+        Query orderedItems = mock(Query.class);
+        Query selectedItems = mock(Query.class);
+        when(firestore.collectionGroup("items")).thenReturn(itemsGroup);
+        when(itemsGroup.orderBy(FieldPath.documentId())).thenReturn(orderedItems);
+        when(orderedItems.select(FieldPath.documentId())).thenReturn(selectedItems);
+        when(bulkDeleter.deleteAll(shopCartsCollection, listener)).thenReturn(new BulkDeleteResult(42, 1));
+        when(bulkDeleter.delete(selectedItems, listener)).thenReturn(new BulkDeleteResult(100, 2));
+
+        BulkDeleteResult result = shopCartRepository.deleteAll(listener);
+
+        // Carts plus the items subcollection documents they leave behind
+        assertEquals(142, result.getDeleted());
+        assertEquals(3, result.getFailed());
+        verify(shopCartsCollection, never()).get();
+    }
+
+    @Test
+    void testAppendItem_UsesArrayUnionAndWritesStateGuardedByUpdateTime() throws Exception {
+        ShopCart stored = new ShopCart();
+        stored.setItems(new ArrayList<>(List.of(new GroceryItem("Apples", "2kg", true))));
+        stored.recountItems();
+        stored.setState(ShopCartState.SHOPPING);
+        stubStoredCart("cart1", stored);
+        stubUpdate(ApiFutures.immediateFuture(writeResultAt(WRITTEN_AT)));
+        GroceryItem item = new GroceryItem("Milk", "1 liter");
+
+        ShopCart result = shopCartRepository.appendItem("cart1", item);
+
+        assertNotNull(item.getId());
+        assertEquals(ShopCartState.ACTIVE, result.getState());
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Map<String, Object>> updates = ArgumentCaptor.forClass(Map.class);
+        verify(documentReference).update(updates.capture(), eq(Precondition.updatedAt(READ_AT)));
+        assertEquals(FieldValue.arrayUnion(FirestoreCodecs.GROCERY_ITEM.encode(item)), updates.getValue().get("items"));
+        assertEquals(FieldValue.increment(1), updates.getValue().get("itemCount"));
+        assertEquals(ShopCartState.ACTIVE, updates.getValue().get("state"));
+        verify(documentReference, never()).set(any());
+    }
+
+    @Test
+    void testApplyPatch_WritesOnlyChangedFieldsGuardedByUpdateTime() throws Exception {
+        ShopCart stored = new ShopCart();
+        stored.setItems(new ArrayList<>(List.of(new GroceryItem("Apples", "2kg"), new GroceryItem("Bread", "1 loaf"))));
+        stored.recountItems();
+        stored.setShopperIds(new ArrayList<>(List.of("shopper1", "shopper2")));
+        stubStoredCart("cart1", stored);
+        stubUpdate(ApiFutures.immediateFuture(writeResultAt(WRITTEN_AT)));
+
+        ShopCart result = shopCartRepository.applyPatch("cart1", List.of(CartPatchOperation.setPurchased("Bread", true)));
+
+        assertEquals("cart1", result.getId());
+        assertTrue(result.getItems().get(1).isPurchased());
+        assertEquals(WRITTEN_AT, result.getUpdateTime());
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Map<String, Object>> updates = ArgumentCaptor.forClass(Map.class);
+        verify(documentReference).update(updates.capture(), eq(Precondition.updatedAt(READ_AT)));
+        assertEquals(Set.of("items", "purchasedCount", "lastInteraction", "lastModified"), updates.getValue().keySet());
+        assertEquals(FieldValue.increment(1), updates.getValue().get("purchasedCount"));
+        verify(documentReference, never()).set(any());
+    }
+
+    @Test
+    void testApplyPatch_AllPurchasedByCounters_MovesToShoppingWithIncrements() throws Exception {
+        ShopCart stored = new ShopCart();
+        GroceryItem apples = new GroceryItem("Apples", "2kg");
+        apples.setPurchased(true);
+        stored.setItems(new ArrayList<>(List.of(apples, new GroceryItem("Bread", "1 loaf"))));
+        stored.recountItems();
+        stubStoredCart("cart1", stored);
+        stubUpdate(ApiFutures.immediateFuture(writeResultAt(WRITTEN_AT)));
+
+        ShopCart result = shopCartRepository.applyPatch("cart1", List.of(CartPatchOperation.setPurchased("Bread", true)));
+
+        assertEquals(2, result.getPurchasedCount());
+        assertEquals(ShopCartState.SHOPPING, result.getState());
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Map<String, Object>> updates = ArgumentCaptor.forClass(Map.class);
+        verify(documentReference).update(updates.capture(), any(Precondition.class));
+        assertEquals(FieldValue.increment(1), updates.getValue().get("purchasedCount"));
+        assertEquals(ShopCartState.SHOPPING, updates.getValue().get("state"));
+        assertFalse(updates.getValue().containsKey("itemCount"));
+    }
+
+    @Test
+    void testApplyPatch_UnchangedFlag_WritesNoItemsOrCounters() throws Exception {
+        ShopCart stored = new ShopCart();
+        stored.setItems(new ArrayList<>(List.of(new GroceryItem("Apples", "2kg"))));
+        stored.recountItems();
+        stubStoredCart("cart1", stored);
+        stubUpdate(ApiFutures.immediateFuture(writeResultAt(WRITTEN_AT)));
+
+        shopCartRepository.applyPatch("cart1", List.of(CartPatchOperation.setPurchased("Apples", false)));
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Map<String, Object>> updates = ArgumentCaptor.forClass(Map.class);
+        verify(documentReference).update(updates.capture(), any(Precondition.class));
+        assertEquals(Set.of("lastInteraction", "lastModified"), updates.getValue().keySet());
+    }
+
+    @Test
+    void testApplyPatch_LegacyCartWithoutCounters_BackfillsAbsoluteCounts() throws Exception {
+        ShopCart stored = new ShopCart();
+        GroceryItem apples = new GroceryItem("Apples", "2kg");
+        apples.setPurchased(true);
+        stored.setItems(new ArrayList<>(List.of(apples, new GroceryItem("Bread", "1 loaf"))));
+        stubStoredCart("cart1", stored);
+        stubUpdate(ApiFutures.immediateFuture(writeResultAt(WRITTEN_AT)));
+
+        shopCartRepository.applyPatch("cart1", List.of(CartPatchOperation.addItem(new GroceryItem("Milk", "1 liter"))));
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Map<String, Object>> updates = ArgumentCaptor.forClass(Map.class);
+        verify(documentReference).update(updates.capture(), any(Precondition.class));
+        assertEquals(3L, updates.getValue().get("itemCount"));
+        assertEquals(1L, updates.getValue().get("purchasedCount"));
+        assertEquals(true, updates.getValue().get("itemCountersTracked"));
+    }
+
+    @Test
+    void testApplyPatch_AppendOnly_SendsArrayUnionOfNewItems() throws Exception {
+        ShopCart stored = new ShopCart();
+        stored.setItems(new ArrayList<>(List.of(new GroceryItem("Apples", "2kg"))));
+        stubStoredCart("cart1", stored);
+        stubUpdate(ApiFutures.immediateFuture(writeResultAt(WRITTEN_AT)));
+        GroceryItem added = new GroceryItem("Milk", "1 liter");
+
+        shopCartRepository.applyPatch("cart1", List.of(CartPatchOperation.addItem(added), CartPatchOperation.touch()));
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Map<String, Object>> updates = ArgumentCaptor.forClass(Map.class);
+        verify(documentReference).update(updates.capture(), any(Precondition.class));
+        assertEquals(FieldValue.arrayUnion(FirestoreCodecs.GROCERY_ITEM.encode(added)), updates.getValue().get("items"));
+    }
+
+    @Test
+    void testApplyPatch_ById_TogglesOnlyThatItemAmongDuplicates() throws Exception {
+        ShopCart stored = new ShopCart();
+        GroceryItem firstMilk = new GroceryItem("Milk", "1 liter");
+        GroceryItem secondMilk = new GroceryItem("Milk", "2 liters");
+        firstMilk.setId("milk-1");
+        secondMilk.setId("milk-2");
+        stored.setItems(new ArrayList<>(List.of(firstMilk, secondMilk)));
+        stubStoredCart("cart1", stored);
+        stubUpdate(ApiFutures.immediateFuture(writeResultAt(WRITTEN_AT)));
+
+        ShopCart result = shopCartRepository.applyPatch("cart1", List.of(CartPatchOperation.setPurchasedById("milk-2", true)));
+
+        assertFalse(result.getItems().get(0).isPurchased());
+        assertTrue(result.getItems().get(1).isPurchased());
+    }
+
+    @Test
+    void testApplyPatch_UnknownItemId_ThrowsIllegalArgument() throws Exception {
+        ShopCart stored = new ShopCart();
+        stored.setItems(new ArrayList<>(List.of(new GroceryItem("Apples", "2kg"))));
+        stubStoredCart("cart1", stored);
+
+        assertThrows(IllegalArgumentException.class, () ->
+                shopCartRepository.applyPatch("cart1", List.of(CartPatchOperation.setPurchasedById("no-such-id", true))));
+        verify(documentReference, never()).update(anyMap(), any(Precondition.class));
+    }
+
+    @Test
+    void testApplyPatch_StaleUpdateTime_ThrowsConflict() throws Exception {
+        ShopCart stored = new ShopCart();
+        stored.setItems(new ArrayList<>(List.of(new GroceryItem("Apples", "2kg"))));
+        stubStoredCart("cart1", stored);
+        stubUpdate(ApiFutures.immediateFailedFuture(new FailedPreconditionException(
+                "update time mismatch", null, GrpcStatusCode.of(Status.Code.FAILED_PRECONDITION), false)));
+
+        CartConflictException conflict = assertThrows(CartConflictException.class, () ->
+                shopCartRepository.setItemPurchased("cart1", "Apples", true));
+        assertEquals("cart1", conflict.getCartId());
+    }
+
+    @Test
+    void testApplyPatch_UnknownItem_ThrowsIllegalArgument() throws Exception {
+        ShopCart stored = new ShopCart();
+        stored.setItems(new ArrayList<>(List.of(new GroceryItem("Apples", "2kg"))));
+        stubStoredCart("cart1", stored);
+
+        assertThrows(IllegalArgumentException.class, () ->
+                shopCartRepository.setItemPurchased("cart1", "Nonexistent", true));
+        verify(documentReference, never()).update(anyMap(), any(Precondition.class));
+    }
+
+    @Test
+    void testApplyPatch_MissingCart_ThrowsIllegalArgument() throws Exception {
+        stubStoredCart("missing", null);
+
+        assertThrows(IllegalArgumentException.class, () ->
+                shopCartRepository.applyPatch("missing", List.of(CartPatchOperation.touch())));
+    }
+
+    @Test
+    void testStageUpdate_GuardsWithReadUpdateTime() {
+        WriteBatch batch = mock(WriteBatch.class);
+        ShopCart cart = new ShopCart();
+        cart.setId("cart1");
+        cart.setUpdateTime(READ_AT);
+        when(shopCartsCollection.document("cart1")).thenReturn(documentReference);
+
+        shopCartRepository.stageUpdate(batch, cart, Map.of("shopperIds", List.of("shopper1")));
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Map<String, Object>> updates = ArgumentCaptor.forClass(Map.class);
+        verify(batch).update(eq(documentReference), updates.capture(), eq(Precondition.updatedAt(READ_AT)));
+        assertEquals(Set.of("shopperIds", "lastModified"), updates.getValue().keySet());
+    }
+
+    private void stubStoredCart(String cartId, ShopCart stored) throws Exception {
+        when(shopCartsCollection.document(cartId)).thenReturn(documentReference);
+        when(documentReference.get()).thenReturn(docSnapFuture);
+        when(docSnapFuture.get()).thenReturn(documentSnapshot);
+        when(documentSnapshot.exists()).thenReturn(stored != null);
+        when(documentSnapshot.getId()).thenReturn(cartId);
+        when(documentSnapshot.getUpdateTime()).thenReturn(READ_AT);
+        when(documentSnapshot.getData()).thenReturn(stored == null ? null : FirestoreCodecs.SHOP_CART.encode(stored));
+    }
+
+    private void stubUpdate(ApiFuture<WriteResult> result) {
+        when(documentReference.update(anyMap(), any(Precondition.class))).thenReturn(result);
+    }
+
+    private static WriteResult writeResultAt(Timestamp updateTime) {
+        WriteResult writeResult = mock(WriteResult.class);
+        when(writeResult.getUpdateTime()).thenReturn(updateTime);
+        return writeResult;
+    }
+}
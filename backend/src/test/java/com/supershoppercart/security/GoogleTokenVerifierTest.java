@@ -1,60 +1,84 @@
 package com.supershoppercart.security;
 
 import com.google.api.client.googleapis.auth.oauth2.GoogleIdToken;
-import com.google.api.client.googleapis.auth.oauth2.GoogleIdTokenVerifier;
+import com.google.api.client.json.gson.GsonFactory;
+import com.google.api.client.json.webtoken.JsonWebSignature;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
-import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
-import org.mockito.Mock;
-import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.test.util.ReflectionTestUtils;
 import java.io.IOException;
 import java.security.GeneralSecurityException;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 import static org.junit.jupiter.api.Assertions.*;
-import static org.mockito.Mockito.*;
 
 /**
  * Unit tests for the GoogleTokenVerifier class.
- * This class uses JUnit 5 and Mockito to test the functionality of
- * token verification by mocking the external GoogleIdTokenVerifier dependency.
+ * Tokens are signed locally and checked against a stand-in key source,
+ * so no call to Google's certificate endpoint is ever made.
  */
-@ExtendWith(MockitoExtension.class)
 @DisplayName("GoogleTokenVerifier Unit Tests")
 class GoogleTokenVerifierTest {
 
-    @Mock
-    private GoogleIdTokenVerifier googleIdTokenVerifier;
+    private static final String CLIENT_ID = "test-client-id";
+    private final String MOCK_EMAIL = "testuser@example.com";
 
-    @InjectMocks
+    private KeyPair signingKeys;
+    private List<PublicKey> publishedKeys;
+    private AtomicInteger keyFetches;
     private GoogleTokenVerifier googleTokenVerifier;
 
-    private final String MOCK_ID_TOKEN = "mockIdTokenString";
-    private final String MOCK_EMAIL = "testuser@example.com";
-
     @BeforeEach
-    void setUp() {
-        // Injetar o verifier mockado na nossa classe. Isso é feito automaticamente pelo @InjectMocks.
-        // A sua abordagem original com ReflectionTestUtils era uma boa forma de contornar a inicialização, mas
-        // o Mockito trata disso. Vamos apenas garantir que o clientId e o ambiente são configurados.
-        ReflectionTestUtils.setField(googleTokenVerifier, "googleClientId", "test-client-id");
+    void setUp() throws GeneralSecurityException {
+        signingKeys = generateKeyPair();
+        publishedKeys = List.of(signingKeys.getPublic());
+        keyFetches = new AtomicInteger();
+
+        GooglePublicKeySource standInKeySource = () -> {
+            keyFetches.incrementAndGet();
+            return publishedKeys;
+        };
+        googleTokenVerifier = new GoogleTokenVerifier(standInKeySource);
+        ReflectionTestUtils.setField(googleTokenVerifier, "googleClientId", CLIENT_ID);
         ReflectionTestUtils.setField(googleTokenVerifier, "appEnv", "prod");
+        googleTokenVerifier.init();
+    }
 
-        // Simular a inicialização do verifier. No seu código, o @PostConstruct é chamado
-        // para inicializar o verifier. No teste, já o temos mockado, mas para simular o comportamento
-        // real, vamos apenas garantir que a referência está definida.
-        ReflectionTestUtils.setField(googleTokenVerifier, "verifier", googleIdTokenVerifier);
+    @AfterEach
+    void tearDown() {
+        googleTokenVerifier.shutdown();
+    }
+
+    private static KeyPair generateKeyPair() throws GeneralSecurityException {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        return generator.generateKeyPair();
+    }
+
+    private String signToken(PrivateKey key, String audience, long expiresInSeconds) throws GeneralSecurityException, IOException {
+        long now = System.currentTimeMillis() / 1000;
+        JsonWebSignature.Header header = new JsonWebSignature.Header()
+                .setAlgorithm("RS256")
+                .setKeyId("stand-in-key");
+        GoogleIdToken.Payload payload = new GoogleIdToken.Payload()
+                .setEmail(MOCK_EMAIL);
+        payload.setIssuer("https://accounts.google.com");
+        payload.setAudience(audience);
+        payload.setIssuedAtTimeSeconds(now);
+        payload.setExpirationTimeSeconds(now + expiresInSeconds);
+        return JsonWebSignature.signUsingRsaSha256(key, GsonFactory.getDefaultInstance(), header, payload);
     }
 
-    // ---
-    // Teste do cenário de bypass de desenvolvimento
-    // ---
     @Test
     @DisplayName("Should return fake payload for TEST_TOKEN in dev environment")
-    void testVerify_DevBypass_Success() throws GeneralSecurityException, IOException {
+    void testVerify_DevBypass_Success() {
         // Arrange
-        // Mudar o ambiente da app para 'dev' para ativar o bypass
         ReflectionTestUtils.setField(googleTokenVerifier, "appEnv", "dev");
 
         // Act
@@ -64,80 +88,132 @@ class GoogleTokenVerifierTest {
         assertNotNull(resultPayload);
         assertEquals("test@example.com", resultPayload.getEmail());
         assertEquals("Test User", resultPayload.get("name"));
-
-        // Assert that the real verifier was never called
-        verify(googleIdTokenVerifier, never()).verify(anyString());
     }
 
-    // ---
-    // Testes de caminho feliz (Happy Path)
-    // ---
     @Test
     @DisplayName("Should successfully verify a valid Google ID token")
-    void testVerify_Success() throws GeneralSecurityException, IOException {
+    void testVerify_Success() throws Exception {
         // Arrange
-        GoogleIdToken.Payload mockPayload = new GoogleIdToken.Payload();
-        mockPayload.setEmail(MOCK_EMAIL);
-
-        GoogleIdToken mockIdToken = mock(GoogleIdToken.class);
-        when(mockIdToken.getPayload()).thenReturn(mockPayload);
-
-        when(googleIdTokenVerifier.verify(MOCK_ID_TOKEN)).thenReturn(mockIdToken);
+        String idToken = signToken(signingKeys.getPrivate(), CLIENT_ID, 3600);
 
         // Act
-        GoogleIdToken.Payload resultPayload = googleTokenVerifier.verify(MOCK_ID_TOKEN);
+        GoogleIdToken.Payload resultPayload = googleTokenVerifier.verify(idToken);
 
         // Assert
         assertNotNull(resultPayload);
         assertEquals(MOCK_EMAIL, resultPayload.getEmail());
-        verify(googleIdTokenVerifier, times(1)).verify(MOCK_ID_TOKEN);
     }
 
-    // ---
-    // Testes para cenários de falha de verificação
-    // ---
     @Test
-    @DisplayName("Should return null for an invalid Google ID token")
-    void testVerify_InvalidToken() throws GeneralSecurityException, IOException {
+    @DisplayName("Should serve repeated verifications from cache without fetching keys on the request path")
+    void testVerify_CachedAndNoKeyFetchOnRequestPath() throws Exception {
         // Arrange
-        when(googleIdTokenVerifier.verify(MOCK_ID_TOKEN)).thenReturn(null);
+        String idToken = signToken(signingKeys.getPrivate(), CLIENT_ID, 3600);
 
         // Act
-        GoogleIdToken.Payload resultPayload = googleTokenVerifier.verify(MOCK_ID_TOKEN);
+        GoogleIdToken.Payload first = googleTokenVerifier.verify(idToken);
+        GoogleIdToken.Payload second = googleTokenVerifier.verify(idToken);
 
         // Assert
-        assertNull(resultPayload);
-        verify(googleIdTokenVerifier, times(1)).verify(MOCK_ID_TOKEN);
+        assertSame(first, second);
+        assertEquals(1, googleTokenVerifier.getVerifiedTokenCacheStats().hitCount());
+        assertEquals(1, keyFetches.get()); // Only the initial load in init()
     }
 
-    // ---
-    // Testes para cenários de exceção
-    // ---
     @Test
-    @DisplayName("Should return null when a GeneralSecurityException is thrown")
-    void testVerify_GeneralSecurityException() throws GeneralSecurityException, IOException {
+    @DisplayName("Should return null for a token signed by an unknown key")
+    void testVerify_UnknownSigningKey() throws Exception {
         // Arrange
-        when(googleIdTokenVerifier.verify(MOCK_ID_TOKEN)).thenThrow(new GeneralSecurityException("Test security exception"));
+        String idToken = signToken(generateKeyPair().getPrivate(), CLIENT_ID, 3600);
+
+        // Act & Assert
+        assertNull(googleTokenVerifier.verify(idToken));
+    }
+
+    @Test
+    @DisplayName("Should return null for a token issued to another audience")
+    void testVerify_WrongAudience() throws Exception {
+        // Arrange
+        String idToken = signToken(signingKeys.getPrivate(), "another-client-id", 3600);
+
+        // Act & Assert
+        assertNull(googleTokenVerifier.verify(idToken));
+    }
+
+    @Test
+    @DisplayName("Should return null for an expired token")
+    void testVerify_ExpiredToken() throws Exception {
+        // Arrange
+        String idToken = signToken(signingKeys.getPrivate(), CLIENT_ID, -3600);
+
+        // Act & Assert
+        assertNull(googleTokenVerifier.verify(idToken));
+    }
+
+    @Test
+    @DisplayName("Should return null for a malformed or empty token")
+    void testVerify_MalformedToken() {
+        assertNull(googleTokenVerifier.verify("mockIdTokenString"));
+        assertNull(googleTokenVerifier.verify(""));
+        assertNull(googleTokenVerifier.verify(null));
+    }
+
+    @Test
+    @DisplayName("Should keep the previous key set when a refresh fails")
+    void testRefreshKeys_FailureKeepsPreviousKeys() throws Exception {
+        // Arrange
+        GoogleTokenVerifier failingVerifier = new GoogleTokenVerifier(new GooglePublicKeySource() {
+            private boolean loaded;
+
+            @Override
+            public List<PublicKey> fetchPublicKeys() throws IOException {
+                if (loaded) {
+                    throw new IOException("Certificate endpoint unavailable");
+                }
+                loaded = true;
+                return publishedKeys;
+            }
+        });
+        ReflectionTestUtils.setField(failingVerifier, "googleClientId", CLIENT_ID);
+        failingVerifier.init();
+
+        try {
+            // Act
+            failingVerifier.refreshKeys();
+
+            // Assert
+            assertNotNull(failingVerifier.verify(signToken(signingKeys.getPrivate(), CLIENT_ID, 3600)));
+        } finally {
+            failingVerifier.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Should pick up rotated keys on refresh")
+    void testRefreshKeys_RotatedKeys() throws Exception {
+        // Arrange
+        KeyPair rotated = generateKeyPair();
+        publishedKeys = List.of(rotated.getPublic());
 
         // Act
-        GoogleIdToken.Payload resultPayload = googleTokenVerifier.verify(MOCK_ID_TOKEN);
+        googleTokenVerifier.refreshKeys();
 
         // Assert
-        assertNull(resultPayload);
-        verify(googleIdTokenVerifier, times(1)).verify(MOCK_ID_TOKEN);
+        assertNotNull(googleTokenVerifier.verify(signToken(rotated.getPrivate(), CLIENT_ID, 3600)));
+        assertNull(googleTokenVerifier.verify(signToken(signingKeys.getPrivate(), CLIENT_ID, 3600)));
     }
 
     @Test
-    @DisplayName("Should return null when an IOException is thrown")
-    void testVerify_IOException() throws GeneralSecurityException, IOException {
+    @DisplayName("Should verify asynchronously on the dedicated executor")
+    void testVerifyAsync_Success() throws Exception {
         // Arrange
-        when(googleIdTokenVerifier.verify(MOCK_ID_TOKEN)).thenThrow(new IOException("Test I/O exception"));
+        String idToken = signToken(signingKeys.getPrivate(), CLIENT_ID, 3600);
 
         // Act
-        GoogleIdToken.Payload resultPayload = googleTokenVerifier.verify(MOCK_ID_TOKEN);
+        GoogleIdToken.Payload resultPayload = googleTokenVerifier.verifyAsync(idToken).get();
 
         // Assert
-        assertNull(resultPayload);
-        verify(googleIdTokenVerifier, times(1)).verify(MOCK_ID_TOKEN);
+        assertNotNull(resultPayload);
+        assertEquals(MOCK_EMAIL, resultPayload.getEmail());
     }
-}
\ No newline at end of file
+}
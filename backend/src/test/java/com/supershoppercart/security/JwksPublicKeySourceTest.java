@@ -0,0 +1,54 @@
+package com.supershoppercart.security;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+import java.security.interfaces.RSAPublicKey;
+import java.util.Base64;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("JwksPublicKeySource Unit Tests")
+class JwksPublicKeySourceTest {
+
+    @TempDir
+    Path tempDir;
+
+    private static String base64Url(java.math.BigInteger value) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.toByteArray());
+    }
+
+    @Test
+    @DisplayName("Should read RSA keys from a local JWKS document and skip other key types")
+    void fetchPublicKeys_localJwks_shouldDecodeRsaKeys() throws Exception {
+        // Arrange
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        RSAPublicKey rsaKey = (RSAPublicKey) generator.generateKeyPair().getPublic();
+
+        String jwks = "{\"keys\":["
+                + "{\"kty\":\"RSA\",\"alg\":\"RS256\",\"use\":\"sig\",\"kid\":\"k1\","
+                + "\"n\":\"" + base64Url(rsaKey.getModulus()) + "\",\"e\":\"" + base64Url(rsaKey.getPublicExponent()) + "\"},"
+                + "{\"kty\":\"EC\",\"kid\":\"k2\",\"crv\":\"P-256\",\"x\":\"AA\",\"y\":\"AA\"}"
+                + "]}";
+        Path jwksFile = tempDir.resolve("jwks.json");
+        Files.writeString(jwksFile, jwks);
+
+        JwksPublicKeySource source = new JwksPublicKeySource(jwksFile.toUri().toString());
+
+        // Act
+        List<PublicKey> keys = source.fetchPublicKeys();
+
+        // Assert
+        assertEquals(1, keys.size());
+        RSAPublicKey decoded = (RSAPublicKey) keys.get(0);
+        assertEquals(rsaKey.getModulus(), decoded.getModulus());
+        assertEquals(rsaKey.getPublicExponent(), decoded.getPublicExponent());
+    }
+}
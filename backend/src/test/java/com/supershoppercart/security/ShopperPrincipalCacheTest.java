@@ -0,0 +1,72 @@
+package com.supershoppercart.security;
+
+import com.supershoppercart.models.Shopper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("ShopperPrincipalCache Unit Tests")
+class ShopperPrincipalCacheTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private ShopperPrincipalCache cache;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new ShopperPrincipalCache(meterRegistry, 100, Duration.ofMinutes(5));
+    }
+
+    private Shopper shopper(String id) {
+        Shopper shopper = new Shopper("user@example.com", "User");
+        shopper.setId(id);
+        return shopper;
+    }
+
+    @Test
+    @DisplayName("Should return cached shopper and record hits and misses")
+    void get_afterPut_shouldReturnShopperAndRecordStats() {
+        assertNull(cache.get("s1"));
+
+        Shopper shopper = shopper("s1");
+        cache.put(shopper);
+
+        assertSame(shopper, cache.get("s1"));
+        assertEquals(1, cache.stats().hitCount());
+        assertEquals(1, cache.stats().missCount());
+    }
+
+    @Test
+    @DisplayName("Should ignore shoppers without an ID")
+    void put_shopperWithoutId_shouldBeIgnored() {
+        cache.put(new Shopper("user@example.com", "User"));
+        cache.put(null);
+
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    @DisplayName("Should drop entries on invalidate and invalidateAll")
+    void invalidate_shouldRemoveEntries() {
+        cache.put(shopper("s1"));
+        cache.put(shopper("s2"));
+
+        cache.invalidate("s1");
+        assertNull(cache.get("s1"));
+        assertNotNull(cache.get("s2"));
+
+        cache.invalidateAll();
+        assertNull(cache.get("s2"));
+    }
+
+    @Test
+    @DisplayName("Should publish cache metrics to the meter registry")
+    void constructor_shouldRegisterCacheMetrics() {
+        assertNotNull(meterRegistry.find("cache.gets").tag("cache", ShopperPrincipalCache.CACHE_NAME).meter());
+    }
+}
@@ -2,11 +2,13 @@ package com.supershoppercart.security.filter;
 
 import com.supershoppercart.models.Shopper;
 import com.supershoppercart.repositories.ShopperRepository;
+import com.supershoppercart.security.ShopperPrincipalCache;
 import com.supershoppercart.services.JwtTokenService;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -21,6 +23,8 @@ import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 
 import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Collections;
 import java.util.Optional;
 import java.util.concurrent.ExecutionException;
@@ -54,6 +58,7 @@ class JwtAuthFilterTest {
     private final String VALID_TOKEN = "valid.jwt.token";
     private final String SHOPPER_ID = "shopper-123";
     private Shopper shopper;
+    private ShopperPrincipalCache principalCache;
 
     @BeforeEach
     void setUp() {
@@ -62,7 +67,12 @@ class JwtAuthFilterTest {
         // Clear security context before each test
         SecurityContextHolder.clearContext();
         // Recreate the filter with mocked environment
-        jwtAuthFilter = new JwtAuthFilter(shopperRepository, jwtTokenService, environment);
+        principalCache = new ShopperPrincipalCache(new SimpleMeterRegistry(), 100, Duration.ofMinutes(5));
+        jwtAuthFilter = new JwtAuthFilter(shopperRepository, jwtTokenService, environment, principalCache);
+    }
+
+    private JwtTokenService.VerifiedToken verified(String shopperId) {
+        return new JwtTokenService.VerifiedToken(shopperId, null, Instant.now().plusSeconds(3600));
     }
 
     @AfterEach
@@ -76,8 +86,7 @@ class JwtAuthFilterTest {
     void doFilterInternal_validToken_shouldAuthenticate() throws ServletException, IOException, ExecutionException, InterruptedException {
         // Arrange
         when(request.getHeader("Authorization")).thenReturn("Bearer " + VALID_TOKEN);
-        when(jwtTokenService.isTokenValid(VALID_TOKEN)).thenReturn(true);
-        when(jwtTokenService.extractShopperId(VALID_TOKEN)).thenReturn(SHOPPER_ID);
+        when(jwtTokenService.verifyToken(VALID_TOKEN)).thenReturn(verified(SHOPPER_ID));
         when(shopperRepository.findById(SHOPPER_ID)).thenReturn(Optional.of(shopper));
 
         // Act
@@ -92,6 +101,44 @@ class JwtAuthFilterTest {
         verify(response, never()).sendError(anyInt(), anyString());
     }
 
+    @Test
+    @DisplayName("Should serve the principal from cache on subsequent requests")
+    void doFilterInternal_repeatedValidToken_shouldReadShopperOnce() throws ServletException, IOException, ExecutionException, InterruptedException {
+        // Arrange
+        when(request.getHeader("Authorization")).thenReturn("Bearer " + VALID_TOKEN);
+        when(jwtTokenService.verifyToken(VALID_TOKEN)).thenReturn(verified(SHOPPER_ID));
+        when(shopperRepository.findById(SHOPPER_ID)).thenReturn(Optional.of(shopper));
+
+        // Act
+        jwtAuthFilter.doFilterInternal(request, response, filterChain);
+        SecurityContextHolder.clearContext();
+        jwtAuthFilter.doFilterInternal(request, response, filterChain);
+
+        // Assert
+        assertEquals(shopper, SecurityContextHolder.getContext().getAuthentication().getPrincipal());
+        verify(shopperRepository, times(1)).findById(SHOPPER_ID);
+        assertEquals(1, principalCache.stats().hitCount());
+        assertEquals(1, principalCache.stats().missCount());
+    }
+
+    @Test
+    @DisplayName("Should reload the principal after the cache entry is invalidated")
+    void doFilterInternal_invalidatedPrincipal_shouldReloadShopper() throws ServletException, IOException, ExecutionException, InterruptedException {
+        // Arrange
+        when(request.getHeader("Authorization")).thenReturn("Bearer " + VALID_TOKEN);
+        when(jwtTokenService.verifyToken(VALID_TOKEN)).thenReturn(verified(SHOPPER_ID));
+        when(shopperRepository.findById(SHOPPER_ID)).thenReturn(Optional.of(shopper));
+
+        // Act
+        jwtAuthFilter.doFilterInternal(request, response, filterChain);
+        SecurityContextHolder.clearContext();
+        principalCache.invalidate(SHOPPER_ID);
+        jwtAuthFilter.doFilterInternal(request, response, filterChain);
+
+        // Assert
+        verify(shopperRepository, times(2)).findById(SHOPPER_ID);
+    }
+
     @Test
     @DisplayName("Should not authenticate if there is no Authorization header")
     void doFilterInternal_noAuthorizationHeader_shouldNotAuthenticate() throws ServletException, IOException {
@@ -104,7 +151,7 @@ class JwtAuthFilterTest {
         // Assert
         assertNull(SecurityContextHolder.getContext().getAuthentication());
         verify(filterChain).doFilter(request, response);
-        verify(jwtTokenService, never()).isTokenValid(any());
+        verify(jwtTokenService, never()).verifyToken(any());
         verify(response, never()).sendError(anyInt(), anyString());
     }
 
@@ -120,7 +167,7 @@ class JwtAuthFilterTest {
         // Assert
         assertNull(SecurityContextHolder.getContext().getAuthentication());
         verify(filterChain).doFilter(request, response);
-        verify(jwtTokenService, never()).isTokenValid(any());
+        verify(jwtTokenService, never()).verifyToken(any());
         verify(response, never()).sendError(anyInt(), anyString());
     }
 
@@ -129,7 +176,7 @@ class JwtAuthFilterTest {
     void doFilterInternal_invalidToken_shouldSendUnauthorizedError() throws ServletException, IOException, ExecutionException, InterruptedException {
         // Arrange
         when(request.getHeader("Authorization")).thenReturn("Bearer " + VALID_TOKEN);
-        when(jwtTokenService.isTokenValid(VALID_TOKEN)).thenReturn(false);
+        when(jwtTokenService.verifyToken(VALID_TOKEN)).thenReturn(null);
 
         // Act
         jwtAuthFilter.doFilterInternal(request, response, filterChain);
@@ -145,8 +192,7 @@ class JwtAuthFilterTest {
     void doFilterInternal_noShopperId_shouldSendUnauthorizedError() throws ServletException, IOException, ExecutionException, InterruptedException {
         // Arrange
         when(request.getHeader("Authorization")).thenReturn("Bearer " + VALID_TOKEN);
-        when(jwtTokenService.isTokenValid(VALID_TOKEN)).thenReturn(true);
-        when(jwtTokenService.extractShopperId(VALID_TOKEN)).thenReturn(null);
+        when(jwtTokenService.verifyToken(VALID_TOKEN)).thenReturn(verified(null));
 
         // Act
         jwtAuthFilter.doFilterInternal(request, response, filterChain);
@@ -163,8 +209,7 @@ class JwtAuthFilterTest {
     void doFilterInternal_shopperNotFound_shouldSendUnauthorizedError() throws ServletException, IOException, ExecutionException, InterruptedException {
         // Arrange
         when(request.getHeader("Authorization")).thenReturn("Bearer " + VALID_TOKEN);
-        when(jwtTokenService.isTokenValid(VALID_TOKEN)).thenReturn(true);
-        when(jwtTokenService.extractShopperId(VALID_TOKEN)).thenReturn(SHOPPER_ID);
+        when(jwtTokenService.verifyToken(VALID_TOKEN)).thenReturn(verified(SHOPPER_ID));
         when(shopperRepository.findById(SHOPPER_ID)).thenReturn(Optional.empty());
 
         // Act
@@ -181,7 +226,7 @@ class JwtAuthFilterTest {
     void doFilterInternal_tokenServiceThrowsRuntimeException_shouldSendUnauthorizedError() throws ServletException, IOException, ExecutionException, InterruptedException {
         // Arrange
         when(request.getHeader("Authorization")).thenReturn("Bearer " + VALID_TOKEN);
-        when(jwtTokenService.isTokenValid(VALID_TOKEN)).thenThrow(new RuntimeException("Token processing error"));
+        when(jwtTokenService.verifyToken(VALID_TOKEN)).thenThrow(new RuntimeException("Token processing error"));
 
         // Act
         jwtAuthFilter.doFilterInternal(request, response, filterChain);
@@ -207,7 +252,7 @@ class JwtAuthFilterTest {
 
         // Assert
         assertEquals(existingAuth, SecurityContextHolder.getContext().getAuthentication());
-        verify(jwtTokenService, never()).isTokenValid(any());
+        verify(jwtTokenService, never()).verifyToken(any());
         verify(filterChain).doFilter(request, response);
         verify(response, never()).sendError(anyInt(), anyString());
     }
@@ -224,7 +269,7 @@ class JwtAuthFilterTest {
         // Assert
         assertNull(SecurityContextHolder.getContext().getAuthentication());
         verify(filterChain).doFilter(request, response);
-        verify(jwtTokenService, never()).isTokenValid(any());
+        verify(jwtTokenService, never()).verifyToken(any());
         verify(response, never()).sendError(anyInt(), anyString());
     }
 
@@ -240,7 +285,7 @@ class JwtAuthFilterTest {
         // Assert
         assertNull(SecurityContextHolder.getContext().getAuthentication());
         verify(filterChain).doFilter(request, response);
-        verify(jwtTokenService, never()).isTokenValid(any());
+        verify(jwtTokenService, never()).verifyToken(any());
         verify(response, never()).sendError(anyInt(), anyString());
     }
 
@@ -258,7 +303,7 @@ class JwtAuthFilterTest {
         // The authentication should remain unchanged
         assertNotNull(SecurityContextHolder.getContext().getAuthentication());
         verify(filterChain).doFilter(request, response);
-        verify(jwtTokenService, never()).isTokenValid(any());
+        verify(jwtTokenService, never()).verifyToken(any());
     }
 
     @Test
@@ -281,7 +326,7 @@ class JwtAuthFilterTest {
         assertEquals("devuser@example.com", devShopper.getEmail());
 
         verify(filterChain).doFilter(request, response);
-        verify(jwtTokenService, never()).isTokenValid(any());
+        verify(jwtTokenService, never()).verifyToken(any());
         verify(shopperRepository, never()).findById(any());
         verify(response, never()).sendError(anyInt(), anyString());
     }
@@ -292,7 +337,7 @@ class JwtAuthFilterTest {
         // Arrange
         when(request.getHeader("Authorization")).thenReturn("Bearer DEV_MAGIC_TOKEN");
         when(environment.getActiveProfiles()).thenReturn(new String[]{"prod"});
-        when(jwtTokenService.isTokenValid("DEV_MAGIC_TOKEN")).thenReturn(false);
+        when(jwtTokenService.verifyToken("DEV_MAGIC_TOKEN")).thenReturn(null);
 
         // Act
         jwtAuthFilter.doFilterInternal(request, response, filterChain);
@@ -309,7 +354,7 @@ class JwtAuthFilterTest {
         // Arrange
         when(request.getHeader("Authorization")).thenReturn("Bearer DEV_MAGIC_TOKEN");
         when(environment.getActiveProfiles()).thenReturn(new String[]{});
-        when(jwtTokenService.isTokenValid("DEV_MAGIC_TOKEN")).thenReturn(false);
+        when(jwtTokenService.verifyToken("DEV_MAGIC_TOKEN")).thenReturn(null);
 
         // Act
         jwtAuthFilter.doFilterInternal(request, response, filterChain);
@@ -340,7 +385,7 @@ class JwtAuthFilterTest {
         assertEquals("devuser@example.com", devShopper.getEmail());
 
         verify(filterChain).doFilter(request, response);
-        verify(jwtTokenService, never()).isTokenValid(any());
+        verify(jwtTokenService, never()).verifyToken(any());
         verify(shopperRepository, never()).findById(any());
         verify(response, never()).sendError(anyInt(), anyString());
     }
@@ -353,7 +398,7 @@ class JwtAuthFilterTest {
 
         // The token will be processed as a normal JWT since it doesn't match the exact DEV_MAGIC_TOKEN
         // The following line is no longer necessary as it's not being called.
-        when(jwtTokenService.isTokenValid("DEV_MAGIC_TOKEN_WRONG")).thenReturn(false);
+        when(jwtTokenService.verifyToken("DEV_MAGIC_TOKEN_WRONG")).thenReturn(null);
 
         // Act
         jwtAuthFilter.doFilterInternal(request, response, filterChain);
@@ -363,7 +408,7 @@ class JwtAuthFilterTest {
         verify(response).sendError(HttpServletResponse.SC_UNAUTHORIZED, "Invalid or expired token.");
         verify(filterChain, never()).doFilter(request, response);
         // Verify that normal JWT processing was attempted
-        verify(jwtTokenService).isTokenValid("DEV_MAGIC_TOKEN_WRONG");
+        verify(jwtTokenService).verifyToken("DEV_MAGIC_TOKEN_WRONG");
     }
 
     @Test
@@ -371,7 +416,7 @@ class JwtAuthFilterTest {
     void doFilterInternal_genericExceptionDuringJwtProcessing_shouldSendTokenProcessingError() throws ServletException, IOException, ExecutionException, InterruptedException {
         // Arrange
         when(request.getHeader("Authorization")).thenReturn("Bearer " + VALID_TOKEN);
-        when(jwtTokenService.isTokenValid(VALID_TOKEN)).thenThrow(new RuntimeException("Simulated unexpected error"));
+        when(jwtTokenService.verifyToken(VALID_TOKEN)).thenThrow(new RuntimeException("Simulated unexpected error"));
 
         // Act
         jwtAuthFilter.doFilterInternal(request, response, filterChain);
@@ -389,7 +434,7 @@ class JwtAuthFilterTest {
         // Arrange
         when(request.getHeader("Authorization")).thenReturn("Bearer " + VALID_TOKEN);
         // Stubbing to throw a RuntimeException, which is an unchecked exception.
-        when(jwtTokenService.isTokenValid(VALID_TOKEN)).thenThrow(new RuntimeException("Simulated interruption"));
+        when(jwtTokenService.verifyToken(VALID_TOKEN)).thenThrow(new RuntimeException("Simulated interruption"));
 
         // Act
         jwtAuthFilter.doFilterInternal(request, response, filterChain);
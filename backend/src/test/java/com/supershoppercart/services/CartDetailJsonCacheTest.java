@@ -0,0 +1,131 @@
+package com.supershoppercart.services;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.cloud.Timestamp;
+import com.supershoppercart.enums.ContentCoding;
+import com.supershoppercart.models.GroceryItem;
+import com.supershoppercart.models.ShopCart;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("CartDetailJsonCache Unit Tests")
+class CartDetailJsonCacheTest {
+
+    private static final Timestamp VERSION_1 = Timestamp.ofTimeSecondsAndNanos(1_700_000_000L, 0);
+    private static final Timestamp VERSION_2 = Timestamp.ofTimeSecondsAndNanos(1_700_000_001L, 0);
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private CartDetailJsonCache cache;
+
+    @BeforeEach
+    void setUp() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        ResponseCompressor compressor = new ResponseCompressor(meterRegistry, DataSize.ofKilobytes(2), 0.1, true, 5, 9, 11);
+        cache = new CartDetailJsonCache(objectMapper, compressor, meterRegistry, 100, Duration.ofMinutes(10));
+    }
+
+    private ShopCart cart(String id, Timestamp version, String itemName) {
+        ShopCart cart = new ShopCart();
+        cart.setId(id);
+        cart.setName("Cart " + id);
+        cart.setItems(new ArrayList<>(List.of(new GroceryItem(itemName, "1"))));
+        cart.setUpdateTime(version);
+        return cart;
+    }
+
+    private ShopCart largeCart(String id, Timestamp version) {
+        ShopCart cart = cart(id, version, "Apples");
+        for (int i = 0; i < 100; i++) {
+            cart.getItems().add(new GroceryItem("Item " + i, "1"));
+        }
+        return cart;
+    }
+
+    @Test
+    @DisplayName("Should serve the same bytes while the cart version is unchanged")
+    void getJson_sameVersion_shouldReuseSerializedBytes() throws Exception {
+        byte[] first = cache.getJson(cart("c1", VERSION_1, "Apples"));
+        byte[] second = cache.getJson(cart("c1", VERSION_1, "Apples"));
+
+        assertSame(first, second);
+        assertEquals("Apples", objectMapper.readTree(first).get("items").get(0).get("designation").asText());
+        assertEquals(1, cache.stats().hitCount());
+    }
+
+    @Test
+    @DisplayName("Should serialize again when the cart has a newer version")
+    void getJson_newVersion_shouldReserialize() throws Exception {
+        cache.getJson(cart("c1", VERSION_1, "Apples"));
+
+        byte[] updated = cache.getJson(cart("c1", VERSION_2, "Bread"));
+
+        assertEquals("Bread", objectMapper.readTree(updated).get("items").get(0).get("designation").asText());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    @DisplayName("Should not cache carts without a version")
+    void getJson_noVersion_shouldNotCache() throws Exception {
+        cache.getJson(cart("c1", null, "Apples"));
+
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    @DisplayName("Should join cart JSON into an array in the given order")
+    void getJsonArray_shouldKeepOrder() throws Exception {
+        JsonNode empty = objectMapper.readTree(cache.getJsonArray(List.of()));
+        JsonNode carts = objectMapper.readTree(cache.getJsonArray(List.of(cart("c2", VERSION_1, "Milk"), cart("c1", VERSION_1, "Eggs"))));
+
+        assertEquals(0, empty.size());
+        assertEquals(2, carts.size());
+        assertEquals("c2", carts.get(0).get("identifier").asText());
+        assertEquals("c1", carts.get(1).get("identifier").asText());
+    }
+
+    @Test
+    @DisplayName("Should drop invalidated entries and ignore null IDs")
+    void invalidate_shouldRemoveEntries() throws Exception {
+        cache.getJson(cart("c1", VERSION_1, "Apples"));
+        cache.getJson(cart("c2", VERSION_1, "Bread"));
+
+        cache.invalidate("c1");
+        cache.invalidate(null);
+        assertEquals(1, cache.size());
+
+        cache.invalidateAll();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    @DisplayName("Should compress a cached cart once per version and pick the variant the client accepts")
+    void getEncodedJson_shouldReuseCompressedVariants() throws Exception {
+        EncodedBody brotli = cache.getEncodedJson(largeCart("c1", VERSION_1), "gzip, br");
+        EncodedBody again = cache.getEncodedJson(largeCart("c1", VERSION_1), "br");
+        EncodedBody gzip = cache.getEncodedJson(largeCart("c1", VERSION_1), "gzip");
+        EncodedBody plain = cache.getEncodedJson(largeCart("c1", VERSION_1), null);
+
+        assertEquals(ContentCoding.BROTLI, brotli.coding());
+        assertSame(brotli.bytes(), again.bytes());
+        assertEquals(ContentCoding.GZIP, gzip.coding());
+        assertEquals(ContentCoding.IDENTITY, plain.coding());
+        assertSame(cache.getJson(largeCart("c1", VERSION_1)), plain.bytes());
+        assertTrue(brotli.bytes().length < plain.bytes().length);
+    }
+
+    @Test
+    @DisplayName("Should send small carts uncompressed")
+    void getEncodedJson_smallCart_shouldStayIdentity() throws Exception {
+        assertEquals(ContentCoding.IDENTITY, cache.getEncodedJson(cart("c1", VERSION_1, "Apples"), "br, gzip").coding());
+    }
+}
@@ -0,0 +1,71 @@
+package com.supershoppercart.services;
+
+import com.google.cloud.Timestamp;
+import com.supershoppercart.enums.ContentCoding;
+import com.supershoppercart.models.ShopCart;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("CartETags Unit Tests")
+class CartETagsTest {
+
+    private static ShopCart version(String id, long seconds) {
+        ShopCart cart = new ShopCart();
+        cart.setId(id);
+        cart.setUpdateTime(Timestamp.ofTimeSecondsAndNanos(seconds, 0));
+        return cart;
+    }
+
+    @Test
+    @DisplayName("Should give the same quoted tag for the same carts and versions")
+    void of_sameVersions_shouldBeStable() {
+        String first = CartETags.of("carts:FULL", List.of(version("a", 1), version("b", 2)));
+        String second = CartETags.of("carts:FULL", List.of(version("a", 1), version("b", 2)));
+
+        assertEquals(first, second);
+        assertTrue(first.startsWith("\"") && first.endsWith("\""));
+    }
+
+    @Test
+    @DisplayName("Should change the tag when a version, the cart list or the representation changes")
+    void of_anyChange_shouldChangeTag() {
+        String base = CartETags.of("carts:FULL", List.of(version("a", 1), version("b", 2)));
+
+        assertNotEquals(base, CartETags.of("carts:FULL", List.of(version("a", 1), version("b", 3))));
+        assertNotEquals(base, CartETags.of("carts:FULL", List.of(version("a", 1))));
+        assertNotEquals(base, CartETags.of("carts:FULL", List.of(version("b", 2), version("a", 1))));
+        assertNotEquals(base, CartETags.of("carts:SUMMARY", List.of(version("a", 1), version("b", 2))));
+        assertNotEquals(base, CartETags.of("carts:FULL", List.of(version("a", 1), new ShopCart())));
+    }
+
+    @Test
+    @DisplayName("Should match If-None-Match lists, weak tags and the wildcard")
+    void matches_shouldFollowIfNoneMatchRules() {
+        String eTag = "\"abc\"";
+
+        assertTrue(CartETags.matches("\"abc\"", eTag));
+        assertTrue(CartETags.matches("\"xyz\", W/\"abc\"", eTag));
+        assertTrue(CartETags.matches("*", eTag));
+        assertFalse(CartETags.matches("\"xyz\"", eTag));
+        assertFalse(CartETags.matches(null, eTag));
+        assertFalse(CartETags.matches("\"abc\"", null));
+    }
+
+    @Test
+    @DisplayName("Should give each content coding its own tag that still revalidates the same version")
+    void withCoding_shouldDifferPerCodingAndStillMatch() {
+        String eTag = "\"abc\"";
+        String brotli = CartETags.withCoding(eTag, ContentCoding.BROTLI);
+        String gzip = CartETags.withCoding(eTag, ContentCoding.GZIP);
+
+        assertEquals(eTag, CartETags.withCoding(eTag, ContentCoding.IDENTITY));
+        assertNotEquals(brotli, gzip);
+        assertTrue(CartETags.matches(brotli, eTag));
+        assertTrue(CartETags.matches("W/" + gzip, eTag));
+        assertFalse(CartETags.matches(CartETags.withCoding("\"xyz\"", ContentCoding.GZIP), eTag));
+    }
+}
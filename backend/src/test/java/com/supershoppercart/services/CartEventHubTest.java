@@ -0,0 +1,221 @@
+package com.supershoppercart.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.cloud.firestore.EventListener;
+import com.google.cloud.firestore.ListenerRegistration;
+import com.supershoppercart.models.GroceryItem;
+import com.supershoppercart.models.ShopCart;
+import com.supershoppercart.repositories.GroceryItemRepository;
+import com.supershoppercart.repositories.ShopCartRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@DisplayName("CartEventHub Unit Tests")
+class CartEventHubTest {
+
+    /**
+     * Records what the hub sends, as SSE text, and can hold sends back to play a slow client.
+     */
+    private static final class RecordingEmitter extends SseEmitter {
+        private final BlockingQueue<String> sent = new LinkedBlockingQueue<>();
+        private final CountDownLatch completed = new CountDownLatch(1);
+        private volatile CountDownLatch gate;
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            CountDownLatch current = gate;
+            if (current != null) {
+                try {
+                    current.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            StringBuilder text = new StringBuilder();
+            for (ResponseBodyEmitter.DataWithMediaType part : builder.build()) {
+                text.append(part.getData());
+            }
+            sent.add(text.toString());
+        }
+
+        @Override
+        public void complete() {
+            completed.countDown();
+        }
+
+        private String next() throws InterruptedException {
+            String event = sent.poll(2, TimeUnit.SECONDS);
+            assertNotNull(event, "Expected an event");
+            return event;
+        }
+
+        private boolean awaitCompleted() throws InterruptedException {
+            return completed.await(2, TimeUnit.SECONDS);
+        }
+    }
+
+    private ShopCartRepository shopCartRepository;
+    private ListenerRegistration registration;
+    private final AtomicReference<EventListener<ShopCart>> cartListener = new AtomicReference<>();
+    private final List<RecordingEmitter> emitters = new ArrayList<>();
+    private SimpleMeterRegistry meterRegistry;
+    private CartEventHub hub;
+
+    @BeforeEach
+    void setUp() {
+        shopCartRepository = mock(ShopCartRepository.class);
+        registration = mock(ListenerRegistration.class);
+        when(shopCartRepository.addSnapshotListener(eq("cart1"), any())).thenAnswer(invocation -> {
+            cartListener.set(invocation.getArgument(1));
+            return registration;
+        });
+        meterRegistry = new SimpleMeterRegistry();
+        hub = new CartEventHub(shopCartRepository, mock(GroceryItemRepository.class), new ObjectMapper(), meterRegistry,
+                Duration.ofHours(1), Duration.ofMinutes(1), 3, 10, Duration.ZERO, 2) {
+            @Override
+            SseEmitter newEmitter(long timeoutMillis) {
+                RecordingEmitter emitter = new RecordingEmitter();
+                emitters.add(emitter);
+                return emitter;
+            }
+        };
+    }
+
+    @AfterEach
+    void tearDown() {
+        hub.shutdown();
+    }
+
+    private static ShopCart cart(List<String> shopperIds, GroceryItem... items) {
+        ShopCart cart = new ShopCart();
+        cart.setId("cart1");
+        cart.setShopperIds(shopperIds);
+        cart.setItems(new ArrayList<>(List.of(items)));
+        return cart;
+    }
+
+    private static GroceryItem item(String id, String designation, boolean purchased) {
+        GroceryItem item = new GroceryItem(designation, "1", purchased);
+        item.setId(id);
+        return item;
+    }
+
+    private static String idOf(String event) {
+        for (String line : event.split("\n")) {
+            if (line.startsWith("id:")) {
+                return line.substring(3);
+            }
+        }
+        return null;
+    }
+
+    @Test
+    @DisplayName("Should share one snapshot listener per cart and fan each change out as a delta")
+    void subscribe_shouldShareListenerAndFanOutDeltas() throws Exception {
+        hub.subscribe("cart1", "shopper1", null);
+        hub.subscribe("cart1", "shopper2", null);
+        cartListener.get().onEvent(cart(List.of("shopper1", "shopper2"), item("i1", "Milk", false), item("i2", "Bread", false)), null);
+        cartListener.get().onEvent(cart(List.of("shopper1", "shopper2"), item("i1", "Milk", true), item("i2", "Bread", false)), null);
+
+        verify(shopCartRepository, times(1)).addSnapshotListener(eq("cart1"), any());
+        assertEquals(1, hub.watchedCartCount());
+        for (RecordingEmitter emitter : emitters) {
+            assertTrue(emitter.next().contains("event:snapshot"));
+            String delta = emitter.next();
+            assertTrue(delta.contains("event:delta"));
+            assertTrue(delta.contains("\"i1\""));
+            assertFalse(delta.contains("Bread"), "Unchanged items are not resent");
+        }
+    }
+
+    @Test
+    @DisplayName("Should replay only the missed events to a client reconnecting with Last-Event-ID")
+    void subscribe_withLastEventId_shouldReplayMissedEvents() throws Exception {
+        hub.subscribe("cart1", "shopper1", null);
+        cartListener.get().onEvent(cart(List.of("shopper1"), item("i1", "Milk", false)), null);
+        String seen = idOf(emitters.get(0).next());
+        cartListener.get().onEvent(cart(List.of("shopper1"), item("i1", "Milk", true)), null);
+
+        hub.subscribe("cart1", "shopper1", seen);
+        hub.subscribe("cart1", "shopper1", "unknown-1");
+
+        assertTrue(emitters.get(1).next().contains("event:delta"));
+        String snapshot = emitters.get(2).next();
+        assertTrue(snapshot.contains("event:snapshot"));
+        assertTrue(snapshot.contains("\"purchased\":true"));
+        verify(shopCartRepository, times(1)).addSnapshotListener(eq("cart1"), any());
+    }
+
+    @Test
+    @DisplayName("Should end the stream of a shopper removed from the cart, and remove the listener once nobody watches")
+    void change_removingMember_shouldRevokeAccess() throws Exception {
+        hub.subscribe("cart1", "shopper2", null);
+        cartListener.get().onEvent(cart(List.of("shopper1", "shopper2"), item("i1", "Milk", false)), null);
+        RecordingEmitter emitter = emitters.get(0);
+        emitter.next();
+
+        cartListener.get().onEvent(cart(List.of("shopper1"), item("i1", "Milk", false)), null);
+
+        assertTrue(emitter.next().contains("event:access_revoked"));
+        assertTrue(emitter.awaitCompleted());
+        verify(registration, timeout(2000)).remove();
+        assertEquals(0, hub.connectionCount());
+    }
+
+    @Test
+    @DisplayName("Should send a deleted event and end every stream when the cart is deleted")
+    void change_cartDeleted_shouldEndStreams() throws Exception {
+        hub.subscribe("cart1", "shopper1", null);
+        cartListener.get().onEvent(cart(List.of("shopper1")), null);
+        RecordingEmitter emitter = emitters.get(0);
+        emitter.next();
+
+        cartListener.get().onEvent(null, null);
+
+        assertTrue(emitter.next().contains("event:deleted"));
+        assertTrue(emitter.awaitCompleted());
+        verify(registration).remove();
+        assertEquals(0, hub.watchedCartCount());
+    }
+
+    @Test
+    @DisplayName("Should close a connection whose client cannot keep up, without holding back the others")
+    void change_slowConsumer_shouldBeEvicted() throws Exception {
+        hub.subscribe("cart1", "shopper1", null);
+        hub.subscribe("cart1", "shopper1", null);
+        RecordingEmitter slow = emitters.get(0);
+        RecordingEmitter fast = emitters.get(1);
+        CountDownLatch gate = new CountDownLatch(1);
+        slow.gate = gate;
+
+        for (int i = 0; i < 8; i++) {
+            cartListener.get().onEvent(cart(List.of("shopper1"), item("i1", "Milk " + i, false)), null);
+            fast.next();
+        }
+        gate.countDown();
+
+        assertTrue(slow.awaitCompleted());
+        assertEquals(1.0, meterRegistry.get("shopcart.events.evictions").counter().count());
+        assertEquals(1, hub.connectionCount());
+    }
+}
@@ -0,0 +1,83 @@
+package com.supershoppercart.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Lock;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("CartLockStripes Unit Tests")
+class CartLockStripesTest {
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    @DisplayName("Should round the stripe count up to a power of two")
+    void constructor_shouldRoundStripeCountToPowerOfTwo() {
+        assertEquals(64, new CartLockStripes(64, meterRegistry).getStripeCount());
+        assertEquals(64, new CartLockStripes(40, new SimpleMeterRegistry()).getStripeCount());
+        assertEquals(1, new CartLockStripes(1, new SimpleMeterRegistry()).getStripeCount());
+    }
+
+    @Test
+    @DisplayName("Should always map a cart to the same stripe")
+    void acquire_sameCart_shouldReturnSameLock() throws InterruptedException {
+        // Arrange
+        CartLockStripes stripes = new CartLockStripes(64, meterRegistry);
+
+        // Act
+        Lock first = stripes.acquire("cart1");
+        Lock second = stripes.acquire("cart1"); // Reentrant for the same thread
+        second.unlock();
+        first.unlock();
+
+        // Assert
+        assertSame(first, second);
+        assertEquals(2.0, meterRegistry.get("shopcart.lock.acquisitions").counter().count());
+        assertEquals(0.0, meterRegistry.get("shopcart.lock.contended").counter().count());
+    }
+
+    @Test
+    @DisplayName("Should make a second request for the same cart wait and record the contention")
+    void acquire_heldByAnotherThread_shouldWaitAndRecordContention() throws Exception {
+        // Arrange
+        CartLockStripes stripes = new CartLockStripes(64, meterRegistry);
+        Lock held = stripes.acquire("cart1");
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicBoolean acquired = new AtomicBoolean();
+
+        // Act
+        CompletableFuture<Void> waiter = CompletableFuture.runAsync(() -> {
+            started.countDown();
+            try {
+                Lock lock = stripes.acquire("cart1");
+                acquired.set(true);
+                lock.unlock();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        Thread.sleep(50);
+        assertFalse(acquired.get());
+        held.unlock();
+        waiter.get(5, TimeUnit.SECONDS);
+
+        // Assert
+        assertTrue(acquired.get());
+        assertEquals(1.0, meterRegistry.get("shopcart.lock.contended").counter().count());
+        assertEquals(1, meterRegistry.get("shopcart.lock.wait").timer().count());
+    }
+}
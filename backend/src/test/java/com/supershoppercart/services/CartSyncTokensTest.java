@@ -0,0 +1,60 @@
+package com.supershoppercart.services;
+
+import com.google.cloud.Timestamp;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("CartSyncTokens Unit Tests")
+class CartSyncTokensTest {
+
+    private static String base64(String plain) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(plain.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    @DisplayName("Should decode a token back to the exact read time it was issued for")
+    void decode_encodedToken_shouldRoundTrip() {
+        Timestamp readTime = Timestamp.ofTimeSecondsAndNanos(1_700_000_000L, 123_456_789);
+
+        String token = CartSyncTokens.encode(readTime);
+
+        assertEquals(readTime, CartSyncTokens.decode(token));
+    }
+
+    @Test
+    @DisplayName("Should issue URL-safe tokens without padding")
+    void encode_shouldBeUrlSafe() {
+        String token = CartSyncTokens.encode(Timestamp.ofTimeSecondsAndNanos(1_700_000_000L, 1));
+
+        assertTrue(token.matches("[A-Za-z0-9_-]+"));
+    }
+
+    @Test
+    @DisplayName("Should reject tokens that are not base64url")
+    void decode_notBase64_shouldThrow() {
+        assertThrows(IllegalArgumentException.class, () -> CartSyncTokens.decode("not a token!"));
+    }
+
+    @Test
+    @DisplayName("Should reject tokens without the seconds:nanos separator")
+    void decode_missingSeparator_shouldThrow() {
+        assertThrows(IllegalArgumentException.class, () -> CartSyncTokens.decode(base64("1700000000")));
+    }
+
+    @Test
+    @DisplayName("Should reject tokens whose parts are not numbers")
+    void decode_nonNumeric_shouldThrow() {
+        assertThrows(IllegalArgumentException.class, () -> CartSyncTokens.decode(base64("abc:def")));
+    }
+
+    @Test
+    @DisplayName("Should reject tokens whose nanos are out of range")
+    void decode_outOfRangeNanos_shouldThrow() {
+        assertThrows(IllegalArgumentException.class, () -> CartSyncTokens.decode(base64("1700000000:1000000000")));
+    }
+}
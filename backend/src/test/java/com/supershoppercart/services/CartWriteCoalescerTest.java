@@ -0,0 +1,159 @@
+package com.supershoppercart.services;
+
+import com.supershoppercart.models.CartPatchOperation;
+import com.supershoppercart.models.ShopCart;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Unit tests for CartWriteCoalescer, using a recording writer in place of the repository.
+ */
+@DisplayName("CartWriteCoalescer Unit Tests")
+class CartWriteCoalescerTest {
+
+    private static final Duration LONG_WINDOW = Duration.ofHours(1);
+
+    private List<List<CartPatchOperation>> writes;
+    private SimpleMeterRegistry meterRegistry;
+    private CartWriteCoalescer coalescer;
+
+    @BeforeEach
+    void setUp() {
+        writes = Collections.synchronizedList(new ArrayList<>());
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (coalescer != null) {
+            coalescer.close(Duration.ofSeconds(1));
+        }
+    }
+
+    private CartWriteCoalescer recordingCoalescer(Duration window, int maxOperations) {
+        return new CartWriteCoalescer((cartId, operations) -> {
+            writes.add(List.copyOf(operations));
+            ShopCart cart = new ShopCart();
+            cart.setId(cartId);
+            return cart;
+        }, window, maxOperations, 2, meterRegistry);
+    }
+
+    @Test
+    @DisplayName("Should merge submissions made within the window into one write")
+    void submit_withinWindow_shouldWriteOnce() throws Exception {
+        // Arrange
+        coalescer = recordingCoalescer(Duration.ofMillis(100), 25);
+
+        // Act
+        CompletableFuture<ShopCart> first = coalescer.submit("cart1", List.of(CartPatchOperation.setPurchased("Apples", true)));
+        CompletableFuture<ShopCart> second = coalescer.submit("cart1", List.of(CartPatchOperation.setPurchased("Bread", true)));
+
+        // Assert
+        assertSame(first.get(5, TimeUnit.SECONDS), second.get(5, TimeUnit.SECONDS));
+        assertEquals(1, writes.size());
+        assertEquals(List.of("Apples", "Bread"), writes.get(0).stream().map(CartPatchOperation::getDesignation).toList());
+        assertEquals(2.0, meterRegistry.get("shopcart.write.coalesced.operations").counter().count());
+    }
+
+    @Test
+    @DisplayName("Should write as soon as the size cap is reached without waiting for the window")
+    void submit_sizeCapReached_shouldFlushImmediately() throws Exception {
+        // Arrange
+        coalescer = recordingCoalescer(LONG_WINDOW, 2);
+
+        // Act
+        coalescer.submit("cart1", List.of(CartPatchOperation.touch()));
+        CompletableFuture<ShopCart> second = coalescer.submit("cart1", List.of(CartPatchOperation.touch()));
+
+        // Assert
+        assertNotNull(second.get(5, TimeUnit.SECONDS));
+        assertEquals(1, writes.size());
+        assertEquals(1.0, meterRegistry.get("shopcart.write.coalesced.flushes").tag("trigger", "size").counter().count());
+    }
+
+    @Test
+    @DisplayName("Should keep writes of different carts apart")
+    void submit_differentCarts_shouldWriteSeparately() throws Exception {
+        // Arrange
+        coalescer = recordingCoalescer(Duration.ofMillis(50), 25);
+
+        // Act
+        CompletableFuture<ShopCart> first = coalescer.submit("cart1", List.of(CartPatchOperation.touch()));
+        CompletableFuture<ShopCart> second = coalescer.submit("cart2", List.of(CartPatchOperation.touch()));
+
+        // Assert
+        assertEquals("cart1", first.get(5, TimeUnit.SECONDS).getId());
+        assertEquals("cart2", second.get(5, TimeUnit.SECONDS).getId());
+        assertEquals(2, writes.size());
+    }
+
+    @Test
+    @DisplayName("Should flush a cart's pending writes before a read of that cart")
+    void awaitPending_shouldFlushBeforeReturning() throws Exception {
+        // Arrange
+        coalescer = recordingCoalescer(LONG_WINDOW, 25);
+        CompletableFuture<ShopCart> pending = coalescer.submit("cart1", List.of(CartPatchOperation.touch()));
+
+        // Act
+        coalescer.awaitPending(List.of("cart1", "cart2"));
+
+        // Assert
+        assertTrue(pending.isDone());
+        assertEquals(1, writes.size());
+    }
+
+    @Test
+    @DisplayName("Should write out pending operations on close and reject later submissions")
+    void close_shouldFlushPendingAndRejectNewWrites() throws Exception {
+        // Arrange
+        coalescer = recordingCoalescer(LONG_WINDOW, 25);
+        CompletableFuture<ShopCart> pending = coalescer.submit("cart1", List.of(CartPatchOperation.touch()));
+
+        // Act
+        coalescer.close(Duration.ofSeconds(5));
+
+        // Assert
+        assertTrue(pending.isDone());
+        assertEquals(1, writes.size());
+        CompletableFuture<ShopCart> late = coalescer.submit("cart1", List.of(CartPatchOperation.touch()));
+        ExecutionException thrown = assertThrows(ExecutionException.class, late::get);
+        assertInstanceOf(IllegalStateException.class, thrown.getCause());
+    }
+
+    @Test
+    @DisplayName("Should fail only the offending submission when a merged write is rejected")
+    void flush_rejectedMergedWrite_shouldRetrySubmissionsSeparately() throws Exception {
+        // Arrange
+        coalescer = new CartWriteCoalescer((cartId, operations) -> {
+            writes.add(List.copyOf(operations));
+            if (operations.stream().anyMatch(op -> "Unknown".equals(op.getDesignation()))) {
+                throw new IllegalArgumentException("Grocery item with designation Unknown not found");
+            }
+            return new ShopCart();
+        }, LONG_WINDOW, 2, 1, meterRegistry);
+
+        // Act
+        CompletableFuture<ShopCart> valid = coalescer.submit("cart1", List.of(CartPatchOperation.setPurchased("Apples", true)));
+        CompletableFuture<ShopCart> invalid = coalescer.submit("cart1", List.of(CartPatchOperation.setPurchased("Unknown", true)));
+
+        // Assert
+        assertNotNull(valid.get(5, TimeUnit.SECONDS));
+        ExecutionException thrown = assertThrows(ExecutionException.class, () -> invalid.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalArgumentException.class, thrown.getCause());
+        assertEquals(3, writes.size()); // The merged attempt, then each submission on its own
+    }
+}
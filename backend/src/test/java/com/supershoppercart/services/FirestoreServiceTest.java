@@ -3,6 +3,7 @@ package com.supershoppercart.services; // This MUST be the first line (after com
 import com.google.api.core.ApiFuture;
 import com.google.cloud.firestore.*;
 import com.supershoppercart.dtos.ShopCartDetailDTO;
+import com.supershoppercart.dtos.ShopperSummaryDTO;
 import com.supershoppercart.enums.SharePermission;
 import com.supershoppercart.enums.ShopCartState;
 import com.supershoppercart.models.SharePermissionEntry;
@@ -321,9 +322,9 @@ public class FirestoreServiceTest {
             when(cartDoc.toObject(ShopCart.class)).thenReturn(shopCart);
             when(cartDoc.getId()).thenReturn(TEST_CART_ID);
 
-            // Mock the internal fetchShoppersByIds call
+            // Mock the internal batched shopper lookup
             FirestoreService spyService = spy(firestoreService);
-            doReturn(List.of(shopper1, shopper2)).when(spyService).fetchShoppersByIds(anyList());
+            doReturn(Map.of(TEST_SHOPPER_ID, shopper1, sharedShopperId, shopper2)).when(spyService).fetchShoppersById(anyCollection());
 
             // Act
             List<ShopCartDetailDTO> result = spyService.getShopCartsByShopperId(TEST_SHOPPER_ID);
@@ -333,7 +334,7 @@ public class FirestoreServiceTest {
             assertEquals(1, result.size());
             assertEquals(TEST_CART_ID, result.get(0).getIdentifier());
             assertEquals(2, result.get(0).getShoppers().size());
-            verify(spyService, times(1)).fetchShoppersByIds(anyList());
+            verify(spyService, times(1)).fetchShoppersById(anyCollection());
         }
 
         @Test
@@ -437,7 +438,7 @@ public class FirestoreServiceTest {
         when(documentSnapshot.getId()).thenReturn(TEST_CART_ID);
 
         FirestoreService spyService = spy(firestoreService);
-        doReturn(List.of(testShopper)).when(spyService).fetchShoppersByIds(anyList());
+        doReturn(Map.of(TEST_SHOPPER_ID, testShopper)).when(spyService).fetchShoppersById(anyCollection());
 
         ShopCartDetailDTO dto = spyService.getShopCartById(TEST_CART_ID);
 
@@ -581,15 +582,14 @@ public class FirestoreServiceTest {
         when(cartDocumentSnapshot.toObject(ShopCart.class)).thenReturn(shopCart);
         when(cartDocumentSnapshot.getId()).thenReturn(cartId);
 
-        // Mocking the shoppers query
-        Query shoppersQuery = mock(Query.class);
-        when(shoppersCollection.whereIn(FieldPath.documentId(), shopCart.getShopperIds())).thenReturn(shoppersQuery);
-        when(shoppersQuery.get()).thenReturn(apiFutureQuerySnapshot);
-        when(apiFutureQuerySnapshot.get()).thenReturn(querySnapshot);
-
-        // Mocking the result of the shoppers query
-        when(querySnapshot.getDocuments()).thenReturn(List.of(shopperQueryDocumentSnapshot));
+        // Mocking the batched shopper lookup: only the requester exists
+        when(shoppersCollection.document(anyString())).thenReturn(shopperDocRef);
+        ApiFuture<List<DocumentSnapshot>> getAllFuture = mock(ApiFuture.class);
+        when(firestore.getAll(any(DocumentReference[].class))).thenReturn(getAllFuture);
+        when(getAllFuture.get()).thenReturn(List.of(shopperQueryDocumentSnapshot));
 
+        when(shopperQueryDocumentSnapshot.exists()).thenReturn(true);
+        when(shopperQueryDocumentSnapshot.getId()).thenReturn(requesterShopperId);
         when(shopperQueryDocumentSnapshot.toObject(Shopper.class)).thenReturn(shopper);
 
         // When
@@ -621,12 +621,12 @@ public class FirestoreServiceTest {
         when(documentSnapshot.toObject(ShopCart.class)).thenReturn(shopCart);
         when(documentSnapshot.getId()).thenReturn(cartId);
 
-        // Mocking the shoppers query to return no documents
-        Query shoppersQuery = mock(Query.class);
-        when(shoppersCollection.whereIn(FieldPath.documentId(), shopCart.getShopperIds())).thenReturn(shoppersQuery);
-        when(shoppersQuery.get()).thenReturn(apiFutureQuerySnapshot);
-        when(apiFutureQuerySnapshot.get()).thenReturn(querySnapshot);
-        when(querySnapshot.getDocuments()).thenReturn(Collections.emptyList());
+        // Mocking the batched shopper lookup to find no existing documents
+        when(shoppersCollection.document(anyString())).thenReturn(shopperDocRef);
+        ApiFuture<List<DocumentSnapshot>> getAllFuture = mock(ApiFuture.class);
+        when(firestore.getAll(any(DocumentReference[].class))).thenReturn(getAllFuture);
+        when(getAllFuture.get()).thenReturn(List.of(shopperDocumentSnapshot));
+        when(shopperDocumentSnapshot.exists()).thenReturn(false);
 
         // When
         ShopCartDetailDTO result = firestoreService.hydrateShopCartDTO(documentSnapshot);
@@ -637,6 +637,75 @@ public class FirestoreServiceTest {
         assertTrue(result.getShoppers().isEmpty());
     }
 
+    @Test
+    @DisplayName("hydrateShopCartDTOs - should fetch shoppers shared across carts once in a single getAll")
+    void hydrateShopCartDTOs_shouldDeduplicateShoppersAcrossCarts() throws Exception {
+        // Given
+        ShopCart cartA = new ShopCart();
+        cartA.setShopperIds(List.of("s1", "s2"));
+        ShopCart cartB = new ShopCart();
+        cartB.setShopperIds(List.of("s2", "s3", "s1"));
+
+        QueryDocumentSnapshot cartDocA = mock(QueryDocumentSnapshot.class);
+        QueryDocumentSnapshot cartDocB = mock(QueryDocumentSnapshot.class);
+        when(cartDocA.toObject(ShopCart.class)).thenReturn(cartA);
+        when(cartDocA.getId()).thenReturn("cartA");
+        when(cartDocB.toObject(ShopCart.class)).thenReturn(cartB);
+        when(cartDocB.getId()).thenReturn("cartB");
+
+        when(shoppersCollection.document(anyString())).thenReturn(shopperDocRef);
+        List<DocumentSnapshot> shopperDocs = new ArrayList<>();
+        for (String id : List.of("s1", "s2", "s3")) {
+            DocumentSnapshot doc = mock(DocumentSnapshot.class);
+            Shopper found = new Shopper();
+            found.setId(id);
+            found.setName("Shopper " + id);
+            when(doc.exists()).thenReturn(true);
+            when(doc.getId()).thenReturn(id);
+            when(doc.toObject(Shopper.class)).thenReturn(found);
+            shopperDocs.add(doc);
+        }
+        ApiFuture<List<DocumentSnapshot>> getAllFuture = mock(ApiFuture.class);
+        when(firestore.getAll(any(DocumentReference[].class))).thenReturn(getAllFuture);
+        when(getAllFuture.get()).thenReturn(shopperDocs);
+
+        // When
+        List<ShopCartDetailDTO> result = firestoreService.hydrateShopCartDTOs(List.of(cartDocA, cartDocB));
+
+        // Then
+        assertEquals(2, result.size());
+        assertEquals(List.of("s1", "s2"), result.get(0).getShoppers().stream().map(ShopperSummaryDTO::getId).toList());
+        assertEquals(List.of("s2", "s3", "s1"), result.get(1).getShoppers().stream().map(ShopperSummaryDTO::getId).toList());
+
+        ArgumentCaptor<DocumentReference[]> refsCaptor = ArgumentCaptor.forClass(DocumentReference[].class);
+        verify(firestore, times(1)).getAll(refsCaptor.capture());
+        assertEquals(3, refsCaptor.getValue().length);
+        verify(shoppersCollection, times(3)).document(anyString());
+        verify(shoppersCollection, never()).whereIn(any(FieldPath.class), anyList());
+    }
+
+    @Test
+    @DisplayName("fetchShoppersById - should skip the Firestore call when there are no usable IDs")
+    void fetchShoppersById_shouldNotCallFirestore_whenNoIds() {
+        assertTrue(firestoreService.fetchShoppersById(List.of()).isEmpty());
+        assertTrue(firestoreService.fetchShoppersById(Arrays.asList(null, " ")).isEmpty());
+
+        verify(firestore, never()).getAll(any(DocumentReference[].class));
+    }
+
+    @Test
+    @DisplayName("fetchShoppersById - should wrap ExecutionException in RuntimeException")
+    void fetchShoppersById_shouldThrow_whenGetAllFails() throws Exception {
+        when(shoppersCollection.document(anyString())).thenReturn(shopperDocRef);
+        ApiFuture<List<DocumentSnapshot>> getAllFuture = mock(ApiFuture.class);
+        when(firestore.getAll(any(DocumentReference[].class))).thenReturn(getAllFuture);
+        when(getAllFuture.get()).thenThrow(new ExecutionException("failed", new RuntimeException()));
+
+        assertThatThrownBy(() -> firestoreService.fetchShoppersById(List.of("s1")))
+                .isInstanceOf(RuntimeException.class)
+                .hasMessageContaining("Error fetching associated shoppers");
+    }
+
     //------------------------------------------------------------------------------------------------------------------
     // Testes para o método public shareCartWithShopper()
     //------------------------------------------------------------------------------------------------------------------
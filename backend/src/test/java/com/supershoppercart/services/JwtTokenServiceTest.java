@@ -2,6 +2,7 @@ package com.supershoppercart.services;
 
 import com.google.api.core.ApiFuture;
 import com.google.cloud.firestore.*;
+import com.supershoppercart.codecs.FirestoreCodecs;
 import com.supershoppercart.models.RefreshToken;
 import com.supershoppercart.models.Shopper;
 import io.jsonwebtoken.Claims;
@@ -864,11 +865,12 @@ class JwtTokenServiceTest {
         when(mockRef.get()).thenReturn(mockGetFuture);
         when(mockGetFuture.get()).thenReturn(mockDoc);
         when(mockDoc.exists()).thenReturn(true);
-        when(mockDoc.toObject(RefreshToken.class)).thenReturn(storedToken);
+        when(mockDoc.getData()).thenReturn(FirestoreCodecs.REFRESH_TOKEN.encode(storedToken));
+        when(mockDoc.getId()).thenReturn(storedToken.getToken());
         when(mockRef.delete()).thenReturn(mockDeleteFuture);
         when(mockDeleteFuture.get()).thenReturn(null);
         when(mockCollection.document(anyString())).thenReturn(mockRef);
-        when(mockRef.set(any(RefreshToken.class))).thenReturn(mockSetFuture);
+        when(mockRef.set(anyMap())).thenReturn(mockSetFuture);
         when(mockSetFuture.get()).thenReturn(null);
 
         // When
@@ -972,7 +974,8 @@ class JwtTokenServiceTest {
         when(mockRef.get()).thenReturn(mockGetFuture);
         when(mockGetFuture.get()).thenReturn(mockDoc);
         when(mockDoc.exists()).thenReturn(true);
-        when(mockDoc.toObject(RefreshToken.class)).thenReturn(storedToken);
+        when(mockDoc.getData()).thenReturn(FirestoreCodecs.REFRESH_TOKEN.encode(storedToken));
+        when(mockDoc.getId()).thenReturn(storedToken.getToken());
 
         // When
         CompletableFuture<ResponseEntity<?>> result = jwtTokenService.refreshTokenAsync(body);
@@ -1010,7 +1013,8 @@ class JwtTokenServiceTest {
         when(mockRef.get()).thenReturn(mockGetFuture);
         when(mockGetFuture.get()).thenReturn(mockDoc);
         when(mockDoc.exists()).thenReturn(true);
-        when(mockDoc.toObject(RefreshToken.class)).thenReturn(expiredToken);
+        when(mockDoc.getData()).thenReturn(FirestoreCodecs.REFRESH_TOKEN.encode(expiredToken));
+        when(mockDoc.getId()).thenReturn(expiredToken.getToken());
 
         // When
         CompletableFuture<ResponseEntity<?>> result = jwtTokenService.refreshTokenAsync(body);
@@ -1049,7 +1053,8 @@ class JwtTokenServiceTest {
         when(mockRef.get()).thenReturn(mockGetFuture);
         when(mockGetFuture.get()).thenReturn(mockDoc);
         when(mockDoc.exists()).thenReturn(true);
-        when(mockDoc.toObject(RefreshToken.class)).thenReturn(storedToken);
+        when(mockDoc.getData()).thenReturn(FirestoreCodecs.REFRESH_TOKEN.encode(storedToken));
+        when(mockDoc.getId()).thenReturn(storedToken.getToken());
         when(mockRef.delete()).thenReturn(mockDeleteFuture);
         when(mockDeleteFuture.get()).thenReturn(null);
 
@@ -1285,4 +1290,55 @@ class JwtTokenServiceTest {
         Map<String, Object> responseBody = (Map<String, Object>) response.getBody();
         assertTrue(responseBody.get("error").toString().contains("Failed to logout from all devices"));
     }
+
+    @Test
+    @DisplayName("Should verify token once and expose subject, device and expiry")
+    void verifyToken_validToken_shouldReturnVerifiedClaims() {
+        // Given
+        String token = jwtTokenService.generateAccessToken(testShopper.getId(), "device-1");
+
+        // When
+        JwtTokenService.VerifiedToken verified = jwtTokenService.verifyToken(token);
+
+        // Then
+        assertNotNull(verified);
+        assertEquals(testShopper.getId(), verified.getShopperId());
+        assertEquals("device-1", verified.getDeviceId());
+        assertNotNull(verified.getExpiresAt());
+        assertFalse(verified.isExpired());
+    }
+
+    @Test
+    @DisplayName("Should serve repeated verifications of the same token from cache")
+    void verifyToken_sameTokenTwice_shouldHitCache() {
+        // Given
+        String token = jwtTokenService.generateAccessToken(testShopper);
+        long hitsBefore = jwtTokenService.getVerifiedTokenCacheStats().hitCount();
+
+        // When
+        JwtTokenService.VerifiedToken first = jwtTokenService.verifyToken(token);
+        JwtTokenService.VerifiedToken second = jwtTokenService.verifyToken(token);
+
+        // Then
+        assertSame(first, second);
+        assertEquals(hitsBefore + 1, jwtTokenService.getVerifiedTokenCacheStats().hitCount());
+    }
+
+    @Test
+    @DisplayName("Should return null from verifyToken for tampered, expired or blank tokens")
+    void verifyToken_invalidTokens_shouldReturnNull() {
+        SecretKey secretKey = (SecretKey) ReflectionTestUtils.getField(jwtTokenService, "secretKey");
+        String expiredToken = Jwts.builder()
+                .subject("test-shopper")
+                .expiration(new Date(System.currentTimeMillis() - 1000))
+                .signWith(secretKey, Jwts.SIG.HS256)
+                .compact();
+        String validToken = jwtTokenService.generateAccessToken(testShopper);
+        String tamperedToken = validToken.substring(0, validToken.length() - 2) + "xx";
+
+        assertNull(jwtTokenService.verifyToken(expiredToken));
+        assertNull(jwtTokenService.verifyToken(tamperedToken));
+        assertNull(jwtTokenService.verifyToken("   "));
+        assertNull(jwtTokenService.verifyToken(null));
+    }
 }
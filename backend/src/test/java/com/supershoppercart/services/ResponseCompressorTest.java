@@ -0,0 +1,98 @@
+package com.supershoppercart.services;
+
+import com.aayushatharva.brotli4j.decoder.Decoder;
+import com.supershoppercart.enums.ContentCoding;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@DisplayName("ResponseCompressor Unit Tests")
+class ResponseCompressorTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private ResponseCompressor compressor;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        compressor = new ResponseCompressor(meterRegistry, DataSize.ofKilobytes(2), 0.1, true, 5, 9, 11);
+    }
+
+    private static byte[] json(int items) {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < items; i++) {
+            json.append(i == 0 ? "" : ",").append("{\"designation\":\"Item ").append(i).append("\",\"quantity\":\"1\"}");
+        }
+        return json.append(']').toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    @DisplayName("Should round-trip a body through brotli and gzip")
+    void encode_shouldRoundTrip() throws Exception {
+        byte[] body = json(200);
+
+        EncodedBody brotli = compressor.encode(body, "gzip, br");
+        EncodedBody gzip = compressor.encode(body, "gzip");
+
+        assertEquals(ContentCoding.BROTLI, brotli.coding());
+        assertArrayEquals(body, Decoder.decompress(brotli.bytes()).getDecompressedData());
+        assertEquals(ContentCoding.GZIP, gzip.coding());
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(gzip.bytes()))) {
+            assertArrayEquals(body, in.readAllBytes());
+        }
+    }
+
+    @Test
+    @DisplayName("Should send bodies under the threshold, or not accepted compressed, as they are")
+    void encode_belowThresholdOrNotAccepted_shouldBeIdentity() {
+        byte[] small = json(5);
+        byte[] large = json(200);
+
+        assertSame(small, compressor.encode(small, "br").bytes());
+        assertEquals(ContentCoding.IDENTITY, compressor.encode(large, null).coding());
+        assertEquals(ContentCoding.IDENTITY, compressor.encode(large, "deflate").coding());
+        assertTrue(meterRegistry.find("http.compression.cpu").timers().isEmpty(), "Nothing was compressed");
+    }
+
+    @Test
+    @DisplayName("Should keep the original when compression does not save enough")
+    void encode_incompressible_shouldBeIdentity() {
+        byte[] random = new byte[8192];
+        new Random(42).nextBytes(random);
+
+        assertEquals(ContentCoding.IDENTITY, compressor.encode(random, "br, gzip").coding());
+        assertFalse(compressor.precompress(random, ResponseCompressor.Effort.STATIC).hasVariant(ContentCoding.GZIP));
+    }
+
+    @Test
+    @DisplayName("Should precompress every coding and record the ratio and CPU time per coding and effort")
+    void precompress_shouldKeepVariantsAndRecordMetrics() {
+        PrecompressedBody body = compressor.precompress(json(200), ResponseCompressor.Effort.CACHED);
+
+        assertTrue(body.hasVariant(ContentCoding.BROTLI));
+        assertTrue(body.hasVariant(ContentCoding.GZIP));
+        assertEquals(ContentCoding.GZIP, body.select("gzip").coding());
+        assertSame(body.identity(), body.select("identity").bytes());
+        assertEquals(1, meterRegistry.get("http.compression.cpu").tags("coding", "br", "effort", "cached").timer().count());
+        double ratio = meterRegistry.get("http.compression.ratio").tags("coding", "gzip", "effort", "cached").summary().mean();
+        assertTrue(ratio > 0 && ratio < 0.5, "JSON lists compress well: " + ratio);
+    }
+
+    @Test
+    @DisplayName("Should offer gzip only when brotli is disabled")
+    void brotliDisabled_shouldUseGzip() {
+        ResponseCompressor gzipOnly = new ResponseCompressor(new SimpleMeterRegistry(), DataSize.ofKilobytes(2), 0.1, false, 5, 9, 11);
+
+        assertEquals(ContentCoding.GZIP, gzipOnly.encode(json(200), "br, gzip").coding());
+        assertFalse(gzipOnly.precompress(json(200), ResponseCompressor.Effort.STATIC).hasVariant(ContentCoding.BROTLI));
+    }
+}
@@ -1,22 +1,53 @@
 package com.supershoppercart.services;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutures;
+import com.google.api.gax.grpc.GrpcStatusCode;
+import com.google.api.gax.rpc.FailedPreconditionException;
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.WriteBatch;
+import com.google.cloud.firestore.WriteResult;
+import com.supershoppercart.dtos.CartSyncResponseDTO;
 import com.supershoppercart.dtos.ShopCartDetailDTO;
+import com.supershoppercart.dtos.ShopCartSummaryDTO;
+import com.supershoppercart.enums.CartListView;
+import com.supershoppercart.enums.CartPatchOperationType;
+import com.supershoppercart.enums.CartRemovalReason;
+import com.supershoppercart.enums.ItemStorage;
 import com.supershoppercart.enums.SharePermission;
+import com.supershoppercart.exceptions.CartConflictException;
+import com.supershoppercart.models.CartPatchOperation;
+import com.supershoppercart.models.CartTombstone;
 import com.supershoppercart.models.GroceryItem;
 import com.supershoppercart.models.ShopCart;
 import com.supershoppercart.models.Shopper;
+import com.supershoppercart.repositories.BatchReadResult;
+import com.supershoppercart.repositories.CartTombstoneRepository;
+import com.supershoppercart.repositories.GroceryItemRepository;
 import com.supershoppercart.repositories.ShopCartRepository;
 import com.supershoppercart.repositories.ShopperRepository;
+import com.supershoppercart.repositories.TimedReadResult;
+import com.supershoppercart.security.ShopperPrincipalCache;
+import io.grpc.Status;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.util.unit.DataSize;
 
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -37,8 +68,25 @@ public class ShopCartServiceTest {
     @Mock
     private ShopperRepository shopperRepository;
 
-    @InjectMocks
+    @Mock
+    private GroceryItemRepository groceryItemRepository;
+
+    @Mock
+    private CartTombstoneRepository cartTombstoneRepository;
+
+    @Mock
+    private Firestore firestore;
+
+    @Mock
+    private WriteBatch writeBatch;
+
+    @Mock
+    private ApiFuture<List<WriteResult>> commitFuture;
+
     private ShopCartService shopCartService;
+    private SimpleMeterRegistry meterRegistry;
+    private CartDetailJsonCache detailJsonCache;
+    private ShopperPrincipalCache principalCache;
 
     // Test data
     private Shopper shopper1;
@@ -49,6 +97,14 @@ public class ShopCartServiceTest {
 
     @BeforeEach
     void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        detailJsonCache = new CartDetailJsonCache(new ObjectMapper(),
+                new ResponseCompressor(meterRegistry, DataSize.ofKilobytes(2), 0.1, true, 5, 9, 11), meterRegistry, 100, Duration.ofMinutes(10));
+        principalCache = new ShopperPrincipalCache(meterRegistry, 100, Duration.ofMinutes(5));
+        shopCartService = new ShopCartService(shopCartRepository, shopperRepository, groceryItemRepository,
+                cartTombstoneRepository, firestore, meterRegistry, detailJsonCache, principalCache);
+        ReflectionTestUtils.setField(shopCartService, "writeRetryBackoff", Duration.ZERO);
+
         // Initialize test data for a consistent state before each test
         shopper1 = new Shopper();
         shopper1.setId("shopperId1");
@@ -77,49 +133,60 @@ public class ShopCartServiceTest {
         templateShopCart.setTemplate(true);
         templateShopCart.setName("Weekly groceries");
         templateShopCart.setItems(List.of(new GroceryItem("Milk", "1 liter")));
+
+        // Batched writes: staging assigns an ID to new carts, commit succeeds
+        lenient().when(firestore.batch()).thenReturn(writeBatch);
+        lenient().when(writeBatch.commit()).thenReturn(commitFuture);
+        lenient().when(shopCartRepository.stageSave(eq(writeBatch), any(ShopCart.class))).thenAnswer(invocation -> {
+            ShopCart cart = invocation.getArgument(1);
+            if (cart.getId() == null) {
+                cart.setId("newCartId");
+            }
+            return cart;
+        });
     }
 
     // --- createShopCart tests ---
 
     @Test
-    @DisplayName("Should create a new cart and update associated shoppers")
+    @DisplayName("Should create a new cart and update associated shoppers in one batch")
     void testCreateShopCart_Success() throws ExecutionException, InterruptedException {
         List<String> shopperEmails = Arrays.asList(shopper1.getEmail(), shopper2.getEmail());
         List<GroceryItem> items = Arrays.asList(item1, item2);
 
-        // Create a new ShopCart object that represents the expected state after saving
-        ShopCart savedShopCart = new ShopCart();
-        savedShopCart.setId("newCartId");
-        savedShopCart.setDateKey("2025-08-01");
-        savedShopCart.setItems(new ArrayList<>(items));
-        savedShopCart.setShopperIds(Arrays.asList(shopper1.getId(), shopper2.getId()));
-
         // Mock repository calls
         when(shopperRepository.findByEmail(shopper1.getEmail())).thenReturn(Optional.of(shopper1));
         when(shopperRepository.findByEmail(shopper2.getEmail())).thenReturn(Optional.of(shopper2));
-        // The key fix: mock the save method to return the new, correct ShopCart object
-        when(shopCartRepository.save(any(ShopCart.class))).thenReturn(savedShopCart);
-        when(shopperRepository.findById(shopper1.getId())).thenReturn(Optional.of(shopper1));
-        when(shopperRepository.findById(shopper2.getId())).thenReturn(Optional.of(shopper2));
 
         // Call the service method
         ShopCart createdCart = shopCartService.createShopCart("2025-08-01", items, shopperEmails);
 
-        // Verify that the correct methods were called on the mocks
-        verify(shopCartRepository, times(1)).save(any(ShopCart.class));
-        verify(shopperRepository, times(1)).findByEmail(shopper1.getEmail());
-        verify(shopperRepository, times(1)).findByEmail(shopper2.getEmail());
-        verify(shopperRepository, times(1)).findById(shopper1.getId());
-        verify(shopperRepository, times(1)).findById(shopper2.getId());
-        verify(shopperRepository, times(2)).save(any(Shopper.class));
+        // Verify the cart and both memberships were staged and committed once, without full shopper rewrites
+        verify(shopCartRepository, times(1)).stageSave(eq(writeBatch), any(ShopCart.class));
+        verify(shopperRepository, times(1)).stageAddShopCartId(writeBatch, shopper1.getId(), "newCartId");
+        verify(shopperRepository, times(1)).stageAddShopCartId(writeBatch, shopper2.getId(), "newCartId");
+        verify(writeBatch, times(1)).commit();
+        verify(commitFuture, times(1)).get();
+        verify(shopCartRepository, never()).save(any(ShopCart.class));
+        verify(shopperRepository, never()).save(any(Shopper.class));
+        verify(shopperRepository, never()).findById(anyString());
 
-        // Verify the created cart and shopper updates
-        assertNotNull(createdCart.getId());
+        // Verify the created cart
+        assertEquals("newCartId", createdCart.getId());
         assertEquals(2, createdCart.getShopperIds().size());
         assertTrue(createdCart.getShopperIds().contains("shopperId1"));
         assertTrue(createdCart.getShopperIds().contains("shopperId2"));
-        assertTrue(shopper1.getShopCartIds().contains(createdCart.getId()));
-        assertTrue(shopper2.getShopCartIds().contains(createdCart.getId()));
+    }
+
+    @Test
+    @DisplayName("Should propagate a failed batch commit instead of swallowing it")
+    void testCreateShopCart_CommitFails() throws ExecutionException, InterruptedException {
+        when(shopperRepository.findByEmail(shopper1.getEmail())).thenReturn(Optional.of(shopper1));
+        when(commitFuture.get()).thenThrow(new ExecutionException("commit failed", new RuntimeException()));
+
+        assertThrows(ExecutionException.class, () ->
+                shopCartService.createShopCart("2025-08-01", List.of(item1), List.of(shopper1.getEmail()))
+        );
     }
 
     @Test
@@ -137,8 +204,9 @@ public class ShopCartServiceTest {
                 shopCartService.createShopCart("2025-08-01", items, shopperEmails)
         );
 
-        // Verify that the save method was never called
-        verify(shopCartRepository, never()).save(any(ShopCart.class));
+        // Verify that nothing was written
+        verify(shopCartRepository, never()).stageSave(any(), any(ShopCart.class));
+        verify(writeBatch, never()).commit();
     }
 
     // --- getShopCartById tests ---
@@ -196,17 +264,34 @@ public class ShopCartServiceTest {
     // --- addItemToCart tests ---
 
     @Test
-    @DisplayName("Should add an item to an existing cart")
+    @DisplayName("Should append an item without rewriting the whole cart")
     void testAddItemToCart_Success() throws ExecutionException, InterruptedException {
         GroceryItem newItem = new GroceryItem("Oranges", "1 bag");
         when(shopCartRepository.findById(shopCart.getId())).thenReturn(Optional.of(shopCart));
-        when(shopCartRepository.save(any(ShopCart.class))).thenReturn(shopCart);
+        when(shopCartRepository.appendItem(shopCart.getId(), newItem)).thenAnswer(invocation -> {
+            shopCart.addItem(newItem);
+            return shopCart;
+        });
 
         ShopCart updatedCart = shopCartService.addItemToCart(shopCart.getId(), newItem);
 
         assertEquals(3, updatedCart.getItems().size());
         assertTrue(updatedCart.getItems().contains(newItem));
-        verify(shopCartRepository, times(1)).save(any(ShopCart.class));
+        verify(shopCartRepository, times(1)).appendItem(shopCart.getId(), newItem);
+        verify(shopCartRepository, never()).save(any(ShopCart.class));
+    }
+
+    @Test
+    @DisplayName("Should retry an append whose cart changed concurrently")
+    void testAddItemToCart_ConflictRetried() throws ExecutionException, InterruptedException {
+        GroceryItem newItem = new GroceryItem("Oranges", "1 bag");
+        when(shopCartRepository.findById(shopCart.getId())).thenReturn(Optional.of(shopCart));
+        when(shopCartRepository.appendItem(shopCart.getId(), newItem))
+                .thenThrow(new CartConflictException(shopCart.getId(), null))
+                .thenReturn(shopCart);
+
+        assertSame(shopCart, shopCartService.addItemToCart(shopCart.getId(), newItem));
+        verify(shopCartRepository, times(2)).appendItem(shopCart.getId(), newItem);
     }
 
     @Test
@@ -217,21 +302,22 @@ public class ShopCartServiceTest {
         assertThrows(IllegalArgumentException.class, () ->
                 shopCartService.addItemToCart("nonexistentId", new GroceryItem("Test", "1"))
         );
+        verify(shopCartRepository, never()).appendItem(anyString(), any(GroceryItem.class));
         verify(shopCartRepository, never()).save(any(ShopCart.class));
     }
 
     // --- markItemAsPurchased tests ---
 
     @Test
-    @DisplayName("Should mark an existing item as purchased")
+    @DisplayName("Should mark an existing item as purchased with a targeted update")
     void testMarkItemAsPurchased_Success() throws ExecutionException, InterruptedException {
         when(shopCartRepository.findById(shopCart.getId())).thenReturn(Optional.of(shopCart));
-        when(shopCartRepository.save(any(ShopCart.class))).thenReturn(shopCart);
+        when(shopCartRepository.setItemPurchased(shopCart.getId(), item1.getDesignation(), true)).thenReturn(shopCart);
 
         shopCartService.markItemAsPurchased(shopCart.getId(), item1.getDesignation());
 
-        assertTrue(shopCart.getItems().get(0).isPurchased());
-        verify(shopCartRepository, times(1)).save(any(ShopCart.class));
+        verify(shopCartRepository, times(1)).setItemPurchased(shopCart.getId(), item1.getDesignation(), true);
+        verify(shopCartRepository, never()).save(any(ShopCart.class));
     }
 
     @Test
@@ -242,6 +328,7 @@ public class ShopCartServiceTest {
         assertThrows(IllegalArgumentException.class, () ->
                 shopCartService.markItemAsPurchased("nonexistentId", "Apples")
         );
+        verify(shopCartRepository, never()).setItemPurchased(anyString(), anyString(), anyBoolean());
         verify(shopCartRepository, never()).save(any(ShopCart.class));
     }
 
@@ -249,6 +336,8 @@ public class ShopCartServiceTest {
     @DisplayName("Should throw IllegalArgumentException when item not found in cart")
     void testMarkItemAsPurchased_ItemNotFound() throws ExecutionException, InterruptedException {
         when(shopCartRepository.findById(shopCart.getId())).thenReturn(Optional.of(shopCart));
+        when(shopCartRepository.setItemPurchased(shopCart.getId(), "Nonexistent Item", true))
+                .thenThrow(new IllegalArgumentException("Grocery item with designation Nonexistent Item not found"));
 
         assertThrows(IllegalArgumentException.class, () ->
                 shopCartService.markItemAsPurchased(shopCart.getId(), "Nonexistent Item")
@@ -256,23 +345,119 @@ public class ShopCartServiceTest {
         verify(shopCartRepository, never()).save(any(ShopCart.class));
     }
 
+    @Test
+    @DisplayName("Should run a cart mutation under the cart's lock stripe")
+    void testMarkItemAsPurchased_TakesCartLock() throws ExecutionException, InterruptedException {
+        when(shopCartRepository.findById(shopCart.getId())).thenReturn(Optional.of(shopCart));
+        when(shopCartRepository.setItemPurchased(shopCart.getId(), item1.getDesignation(), true)).thenReturn(shopCart);
+
+        shopCartService.markItemAsPurchased(shopCart.getId(), item1.getDesignation());
+
+        assertEquals(1.0, meterRegistry.get("shopcart.lock.acquisitions").counter().count());
+        assertEquals(0.0, meterRegistry.get("shopcart.lock.contended").counter().count());
+    }
+
+    @Test
+    @DisplayName("Should merge rapid purchases on the same cart into one write when coalescing is on")
+    void testMarkItemAsPurchased_CoalescedIntoOneWrite() throws Exception {
+        ReflectionTestUtils.setField(shopCartService, "coalesceWindow", Duration.ofHours(1));
+        ReflectionTestUtils.setField(shopCartService, "coalesceMaxOperations", 2);
+        shopCartService.startWriteCoalescer();
+        try {
+            when(shopCartRepository.findById(shopCart.getId())).thenReturn(Optional.of(shopCart));
+            when(shopCartRepository.applyPatch(eq(shopCart.getId()), anyList())).thenReturn(shopCart);
+
+            // The second purchase fills the batch, which releases both callers after a single write
+            CompletableFuture<Void> first = CompletableFuture.runAsync(() -> markPurchasedUnchecked("Apples"));
+            CompletableFuture<Void> second = CompletableFuture.runAsync(() -> markPurchasedUnchecked("Bread"));
+            CompletableFuture.allOf(first, second).get(5, TimeUnit.SECONDS);
+
+            @SuppressWarnings("unchecked")
+            ArgumentCaptor<List<CartPatchOperation>> merged = ArgumentCaptor.forClass(List.class);
+            verify(shopCartRepository, times(1)).applyPatch(eq(shopCart.getId()), merged.capture());
+            assertEquals(2, merged.getValue().size());
+            verify(shopCartRepository, never()).setItemPurchased(anyString(), anyString(), anyBoolean());
+        } finally {
+            shopCartService.flushPendingWrites();
+        }
+    }
+
+    private void markPurchasedUnchecked(String designation) {
+        try {
+            shopCartService.markItemAsPurchased(shopCart.getId(), designation);
+        } catch (ExecutionException | InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // --- patchShopCart tests ---
+
+    @Test
+    @DisplayName("Should apply patch operations for a cart member")
+    void testPatchShopCart_Success() throws ExecutionException, InterruptedException {
+        List<CartPatchOperation> operations = List.of(
+                CartPatchOperation.addItem(new GroceryItem("Oranges", "1 bag")),
+                CartPatchOperation.setPurchased("Apples", true));
+        when(shopCartRepository.findById(shopCart.getId())).thenReturn(Optional.of(shopCart));
+        when(shopCartRepository.applyPatch(shopCart.getId(), operations)).thenReturn(shopCart);
+
+        ShopCart result = shopCartService.patchShopCart(shopCart.getId(), shopper1.getId(), operations);
+
+        assertSame(shopCart, result);
+        verify(shopCartRepository).applyPatch(shopCart.getId(), operations);
+        verify(shopCartRepository, never()).save(any(ShopCart.class));
+    }
+
+    @Test
+    @DisplayName("Should reject a patch from a shopper who is not a member of the cart")
+    void testPatchShopCart_NotMember() throws ExecutionException, InterruptedException {
+        when(shopCartRepository.findById(shopCart.getId())).thenReturn(Optional.of(shopCart));
+
+        assertThrows(IllegalArgumentException.class, () ->
+                shopCartService.patchShopCart(shopCart.getId(), "strangerId", List.of(CartPatchOperation.touch()))
+        );
+        verify(shopCartRepository, never()).applyPatch(anyString(), anyList());
+    }
+
+    @Test
+    @DisplayName("Should reject an incomplete operation before reading the cart")
+    void testPatchShopCart_InvalidOperation() throws ExecutionException, InterruptedException {
+        CartPatchOperation incomplete = new CartPatchOperation();
+        incomplete.setType(CartPatchOperationType.SET_PURCHASED);
+
+        assertThrows(IllegalArgumentException.class, () ->
+                shopCartService.patchShopCart(shopCart.getId(), shopper1.getId(), List.of(incomplete))
+        );
+        verify(shopCartRepository, never()).findById(anyString());
+        verify(shopCartRepository, never()).applyPatch(anyString(), anyList());
+    }
+
     // --- deleteShopCart tests ---
 
     @Test
-    @DisplayName("Should delete a cart and update associated shoppers")
+    @DisplayName("Should delete a cart and update associated shoppers in one batch")
     void testDeleteShopCart_Success() throws ExecutionException, InterruptedException {
-        // Setup shopper with the cart ID
-        shopper1.getShopCartIds().add(shopCart.getId());
+        // Cart lists shopper1 and a shopper that no longer exists
+        shopCart.getShopperIds().add("deletedShopper");
         when(shopCartRepository.findById(shopCart.getId())).thenReturn(Optional.of(shopCart));
-        when(shopperRepository.findById(shopper1.getId())).thenReturn(Optional.of(shopper1));
+        when(shopperRepository.findAllById(shopCart.getShopperIds()))
+                .thenReturn(new BatchReadResult<>(List.of(shopper1), List.of("deletedShopper")));
 
         shopCartService.deleteShopCart(shopCart.getId());
 
-        // Verify that delete was called and shopper was updated
-        verify(shopCartRepository, times(1)).deleteById(shopCart.getId());
-        verify(shopperRepository, times(1)).findById(shopper1.getId());
-        verify(shopperRepository, times(1)).save(shopper1);
-        assertTrue(shopper1.getShopCartIds().isEmpty());
+        // Verify the delete and the membership removal were committed together
+        verify(shopperRepository, times(1)).stageRemoveShopCartId(writeBatch, shopper1.getId(), shopCart.getId());
+        verify(shopperRepository, never()).stageRemoveShopCartId(writeBatch, "deletedShopper", shopCart.getId());
+        verify(shopCartRepository, times(1)).stageDelete(writeBatch, shopCart.getId());
+        // Every member gets a tombstone in the same batch, whether or not the shopper still exists
+        ArgumentCaptor<CartTombstone> tombstones = ArgumentCaptor.forClass(CartTombstone.class);
+        verify(cartTombstoneRepository, times(2)).stageSave(eq(writeBatch), tombstones.capture());
+        assertEquals(List.of(shopper1.getId(), "deletedShopper"),
+                tombstones.getAllValues().stream().map(CartTombstone::getShopperId).toList());
+        assertTrue(tombstones.getAllValues().stream().allMatch(t -> t.getReason() == CartRemovalReason.DELETED));
+        verify(writeBatch, times(1)).commit();
+        verify(shopCartRepository, never()).deleteById(any());
+        verify(shopperRepository, never()).save(any(Shopper.class));
     }
 
     @Test
@@ -285,7 +470,9 @@ public class ShopCartServiceTest {
 
         // Verify no repository actions were taken after the findById call
         verify(shopCartRepository, never()).deleteById(any());
-        verify(shopperRepository, never()).findById(any());
+        verify(shopCartRepository, never()).stageDelete(any(), any());
+        verify(shopperRepository, never()).findAllById(any());
+        verify(writeBatch, never()).commit();
     }
 
     // --- getShopCartTemplateById tests ---
@@ -433,16 +620,131 @@ public class ShopCartServiceTest {
         anotherCart.setId("cartId2");
 
         when(shopperRepository.findById("shopperId1")).thenReturn(Optional.of(shopper1));
-        when(shopCartRepository.findById("cartId1")).thenReturn(Optional.of(shopCart));
-        when(shopCartRepository.findById("cartId2")).thenReturn(Optional.of(anotherCart));
+        when(shopCartRepository.findAllById(List.of("cartId1", "cartId2")))
+                .thenReturn(new BatchReadResult<>(List.of(shopCart, anotherCart), List.of()));
 
         List<ShopCartDetailDTO> result = shopCartService.getShopCartsByShopperId("shopperId1");
 
         assertEquals(2, result.size());
-        assertTrue(result.stream().anyMatch(dto -> dto.getIdentifier().equals("cartId1")));
-        assertTrue(result.stream().anyMatch(dto -> dto.getIdentifier().equals("cartId2")));
+        assertEquals("cartId1", result.get(0).getIdentifier());
+        assertEquals("cartId2", result.get(1).getIdentifier());
         verify(shopperRepository, times(1)).findById("shopperId1");
-        verify(shopCartRepository, times(2)).findById(anyString());
+        verify(shopCartRepository, times(1)).findAllById(anyCollection());
+        verify(shopCartRepository, never()).findById(anyString());
+        verify(shopperRepository, never()).save(any(Shopper.class));
+    }
+
+    @Test
+    @DisplayName("Should drop stale cart IDs from the shopper when carts are missing")
+    void testGetShopCartsByShopperId_RemovesStaleCartIds() throws ExecutionException, InterruptedException {
+        shopper1.setShopCartIds(new ArrayList<>(Arrays.asList("cartId1", "deletedCart")));
+
+        when(shopperRepository.findById("shopperId1")).thenReturn(Optional.of(shopper1));
+        when(shopCartRepository.findAllById(anyCollection()))
+                .thenReturn(new BatchReadResult<>(List.of(shopCart), List.of("deletedCart")));
+
+        List<ShopCartDetailDTO> result = shopCartService.getShopCartsByShopperId("shopperId1");
+
+        assertEquals(1, result.size());
+        assertEquals(List.of("cartId1"), shopper1.getShopCartIds());
+        verify(shopperRepository).stageRemoveShopCartId(writeBatch, "shopperId1", "deletedCart");
+        verify(writeBatch).commit();
+        verify(shopperRepository, never()).save(any(Shopper.class));
+    }
+
+    @Test
+    @DisplayName("Should serve an unchanged cart's JSON from the cache and drop it when the cart is written")
+    void testGetShopCartsJsonByShopperId_ReusesCachedJsonUntilWrite() throws Exception {
+        shopper1.setShopCartIds(new ArrayList<>(List.of("cartId1")));
+        shopCart.setUpdateTime(Timestamp.ofTimeSecondsAndNanos(1_700_000_000L, 0));
+        when(shopperRepository.findById("shopperId1")).thenReturn(Optional.of(shopper1));
+        when(shopCartRepository.findAllById(anyCollection()))
+                .thenReturn(new BatchReadResult<>(List.of(shopCart), List.of()));
+
+        byte[] first = shopCartService.getShopCartsJsonByShopperId("shopperId1", null).bytes();
+        byte[] second = shopCartService.getShopCartsJsonByShopperId("shopperId1", null).bytes();
+
+        JsonNode carts = new ObjectMapper().readTree(first);
+        assertEquals(1, carts.size());
+        assertEquals("cartId1", carts.get(0).get("identifier").asText());
+        assertArrayEquals(first, second);
+        assertEquals(1, detailJsonCache.stats().hitCount());
+
+        when(shopCartRepository.findById("cartId1")).thenReturn(Optional.of(shopCart));
+        shopCartService.addItemToCart("cartId1", new GroceryItem("Milk", "1 liter"));
+
+        assertEquals(0, detailJsonCache.size());
+    }
+
+    @Test
+    @DisplayName("Should derive the cart list ETag from versions only, changing when a cart is written")
+    void testGetShopCartsETag_UsesVersionReadOnly() throws ExecutionException, InterruptedException {
+        shopper1.setShopCartIds(new ArrayList<>(List.of("cartId1")));
+        ShopCart version = new ShopCart();
+        version.setId("cartId1");
+        version.setUpdateTime(Timestamp.ofTimeSecondsAndNanos(1_700_000_000L, 0));
+        ShopCart newerVersion = new ShopCart();
+        newerVersion.setId("cartId1");
+        newerVersion.setUpdateTime(Timestamp.ofTimeSecondsAndNanos(1_700_000_001L, 0));
+        when(shopperRepository.findById("shopperId1")).thenReturn(Optional.of(shopper1));
+        when(shopCartRepository.findVersionsById(List.of("cartId1")))
+                .thenReturn(new BatchReadResult<>(List.of(version), List.of()))
+                .thenReturn(new BatchReadResult<>(List.of(version), List.of()))
+                .thenReturn(new BatchReadResult<>(List.of(newerVersion), List.of()));
+
+        String first = shopCartService.getShopCartsETag("shopperId1", CartListView.FULL);
+        String summary = shopCartService.getShopCartsETag("shopperId1", CartListView.SUMMARY);
+        String afterWrite = shopCartService.getShopCartsETag("shopperId1", CartListView.FULL);
+
+        assertTrue(first.startsWith("\"") && first.endsWith("\""));
+        assertNotEquals(first, summary);
+        assertNotEquals(first, afterWrite);
+        verify(shopCartRepository, never()).findAllById(anyCollection());
+        verifyNoInteractions(groceryItemRepository);
+    }
+
+    @Test
+    @DisplayName("Should compute a cart list ETag without reading carts when the shopper has none")
+    void testGetShopCartsETag_NoCarts() throws ExecutionException, InterruptedException {
+        when(shopperRepository.findById("shopperId1")).thenReturn(Optional.of(shopper1));
+        when(shopperRepository.findById("unknown")).thenReturn(Optional.empty());
+
+        assertNotNull(shopCartService.getShopCartsETag("shopperId1", CartListView.FULL));
+        verifyNoInteractions(shopCartRepository);
+        assertThrows(IllegalArgumentException.class, () -> shopCartService.getShopCartsETag("unknown", CartListView.FULL));
+    }
+
+    @Test
+    @DisplayName("Should give a single cart's ETag and JSON only to its members")
+    void testGetShopCartETagAndJson_MembersOnly() throws Exception {
+        when(shopCartRepository.findVersionsById(List.of("cartId1")))
+                .thenReturn(new BatchReadResult<>(List.of(shopCart), List.of()));
+        when(shopCartRepository.findById("cartId1")).thenReturn(Optional.of(shopCart));
+
+        assertTrue(shopCartService.getShopCartETag("cartId1", "shopperId1").isPresent());
+        assertTrue(shopCartService.getShopCartETag("cartId1", "shopperId2").isEmpty());
+        Optional<EncodedBody> json = shopCartService.getShopCartJson("cartId1", "shopperId1", null);
+        assertTrue(json.isPresent());
+        assertEquals("cartId1", new ObjectMapper().readTree(json.get().bytes()).get("identifier").asText());
+        assertTrue(shopCartService.getShopCartJson("cartId1", "shopperId2", null).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should read summaries without loading full carts or their items")
+    void testGetShopCartSummariesByShopperId_UsesProjectionRead() throws ExecutionException, InterruptedException {
+        shopper1.setShopCartIds(new ArrayList<>(Arrays.asList("cartId1", "deletedCart")));
+
+        when(shopperRepository.findById("shopperId1")).thenReturn(Optional.of(shopper1));
+        when(shopCartRepository.findSummariesById(anyCollection()))
+                .thenReturn(new BatchReadResult<>(List.of(new ShopCartSummaryDTO(shopCart)), List.of("deletedCart")));
+
+        List<ShopCartSummaryDTO> result = shopCartService.getShopCartSummariesByShopperId("shopperId1");
+
+        assertEquals(1, result.size());
+        assertEquals("cartId1", result.get(0).getIdentifier());
+        assertEquals(List.of("cartId1"), shopper1.getShopCartIds());
+        verify(shopCartRepository, never()).findAllById(anyCollection());
+        verifyNoInteractions(groceryItemRepository);
     }
 
     @Test
@@ -455,6 +757,7 @@ public class ShopCartServiceTest {
         assertTrue(result.isEmpty());
         verify(shopperRepository, times(1)).findById("shopperId1");
         verify(shopCartRepository, never()).findById(anyString());
+        verify(shopCartRepository, never()).findAllById(anyCollection());
     }
 
     @Test
@@ -479,11 +782,45 @@ public class ShopCartServiceTest {
 
         assertTrue(result);
         assertTrue(shopCart.getShopperIds().contains(shopper2.getId()));
-        assertTrue(shopper2.getShopCartIds().contains(shopCart.getId()));
         assertEquals(SharePermission.EDIT, shopCart.getSharePermissions().get(0).getPermission());
         assertEquals(shopper2.getId(), shopCart.getSharePermissions().get(0).getShopperId());
-        verify(shopCartRepository, times(1)).save(shopCart);
-        verify(shopperRepository, times(1)).save(shopper2);
+        verify(shopCartRepository, times(1)).stageUpdate(eq(writeBatch), eq(shopCart), anyMap());
+        verify(shopperRepository, times(1)).stageAddShopCartId(writeBatch, shopper2.getId(), shopCart.getId());
+        verify(writeBatch, times(1)).commit();
+        verify(shopperRepository, never()).save(any(Shopper.class));
+    }
+
+    @Test
+    @DisplayName("Should drop the target's cached principal only once the share has committed")
+    void testShareShopCart_PrincipalReReadBeforeCommit_IsInvalidatedAfterCommit() throws ExecutionException, InterruptedException {
+        when(shopCartRepository.findById(shopCart.getId())).thenReturn(Optional.of(shopCart));
+        when(shopperRepository.findByEmail(shopper2.getEmail())).thenReturn(Optional.of(shopper2));
+        Shopper staleShopper2 = new Shopper();
+        staleShopper2.setId(shopper2.getId());
+        staleShopper2.setShopCartIds(new ArrayList<>());
+        // A request authenticated between staging and commit re-reads the shopper without the new cart
+        when(writeBatch.commit()).thenAnswer(invocation -> {
+            principalCache.put(staleShopper2);
+            return commitFuture;
+        });
+
+        assertTrue(shopCartService.shareShopCart(shopCart.getId(), shopper1.getId(), shopper2.getEmail(), SharePermission.EDIT));
+
+        assertNull(principalCache.get(shopper2.getId()));
+    }
+
+    @Test
+    @DisplayName("Should keep the cached principal when the share fails to commit")
+    void testShareShopCart_CommitFails_KeepsCachedPrincipal() throws Exception {
+        when(shopCartRepository.findById(shopCart.getId())).thenReturn(Optional.of(shopCart));
+        when(shopperRepository.findByEmail(shopper2.getEmail())).thenReturn(Optional.of(shopper2));
+        when(commitFuture.get()).thenThrow(new ExecutionException("unavailable", new RuntimeException()));
+        principalCache.put(shopper2);
+
+        assertThrows(ExecutionException.class, () ->
+                shopCartService.shareShopCart(shopCart.getId(), shopper1.getId(), shopper2.getEmail(), SharePermission.EDIT));
+
+        assertSame(shopper2, principalCache.get(shopper2.getId()));
     }
 
     @Test
@@ -535,10 +872,15 @@ public class ShopCartServiceTest {
         assertTrue(result);
         assertFalse(shopCart.getShopperIds().contains(shopper2.getId()));
         assertTrue(shopCart.getSharePermissions().isEmpty());
-        assertFalse(shopper2.getShopCartIds().contains(shopCart.getId()));
 
-        verify(shopCartRepository, times(1)).save(shopCart);
-        verify(shopperRepository, times(1)).save(shopper2);
+        verify(shopCartRepository, times(1)).stageUpdate(eq(writeBatch), eq(shopCart), anyMap());
+        verify(shopperRepository, times(1)).stageRemoveShopCartId(writeBatch, shopper2.getId(), shopCart.getId());
+        ArgumentCaptor<CartTombstone> tombstone = ArgumentCaptor.forClass(CartTombstone.class);
+        verify(cartTombstoneRepository, times(1)).stageSave(eq(writeBatch), tombstone.capture());
+        assertEquals(shopper2.getId(), tombstone.getValue().getShopperId());
+        assertEquals(CartRemovalReason.UNSHARED, tombstone.getValue().getReason());
+        verify(writeBatch, times(1)).commit();
+        verify(shopperRepository, never()).save(any(Shopper.class));
     }
 
     @Test
@@ -571,8 +913,326 @@ public class ShopCartServiceTest {
         boolean result = shopCartService.removeSharing(shopCart.getId(), shopper1.getId(), shopper2.getId());
 
         assertFalse(result);
-        // Verify saves are still called to ensure state consistency
-        verify(shopCartRepository, times(1)).save(shopCart);
-        verify(shopperRepository, times(1)).save(shopper2);
+        // Verify writes are still committed to ensure state consistency
+        verify(shopCartRepository, times(1)).stageUpdate(eq(writeBatch), eq(shopCart), anyMap());
+        verify(shopperRepository, times(1)).stageRemoveShopCartId(writeBatch, shopper2.getId(), shopCart.getId());
+        verify(cartTombstoneRepository, never()).stageSave(any(), any());
+        verify(writeBatch, times(1)).commit();
+    }
+
+    // --- syncShopCarts tests ---
+
+    @Test
+    @DisplayName("Should return every cart as a full resync when no token is given")
+    void testSyncShopCarts_NoToken_FullResync() throws ExecutionException, InterruptedException {
+        Timestamp readTime = Timestamp.ofTimeSecondsAndNanos(1_000, 5);
+        when(shopCartRepository.findByShopperIdModifiedAfter("shopperId1", null))
+                .thenReturn(new TimedReadResult<>(List.of(shopCart), readTime));
+
+        CartSyncResponseDTO result = shopCartService.syncShopCarts("shopperId1", null);
+
+        assertTrue(result.isFullResync());
+        assertEquals(List.of("cartId1"), result.getCarts().stream().map(ShopCartDetailDTO::getIdentifier).toList());
+        assertTrue(result.getRemoved().isEmpty());
+        assertEquals(readTime, CartSyncTokens.decode(result.getToken()));
+        verifyNoInteractions(cartTombstoneRepository);
+    }
+
+    @Test
+    @DisplayName("Should return only changed carts and removals since the token, with the tombstone read time as next token")
+    void testSyncShopCarts_WithToken_ReturnsChanges() throws ExecutionException, InterruptedException {
+        Timestamp since = Timestamp.now();
+        Timestamp tombstonesRead = Timestamp.ofTimeSecondsAndNanos(since.getSeconds() + 10, 0);
+        CartTombstone tombstone = new CartTombstone("goneCart", "shopperId1", CartRemovalReason.UNSHARED);
+        tombstone.setRemovedAt(new Date());
+        when(cartTombstoneRepository.findByShopperIdRemovedAfter("shopperId1", since))
+                .thenReturn(new TimedReadResult<>(List.of(tombstone), tombstonesRead));
+        when(shopCartRepository.findByShopperIdModifiedAfter("shopperId1", since))
+                .thenReturn(new TimedReadResult<>(List.of(shopCart), Timestamp.ofTimeSecondsAndNanos(since.getSeconds() + 11, 0)));
+
+        CartSyncResponseDTO result = shopCartService.syncShopCarts("shopperId1", CartSyncTokens.encode(since));
+
+        assertFalse(result.isFullResync());
+        assertEquals(1, result.getCarts().size());
+        assertEquals("goneCart", result.getRemoved().get(0).cartId());
+        assertEquals(CartRemovalReason.UNSHARED, result.getRemoved().get(0).reason());
+        assertEquals(tombstonesRead, CartSyncTokens.decode(result.getToken()));
+    }
+
+    @Test
+    @DisplayName("Should fall back to a full resync when the token is older than the tombstone retention")
+    void testSyncShopCarts_ExpiredToken_FullResync() throws ExecutionException, InterruptedException {
+        Timestamp since = Timestamp.ofTimeSecondsAndNanos(1_000, 0);
+        when(shopCartRepository.findByShopperIdModifiedAfter("shopperId1", null))
+                .thenReturn(new TimedReadResult<>(List.of(), Timestamp.now()));
+
+        CartSyncResponseDTO result = shopCartService.syncShopCarts("shopperId1", CartSyncTokens.encode(since));
+
+        assertTrue(result.isFullResync());
+        verifyNoInteractions(cartTombstoneRepository);
+    }
+
+    @Test
+    @DisplayName("Should reject a token it did not issue")
+    void testSyncShopCarts_MalformedToken() {
+        assertThrows(IllegalArgumentException.class, () -> shopCartService.syncShopCarts("shopperId1", "not a token"));
+        assertThrows(IllegalArgumentException.class, () -> shopCartService.syncShopCarts("shopperId1", "bm90LWEtdG9rZW4"));
+    }
+
+    // --- optimistic concurrency tests ---
+
+    private static FailedPreconditionException staleCartError() {
+        return new FailedPreconditionException(
+                "update time mismatch", null, GrpcStatusCode.of(Status.Code.FAILED_PRECONDITION), false);
+    }
+
+    private double counter(String name, String operation) {
+        return meterRegistry.find(name).tag("operation", operation).counters().stream()
+                .mapToDouble(c -> c.count()).sum();
+    }
+
+    @Test
+    @DisplayName("Should retry a patch that lost a race and record the conflict")
+    void testPatchShopCart_ConflictThenSuccess() throws ExecutionException, InterruptedException {
+        List<CartPatchOperation> operations = List.of(CartPatchOperation.setPurchased("Apples", true));
+        when(shopCartRepository.findById(shopCart.getId())).thenReturn(Optional.of(shopCart));
+        when(shopCartRepository.applyPatch(shopCart.getId(), operations))
+                .thenThrow(new CartConflictException(shopCart.getId(), null))
+                .thenReturn(shopCart);
+
+        ShopCart result = shopCartService.patchShopCart(shopCart.getId(), shopper1.getId(), operations);
+
+        assertSame(shopCart, result);
+        verify(shopCartRepository, times(2)).applyPatch(shopCart.getId(), operations);
+        assertEquals(2.0, counter("shopcart.write.attempts", "patch"));
+        assertEquals(1.0, counter("shopcart.write.conflicts", "patch"));
+        assertEquals(0.0, counter("shopcart.write.conflicts.exhausted", "patch"));
+    }
+
+    @Test
+    @DisplayName("Should give up after the bounded retries with the cart's current state")
+    void testPatchShopCart_ConflictsExhausted() throws ExecutionException, InterruptedException {
+        List<CartPatchOperation> operations = List.of(CartPatchOperation.touch());
+        when(shopCartRepository.findById(shopCart.getId())).thenReturn(Optional.of(shopCart));
+        when(shopCartRepository.applyPatch(shopCart.getId(), operations))
+                .thenThrow(new CartConflictException(shopCart.getId(), null));
+
+        CartConflictException conflict = assertThrows(CartConflictException.class, () ->
+                shopCartService.patchShopCart(shopCart.getId(), shopper1.getId(), operations)
+        );
+
+        assertSame(shopCart, conflict.getCurrentCart());
+        verify(shopCartRepository, times(3)).applyPatch(shopCart.getId(), operations);
+        assertEquals(3.0, counter("shopcart.write.conflicts", "patch"));
+        assertEquals(1.0, counter("shopcart.write.conflicts.exhausted", "patch"));
+    }
+
+    @Test
+    @DisplayName("Should re-read and re-apply a share whose guarded batch hit a failed precondition")
+    void testShareShopCart_StaleCartRetried() throws ExecutionException, InterruptedException {
+        when(shopCartRepository.findById(shopCart.getId())).thenReturn(Optional.of(shopCart));
+        when(shopperRepository.findByEmail(shopper2.getEmail())).thenReturn(Optional.of(shopper2));
+        when(writeBatch.commit())
+                .thenReturn(ApiFutures.immediateFailedFuture(staleCartError()))
+                .thenReturn(commitFuture);
+
+        boolean result = shopCartService.shareShopCart(shopCart.getId(), shopper1.getId(), shopper2.getEmail(), SharePermission.VIEW);
+
+        assertTrue(result);
+        verify(shopCartRepository, times(2)).findById(shopCart.getId());
+        verify(shopperRepository, times(1)).findByEmail(shopper2.getEmail());
+        verify(writeBatch, times(2)).commit();
+        assertEquals(1.0, counter("shopcart.write.conflicts", "share"));
+    }
+
+    @Test
+    @DisplayName("Should not retry a batch that failed for a reason other than a stale cart")
+    void testRemoveSharing_OtherFailureNotRetried() throws ExecutionException, InterruptedException {
+        when(shopCartRepository.findById(shopCart.getId())).thenReturn(Optional.of(shopCart));
+        when(writeBatch.commit()).thenReturn(commitFuture);
+        when(commitFuture.get()).thenThrow(new ExecutionException(new RuntimeException("unavailable")));
+
+        assertThrows(ExecutionException.class, () ->
+                shopCartService.removeSharing(shopCart.getId(), shopper1.getId(), shopper2.getId())
+        );
+        verify(writeBatch, times(1)).commit();
+        assertEquals(0.0, counter("shopcart.write.conflicts", "removeSharing"));
+    }
+
+    // --- item subcollection layout tests ---
+
+    private ShopCart subcollectionCart() {
+        ShopCart cart = new ShopCart();
+        cart.setId("subCart1");
+        cart.setItemStorage(ItemStorage.SUBCOLLECTION);
+        cart.setItemCount(2);
+        cart.setShopperIds(new ArrayList<>(List.of(shopper1.getId())));
+        return cart;
+    }
+
+    @Test
+    @DisplayName("Should write new carts with one document per item when the subcollection layout is configured")
+    void testCreateShopCart_SubcollectionLayout() throws ExecutionException, InterruptedException {
+        ReflectionTestUtils.setField(shopCartService, "newCartItemStorage", ItemStorage.SUBCOLLECTION);
+        when(shopperRepository.findByEmail(shopper1.getEmail())).thenReturn(Optional.of(shopper1));
+        List<List<GroceryItem>> itemsAtStaging = new ArrayList<>();
+        when(shopCartRepository.stageSave(eq(writeBatch), any(ShopCart.class))).thenAnswer(invocation -> {
+            ShopCart cart = invocation.getArgument(1);
+            itemsAtStaging.add(new ArrayList<>(cart.getItems()));
+            cart.setId("newCartId");
+            return cart;
+        });
+
+        ShopCart created = shopCartService.createShopCart("2025-08-01", List.of(item1, item2), List.of(shopper1.getEmail()));
+
+        assertEquals(ItemStorage.SUBCOLLECTION, created.getItemStorage());
+        assertEquals(2, created.getItemCount());
+        assertEquals(List.of(item1, item2), created.getItems());
+        assertTrue(itemsAtStaging.get(0).isEmpty()); // The cart document itself carries no items
+        verify(groceryItemRepository).stageAdd(writeBatch, "newCartId", item1);
+        verify(groceryItemRepository).stageAdd(writeBatch, "newCartId", item2);
+        verify(writeBatch, times(1)).commit();
+    }
+
+    @Test
+    @DisplayName("Should fill the items of subcollection carts with a single grouped read")
+    void testGetShopCartsByShopperId_SubcollectionItems() throws ExecutionException, InterruptedException {
+        ShopCart subCart = subcollectionCart();
+        shopper1.setShopCartIds(new ArrayList<>(List.of(shopCart.getId(), subCart.getId())));
+        when(shopperRepository.findById(shopper1.getId())).thenReturn(Optional.of(shopper1));
+        when(shopCartRepository.findAllById(shopper1.getShopCartIds()))
+                .thenReturn(new BatchReadResult<>(List.of(shopCart, subCart), List.of()));
+        when(groceryItemRepository.findByCartIds(List.of(subCart.getId())))
+                .thenReturn(Map.of(subCart.getId(), List.of(item1, item2)));
+
+        List<ShopCartDetailDTO> result = shopCartService.getShopCartsByShopperId(shopper1.getId());
+
+        assertEquals(2, result.size());
+        assertEquals(List.of(item1, item2), result.get(1).getItems());
+        verify(groceryItemRepository, times(1)).findByCartIds(anyCollection());
+        verify(groceryItemRepository, never()).findByCartId(anyString());
+    }
+
+    @Test
+    @DisplayName("Should add a subcollection item and return the reloaded cart")
+    void testAddItemToCart_SubcollectionLayout() throws ExecutionException, InterruptedException {
+        ShopCart subCart = subcollectionCart();
+        GroceryItem added = new GroceryItem("Milk", "1 liter");
+        when(shopCartRepository.findById(subCart.getId())).thenReturn(Optional.of(subCart));
+        when(groceryItemRepository.findByCartId(subCart.getId())).thenReturn(List.of(item1, item2, added));
+
+        ShopCart result = shopCartService.addItemToCart(subCart.getId(), added);
+
+        assertEquals(3, result.getItems().size());
+        verify(groceryItemRepository, times(1)).add(subCart.getId(), added);
+        verify(shopCartRepository, never()).appendItem(anyString(), any(GroceryItem.class));
+    }
+
+    @Test
+    @DisplayName("Should toggle a subcollection item by its stable ID")
+    void testMarkItemAsPurchased_SubcollectionLayout() throws ExecutionException, InterruptedException {
+        ShopCart subCart = subcollectionCart();
+        GroceryItem stored = new GroceryItem("Apples", "2kg");
+        stored.setId("item-1");
+        when(shopCartRepository.findById(subCart.getId())).thenReturn(Optional.of(subCart));
+        when(groceryItemRepository.findByDesignation(subCart.getId(), "Apples")).thenReturn(Optional.of(stored));
+        when(groceryItemRepository.setPurchased(subCart.getId(), "item-1", true)).thenReturn(true);
+
+        shopCartService.markItemAsPurchased(subCart.getId(), "Apples");
+
+        verify(groceryItemRepository).setPurchased(subCart.getId(), "item-1", true);
+        verify(shopCartRepository, never()).setItemPurchased(anyString(), anyString(), anyBoolean());
+        verify(shopCartRepository, never()).applyPatch(anyString(), anyList());
+    }
+
+    @Test
+    @DisplayName("Should patch subcollection carts in one repository batch and return the reloaded cart")
+    void testPatchShopCart_SubcollectionLayout() throws ExecutionException, InterruptedException {
+        ShopCart subCart = subcollectionCart();
+        GroceryItem added = new GroceryItem("Milk", "1 liter");
+        List<CartPatchOperation> operations = List.of(CartPatchOperation.addItem(added), CartPatchOperation.touch());
+        when(shopCartRepository.findById(subCart.getId())).thenReturn(Optional.of(subCart));
+        when(groceryItemRepository.findByCartId(subCart.getId())).thenReturn(List.of(item1, item2, added));
+
+        ShopCart result = shopCartService.patchShopCart(subCart.getId(), shopper1.getId(), operations);
+
+        assertEquals(3, result.getItems().size());
+        verify(groceryItemRepository, times(1)).applyPatch(subCart.getId(), operations);
+        verify(groceryItemRepository, never()).add(anyString(), any(GroceryItem.class));
+        verify(shopCartRepository, never()).touchLastInteraction(anyString());
+        verify(shopCartRepository, never()).applyPatch(anyString(), anyList());
+    }
+
+    @Test
+    @DisplayName("Should retry a subcollection patch whose toggled item changed concurrently")
+    void testPatchShopCart_SubcollectionLayout_ConflictRetried() throws ExecutionException, InterruptedException {
+        ShopCart subCart = subcollectionCart();
+        List<CartPatchOperation> operations = List.of(CartPatchOperation.setPurchasedById("item-0001", true));
+        when(shopCartRepository.findById(subCart.getId())).thenReturn(Optional.of(subCart));
+        doThrow(new CartConflictException(subCart.getId(), null)).doNothing()
+                .when(groceryItemRepository).applyPatch(subCart.getId(), operations);
+        when(groceryItemRepository.findByCartId(subCart.getId())).thenReturn(List.of(item1, item2));
+
+        shopCartService.patchShopCart(subCart.getId(), shopper1.getId(), operations);
+
+        verify(groceryItemRepository, times(2)).applyPatch(subCart.getId(), operations);
+    }
+
+    @Test
+    @DisplayName("Should surface an unknown subcollection item without reloading the cart")
+    void testPatchShopCart_SubcollectionLayout_UnknownItem() throws ExecutionException, InterruptedException {
+        ShopCart subCart = subcollectionCart();
+        List<CartPatchOperation> operations = List.of(
+                CartPatchOperation.addItem(new GroceryItem("Milk", "1 liter")),
+                CartPatchOperation.setPurchased("Unknown", true));
+        when(shopCartRepository.findById(subCart.getId())).thenReturn(Optional.of(subCart));
+        doThrow(new IllegalArgumentException("Grocery item with designation Unknown not found in cart " + subCart.getId()))
+                .when(groceryItemRepository).applyPatch(subCart.getId(), operations);
+
+        assertThrows(IllegalArgumentException.class,
+                () -> shopCartService.patchShopCart(subCart.getId(), shopper1.getId(), operations));
+        verify(groceryItemRepository, never()).add(anyString(), any(GroceryItem.class));
+        verify(groceryItemRepository, never()).findByCartId(anyString());
+    }
+
+    @Test
+    @DisplayName("Should delete a subcollection cart's item documents along with the cart")
+    void testDeleteShopCart_SubcollectionLayout() throws ExecutionException, InterruptedException {
+        ShopCart subCart = subcollectionCart();
+        when(shopCartRepository.findById(subCart.getId())).thenReturn(Optional.of(subCart));
+        when(shopperRepository.findAllById(subCart.getShopperIds()))
+                .thenReturn(new BatchReadResult<>(List.of(shopper1), List.of()));
+
+        shopCartService.deleteShopCart(subCart.getId());
+
+        verify(shopCartRepository).stageDelete(writeBatch, subCart.getId());
+        verify(groceryItemRepository).deleteByCartId(subCart.getId());
+    }
+
+    @Test
+    @DisplayName("Should migrate embedded carts and skip carts already in the subcollection layout")
+    void testMigrateAllCartItemsToSubcollection() throws ExecutionException, InterruptedException {
+        ShopCart subCart = subcollectionCart();
+        when(shopCartRepository.findAll()).thenReturn(List.of(shopCart, subCart));
+        when(shopCartRepository.findById(shopCart.getId())).thenReturn(Optional.of(shopCart));
+
+        int migrated = shopCartService.migrateAllCartItemsToSubcollection();
+
+        assertEquals(1, migrated);
+        verify(groceryItemRepository, times(1)).migrateEmbeddedItems(shopCart);
+        verify(groceryItemRepository, never()).migrateEmbeddedItems(subCart);
+    }
+
+    @Test
+    @DisplayName("Should re-read and retry a migration that lost a race")
+    void testMigrateCartItemsToSubcollection_ConflictRetried() throws ExecutionException, InterruptedException {
+        when(shopCartRepository.findById(shopCart.getId())).thenReturn(Optional.of(shopCart));
+        doThrow(new CartConflictException(shopCart.getId(), null))
+                .doNothing()
+                .when(groceryItemRepository).migrateEmbeddedItems(shopCart);
+
+        assertTrue(shopCartService.migrateCartItemsToSubcollection(shopCart.getId()));
+        verify(shopCartRepository, times(2)).findById(shopCart.getId());
+        assertEquals(1.0, counter("shopcart.write.conflicts", "migrateItems"));
     }
-}
\ No newline at end of file
+}
@@ -3,6 +3,8 @@ package com.supershoppercart.services;
 import com.supershoppercart.models.Shopper;
 import com.supershoppercart.repositories.ShopCartRepository;
 import com.supershoppercart.repositories.ShopperRepository;
+import com.supershoppercart.utils.BulkDeleteListener;
+import com.supershoppercart.utils.BulkDeleteResult;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -183,10 +185,13 @@ public class ShopperServiceTest {
     @Test
     @DisplayName("Should clear all data from both repositories")
     void testClearAllData() throws ExecutionException, InterruptedException {
+        when(shopCartRepository.deleteAll(any(BulkDeleteListener.class))).thenReturn(new BulkDeleteResult(3, 0));
+        when(shopperRepository.deleteAll(any(BulkDeleteListener.class))).thenReturn(new BulkDeleteResult(2, 0));
+
         shopperService.clearAllData();
 
-        // Verify that the deleteAll methods were called on both repositories
-        verify(shopCartRepository, times(1)).deleteAll();
-        verify(shopperRepository, times(1)).deleteAll();
+        // Verify that the bulk deleteAll methods were called on both repositories
+        verify(shopCartRepository, times(1)).deleteAll(any(BulkDeleteListener.class));
+        verify(shopperRepository, times(1)).deleteAll(any(BulkDeleteListener.class));
     }
 }
\ No newline at end of file
@@ -0,0 +1,98 @@
+package com.supershoppercart.utils;
+
+import com.google.cloud.Timestamp;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.supershoppercart.repositories.CartTombstoneRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for the CartTombstoneCleanupJob class, with the tombstone repository mocked.
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("CartTombstoneCleanupJob Unit Tests")
+class CartTombstoneCleanupJobTest {
+
+    private static final Duration RETENTION = Duration.ofDays(30);
+
+    @Mock
+    private CartTombstoneRepository cartTombstoneRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    // The class under test
+    private CartTombstoneCleanupJob job;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        job = new CartTombstoneCleanupJob(cartTombstoneRepository, meterRegistry, RETENTION);
+    }
+
+    @Test
+    @DisplayName("Should delete tombstones removed before now minus the retention")
+    void deleteExpiredTombstones_shouldUseRetentionCutoff() throws Exception {
+        // Arrange
+        when(cartTombstoneRepository.deleteRemovedBefore(any(Timestamp.class), any(BulkDeleteListener.class)))
+                .thenReturn(new BulkDeleteResult(0, 0));
+        Instant before = Instant.now().minus(RETENTION);
+
+        // Act
+        job.deleteExpiredTombstones();
+
+        // Assert
+        Instant after = Instant.now().minus(RETENTION);
+        ArgumentCaptor<Timestamp> cutoff = ArgumentCaptor.forClass(Timestamp.class);
+        verify(cartTombstoneRepository).deleteRemovedBefore(cutoff.capture(), any(BulkDeleteListener.class));
+        Instant cutoffInstant = cutoff.getValue().toDate().toInstant();
+        assertFalse(cutoffInstant.isBefore(before.minusMillis(1)));
+        assertFalse(cutoffInstant.isAfter(after));
+    }
+
+    @Test
+    @DisplayName("Should turn the cumulative page totals into counter increments and time the sweep")
+    void deleteExpiredTombstones_shouldRecordMetrics() throws Exception {
+        // Arrange
+        when(cartTombstoneRepository.deleteRemovedBefore(any(Timestamp.class), any(BulkDeleteListener.class)))
+                .thenAnswer(invocation -> {
+                    BulkDeleteListener listener = invocation.getArgument(1);
+                    listener.onPage(500, 0, mock(DocumentSnapshot.class));
+                    listener.onPage(740, 3, mock(DocumentSnapshot.class));
+                    return new BulkDeleteResult(740, 3);
+                });
+
+        // Act
+        job.deleteExpiredTombstones();
+
+        // Assert
+        assertEquals(740.0, meterRegistry.counter("cart_tombstones.cleanup.deleted").count());
+        assertEquals(3.0, meterRegistry.counter("cart_tombstones.cleanup.failed").count());
+        assertEquals(1, meterRegistry.timer("cart_tombstones.cleanup.duration").count());
+    }
+
+    @Test
+    @DisplayName("Should still record the duration when the sweep fails")
+    void deleteExpiredTombstones_failure_shouldRecordDuration() throws Exception {
+        // Arrange
+        when(cartTombstoneRepository.deleteRemovedBefore(any(Timestamp.class), any(BulkDeleteListener.class)))
+                .thenThrow(new ExecutionException("quota exceeded", new RuntimeException()));
+
+        // Act & Assert
+        assertThrows(ExecutionException.class, () -> job.deleteExpiredTombstones());
+        assertEquals(1, meterRegistry.timer("cart_tombstones.cleanup.duration").count());
+    }
+}
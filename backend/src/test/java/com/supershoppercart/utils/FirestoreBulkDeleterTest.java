@@ -0,0 +1,138 @@
+package com.supershoppercart.utils;
+
+import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutures;
+import com.google.cloud.firestore.*;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Unit tests for FirestoreBulkDeleter, with the Firestore query chain and BulkWriter mocked.
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("FirestoreBulkDeleter Unit Tests")
+class FirestoreBulkDeleterTest {
+
+    private static final int PAGE_SIZE = 2;
+
+    @Mock
+    private Firestore firestore;
+    @Mock
+    private CollectionReference collection;
+    @Mock
+    private Query orderedQuery;
+    @Mock
+    private BulkWriter bulkWriter;
+
+    private FirestoreBulkDeleter bulkDeleter;
+
+    @BeforeEach
+    void setUp() {
+        bulkDeleter = new FirestoreBulkDeleter(firestore, PAGE_SIZE, 100);
+        lenient().when(firestore.bulkWriter(any(BulkWriterOptions.class))).thenReturn(bulkWriter);
+        lenient().when(bulkWriter.flush()).thenReturn(ApiFutures.immediateFuture(null));
+        lenient().when(collection.orderBy(FieldPath.documentId())).thenReturn(orderedQuery);
+        lenient().when(orderedQuery.select(FieldPath.documentId())).thenReturn(orderedQuery);
+    }
+
+    private QueryDocumentSnapshot doc(String id) {
+        QueryDocumentSnapshot doc = mock(QueryDocumentSnapshot.class);
+        lenient().when(doc.getId()).thenReturn(id);
+        lenient().when(doc.getReference()).thenReturn(mock(DocumentReference.class));
+        return doc;
+    }
+
+    private Query page(List<QueryDocumentSnapshot> docs) throws Exception {
+        Query page = mock(Query.class);
+        QuerySnapshot snapshot = mock(QuerySnapshot.class);
+        when(snapshot.getDocuments()).thenReturn(docs);
+        when(page.get()).thenReturn(ApiFutures.immediateFuture(snapshot));
+        return page;
+    }
+
+    @Test
+    @DisplayName("Should delete every page through the BulkWriter and report progress per page")
+    void deleteAll_shouldPageThroughCollection() throws Exception {
+        // Arrange
+        QueryDocumentSnapshot d1 = doc("d1");
+        QueryDocumentSnapshot d2 = doc("d2");
+        QueryDocumentSnapshot d3 = doc("d3");
+        Query firstPage = page(List.of(d1, d2));
+        Query secondPage = page(List.of(d3));
+        Query afterD2 = mock(Query.class);
+        when(orderedQuery.limit(PAGE_SIZE)).thenReturn(firstPage);
+        when(orderedQuery.startAfter(d2)).thenReturn(afterD2);
+        when(afterD2.limit(PAGE_SIZE)).thenReturn(secondPage);
+
+        ApiFuture<WriteResult> ok = ApiFutures.immediateFuture(mock(WriteResult.class));
+        when(bulkWriter.delete(any(DocumentReference.class))).thenReturn(ok);
+
+        List<String> progress = new ArrayList<>();
+
+        // Act
+        BulkDeleteResult result = bulkDeleter.deleteAll(collection,
+                (deleted, failed, last) -> progress.add(deleted + "/" + failed + "@" + last.getId()));
+
+        // Assert
+        assertEquals(3, result.getDeleted());
+        assertEquals(0, result.getFailed());
+        assertEquals(List.of("2/0@d2", "3/0@d3"), progress);
+        verify(bulkWriter, times(3)).delete(any(DocumentReference.class));
+        verify(bulkWriter, times(2)).flush();
+        verify(bulkWriter).close();
+        verify(collection, never()).get();
+    }
+
+    @Test
+    @DisplayName("Should count deletes that fail after retries without aborting the run")
+    void delete_shouldCountFailures() throws Exception {
+        // Arrange
+        QueryDocumentSnapshot d1 = doc("d1");
+        Query onlyPage = page(List.of(d1));
+        when(orderedQuery.limit(PAGE_SIZE)).thenReturn(onlyPage);
+        when(bulkWriter.delete(any(DocumentReference.class)))
+                .thenReturn(ApiFutures.immediateFailedFuture(new RuntimeException("permission denied")));
+
+        // Act
+        BulkDeleteResult result = bulkDeleter.delete(orderedQuery, BulkDeleteListener.NONE);
+
+        // Assert
+        assertEquals(0, result.getDeleted());
+        assertEquals(1, result.getFailed());
+        verify(bulkWriter).close();
+    }
+
+    @Test
+    @DisplayName("Should close the BulkWriter without deleting when there is nothing to delete")
+    void deleteAll_emptyCollection_shouldDoNothing() throws Exception {
+        // Arrange
+        Query emptyPage = page(List.of());
+        when(orderedQuery.limit(PAGE_SIZE)).thenReturn(emptyPage);
+
+        // Act
+        BulkDeleteResult result = bulkDeleter.deleteAll(collection, BulkDeleteListener.NONE);
+
+        // Assert
+        assertEquals(0, result.getDeleted());
+        verify(bulkWriter, never()).delete(any(DocumentReference.class));
+        verify(bulkWriter).close();
+    }
+
+    @Test
+    @DisplayName("Constructor should reject non-positive settings")
+    void constructor_shouldRejectInvalidSettings() {
+        assertThrows(IllegalArgumentException.class, () -> new FirestoreBulkDeleter(firestore, 0, 100));
+        assertThrows(IllegalArgumentException.class, () -> new FirestoreBulkDeleter(firestore, 10, 0));
+    }
+}
@@ -1,19 +1,20 @@
 package com.supershoppercart.utils;
 
-import com.google.api.core.ApiFuture;
+import com.google.api.core.ApiFutures;
 import com.google.cloud.firestore.*;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.*;
 
@@ -31,103 +32,124 @@ class RefreshTokenCleanupJobTest {
     @Mock
     private CollectionReference collectionReference;
     @Mock
-    private Query query;
+    private CollectionReference checkpointsCollection;
+    @Mock
+    private DocumentReference checkpointRef;
+    @Mock
+    private DocumentSnapshot checkpointSnapshot;
     @Mock
-    private ApiFuture<QuerySnapshot> future;
+    private Query query;
     @Mock
-    private QuerySnapshot querySnapshot;
+    private FirestoreBulkDeleter bulkDeleter;
+
+    private SimpleMeterRegistry meterRegistry;
 
-    // The class under test, with mocks injected automatically
-    @InjectMocks
+    // The class under test
     private RefreshTokenCleanupJob job;
 
-    // The shared setup is now removed to prevent conflicts with the constructor test.
-    // The individual tests will now contain their own specific mock setup.
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        job = new RefreshTokenCleanupJob(firestore, bulkDeleter, meterRegistry);
+    }
 
-    @Test
-    @DisplayName("Should delete expired refresh tokens when they exist")
-    void deleteExpiredRefreshTokens_shouldDeleteExistingTokens() throws Exception {
-        // Arrange
-        // Define the mock behavior for the Firestore call chain specifically for this test
+    private void mockExpiredTokenQuery() {
         when(firestore.collection("refresh_tokens")).thenReturn(collectionReference);
-        when(collectionReference.whereLessThan(anyString(), anyLong())).thenReturn(query);
-        when(query.get()).thenReturn(future);
-
-        // Create a list of mock documents to simulate expired tokens
-        List<QueryDocumentSnapshot> expiredTokens = new ArrayList<>();
-        QueryDocumentSnapshot doc1 = mock(QueryDocumentSnapshot.class);
-        QueryDocumentSnapshot doc2 = mock(QueryDocumentSnapshot.class);
-
-        DocumentReference docRef1 = mock(DocumentReference.class);
-        DocumentReference docRef2 = mock(DocumentReference.class);
-
-        when(doc1.getId()).thenReturn("token1");
-        when(doc1.getReference()).thenReturn(docRef1);
-        when(doc2.getId()).thenReturn("token2");
-        when(doc2.getReference()).thenReturn(docRef2);
+        when(collectionReference.whereLessThan(eq("expiry"), anyLong())).thenReturn(query);
+        when(query.orderBy("expiry")).thenReturn(query);
+        when(query.orderBy(FieldPath.documentId())).thenReturn(query);
+        when(query.select("expiry")).thenReturn(query);
+
+        when(firestore.collection("job_checkpoints")).thenReturn(checkpointsCollection);
+        when(checkpointsCollection.document("refreshTokenCleanup")).thenReturn(checkpointRef);
+        when(checkpointRef.get()).thenReturn(ApiFutures.immediateFuture(checkpointSnapshot));
+        lenient().when(checkpointRef.set(anyMap())).thenReturn(ApiFutures.immediateFuture(mock(WriteResult.class)));
+        lenient().when(checkpointRef.delete()).thenReturn(ApiFutures.immediateFuture(mock(WriteResult.class)));
+    }
 
-        expiredTokens.add(doc1);
-        expiredTokens.add(doc2);
+    private static DocumentSnapshot token(String id, long expiry) {
+        DocumentSnapshot doc = mock(DocumentSnapshot.class);
+        when(doc.getId()).thenReturn(id);
+        when(doc.getLong("expiry")).thenReturn(expiry);
+        return doc;
+    }
 
-        when(future.get()).thenReturn(querySnapshot);
-        when(querySnapshot.getDocuments()).thenReturn(expiredTokens);
+    @Test
+    @DisplayName("Should bulk-delete expired tokens page by page, checkpointing and recording metrics")
+    void deleteExpiredRefreshTokens_shouldDeleteExistingTokens() throws Exception {
+        // Arrange
+        mockExpiredTokenQuery();
+        when(checkpointSnapshot.exists()).thenReturn(false);
+
+        DocumentSnapshot lastOfPage1 = token("token500", 1000L);
+        DocumentSnapshot lastOfPage2 = token("token700", 2000L);
+        when(bulkDeleter.delete(eq(query), any(BulkDeleteListener.class))).thenAnswer(invocation -> {
+            BulkDeleteListener listener = invocation.getArgument(1);
+            listener.onPage(500, 0, lastOfPage1);
+            listener.onPage(698, 2, lastOfPage2);
+            return new BulkDeleteResult(698, 2);
+        });
 
         // Act
         job.deleteExpiredRefreshTokens();
 
         // Assert
-        // Verify the entire call chain was executed as expected
-        verify(firestore).collection("refresh_tokens");
-        verify(collectionReference).whereLessThan(anyString(), anyLong());
-        verify(query).get();
-
-        // Verify that the delete() method was called on each document's reference
-        verify(docRef1, times(1)).delete();
-        verify(docRef2, times(1)).delete();
-
-        // Ensure delete was called exactly the number of times there were expired tokens
-        for (QueryDocumentSnapshot doc : expiredTokens) {
-            verify(doc.getReference(), times(1)).delete();
-        }
+        verify(query, never()).get(); // Tokens are never loaded in one go
+        verify(query, never()).startAfter(any(), any());
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<Map<String, Object>> cursors = ArgumentCaptor.forClass(Map.class);
+        verify(checkpointRef, times(2)).set(cursors.capture());
+        assertEquals("token700", cursors.getValue().get("tokenId"));
+        assertEquals(2000L, cursors.getValue().get("expiry"));
+        verify(checkpointRef).delete(); // Finished sweep clears the checkpoint
+
+        assertEquals(698.0, meterRegistry.counter("refresh_tokens.cleanup.deleted").count());
+        assertEquals(2.0, meterRegistry.counter("refresh_tokens.cleanup.failed").count());
+        assertEquals(1, meterRegistry.timer("refresh_tokens.cleanup.duration").count());
     }
 
     @Test
-    @DisplayName("Should do nothing when no expired refresh tokens are found")
-    void deleteExpiredRefreshTokens_shouldDoNothingWhenNoTokensExist() throws Exception {
+    @DisplayName("Should resume after the saved checkpoint when a previous sweep was interrupted")
+    void deleteExpiredRefreshTokens_shouldResumeFromCheckpoint() throws Exception {
         // Arrange
-        // Define the mock behavior for the Firestore call chain specifically for this test
-        when(firestore.collection("refresh_tokens")).thenReturn(collectionReference);
-        when(collectionReference.whereLessThan(anyString(), anyLong())).thenReturn(query);
-        when(query.get()).thenReturn(future);
+        mockExpiredTokenQuery();
+        when(checkpointSnapshot.exists()).thenReturn(true);
+        when(checkpointSnapshot.getLong("expiry")).thenReturn(1500L);
+        when(checkpointSnapshot.getString("tokenId")).thenReturn("token600");
 
-        // Mock the call to get() to return an empty list of documents
-        when(future.get()).thenReturn(querySnapshot);
-        when(querySnapshot.getDocuments()).thenReturn(Collections.emptyList());
-
-        // We also need a mock for a document reference to verify it's never called
-        DocumentReference docRef = mock(DocumentReference.class);
+        Query resumed = mock(Query.class);
+        when(query.startAfter(1500L, "token600")).thenReturn(resumed);
+        when(bulkDeleter.delete(eq(resumed), any(BulkDeleteListener.class))).thenReturn(new BulkDeleteResult(0, 0));
 
         // Act
         job.deleteExpiredRefreshTokens();
 
         // Assert
-        // Verify the Firestore query chain was executed
-        verify(firestore).collection("refresh_tokens");
-        verify(collectionReference).whereLessThan(anyString(), anyLong());
-        verify(query).get();
+        verify(bulkDeleter).delete(eq(resumed), any(BulkDeleteListener.class));
+        verify(checkpointRef).delete();
+    }
 
-        // Verify that the delete() method was never called
-        verify(docRef, never()).delete();
+    @Test
+    @DisplayName("Should keep the checkpoint and still record duration when the sweep fails")
+    void deleteExpiredRefreshTokens_failure_shouldKeepCheckpoint() throws Exception {
+        // Arrange
+        mockExpiredTokenQuery();
+        when(checkpointSnapshot.exists()).thenReturn(false);
+        when(bulkDeleter.delete(eq(query), any(BulkDeleteListener.class)))
+                .thenThrow(new java.util.concurrent.ExecutionException("quota exceeded", new RuntimeException()));
+
+        // Act & Assert
+        assertThrows(java.util.concurrent.ExecutionException.class, () -> job.deleteExpiredRefreshTokens());
+        verify(checkpointRef, never()).delete();
+        assertEquals(1, meterRegistry.timer("refresh_tokens.cleanup.duration").count());
     }
 
     @Test
     @DisplayName("Constructor should correctly initialize with injected Firestore client")
     void constructor_shouldInjectFirestore() {
         // Arrange, Act & Assert
-        // We can just assert that the job instance and its Firestore field are not null,
-        // as Mockito has already handled the injection for us.
         assertNotNull(job);
         assertNotNull(job.firestore);
     }
 }
-